@@ -3,6 +3,8 @@ plugins {
 	id("org.springframework.boot") version "3.2.4"
 	id("io.spring.dependency-management") version "1.1.4"
 	id("io.freefair.lombok") version "8.6"
+	// JMH benchmarks under src/jmh (./gradlew jmh)
+	id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.example"
@@ -25,6 +27,10 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-web")
 	implementation("org.springframework.boot:spring-boot-starter-websocket")
 	implementation("org.springframework.boot:spring-boot-starter-data-redis")
+	// Caffeine near-cache in front of Redis
+	implementation("com.github.ben-manes.caffeine:caffeine")
+	// CBOR encoding of order deltas on the binary WebSocket topics
+	implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
 	implementation("org.thymeleaf.extras:thymeleaf-extras-springsecurity6")
 	implementation("com.turkraft.springfilter:jpa:3.1.7")
 	implementation("org.springframework.boot:spring-boot-starter-oauth2-resource-server")
@@ -41,6 +47,10 @@ dependencies {
 	testImplementation("org.springframework.security:spring-security-test")
 }
 
+jmh {
+	profilers.add("gc")
+}
+
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
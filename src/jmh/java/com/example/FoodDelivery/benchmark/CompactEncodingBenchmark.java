@@ -0,0 +1,109 @@
+package com.example.FoodDelivery.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.FoodDelivery.domain.res.websocket.DriverLocationDelta;
+import com.example.FoodDelivery.domain.res.websocket.OrderDelta;
+import com.example.FoodDelivery.service.websocket.LocationFrameCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * JSON vs the binary variants of the live-tracking topics
+ *
+ * location* - a DriverLocationDelta delta frame, JSON vs LocationFrameCodec
+ * delta* - an OrderDelta status change, JSON vs CBOR
+ *
+ * Payload sizes are printed once per fork. No results are recorded yet, so
+ * there are no encode/decode timings for either encoding.
+ * Run with: ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompactEncodingBenchmark {
+    private ObjectMapper json;
+    private ObjectMapper cbor;
+    private DriverLocationDelta location;
+    private OrderDelta delta;
+    private byte[] locationJson;
+    private byte[] locationBinary;
+    private byte[] deltaJson;
+    private byte[] deltaCbor;
+
+    @Setup
+    public void setUp() throws Exception {
+        json = JsonMapper.builder().findAndAddModules().build();
+        cbor = json.copyWith(new CBORFactory());
+
+        location = new DriverLocationDelta(100234L, 418L, null, null, -137, 412, 1760000000000L);
+
+        ObjectNode changes = json.createObjectNode();
+        changes.put("orderStatus", "PICKED_UP");
+        changes.put("pickedUpAt", "2024-05-01T10:32:11Z");
+        delta = new OrderDelta(OrderDelta.DELTA, 100234L, 7L, 6L, null, changes, 1760000000000L);
+
+        locationJson = json.writeValueAsBytes(location);
+        locationBinary = LocationFrameCodec.encode(location);
+        deltaJson = json.writeValueAsBytes(delta);
+        deltaCbor = cbor.writeValueAsBytes(delta);
+        System.out.printf("%nlocation: json %d B, binary %d B; delta: json %d B, cbor %d B%n",
+                locationJson.length, locationBinary.length, deltaJson.length, deltaCbor.length);
+    }
+
+    @Benchmark
+    public byte[] locationEncodeJson() throws Exception {
+        return json.writeValueAsBytes(location);
+    }
+
+    @Benchmark
+    public byte[] locationEncodeBinary() {
+        return LocationFrameCodec.encode(location);
+    }
+
+    @Benchmark
+    public DriverLocationDelta locationDecodeJson() throws Exception {
+        return json.readValue(locationJson, DriverLocationDelta.class);
+    }
+
+    @Benchmark
+    public DriverLocationDelta locationDecodeBinary() {
+        return LocationFrameCodec.decode(locationBinary);
+    }
+
+    @Benchmark
+    public byte[] deltaEncodeJson() throws Exception {
+        return json.writeValueAsBytes(delta);
+    }
+
+    @Benchmark
+    public byte[] deltaEncodeCbor() throws Exception {
+        return cbor.writeValueAsBytes(delta);
+    }
+
+    @Benchmark
+    public OrderDelta deltaDecodeJson() throws Exception {
+        return json.readValue(deltaJson, OrderDelta.class);
+    }
+
+    @Benchmark
+    public OrderDelta deltaDecodeCbor() throws Exception {
+        return cbor.readValue(deltaCbor, OrderDelta.class);
+    }
+}
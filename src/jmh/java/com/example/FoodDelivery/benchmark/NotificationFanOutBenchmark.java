@@ -0,0 +1,144 @@
+package com.example.FoodDelivery.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.example.FoodDelivery.domain.res.order.ResOrderDTO;
+import com.example.FoodDelivery.domain.res.order.ResOrderItemDTO;
+import com.example.FoodDelivery.domain.res.websocket.OrderNotification;
+import com.example.FoodDelivery.domain.res.websocket.SharedPayload;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+/**
+ * One order status change on the WebSocket side: an ORDER_UPDATE to the
+ * customer plus ORDER_STATUS_CHANGED to customer, restaurant and driver
+ *
+ * perDestination - previous behaviour, every send converts its payload
+ * (4 conversions, order serialized 4 times)
+ * encodeOnce - ORDER_STATUS_CHANGED converted once and its bytes reused for
+ * the 3 destinations, order serialized once through SharedPayload
+ *
+ * Both stop at the message handed to the broker (the same for each variant).
+ * No results are recorded yet; whether encodeOnce is faster or allocates
+ * less is what this is meant to show. The serialize-once behaviour itself is
+ * covered by SharedPayloadTest.
+ * Run with: ./gradlew jmh (allocation per op comes from the gc profiler)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotificationFanOutBenchmark {
+    private static final String[] DESTINATIONS = {
+            "/topic/customer/11/orders",
+            "/topic/restaurant/22/orders",
+            "/topic/driver/33/orders"
+    };
+
+    private MappingJackson2MessageConverter converter;
+    private ResOrderDTO order;
+
+    @Setup
+    public void setUp() {
+        converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(JsonMapper.builder().findAndAddModules().build());
+        order = sampleOrder(5);
+    }
+
+    @Benchmark
+    public void perDestination(Blackhole blackhole) {
+        blackhole.consume(convert(new OrderNotification("ORDER_UPDATE", order.getId(),
+                "Your order has been picked up and is on the way", order), DESTINATIONS[0]));
+        OrderNotification notification = new OrderNotification("ORDER_STATUS_CHANGED", order.getId(),
+                "Order status updated to: " + order.getOrderStatus(), order);
+        for (String destination : DESTINATIONS) {
+            blackhole.consume(convert(notification, destination));
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce(Blackhole blackhole) {
+        SharedPayload data = new SharedPayload(order);
+        blackhole.consume(convert(new OrderNotification("ORDER_UPDATE", order.getId(),
+                "Your order has been picked up and is on the way", data), DESTINATIONS[0]));
+        Message<?> encoded = converter.toMessage(new OrderNotification("ORDER_STATUS_CHANGED", order.getId(),
+                "Order status updated to: " + order.getOrderStatus(), data), newHeaders());
+        for (String destination : DESTINATIONS) {
+            blackhole.consume(withDestination(encoded, destination));
+        }
+    }
+
+    private Message<?> convert(Object payload, String destination) {
+        return withDestination(converter.toMessage(payload, newHeaders()), destination);
+    }
+
+    /**
+     * What SimpMessagingTemplate.doSend does to a message before handing it
+     * to the broker
+     */
+    private static Message<?> withDestination(Message<?> message, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+
+    private static MessageHeaders newHeaders() {
+        return SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE).getMessageHeaders();
+    }
+
+    private static ResOrderDTO sampleOrder(int items) {
+        ResOrderDTO order = new ResOrderDTO();
+        order.setId(1001L);
+        order.setCustomer(new ResOrderDTO.User(11, "Nguyen Van A"));
+        order.setRestaurant(new ResOrderDTO.Restaurant(22, "Pho 24", "12 Nguyen Hue, District 1"));
+        order.setDriver(new ResOrderDTO.User(33, "Tran Van B"));
+        order.setOrderStatus("PICKED_UP");
+        order.setDeliveryAddress("45 Le Loi, District 1, Ho Chi Minh City");
+        order.setDeliveryLatitude(new BigDecimal("10.7731"));
+        order.setDeliveryLongitude(new BigDecimal("106.7030"));
+        order.setSubtotal(new BigDecimal("185000"));
+        order.setDeliveryFee(new BigDecimal("15000"));
+        order.setDiscountAmount(BigDecimal.ZERO);
+        order.setTotalAmount(new BigDecimal("200000"));
+        order.setPaymentMethod("COD");
+        order.setPaymentStatus("UNPAID");
+        order.setCreatedAt(Instant.parse("2024-05-01T10:15:30Z"));
+        order.setPreparingAt(Instant.parse("2024-05-01T10:17:00Z"));
+
+        List<ResOrderItemDTO> orderItems = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            ResOrderItemDTO item = new ResOrderItemDTO();
+            item.setId(5000L + i);
+            item.setDish(new ResOrderItemDTO.Dish(700 + i, "Dish " + i, new BigDecimal("37000")));
+            item.setQuantity(1 + i % 3);
+            item.setPriceAtPurchase(new BigDecimal("37000"));
+            item.setOrderItemOptions(List.of());
+            orderItems.add(item);
+        }
+        order.setOrderItems(orderItems);
+        return order;
+    }
+}
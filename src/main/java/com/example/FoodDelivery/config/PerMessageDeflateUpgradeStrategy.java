@@ -0,0 +1,30 @@
+package com.example.FoodDelivery.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+
+/**
+ * Standard (Jakarta WebSocket) upgrade that offers permessage-deflate
+ * (RFC 7692) to clients asking for it
+ *
+ * The embedded Tomcat implements the extension but does not list it as
+ * installed, so the handshake handler would otherwise filter it out of the
+ * negotiated extensions.
+ */
+public class PerMessageDeflateUpgradeStrategy extends StandardWebSocketUpgradeStrategy {
+    public static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    @Override
+    public List<WebSocketExtension> getSupportedExtensions(ServerHttpRequest request) {
+        List<WebSocketExtension> supported = new ArrayList<>(super.getSupportedExtensions(request));
+        boolean listed = supported.stream().anyMatch(extension -> PERMESSAGE_DEFLATE.equals(extension.getName()));
+        if (!listed) {
+            supported.add(new WebSocketExtension(PERMESSAGE_DEFLATE));
+        }
+        return supported;
+    }
+}
@@ -19,7 +19,11 @@ import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
 import com.example.FoodDelivery.util.SecurityUtil;
 import com.nimbusds.jose.jwk.source.ImmutableSecret;
@@ -57,12 +61,29 @@ public class SecurityConfiguration {
                                 .requestMatchers(whiteList).permitAll()
                                 .anyRequest().authenticated())
                 .oauth2ResourceServer(oauth2 -> oauth2.jwt(Customizer.withDefaults())
+                        .bearerTokenResolver(bearerTokenResolver())
                         .authenticationEntryPoint(customAuthenticationEntryPoint))
                 .formLogin(f -> f.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
         return http.build();
     }
 
+    /**
+     * Bearer token from the Authorization header; the SSE order stream also
+     * takes it from the access_token query parameter, since a native
+     * EventSource cannot set headers
+     */
+    @Bean
+    public BearerTokenResolver bearerTokenResolver() {
+        DefaultBearerTokenResolver headerResolver = new DefaultBearerTokenResolver();
+        DefaultBearerTokenResolver streamResolver = new DefaultBearerTokenResolver();
+        streamResolver.setAllowUriQueryParameter(true);
+        RequestMatcher orderStream = new AntPathRequestMatcher("/api/v1/orders/*/stream", HttpMethod.GET.name());
+        return request -> orderStream.matches(request)
+                ? streamResolver.resolve(request)
+                : headerResolver.resolve(request);
+    }
+
     @Bean
     public JwtAuthenticationConverter jwtAuthenticationConverter() {
         JwtGrantedAuthoritiesConverter grantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
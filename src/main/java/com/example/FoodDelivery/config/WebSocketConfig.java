@@ -1,32 +1,116 @@
 package com.example.FoodDelivery.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import com.example.FoodDelivery.service.websocket.OutboundBackpressureInterceptor;
+import com.example.FoodDelivery.service.websocket.RedisBrokerRelay;
+import com.example.FoodDelivery.service.websocket.StompAuthenticationInterceptor;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // Present when websocket.cluster.enabled=true
+    private final ObjectProvider<RedisBrokerRelay> brokerRelay;
+    private final OutboundBackpressureInterceptor outboundInterceptor;
+    private final StompAuthenticationInterceptor authenticationInterceptor;
+
+    @Value("${websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${websocket.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+
+    @Value("${websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${websocket.transport.send-time-limit-ms:5000}")
+    private int sendTimeLimitMs;
+
+    @Value("${websocket.transport.send-buffer-size-kb:256}")
+    private int sendBufferSizeKb;
+
+    @Value("${websocket.transport.message-size-kb:64}")
+    private int messageSizeKb;
+
+    @Value("${websocket.transport.permessage-deflate:true}")
+    private boolean perMessageDeflate;
+
+    public WebSocketConfig(ObjectProvider<RedisBrokerRelay> brokerRelay,
+            OutboundBackpressureInterceptor outboundInterceptor,
+            StompAuthenticationInterceptor authenticationInterceptor) {
+        this.brokerRelay = brokerRelay;
+        this.outboundInterceptor = outboundInterceptor;
+        this.authenticationInterceptor = authenticationInterceptor;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Enable a simple memory-based message broker to send messages to clients
         config.enableSimpleBroker("/topic", "/queue");
         // Set prefix for messages from client to server
         config.setApplicationDestinationPrefixes("/app");
+
+        // Cluster mode: broker messages are relayed between nodes through Redis
+        RedisBrokerRelay relay = brokerRelay.getIfAvailable();
+        if (relay != null) {
+            config.configureBrokerChannel().interceptors(relay);
+            // Users connected to another node are resolved there
+            config.setUserDestinationBroadcast(RedisBrokerRelay.UNRESOLVED_USER_DESTINATION);
+            config.setUserRegistryBroadcast(RedisBrokerRelay.USER_REGISTRY_DESTINATION);
+        }
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Session user from the access token in the CONNECT frame
+        registration.interceptors(authenticationInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Extra threads are only started once the queue is full
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+        registration.interceptors(outboundInterceptor);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Per session: a client that takes longer than the time limit for one
+        // send, or falls behind by more than the buffer, is disconnected
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeKb * 1024)
+                .setMessageSizeLimit(messageSizeKb * 1024);
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Compress frames with permessage-deflate when the client offers it
+        DefaultHandshakeHandler handshakeHandler = perMessageDeflate
+                ? new DefaultHandshakeHandler(new PerMessageDeflateUpgradeStrategy())
+                : new DefaultHandshakeHandler();
+
         // Register STOMP endpoint with SockJS fallback
         registry.addEndpoint("/ws")
+                .setHandshakeHandler(handshakeHandler)
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
 
         // Register native WebSocket endpoint (without SockJS) for testing with wscat
         registry.addEndpoint("/ws")
+                .setHandshakeHandler(handshakeHandler)
                 .setAllowedOriginPatterns("*");
     }
 }
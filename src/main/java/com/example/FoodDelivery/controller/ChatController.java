@@ -2,28 +2,38 @@ package com.example.FoodDelivery.controller;
 
 import java.security.Principal;
 import java.time.Instant;
+import java.util.Map;
 
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
+import com.example.FoodDelivery.domain.User;
 import com.example.FoodDelivery.domain.res.websocket.ChatMessage;
-import com.example.FoodDelivery.service.OrderService;
+import com.example.FoodDelivery.service.UserService;
+import com.example.FoodDelivery.service.chat.ChatService;
+import com.example.FoodDelivery.service.chat.ChatService.Participants;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Controller
 @Slf4j
 public class ChatController {
+    // WebSocket session attribute, resolved on the first chat frame of a session
+    private static final String SESSION_USER_ID = "chatUserId";
 
     private final SimpMessagingTemplate messagingTemplate;
-    private final OrderService orderService;
+    private final ChatService chatService;
+    private final UserService userService;
 
-    public ChatController(SimpMessagingTemplate messagingTemplate, OrderService orderService) {
+    public ChatController(SimpMessagingTemplate messagingTemplate, ChatService chatService,
+            UserService userService) {
         this.messagingTemplate = messagingTemplate;
-        this.orderService = orderService;
+        this.chatService = chatService;
+        this.userService = userService;
     }
 
     /**
@@ -33,6 +43,7 @@ public class ChatController {
     @MessageMapping("/chat/{orderId}")
     public void handleChatMessage(@DestinationVariable("orderId") Long orderId,
             @Payload ChatMessage message,
+            SimpMessageHeaderAccessor headerAccessor,
             Principal principal) {
         String authenticatedUser = principal != null ? principal.getName() : "anonymous";
         log.info("Received chat message for order {} from authenticated user '{}': {} from {} ({})",
@@ -42,13 +53,18 @@ public class ChatController {
         message.setTimestamp(Instant.now());
         message.setOrderId(orderId);
 
-        // Verify order exists
-        var order = orderService.getOrderById(orderId);
-        if (order == null) {
-            log.error("Order {} not found", orderId);
+        if (!resolveSender(message, headerAccessor, principal)) {
             return;
         }
 
+        // Sender must be the customer, driver or restaurant owner of the order (cached)
+        Participants participants = chatService.authorize(orderId, message.getSenderId());
+        if (participants == null) {
+            log.warn("Rejected chat message for order {} from non-participant {}", orderId, message.getSenderId());
+            return;
+        }
+        message.setSenderType(participants.typeOf(message.getSenderId()));
+
         // ===== QUEUE VERSION (Point-to-point - Private messaging) =====
         // Issue: Requires proper user authentication with Principal
         // Client must connect with {login: userId} header
@@ -81,6 +97,9 @@ public class ChatController {
                 "/topic/chat/order/" + orderId,
                 message);
         log.info("Broadcasted chat message to topic /topic/chat/order/{}", orderId);
+
+        // Persisted write-behind (batched inserts)
+        chatService.save(participants, message);
     }
 
     /**
@@ -90,12 +109,19 @@ public class ChatController {
     @MessageMapping("/typing/{orderId}")
     public void handleTypingIndicator(@DestinationVariable("orderId") Long orderId,
             @Payload ChatMessage message,
+            SimpMessageHeaderAccessor headerAccessor,
             Principal principal) {
         String authenticatedUser = principal != null ? principal.getName() : "anonymous";
         log.debug("Received typing indicator for order {} from authenticated user '{}'", orderId, authenticatedUser);
 
-        var order = orderService.getOrderById(orderId);
-        if (order == null) {
+        if (!resolveSender(message, headerAccessor, principal)) {
+            return;
+        }
+        if (chatService.authorize(orderId, message.getSenderId()) == null) {
+            return;
+        }
+        // At most one indicator per sender per chat.typing.min-interval-ms
+        if (!chatService.allowTyping(orderId, message.getSenderId())) {
             return;
         }
 
@@ -124,4 +150,38 @@ public class ChatController {
                 message);
         log.debug("Broadcasted typing indicator to topic /topic/chat/order/{}/typing", orderId);
     }
+
+    /**
+     * Set the sender of a frame to the authenticated user of the session
+     * (StompAuthenticationInterceptor); any senderId in the payload is
+     * ignored
+     *
+     * @return false for anonymous sessions and unknown users
+     */
+    private boolean resolveSender(ChatMessage message, SimpMessageHeaderAccessor headerAccessor,
+            Principal principal) {
+        if (principal == null) {
+            log.warn("Rejected chat frame of unauthenticated session {}", headerAccessor.getSessionId());
+            return false;
+        }
+        Map<String, Object> session = headerAccessor.getSessionAttributes();
+        Long userId = session != null ? (Long) session.get(SESSION_USER_ID) : null;
+        if (userId == null) {
+            User user = userService.handleGetUserByUsername(principal.getName());
+            if (user == null) {
+                log.warn("Rejected chat frame from unknown user '{}'", principal.getName());
+                return false;
+            }
+            userId = user.getId();
+            if (session != null) {
+                session.put(SESSION_USER_ID, userId);
+            }
+        }
+        if (message.getSenderId() != null && !message.getSenderId().equals(userId)) {
+            log.warn("Chat frame of user {} claimed sender {}, using the authenticated user", userId,
+                    message.getSenderId());
+        }
+        message.setSenderId(userId);
+        return true;
+    }
 }
@@ -1,68 +1,95 @@
 package com.example.FoodDelivery.controller;
 
-import java.time.Instant;
+import java.security.Principal;
+import java.util.Map;
 
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 
 import com.example.FoodDelivery.domain.User;
 import com.example.FoodDelivery.domain.res.websocket.DriverLocationUpdate;
-import com.example.FoodDelivery.service.RedisGeoService;
 import com.example.FoodDelivery.service.UserService;
-import com.example.FoodDelivery.util.error.IdInvalidException;
+import com.example.FoodDelivery.service.geo.DriverLocationIngestService;
+import com.example.FoodDelivery.service.geo.DriverLocationIngestService.SessionRateLimiter;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Controller
 @Slf4j
 public class DriverLocationController {
+    // WebSocket session attributes, resolved on the first ping of a session
+    private static final String SESSION_DRIVER_ID = "driverId";
+    private static final String SESSION_RATE_LIMITER = "locationRateLimiter";
 
-    private final RedisGeoService redisGeoService;
+    private final DriverLocationIngestService locationIngestService;
     private final UserService userService;
 
     public DriverLocationController(
-            RedisGeoService redisGeoService,
+            DriverLocationIngestService locationIngestService,
             UserService userService) {
-        this.redisGeoService = redisGeoService;
+        this.locationIngestService = locationIngestService;
         this.userService = userService;
     }
 
     /**
      * Handle driver location updates
      * Driver sends location via: /app/driver/location
-     * Location is stored in Redis GEO for real-time tracking
+     * The driver is resolved once per WebSocket session; pings are coalesced
+     * and written to Redis GEO in batches by DriverLocationIngestService
      */
     @MessageMapping("/driver/location")
-    public void updateDriverLocation(@Payload DriverLocationUpdate locationUpdate) {
+    public void updateDriverLocation(@Payload DriverLocationUpdate locationUpdate,
+            SimpMessageHeaderAccessor headerAccessor,
+            Principal principal) {
+        Map<String, Object> session = headerAccessor.getSessionAttributes();
+        if (session == null) {
+            log.error("No WebSocket session for location update");
+            return;
+        }
+
+        Long driverId = (Long) session.get(SESSION_DRIVER_ID);
+        if (driverId == null) {
+            driverId = resolveDriverId(principal);
+            if (driverId == null) {
+                return;
+            }
+            session.put(SESSION_DRIVER_ID, driverId);
+            session.put(SESSION_RATE_LIMITER, locationIngestService.newRateLimiter());
+        }
+
+        boolean accepted = locationIngestService.submit(
+                (SessionRateLimiter) session.get(SESSION_RATE_LIMITER),
+                driverId,
+                locationUpdate.getLatitude(),
+                locationUpdate.getLongitude());
+
+        if (accepted) {
+            log.trace("📍 Driver {} location queued: lat={}, lng={}",
+                    driverId,
+                    locationUpdate.getLatitude(),
+                    locationUpdate.getLongitude());
+        }
+    }
+
+    private Long resolveDriverId(Principal principal) {
         // Get authenticated driver
-        String currentUserEmail = com.example.FoodDelivery.util.SecurityUtil.getCurrentUserLogin()
-                .orElse(null);
+        String currentUserEmail = principal != null
+                ? principal.getName()
+                : com.example.FoodDelivery.util.SecurityUtil.getCurrentUserLogin().orElse(null);
 
         if (currentUserEmail == null) {
             log.error("User not authenticated");
-            return;
+            return null;
         }
 
         User driver = this.userService.handleGetUserByUsername(currentUserEmail);
 
         if (driver == null) {
             log.error("Driver not found: {}", currentUserEmail);
-            return;
+            return null;
         }
-
-        // Set timestamp
-        locationUpdate.setTimestamp(Instant.now());
-
-        // Save location to Redis GEO
-        redisGeoService.updateDriverLocation(
-                driver.getId(),
-                locationUpdate.getLatitude(),
-                locationUpdate.getLongitude());
-
-        log.debug("📍 Driver {} location updated in Redis GEO: lat={}, lng={}",
-                driver.getId(),
-                locationUpdate.getLatitude(),
-                locationUpdate.getLongitude());
+        return driver.getId();
     }
 }
@@ -6,18 +6,28 @@ import org.springframework.web.bind.annotation.RestController;
 import com.turkraft.springfilter.boot.Filter;
 
 import com.example.FoodDelivery.domain.Order;
+import com.example.FoodDelivery.domain.User;
 import com.example.FoodDelivery.domain.req.ReqOrderDTO;
 import com.example.FoodDelivery.domain.res.ResultPaginationDTO;
+import com.example.FoodDelivery.domain.res.chat.ResChatHistoryDTO;
 import com.example.FoodDelivery.domain.res.order.ResOrderDTO;
+import com.example.FoodDelivery.domain.res.order.ResOrderTrailDTO;
 import com.example.FoodDelivery.service.OrderService;
+import com.example.FoodDelivery.service.OrderTrailService;
+import com.example.FoodDelivery.service.UserService;
+import com.example.FoodDelivery.service.chat.ChatService;
+import com.example.FoodDelivery.service.stream.OrderStreamService;
+import com.example.FoodDelivery.util.SecurityUtil;
 import com.example.FoodDelivery.util.annotation.ApiMessage;
 import com.example.FoodDelivery.util.error.IdInvalidException;
+import com.example.FoodDelivery.util.error.PermissionException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -26,6 +36,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -34,9 +47,18 @@ import java.util.Map;
 @RequestMapping("/api/v1")
 public class OrderController {
     private final OrderService orderService;
+    private final OrderTrailService orderTrailService;
+    private final OrderStreamService orderStreamService;
+    private final ChatService chatService;
+    private final UserService userService;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, OrderTrailService orderTrailService,
+            OrderStreamService orderStreamService, ChatService chatService, UserService userService) {
         this.orderService = orderService;
+        this.orderTrailService = orderTrailService;
+        this.orderStreamService = orderStreamService;
+        this.chatService = chatService;
+        this.userService = userService;
     }
 
     @PostMapping("/orders")
@@ -131,6 +153,47 @@ public class OrderController {
         return ResponseEntity.ok(order);
     }
 
+    @GetMapping("/orders/{id}/trail")
+    @ApiMessage("Get recorded driver trail of order")
+    public ResponseEntity<ResOrderTrailDTO> getOrderTrail(@PathVariable("id") Long id) throws IdInvalidException {
+        return ResponseEntity.ok(orderTrailService.getTrail(id));
+    }
+
+    @GetMapping("/orders/{id}/chat")
+    @ApiMessage("Get chat history of order (cursor paginated)")
+    public ResponseEntity<ResChatHistoryDTO> getOrderChat(@PathVariable("id") Long id,
+            @RequestParam(value = "before", required = false) Long before,
+            @RequestParam(value = "limit", defaultValue = "50") int limit)
+            throws IdInvalidException, PermissionException {
+        String currentUserEmail = SecurityUtil.getCurrentUserLogin()
+                .orElseThrow(() -> new IdInvalidException("User not authenticated"));
+        User currentUser = userService.handleGetUserByUsername(currentUserEmail);
+        if (currentUser == null) {
+            throw new IdInvalidException("User not found with email: " + currentUserEmail);
+        }
+        return ResponseEntity.ok(chatService.getHistory(id, currentUser.getId(), before, limit));
+    }
+
+    @GetMapping(value = "/orders/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiMessage("Stream order updates and driver location (SSE)")
+    public SseEmitter streamOrder(@PathVariable("id") Long id,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId)
+            throws IdInvalidException, PermissionException {
+        if (orderService.getOrderById(id) == null) {
+            throw new IdInvalidException("Order not found with id: " + id);
+        }
+        String currentUserEmail = SecurityUtil.getCurrentUserLogin()
+                .orElseThrow(() -> new IdInvalidException("User not authenticated"));
+        User currentUser = userService.handleGetUserByUsername(currentUserEmail);
+        if (currentUser == null) {
+            throw new IdInvalidException("User not found with email: " + currentUserEmail);
+        }
+        if (!chatService.isParticipant(id, currentUser.getId())) {
+            throw new PermissionException("You are not a participant of this order");
+        }
+        return orderStreamService.open(id, lastEventId, () -> orderService.getOrderDTOById(id));
+    }
+
     @PatchMapping("/orders/{id}/assign-driver")
     @ApiMessage("Assign driver to order")
     public ResponseEntity<ResOrderDTO> assignDriver(
@@ -0,0 +1,56 @@
+package com.example.FoodDelivery.controller;
+
+import java.security.Principal;
+
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import com.example.FoodDelivery.domain.User;
+import com.example.FoodDelivery.domain.res.websocket.OrderDelta;
+import com.example.FoodDelivery.service.OrderService;
+import com.example.FoodDelivery.service.UserService;
+import com.example.FoodDelivery.service.chat.ChatService;
+import com.example.FoodDelivery.service.websocket.OrderDeltaService;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Controller
+@Slf4j
+public class OrderDeltaController {
+    private final OrderDeltaService orderDeltaService;
+    private final OrderService orderService;
+    private final ChatService chatService;
+    private final UserService userService;
+
+    public OrderDeltaController(OrderDeltaService orderDeltaService, OrderService orderService,
+            ChatService chatService, UserService userService) {
+        this.orderDeltaService = orderDeltaService;
+        this.orderService = orderService;
+        this.chatService = chatService;
+        this.userService = userService;
+    }
+
+    /**
+     * Full order state and its version, sent once to the subscriber
+     * Client subscribes to /app/order/{orderId}/snapshot, then applies the
+     * deltas of /topic/order/{orderId}/delta; on a version gap it subscribes
+     * to the snapshot again to resync
+     * Only for the customer, driver and restaurant owner of the order
+     * (authenticated session, see StompAuthenticationInterceptor)
+     */
+    @SubscribeMapping("/order/{orderId}/snapshot")
+    public OrderDelta snapshot(@DestinationVariable("orderId") Long orderId, Principal principal) {
+        User user = principal != null ? userService.handleGetUserByUsername(principal.getName()) : null;
+        if (user == null || !chatService.isParticipant(orderId, user.getId())) {
+            log.warn("Rejected snapshot of order {} for non-participant {}", orderId,
+                    principal != null ? principal.getName() : "anonymous");
+            return null;
+        }
+        OrderDelta snapshot = orderDeltaService.snapshot(orderId, () -> orderService.getOrderDTOById(orderId));
+        if (snapshot == null) {
+            log.warn("Snapshot requested for unknown order {}", orderId);
+        }
+        return snapshot;
+    }
+}
@@ -170,6 +170,17 @@ public class RedisTestController {
                                 "latitude", location.getY()));
         }
 
+        @GetMapping("/driver/presence")
+        @ApiMessage("Get driver presence counts")
+        @Operation(summary = "Count drivers in Redis GEO by heartbeat freshness")
+        public ResponseEntity<?> getDriverPresence() {
+                Map<String, Long> counts = redisGeoService.getDriverPresenceCounts();
+                return ResponseEntity.ok(Map.of(
+                                "total", redisGeoService.getActiveDriverCount(),
+                                "active", counts.get("active"),
+                                "stale", counts.get("stale")));
+        }
+
         // ============ INFO ============
 
         @GetMapping("/info")
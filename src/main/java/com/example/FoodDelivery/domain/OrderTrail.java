@@ -0,0 +1,43 @@
+package com.example.FoodDelivery.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/**
+ * Recorded driver path of an order (one row per recorded segment), encoded
+ * with TrailCodec
+ */
+@Entity
+@Table(name = "order_trails")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderTrail {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "order_id")
+    private Order order;
+
+    @ManyToOne
+    @JoinColumn(name = "driver_id")
+    private User driver;
+
+    private Instant startedAt;
+    private Instant endedAt;
+
+    // Samples recorded / kept after simplification
+    private Integer rawPointCount;
+    private Integer pointCount;
+    private Integer distanceMeters;
+
+    private Integer encodingVersion;
+
+    @Column(columnDefinition = "MEDIUMBLOB")
+    private byte[] data;
+}
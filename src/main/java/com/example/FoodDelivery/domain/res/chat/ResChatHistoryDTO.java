@@ -0,0 +1,22 @@
+package com.example.FoodDelivery.domain.res.chat;
+
+import java.util.List;
+
+import com.example.FoodDelivery.domain.res.websocket.ChatMessage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResChatHistoryDTO {
+    private Long orderId;
+    // Newest first
+    private List<ChatMessage> messages;
+    // Pass as "before" to get the next (older) page; null on the last page
+    private Long nextCursor;
+}
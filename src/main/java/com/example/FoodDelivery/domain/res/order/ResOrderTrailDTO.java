@@ -0,0 +1,31 @@
+package com.example.FoodDelivery.domain.res.order;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResOrderTrailDTO {
+    private Long orderId;
+    private Long driverId;
+    private Integer distanceMeters;
+    private List<TrailPoint> points;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TrailPoint {
+        private BigDecimal latitude;
+        private BigDecimal longitude;
+        private Instant timestamp;
+    }
+}
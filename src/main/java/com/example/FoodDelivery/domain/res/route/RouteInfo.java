@@ -0,0 +1,15 @@
+package com.example.FoodDelivery.domain.res.route;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RouteInfo {
+    private BigDecimal distanceKm;
+    private BigDecimal durationMinutes;
+}
@@ -17,4 +17,5 @@ public class ChatMessage {
     private String message;
     private Instant timestamp;
     private String messageType; // "TEXT", "IMAGE", "LOCATION"
+    private Long id; // set on persisted messages (chat history)
 }
@@ -0,0 +1,31 @@
+package com.example.FoodDelivery.domain.res.websocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compact live-tracking message pushed to the customer
+ * Coordinates are fixed-point (degrees x 1e6). A keyframe carries the
+ * absolute position (lat/lng); other messages carry only the change since the
+ * previous message (dlat/dlng). Clients apply deltas to the last position and
+ * wait for the next keyframe if they joined mid-stream or see a gap in seq.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DriverLocationDelta {
+    private Long orderId;
+    private Long seq;
+    private Integer lat;
+    private Integer lng;
+    @JsonProperty("dlat")
+    private Integer deltaLat;
+    @JsonProperty("dlng")
+    private Integer deltaLng;
+    private Long ts;
+}
@@ -0,0 +1,34 @@
+package com.example.FoodDelivery.domain.res.websocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Versioned order state for WebSocket clients
+ * SNAPSHOT (reply to a subscription to /app/order/{id}/snapshot): the full
+ * order at version. DELTA (on /topic/order/{id}/delta): only the top-level
+ * fields that changed since baseVersion, with their new values (null when
+ * cleared). A client at version == baseVersion applies the changes and moves
+ * to version, a delta with version <= the local version is ignored, and any
+ * other client resyncs by subscribing to the snapshot again.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderDelta {
+    public static final String SNAPSHOT = "SNAPSHOT";
+    public static final String DELTA = "DELTA";
+
+    private String type;
+    private Long orderId;
+    private Long version;
+    private Long baseVersion;
+    private JsonNode order;
+    private JsonNode changes;
+    private Long ts;
+}
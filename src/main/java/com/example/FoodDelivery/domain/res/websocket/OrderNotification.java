@@ -1,5 +1,9 @@
 package com.example.FoodDelivery.domain.res.websocket;
 
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,4 +16,11 @@ public class OrderNotification {
     private Long orderId;
     private String message;
     private Object data; // Order details or any additional data
+    // All messages of a coalesced frame, oldest first (absent on single notifications)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> messages;
+
+    public OrderNotification(String type, Long orderId, String message, Object data) {
+        this(type, orderId, message, data, null);
+    }
 }
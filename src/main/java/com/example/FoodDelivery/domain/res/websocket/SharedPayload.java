@@ -0,0 +1,60 @@
+package com.example.FoodDelivery.domain.res.websocket;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+/**
+ * Data shared by several notifications (e.g. the same order in ORDER_UPDATE
+ * and ORDER_STATUS_CHANGED): serialized to JSON the first time one of them is
+ * encoded and written as raw JSON by the others
+ */
+public class SharedPayload implements JsonSerializable {
+    private final Object value;
+    private volatile Encoded encoded;
+
+    public SharedPayload(Object value) {
+        this.value = value;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        ObjectCodec codec = gen.getCodec();
+        if (!(codec instanceof ObjectMapper)) {
+            serializers.defaultSerializeValue(value, gen);
+            return;
+        }
+        // Only reuse JSON produced by the same mapper
+        Encoded current = encoded;
+        if (current == null || current.codec != codec) {
+            current = new Encoded(codec, ((ObjectMapper) codec).writeValueAsString(value));
+            encoded = current;
+        }
+        gen.writeRawValue(current.json);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        serializers.defaultSerializeValue(value, gen);
+    }
+
+    private static final class Encoded {
+        private final ObjectCodec codec;
+        private final String json;
+
+        Encoded(ObjectCodec codec, String json) {
+            this.codec = codec;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.FoodDelivery.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.FoodDelivery.domain.ChatMessage;
+
+import java.util.List;
+
+@Repository
+public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
+    // One page of an order's chat older than a cursor id, newest first
+    @EntityGraph(attributePaths = "sender")
+    List<ChatMessage> findByOrderIdAndIdLessThanOrderByIdDesc(Long orderId, Long id, Pageable pageable);
+}
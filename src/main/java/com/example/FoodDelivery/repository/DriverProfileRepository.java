@@ -45,4 +45,20 @@ public interface DriverProfileRepository
                         "AND dp.status IN ('ONLINE', 'AVAILABLE') " +
                         "AND w.balance >= 0")
         List<DriverProfile> findByUserIds(@Param("userIds") List<Long> userIds);
+
+        /**
+         * Compact eligibility rows [userId, status, codLimit, vehicleType,
+         * walletBalance] without loading the wide profile entity
+         * Used to rebuild / warm the Redis driver eligibility registry
+         */
+        @Query("SELECT u.id, dp.status, dp.codLimit, dp.vehicleType, w.balance FROM DriverProfile dp " +
+                        "INNER JOIN dp.user u " +
+                        "LEFT JOIN Wallet w ON w.user.id = u.id " +
+                        "WHERE u.id IN :userIds")
+        List<Object[]> findEligibilityRowsByUserIds(@Param("userIds") List<Long> userIds);
+
+        @Query("SELECT u.id, dp.status, dp.codLimit, dp.vehicleType, w.balance FROM DriverProfile dp " +
+                        "INNER JOIN dp.user u " +
+                        "LEFT JOIN Wallet w ON w.user.id = u.id")
+        List<Object[]> findAllEligibilityRows();
 }
@@ -2,6 +2,9 @@ package com.example.FoodDelivery.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.FoodDelivery.domain.Order;
@@ -40,4 +43,45 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
     List<Order> findByOrderStatusAndCreatedAtBefore(String orderStatus, Instant createdAt);
 
     List<Order> findByOrderStatusAndPreparingAtBefore(String orderStatus, Instant preparingAt);
+
+    // Orders waiting for a driver, oldest first (batch dispatch)
+    List<Order> findByOrderStatusInAndDriverIsNullOrderByPreparingAtAsc(List<String> orderStatuses);
+
+    /**
+     * Drivers currently holding an offer (assigned but not yet accepted)
+     */
+    @Query("SELECT DISTINCT o.driver.id FROM Order o WHERE o.orderStatus IN :statuses AND o.driver IS NOT NULL")
+    List<Long> findDriverIdsByOrderStatusIn(@Param("statuses") List<String> statuses);
+
+    /**
+     * Customer, driver and restaurant owner ids of an order (one row, null
+     * where not set; no row when the order does not exist)
+     */
+    @Query("SELECT c.id, d.id, ow.id FROM Order o LEFT JOIN o.customer c LEFT JOIN o.driver d"
+            + " LEFT JOIN o.restaurant r LEFT JOIN r.owner ow WHERE o.id = :orderId")
+    List<Object[]> findParticipantIds(@Param("orderId") Long orderId);
+
+    /**
+     * Move an offered order to a new status, only if it is still offered to
+     * this driver in one of the given statuses
+     *
+     * @return 1 if the order was claimed, 0 if it moved on meanwhile
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Order o SET o.orderStatus = :newStatus WHERE o.id = :orderId AND o.driver.id = :driverId"
+            + " AND o.orderStatus IN :statuses")
+    int claimOffer(@Param("orderId") Long orderId, @Param("driverId") Long driverId,
+            @Param("statuses") List<String> statuses, @Param("newStatus") String newStatus);
+
+    /**
+     * Take an offer back from a driver (rejection or expiry), only if it is
+     * still offered to that driver in one of the given statuses
+     *
+     * @return 1 if the offer was released, 0 if it moved on meanwhile
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Order o SET o.driver = NULL WHERE o.id = :orderId AND o.driver.id = :driverId"
+            + " AND o.orderStatus IN :statuses")
+    int releaseOffer(@Param("orderId") Long orderId, @Param("driverId") Long driverId,
+            @Param("statuses") List<String> statuses);
 }
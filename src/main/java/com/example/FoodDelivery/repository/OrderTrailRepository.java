@@ -0,0 +1,13 @@
+package com.example.FoodDelivery.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.FoodDelivery.domain.OrderTrail;
+
+import java.util.List;
+
+@Repository
+public interface OrderTrailRepository extends JpaRepository<OrderTrail, Long> {
+    List<OrderTrail> findByOrderIdOrderByStartedAtAsc(Long orderId);
+}
@@ -2,10 +2,12 @@ package com.example.FoodDelivery.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.example.FoodDelivery.domain.Restaurant;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -19,4 +21,12 @@ public interface RestaurantRepository extends JpaRepository<Restaurant, Long>, J
     Optional<Restaurant> findByOwnerId(Long ownerId);
 
     Optional<Restaurant> findByName(String name);
+
+    /**
+     * Load only id, latitude, longitude of located restaurants
+     * Used to rebuild the restaurant GEO index without loading full entities
+     */
+    @Query("SELECT r.id, r.latitude, r.longitude FROM Restaurant r " +
+            "WHERE r.latitude IS NOT NULL AND r.longitude IS NOT NULL")
+    List<Object[]> findAllLocations();
 }
@@ -18,10 +18,23 @@ import com.example.FoodDelivery.util.error.IdInvalidException;
 public class DriverProfileService {
     private final DriverProfileRepository driverProfileRepository;
     private final UserService userService;
+    private final RedisDriverEligibilityService redisDriverEligibilityService;
 
-    public DriverProfileService(DriverProfileRepository driverProfileRepository, UserService userService) {
+    public DriverProfileService(DriverProfileRepository driverProfileRepository, UserService userService,
+            RedisDriverEligibilityService redisDriverEligibilityService) {
         this.driverProfileRepository = driverProfileRepository;
         this.userService = userService;
+        this.redisDriverEligibilityService = redisDriverEligibilityService;
+    }
+
+    /**
+     * Keep the dispatch eligibility registry in sync with a saved profile
+     */
+    private void syncEligibility(DriverProfile profile) {
+        if (profile.getUser() != null && profile.getUser().getId() != null) {
+            redisDriverEligibilityService.updateProfile(profile.getUser().getId(), profile.getStatus(),
+                    profile.getCodLimit(), profile.getVehicleType());
+        }
     }
 
     public boolean existsByUserId(Long userId) {
@@ -62,6 +75,7 @@ public class DriverProfileService {
         }
 
         DriverProfile savedProfile = driverProfileRepository.save(driverProfile);
+        syncEligibility(savedProfile);
         return convertToResDriverProfileDTO(savedProfile);
     }
 
@@ -231,6 +245,7 @@ public class DriverProfileService {
         }
 
         DriverProfile savedProfile = driverProfileRepository.save(currentProfile);
+        syncEligibility(savedProfile);
         return convertToResDriverProfileDTO(savedProfile);
     }
 
@@ -242,7 +257,7 @@ public class DriverProfileService {
         if (profileOpt.isPresent()) {
             DriverProfile profile = profileOpt.get();
             profile.setStatus(status);
-            driverProfileRepository.save(profile);
+            syncEligibility(driverProfileRepository.save(profile));
         } else {
             throw new IdInvalidException("Driver profile not found for user id: " + userId);
         }
@@ -269,6 +284,7 @@ public class DriverProfileService {
         DriverProfile profile = profileOpt.get();
         profile.setStatus("AVAILABLE");
         DriverProfile savedProfile = driverProfileRepository.save(profile);
+        syncEligibility(savedProfile);
         return convertToResDriverProfileDTO(savedProfile);
     }
 
@@ -293,6 +309,7 @@ public class DriverProfileService {
         DriverProfile profile = profileOpt.get();
         profile.setStatus("OFFLINE");
         DriverProfile savedProfile = driverProfileRepository.save(profile);
+        syncEligibility(savedProfile);
         return convertToResDriverProfileDTO(savedProfile);
     }
 
@@ -331,6 +348,11 @@ public class DriverProfileService {
     }
 
     public void deleteDriverProfile(Long id) {
+        this.driverProfileRepository.findById(id).ifPresent(profile -> {
+            if (profile.getUser() != null) {
+                redisDriverEligibilityService.removeDriver(profile.getUser().getId());
+            }
+        });
         this.driverProfileRepository.deleteById(id);
     }
 
@@ -1,32 +1,80 @@
 package com.example.FoodDelivery.service;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Point;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.example.FoodDelivery.domain.res.route.RouteInfo;
+import com.example.FoodDelivery.service.distance.DistanceProvider;
+import com.example.FoodDelivery.service.distance.HaversineDistanceEstimator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Service
-public class MapboxService {
+public class MapboxService implements DistanceProvider {
     private static final Logger log = LoggerFactory.getLogger(MapboxService.class);
+    public static final String NAME = "mapbox";
     private static final String MAPBOX_DIRECTIONS_URL = "https://api.mapbox.com/directions/v5/mapbox/driving";
+    private static final String MAPBOX_MATRIX_URL = "https://api.mapbox.com/directions-matrix/v1/mapbox/driving";
+    // Matrix API accepts at most 25 coordinates per request for the driving
+    // profile: 24 sources + 1 destination
+    private static final int MATRIX_MAX_SOURCES = 24;
 
     @Value("${mapbox.access.token}")
     private String mapboxToken;
 
+    @Value("${mapbox.fallback.parallelism:8}")
+    private int fallbackParallelism;
+
+    @Value("${mapbox.fallback.timeout-ms:3000}")
+    private long fallbackTimeoutMs;
+
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final RouteCacheService routeCacheService;
+    private final HaversineDistanceEstimator distanceEstimator;
+    private ExecutorService fallbackExecutor;
 
-    public MapboxService() {
+    public MapboxService(RouteCacheService routeCacheService, HaversineDistanceEstimator distanceEstimator) {
         this.restTemplate = new RestTemplate();
         this.objectMapper = new ObjectMapper();
+        this.routeCacheService = routeCacheService;
+        this.distanceEstimator = distanceEstimator;
+    }
+
+    @PostConstruct
+    void initFallbackExecutor() {
+        this.fallbackExecutor = Executors.newFixedThreadPool(Math.max(1, fallbackParallelism));
+    }
+
+    @PreDestroy
+    void shutdownFallbackExecutor() {
+        fallbackExecutor.shutdownNow();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
     }
 
     /**
@@ -39,7 +87,57 @@ public class MapboxService {
      * @param toLng   Destination longitude
      * @return Distance in kilometers, or null if API call fails
      */
+    @Override
     public BigDecimal getDrivingDistance(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat, BigDecimal toLng) {
+        RouteInfo route = getDrivingRoute(fromLat, fromLng, toLat, toLng);
+        return route != null ? route.getDistanceKm() : null;
+    }
+
+    /**
+     * Get driving duration in minutes between two points
+     * 
+     * @param fromLat Starting point latitude
+     * @param fromLng Starting point longitude
+     * @param toLat   Destination latitude
+     * @param toLng   Destination longitude
+     * @return Duration in minutes, or null if API call fails
+     */
+    @Override
+    public BigDecimal getDrivingDuration(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat, BigDecimal toLng) {
+        RouteInfo route = getDrivingRoute(fromLat, fromLng, toLat, toLng);
+        return route != null ? route.getDurationMinutes() : null;
+    }
+
+    /**
+     * Get driving distance and duration between two points, served from the
+     * route cache when possible. One Directions request fills both values.
+     * 
+     * @param fromLat Starting point latitude
+     * @param fromLng Starting point longitude
+     * @param toLat   Destination latitude
+     * @param toLng   Destination longitude
+     * @return Route with distance (km) and duration (minutes), or null if API
+     *         call fails
+     */
+    public RouteInfo getDrivingRoute(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat, BigDecimal toLng) {
+        String cacheKey = routeCacheService.buildKey(fromLat, fromLng, toLat, toLng);
+        RouteInfo cached = routeCacheService.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        RouteInfo route = fetchDrivingRoute(fromLat, fromLng, toLat, toLng);
+        if (route != null) {
+            routeCacheService.put(cacheKey, route);
+            distanceEstimator.calibrate(fromLat, fromLng, toLat, toLng, route);
+        }
+        return route;
+    }
+
+    /**
+     * Call Mapbox Directions API for a single route
+     */
+    private RouteInfo fetchDrivingRoute(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat, BigDecimal toLng) {
         try {
             // Format: {longitude},{latitude};{longitude},{latitude}
             String coordinates = fromLng + "," + fromLat + ";" + toLng + "," + toLat;
@@ -67,68 +165,187 @@ public class MapboxService {
                 return null;
             }
 
-            // Get distance in meters from first route
+            // Get distance in meters and duration in seconds from first route
             JsonNode firstRoute = routes.get(0);
             double distanceInMeters = firstRoute.get("distance").asDouble();
+            double durationInSeconds = firstRoute.get("duration").asDouble();
 
-            // Convert to kilometers
-            BigDecimal distanceInKm = new BigDecimal(distanceInMeters / 1000.0);
+            // Convert to kilometers and minutes
+            RouteInfo route = new RouteInfo(
+                    new BigDecimal(distanceInMeters / 1000.0),
+                    new BigDecimal(durationInSeconds / 60.0));
 
-            log.debug("Mapbox distance from ({},{}) to ({},{}): {} km",
-                    fromLat, fromLng, toLat, toLng, distanceInKm);
+            log.debug("Mapbox route from ({},{}) to ({},{}): {} km, {} min",
+                    fromLat, fromLng, toLat, toLng, route.getDistanceKm(), route.getDurationMinutes());
 
-            return distanceInKm;
+            return route;
 
         } catch (Exception e) {
-            log.error("Failed to get driving distance from Mapbox API: {}", e.getMessage(), e);
+            log.error("Failed to get driving route from Mapbox API: {}", e.getMessage(), e);
             return null;
         }
     }
 
     /**
-     * Get driving duration in minutes between two points
+     * Get driving distances in kilometers from many origins to one destination
+     * using the Mapbox Matrix API (one request per 24 origins).
+     * If a matrix request fails, the affected origins fall back to per-pair
+     * Directions requests executed in parallel on a bounded pool.
      * 
-     * @param fromLat Starting point latitude
-     * @param fromLng Starting point longitude
+     * @param origins Origin points as (longitude, latitude)
      * @param toLat   Destination latitude
      * @param toLng   Destination longitude
-     * @return Duration in minutes, or null if API call fails
+     * @return Distances in kilometers, same order as origins; an entry is null
+     *         if no distance could be calculated for that origin
      */
-    public BigDecimal getDrivingDuration(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat, BigDecimal toLng) {
+    @Override
+    public List<BigDecimal> getDrivingDistancesTo(List<Point> origins, BigDecimal toLat, BigDecimal toLng) {
+        List<BigDecimal> distances = new ArrayList<>(Collections.nCopies(origins.size(), null));
+
+        // Serve what we can from the route cache, only request the misses
+        List<Integer> missIndexes = new ArrayList<>();
+        List<String> missKeys = new ArrayList<>();
+        for (int i = 0; i < origins.size(); i++) {
+            Point origin = origins.get(i);
+            String cacheKey = routeCacheService.buildKey(BigDecimal.valueOf(origin.getY()),
+                    BigDecimal.valueOf(origin.getX()), toLat, toLng);
+            RouteInfo cached = routeCacheService.get(cacheKey);
+            if (cached != null) {
+                distances.set(i, cached.getDistanceKm());
+            } else {
+                missIndexes.add(i);
+                missKeys.add(cacheKey);
+            }
+        }
+
+        for (int from = 0; from < missIndexes.size(); from += MATRIX_MAX_SOURCES) {
+            int to = Math.min(from + MATRIX_MAX_SOURCES, missIndexes.size());
+            List<Point> chunk = missIndexes.subList(from, to).stream()
+                    .map(origins::get)
+                    .collect(Collectors.toList());
+
+            List<RouteInfo> chunkRoutes = getMatrixRoutes(chunk, toLat, toLng);
+            if (chunkRoutes != null) {
+                for (int i = 0; i < chunkRoutes.size(); i++) {
+                    RouteInfo route = chunkRoutes.get(i);
+                    if (route != null) {
+                        Point origin = chunk.get(i);
+                        routeCacheService.put(missKeys.get(from + i), route);
+                        distanceEstimator.calibrate(BigDecimal.valueOf(origin.getY()),
+                                BigDecimal.valueOf(origin.getX()), toLat, toLng, route);
+                        distances.set(missIndexes.get(from + i), route.getDistanceKm());
+                    }
+                }
+                continue;
+            }
+
+            log.warn("Mapbox Matrix API failed for {} origins, falling back to per-pair requests", chunk.size());
+            List<BigDecimal> chunkDistances = getPairwiseDistances(chunk, toLat, toLng);
+            for (int i = 0; i < chunkDistances.size(); i++) {
+                distances.set(missIndexes.get(from + i), chunkDistances.get(i));
+            }
+        }
+
+        return distances;
+    }
+
+    /**
+     * One Matrix API request: every origin as a source, destination as the
+     * single target
+     * 
+     * @return Routes (null entries for unroutable origins), or null if the
+     *         request itself failed
+     */
+    private List<RouteInfo> getMatrixRoutes(List<Point> origins, BigDecimal toLat, BigDecimal toLng) {
         try {
-            String coordinates = fromLng + "," + fromLat + ";" + toLng + "," + toLat;
+            // Format: {longitude},{latitude};...;{longitude},{latitude}
+            String coordinates = origins.stream()
+                    .map(point -> point.getX() + "," + point.getY())
+                    .collect(Collectors.joining(";"))
+                    + ";" + toLng + "," + toLat;
+
+            String sources = IntStream.range(0, origins.size())
+                    .mapToObj(String::valueOf)
+                    .collect(Collectors.joining(";"));
 
             String url = UriComponentsBuilder
-                    .fromHttpUrl(MAPBOX_DIRECTIONS_URL + "/" + coordinates)
+                    .fromHttpUrl(MAPBOX_MATRIX_URL + "/" + coordinates)
                     .queryParam("access_token", mapboxToken)
-                    .queryParam("geometries", "geojson")
-                    .queryParam("overview", "false")
+                    .queryParam("sources", sources)
+                    .queryParam("destinations", origins.size())
+                    .queryParam("annotations", "distance,duration")
                     .toUriString();
 
             String response = restTemplate.getForObject(url, String.class);
 
             if (response == null) {
+                log.warn("Mapbox Matrix API returned null response");
                 return null;
             }
 
             JsonNode root = objectMapper.readTree(response);
-            JsonNode routes = root.get("routes");
+            JsonNode distanceRows = root.get("distances");
+            JsonNode durationRows = root.get("durations");
 
-            if (routes == null || routes.isEmpty()) {
+            if (distanceRows == null || durationRows == null
+                    || distanceRows.size() != origins.size() || durationRows.size() != origins.size()) {
+                log.warn("Unexpected Mapbox Matrix response: {}", root.path("code").asText());
                 return null;
             }
 
-            JsonNode firstRoute = routes.get(0);
-            double durationInSeconds = firstRoute.get("duration").asDouble();
+            List<RouteInfo> routes = new ArrayList<>(origins.size());
+            for (int i = 0; i < origins.size(); i++) {
+                JsonNode distance = distanceRows.get(i).get(0);
+                JsonNode duration = durationRows.get(i).get(0);
+                if (distance == null || distance.isNull() || duration == null || duration.isNull()) {
+                    routes.add(null);
+                } else {
+                    routes.add(new RouteInfo(
+                            new BigDecimal(distance.asDouble() / 1000.0),
+                            new BigDecimal(duration.asDouble() / 60.0)));
+                }
+            }
 
-            // Convert to minutes
-            BigDecimal durationInMinutes = new BigDecimal(durationInSeconds / 60.0);
+            log.debug("Mapbox matrix routes for {} origins to ({},{}): {}",
+                    origins.size(), toLat, toLng, routes);
 
-            return durationInMinutes;
+            return routes;
 
         } catch (Exception e) {
-            log.error("Failed to get driving duration from Mapbox API: {}", e.getMessage(), e);
+            log.error("Failed to get driving distances from Mapbox Matrix API: {}", e.getMessage(), e);
             return null;
         }
     }
+
+    /**
+     * Per-pair Directions requests in parallel, bounded by the fallback pool and
+     * an overall timeout; origins that do not finish in time get null
+     */
+    private List<BigDecimal> getPairwiseDistances(List<Point> origins, BigDecimal toLat, BigDecimal toLng) {
+        List<Callable<BigDecimal>> tasks = origins.stream()
+                .map(point -> (Callable<BigDecimal>) () -> getDrivingDistance(
+                        BigDecimal.valueOf(point.getY()), BigDecimal.valueOf(point.getX()), toLat, toLng))
+                .collect(Collectors.toList());
+
+        List<BigDecimal> distances = new ArrayList<>(origins.size());
+        try {
+            List<Future<BigDecimal>> futures = fallbackExecutor.invokeAll(tasks, fallbackTimeoutMs,
+                    TimeUnit.MILLISECONDS);
+            for (Future<BigDecimal> future : futures) {
+                try {
+                    distances.add(future.get());
+                } catch (Exception e) {
+                    // Timed out (cancelled) or failed
+                    distances.add(null);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for per-pair Mapbox distances");
+            while (distances.size() < origins.size()) {
+                distances.add(null);
+            }
+        }
+        return distances;
+    }
 }
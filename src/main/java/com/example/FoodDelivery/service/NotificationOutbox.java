@@ -0,0 +1,289 @@
+package com.example.FoodDelivery.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.FoodDelivery.service.websocket.PresenceService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * After-commit outbox for WebSocket notifications
+ *
+ * Inside a transaction, sends are buffered per transaction and handed over as
+ * one batch to a bounded dispatcher once the transaction commits; on rollback
+ * they are dropped, so clients never see state that did not persist, and the
+ * transaction no longer waits on the broker. Outside a transaction (e.g. live
+ * tracking), messages are sent right away on the calling thread.
+ *
+ * A message for several destinations is converted once and the same encoded
+ * payload is published to each of them. Destinations nobody subscribes to
+ * (PresenceService) are skipped unless presence.skip-unsubscribed=false.
+ *
+ * Each message is retried up to notification.outbox.max-attempts times. The
+ * dispatcher uses notification.outbox.threads threads (1 keeps commit order)
+ * and a queue of notification.outbox.queue-capacity batches; when the queue
+ * is full the committing thread sends the batch itself rather than dropping
+ * it.
+ */
+@Service
+@Slf4j
+public class NotificationOutbox {
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PresenceService presenceService;
+    private final ThreadPoolExecutor dispatcher;
+    private final boolean skipUnsubscribed;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter retried;
+    private final Counter discarded;
+    private final Counter unsubscribed;
+
+    public NotificationOutbox(SimpMessagingTemplate messagingTemplate, PresenceService presenceService,
+            MeterRegistry meterRegistry,
+            @Value("${presence.skip-unsubscribed:true}") boolean skipUnsubscribed,
+            @Value("${notification.outbox.threads:1}") int threads,
+            @Value("${notification.outbox.queue-capacity:10000}") int queueCapacity,
+            @Value("${notification.outbox.max-attempts:3}") int maxAttempts,
+            @Value("${notification.outbox.retry-backoff-ms:100}") long retryBackoffMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.presenceService = presenceService;
+        this.skipUnsubscribed = skipUnsubscribed;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = retryBackoffMs;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.dispatcher = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "notification-outbox-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.sent = outboxCounter(meterRegistry, "sent");
+        this.failed = outboxCounter(meterRegistry, "failed");
+        this.retried = outboxCounter(meterRegistry, "retried");
+        this.discarded = outboxCounter(meterRegistry, "rolled_back");
+        this.unsubscribed = outboxCounter(meterRegistry, "no_subscribers");
+        Gauge.builder("notification.outbox.queue", dispatcher, executor -> executor.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    private static Counter outboxCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("notification.outbox.messages")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Send a message to a destination, after commit when called inside a
+     * transaction
+     */
+    public void send(String destination, Object payload) {
+        sendToAll(List.of(destination), payload);
+    }
+
+    /**
+     * Send the same message to several destinations, encoding the payload
+     * only once
+     */
+    public void sendToAll(List<String> destinations, Object payload) {
+        if (destinations.isEmpty()) {
+            return;
+        }
+        List<String> targets = List.copyOf(destinations);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deliver(targets, payload);
+            return;
+        }
+        currentBatch().messages.add(new OutboxMessage(targets, payload));
+    }
+
+    /**
+     * Run a task in order with the notifications, after commit when called
+     * inside a transaction (e.g. work that has to see the committed state)
+     */
+    public void afterCommit(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            run(task);
+            return;
+        }
+        currentBatch().messages.add(new OutboxMessage(task));
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            failed.increment();
+            log.error("Outbox task failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Buffer of the current transaction, registered on first use
+     * Looked up among the current synchronizations so that a suspended outer
+     * transaction (REQUIRES_NEW) keeps its own buffer
+     */
+    private OutboxBatch currentBatch() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof OutboxBatch) {
+                OutboxBatch batch = (OutboxBatch) synchronization;
+                if (batch.owner() == this) {
+                    return batch;
+                }
+            }
+        }
+        OutboxBatch batch = new OutboxBatch();
+        TransactionSynchronizationManager.registerSynchronization(batch);
+        return batch;
+    }
+
+    private void deliver(List<String> allDestinations, Object payload) {
+        // Nobody listening: skip the destination before anything is serialized
+        List<String> destinations = skipUnsubscribed ? presenceService.subscribed(allDestinations) : allDestinations;
+        if (destinations.size() < allDestinations.size()) {
+            unsubscribed.increment(allDestinations.size() - destinations.size());
+        }
+        if (destinations.isEmpty()) {
+            return;
+        }
+        if (destinations.size() == 1) {
+            deliver(destinations.get(0), payload);
+            return;
+        }
+        Message<?> encoded;
+        try {
+            encoded = encode(payload);
+        } catch (Exception e) {
+            failed.increment(destinations.size());
+            log.error("Failed to encode notification for {}: {}", destinations, e.getMessage());
+            return;
+        }
+        for (String destination : destinations) {
+            deliver(destination, encoded);
+        }
+    }
+
+    /**
+     * Convert a payload the way convertAndSend does; headers are left
+     * immutable so every send copies them and only shares the payload bytes
+     */
+    private Message<?> encode(Object payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        Message<?> message = messagingTemplate.getMessageConverter().toMessage(payload, accessor.getMessageHeaders());
+        if (message == null) {
+            throw new IllegalStateException("No converter for payload type " + payload.getClass().getName());
+        }
+        return message;
+    }
+
+    private void deliver(String destination, Object payload) {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                if (payload instanceof Message) {
+                    messagingTemplate.send(destination, (Message<?>) payload);
+                } else {
+                    messagingTemplate.convertAndSend(destination, payload);
+                }
+                sent.increment();
+                return;
+            } catch (Exception e) {
+                if (attempt == maxAttempts) {
+                    failed.increment();
+                    log.error("Failed to send notification to {} after {} attempts: {}", destination, attempt,
+                            e.getMessage());
+                    return;
+                }
+                retried.increment();
+                try {
+                    Thread.sleep(retryBackoffMs * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    failed.increment();
+                    return;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        dispatcher.shutdown();
+        if (!dispatcher.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Notification outbox stopped with {} batches pending", dispatcher.getQueue().size());
+        }
+    }
+
+    private static final class OutboxMessage {
+        private final List<String> destinations;
+        private final Object payload;
+        private final Runnable task;
+
+        OutboxMessage(List<String> destinations, Object payload) {
+            this.destinations = destinations;
+            this.payload = payload;
+            this.task = null;
+        }
+
+        OutboxMessage(Runnable task) {
+            this.destinations = List.of();
+            this.payload = null;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Messages of one transaction
+     */
+    private final class OutboxBatch implements TransactionSynchronization {
+        private final List<OutboxMessage> messages = new ArrayList<>();
+
+        NotificationOutbox owner() {
+            return NotificationOutbox.this;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (messages.isEmpty()) {
+                return;
+            }
+            if (status != STATUS_COMMITTED) {
+                int count = messages.stream().mapToInt(message -> message.destinations.size()).sum();
+                discarded.increment(count);
+                log.debug("Dropped {} notifications of rolled back transaction", count);
+                return;
+            }
+            List<OutboxMessage> batch = List.copyOf(messages);
+            dispatcher.execute(() -> batch.forEach(message -> {
+                if (message.task != null) {
+                    run(message.task);
+                } else {
+                    deliver(message.destinations, message.payload);
+                }
+            }));
+        }
+    }
+}
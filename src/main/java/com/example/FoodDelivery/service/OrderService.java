@@ -2,21 +2,28 @@ package com.example.FoodDelivery.service;
 
 import java.time.Instant;
 import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.ArrayList;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.redis.connection.RedisGeoCommands;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.FoodDelivery.domain.Dish;
-import com.example.FoodDelivery.domain.DriverProfile;
 import com.example.FoodDelivery.domain.MenuOption;
 import com.example.FoodDelivery.domain.Order;
 import com.example.FoodDelivery.domain.OrderItem;
@@ -30,9 +37,15 @@ import com.example.FoodDelivery.domain.res.ResultPaginationDTO;
 import com.example.FoodDelivery.domain.res.order.ResOrderDTO;
 import com.example.FoodDelivery.domain.res.order.ResOrderItemDTO;
 import com.example.FoodDelivery.domain.res.order.ResOrderItemOptionDTO;
-import com.example.FoodDelivery.repository.DriverProfileRepository;
 import com.example.FoodDelivery.repository.MenuOptionRepository;
 import com.example.FoodDelivery.repository.OrderRepository;
+import com.example.FoodDelivery.service.RedisCandidateQueueService.Candidate;
+import com.example.FoodDelivery.service.dispatch.DispatchMetrics;
+import com.example.FoodDelivery.service.dispatch.DriverEligibilityService;
+import com.example.FoodDelivery.service.distance.DistanceProviderSelector;
+import com.example.FoodDelivery.service.distance.DistanceUseCase;
+import com.example.FoodDelivery.service.geo.LiveTrackingService;
+import com.example.FoodDelivery.service.websocket.PresenceService;
 import com.example.FoodDelivery.util.error.IdInvalidException;
 
 import java.math.BigDecimal;
@@ -47,6 +60,8 @@ import org.slf4j.LoggerFactory;
 @Service
 public class OrderService {
     private static final Logger log = LoggerFactory.getLogger(OrderService.class);
+    // Statuses in which an order can be offered to a driver
+    private static final List<String> OFFER_STATUSES = List.of("PREPARING", "READY");
 
     private final OrderEarningsSummaryService orderEarningsSummaryService;
 
@@ -56,28 +71,47 @@ public class OrderService {
     private final VoucherService voucherService;
     private final DishService dishService;
     private final MenuOptionRepository menuOptionRepository;
-    private final DriverProfileRepository driverProfileRepository;
     private final PaymentService paymentService;
     private final VNPayService vnPayService;
     private final WebSocketService webSocketService;
     private final SystemConfigurationService systemConfigurationService;
-    private final MapboxService mapboxService;
+    private final DistanceProviderSelector distanceProviderSelector;
     private final DriverProfileService driverProfileService;
     private final RedisGeoService redisGeoService;
     private final RedisRejectionService redisRejectionService;
+    private final DispatchMetrics dispatchMetrics;
+    private final RedisOfferDeadlineService redisOfferDeadlineService;
+    private final RedisCandidateQueueService redisCandidateQueueService;
+    private final DriverEligibilityService driverEligibilityService;
+    private final LiveTrackingService liveTrackingService;
+    private final PresenceService presenceService;
+
+    // Drivers with a live WebSocket connection are offered orders first
+    @Value("${dispatch.prefer-connected-drivers:true}")
+    private boolean preferConnectedDrivers;
+
+    // When enabled, drivers are assigned by BatchDispatchService instead of
+    // immediately on restaurant acceptance
+    @Value("${dispatch.batch.enabled:false}")
+    private boolean batchDispatchEnabled;
 
     public OrderService(OrderRepository orderRepository, UserService userService,
             RestaurantService restaurantService, VoucherService voucherService, DishService dishService,
             MenuOptionRepository menuOptionRepository, @Lazy OrderEarningsSummaryService orderEarningsSummaryService,
-            DriverProfileRepository driverProfileRepository,
             PaymentService paymentService,
             VNPayService vnPayService,
             WebSocketService webSocketService,
             SystemConfigurationService systemConfigurationService,
-            MapboxService mapboxService,
+            DistanceProviderSelector distanceProviderSelector,
             @Lazy DriverProfileService driverProfileService,
             RedisGeoService redisGeoService,
-            RedisRejectionService redisRejectionService) {
+            RedisRejectionService redisRejectionService,
+            DispatchMetrics dispatchMetrics,
+            RedisOfferDeadlineService redisOfferDeadlineService,
+            RedisCandidateQueueService redisCandidateQueueService,
+            DriverEligibilityService driverEligibilityService,
+            LiveTrackingService liveTrackingService,
+            PresenceService presenceService) {
         this.orderRepository = orderRepository;
         this.userService = userService;
         this.restaurantService = restaurantService;
@@ -85,15 +119,20 @@ public class OrderService {
         this.dishService = dishService;
         this.menuOptionRepository = menuOptionRepository;
         this.orderEarningsSummaryService = orderEarningsSummaryService;
-        this.driverProfileRepository = driverProfileRepository;
         this.paymentService = paymentService;
         this.vnPayService = vnPayService;
         this.webSocketService = webSocketService;
         this.systemConfigurationService = systemConfigurationService;
-        this.mapboxService = mapboxService;
+        this.distanceProviderSelector = distanceProviderSelector;
         this.driverProfileService = driverProfileService;
         this.redisGeoService = redisGeoService;
         this.redisRejectionService = redisRejectionService;
+        this.dispatchMetrics = dispatchMetrics;
+        this.redisOfferDeadlineService = redisOfferDeadlineService;
+        this.redisCandidateQueueService = redisCandidateQueueService;
+        this.driverEligibilityService = driverEligibilityService;
+        this.liveTrackingService = liveTrackingService;
+        this.presenceService = presenceService;
     }
 
     private ResOrderDTO convertToResOrderDTO(Order order) {
@@ -240,15 +279,15 @@ public class OrderService {
             log.warn("Failed to get delivery fee configuration, using defaults", e);
         }
 
-        // Get real driving distance using Mapbox API
-        BigDecimal distance = mapboxService.getDrivingDistance(
-                restaurant.getLongitude(),
+        // Get real driving distance from the billing distance provider
+        BigDecimal distance = distanceProviderSelector.forUseCase(DistanceUseCase.BILLING).getDrivingDistance(
                 restaurant.getLatitude(),
-                deliveryLongitude,
-                deliveryLatitude);
+                restaurant.getLongitude(),
+                deliveryLatitude,
+                deliveryLongitude);
 
         if (distance == null) {
-            log.warn("Failed to get driving distance from Mapbox, using base fee");
+            log.warn("Failed to get driving distance, using base fee");
             return baseFee;
         }
 
@@ -333,43 +372,126 @@ public class OrderService {
     }
 
     /**
-     * Helper method to find the closest available driver using Mapbox API for real
-     * driving distance
+     * Helper method to rank available drivers by real driving distance to the
+     * restaurant. All candidates are ranked in one batched request to the
+     * dispatch distance provider instead of one request per driver.
+     *
+     * @param driverIds       Driver user IDs
+     * @param driverPositions Live positions from Redis GEO
+     * @return Candidates closest first (connected drivers before the others
+     *         when dispatch.prefer-connected-drivers is on); drivers without a
+     *         position or whose distance cannot be calculated are left out
      */
-    private DriverProfile findClosestDriverWithMapbox(List<DriverProfile> candidates, Restaurant restaurant) {
-        if (candidates == null || candidates.isEmpty()) {
-            return null;
+    private List<Candidate> rankDriversByDistance(List<Long> driverIds, Map<Long, Point> driverPositions,
+            Restaurant restaurant) {
+        List<Long> locatedDrivers = driverIds.stream()
+                .filter(driverPositions::containsKey)
+                .collect(Collectors.toList());
+        if (locatedDrivers.isEmpty()) {
+            return new ArrayList<>();
         }
 
-        // Calculate real driving distance for each candidate using Mapbox API
-        DriverProfile closestDriver = null;
-        BigDecimal shortestDistance = null;
+        List<Point> origins = locatedDrivers.stream()
+                .map(driverPositions::get)
+                .collect(Collectors.toList());
 
-        for (DriverProfile driver : candidates) {
-            if (driver.getCurrentLatitude() == null || driver.getCurrentLongitude() == null) {
-                continue;
-            }
+        // Calculate real driving distance for all candidates in batched requests
+        List<BigDecimal> drivingDistances = distanceProviderSelector.forUseCase(DistanceUseCase.DISPATCH)
+                .getDrivingDistancesTo(
+                origins,
+                restaurant.getLatitude(),
+                restaurant.getLongitude());
 
-            BigDecimal drivingDistance = mapboxService.getDrivingDistance(
-                    driver.getCurrentLatitude(),
-                    driver.getCurrentLongitude(),
-                    restaurant.getLatitude(),
-                    restaurant.getLongitude());
+        List<Candidate> ranked = new ArrayList<>();
+        for (int i = 0; i < locatedDrivers.size(); i++) {
+            Long driverId = locatedDrivers.get(i);
+            BigDecimal drivingDistance = drivingDistances.get(i);
 
-            // If Mapbox API fails for this driver, skip them
+            // If distance cannot be calculated for this driver, skip them
             if (drivingDistance == null) {
-                log.warn("Failed to get driving distance from Mapbox for driver {}", driver.getUser().getId());
+                log.warn("Failed to get driving distance for driver {}", driverId);
                 continue;
             }
+            ranked.add(new Candidate(driverId, drivingDistance));
+        }
 
-            // Check if this is the closest driver so far
-            if (shortestDistance == null || drivingDistance.compareTo(shortestDistance) < 0) {
-                shortestDistance = drivingDistance;
-                closestDriver = driver;
+        Comparator<Candidate> byDistance = Comparator.comparing(Candidate::getDistanceKm);
+        if (preferConnectedDrivers) {
+            // A driver without a live connection would not see the offer until it times out
+            Set<Long> connected = presenceService.connectedDrivers(locatedDrivers);
+            ranked.sort(Comparator.comparing((Candidate candidate) -> !connected.contains(candidate.getDriverId()))
+                    .thenComparing(byDistance));
+        } else {
+            ranked.sort(byDistance);
+        }
+        return ranked;
+    }
+
+    /**
+     * Driver IDs with their live positions from Redis GEO results, closest
+     * first
+     */
+    private Map<Long, Point> toDriverPositions(
+            GeoResults<RedisGeoCommands.GeoLocation<Object>> geoResults, Set<Long> excludedDriverIds) {
+        Map<Long, Point> positions = new LinkedHashMap<>();
+        for (GeoResult<RedisGeoCommands.GeoLocation<Object>> result : geoResults.getContent()) {
+            try {
+                Long driverId = Long.parseLong(result.getContent().getName().toString());
+                if (!excludedDriverIds.contains(driverId)) {
+                    positions.put(driverId, result.getContent().getPoint());
+                }
+            } catch (Exception e) {
+                log.error("Failed to parse driver ID: {}", result.getContent().getName());
             }
         }
+        return positions;
+    }
 
-        return closestDriver;
+    /**
+     * Amount the driver must be able to cover: order total for COD, none for
+     * online payment
+     */
+    private BigDecimal codAmountOf(Order order) {
+        return "COD".equals(order.getPaymentMethod()) ? order.getTotalAmount() : null;
+    }
+
+    /**
+     * Pop queued candidates until one still passes the business rules
+     * (not rejected, status, wallet, COD limit)
+     *
+     * @return Next eligible candidate, or null when the queue is exhausted or
+     *         stale and a full search is needed
+     */
+    private Candidate popNextEligibleCandidate(Order order, Set<Long> rejectedDriverIds) {
+        Candidate candidate;
+        while ((candidate = redisCandidateQueueService.popNextCandidate(order.getId())) != null) {
+            if (rejectedDriverIds.contains(candidate.getDriverId())) {
+                continue;
+            }
+            if (!driverEligibilityService.filterEligible(List.of(candidate.getDriverId()), codAmountOf(order))
+                    .isEmpty()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Driver search radius from system configuration (default 10 km if not set)
+     */
+    public BigDecimal getDriverSearchRadiusKm() {
+        BigDecimal radiusKm = new BigDecimal("10.0");
+        try {
+            SystemConfiguration radiusConfig = systemConfigurationService
+                    .getSystemConfigurationByKey("DRIVER_SEARCH_RADIUS_KM");
+            if (radiusConfig != null && radiusConfig.getConfigValue() != null
+                    && !radiusConfig.getConfigValue().isEmpty()) {
+                radiusKm = new BigDecimal(radiusConfig.getConfigValue());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to get DRIVER_SEARCH_RADIUS_KM config, using default 10 km", e);
+        }
+        return radiusKm;
     }
 
     public Order getOrderById(Long id) {
@@ -377,6 +499,7 @@ public class OrderService {
         return orderOpt.orElse(null);
     }
 
+    @Transactional(readOnly = true)
     public ResOrderDTO getOrderDTOById(Long id) {
         Order order = getOrderById(id);
         if (order == null) {
@@ -593,9 +716,6 @@ public class OrderService {
         // Convert to DTO for response and WebSocket notification
         ResOrderDTO orderDTO = convertToResOrderDTO(savedOrder);
 
-        // Notify restaurant about new order via WebSocket
-        webSocketService.notifyRestaurantNewOrder(restaurant.getId(), orderDTO);
-
         // Process payment based on payment method
         if ("WALLET".equals(savedOrder.getPaymentMethod())) {
             // Process wallet payment
@@ -623,6 +743,10 @@ public class OrderService {
             savedOrder.setPaymentStatus("UNPAID");
         }
 
+        // Notify restaurant about new order via WebSocket (only once payment
+        // has not failed; sent after commit by the notification outbox)
+        webSocketService.notifyRestaurantNewOrder(restaurant.getId(), orderDTO);
+
         return orderDTO;
     }
 
@@ -702,17 +826,7 @@ public class OrderService {
         }
 
         // Get search radius from system configuration (default 10 km if not set)
-        BigDecimal radiusKm = new BigDecimal("10.0");
-        try {
-            SystemConfiguration radiusConfig = systemConfigurationService
-                    .getSystemConfigurationByKey("DRIVER_SEARCH_RADIUS_KM");
-            if (radiusConfig != null && radiusConfig.getConfigValue() != null
-                    && !radiusConfig.getConfigValue().isEmpty()) {
-                radiusKm = new BigDecimal(radiusConfig.getConfigValue());
-            }
-        } catch (Exception e) {
-            log.warn("Failed to get DRIVER_SEARCH_RADIUS_KM config, using default 10 km", e);
-        }
+        BigDecimal radiusKm = getDriverSearchRadiusKm();
 
         log.info("🔍 Step 1: Searching drivers using Redis GEO within {} km of restaurant (lat: {}, lng: {})",
                 radiusKm, restaurant.getLatitude(), restaurant.getLongitude());
@@ -730,34 +844,21 @@ public class OrderService {
             throw new IdInvalidException("No drivers found within " + radiusKm + " km radius");
         }
 
-        // Extract driver IDs from Redis GEO results
-        List<Long> nearbyDriverIds = geoResults.getContent().stream()
-                .map(result -> {
-                    try {
-                        return Long.parseLong(result.getContent().getName().toString());
-                    } catch (Exception e) {
-                        log.error("Failed to parse driver ID: {}", result.getContent().getName());
-                        return null;
-                    }
-                })
-                .filter(id -> id != null)
-                .collect(Collectors.toList());
+        // Extract driver IDs and live positions from Redis GEO results
+        Map<Long, Point> driverPositions = toDriverPositions(geoResults, Set.of());
+        List<Long> nearbyDriverIds = new ArrayList<>(driverPositions.keySet());
 
         log.info("📍 Found {} drivers in Redis GEO within radius: {}", nearbyDriverIds.size(), nearbyDriverIds);
 
-        // STEP 2: Query SQL to validate business rules (COD limit, wallet balance,
-        // status)
-        List<DriverProfile> candidateDrivers;
+        // STEP 2: Validate business rules (COD limit, wallet balance, status)
+        // against the Redis eligibility registry
         if ("COD".equals(order.getPaymentMethod())) {
             log.info("💰 Step 2: Validating COD limit >= {} for {} drivers",
                     order.getTotalAmount(), nearbyDriverIds.size());
-            candidateDrivers = driverProfileRepository.findByUserIdsWithCodLimit(
-                    nearbyDriverIds,
-                    order.getTotalAmount());
         } else {
             log.info("💳 Step 2: Validating online payment readiness for {} drivers", nearbyDriverIds.size());
-            candidateDrivers = driverProfileRepository.findByUserIds(nearbyDriverIds);
         }
+        List<Long> candidateDrivers = driverEligibilityService.filterEligible(nearbyDriverIds, codAmountOf(order));
 
         if (candidateDrivers.isEmpty()) {
             throw new IdInvalidException("No qualified drivers found (failed business rules validation)");
@@ -765,18 +866,23 @@ public class OrderService {
 
         log.info("✅ {} drivers passed validation", candidateDrivers.size());
 
-        // STEP 3: Find the closest driver using Mapbox API for real driving distance
-        log.info("🚗 Step 3: Calculating real driving distances using Mapbox API");
-        DriverProfile closestDriver = findClosestDriverWithMapbox(candidateDrivers, restaurant);
-        if (closestDriver == null) {
+        // STEP 3: Rank drivers by real driving distance; the runners-up are
+        // queued in Redis so a rejection can re-offer without a new search
+        log.info("🚗 Step 3: Calculating real driving distances for {} candidates", candidateDrivers.size());
+        List<Candidate> rankedDrivers = rankDriversByDistance(candidateDrivers, driverPositions, restaurant);
+        if (rankedDrivers.isEmpty()) {
             throw new IdInvalidException(
                     "Failed to calculate driving distance to available drivers");
         }
+        Candidate closestDriver = rankedDrivers.get(0);
+        redisCandidateQueueService.storeCandidates(orderId, rankedDrivers.subList(1, rankedDrivers.size()));
 
-        User driver = this.userService.getUserById(closestDriver.getUser().getId());
+        User driver = this.userService.getUserById(closestDriver.getDriverId());
         if (driver == null) {
             throw new IdInvalidException("Driver user not found");
         }
+        dispatchMetrics.recordAssignment(DispatchMetrics.MODE_GREEDY, closestDriver.getDistanceKm(),
+                order.getPreparingAt());
 
         log.info("🎯 Assigned driver {} (ID: {}) to order {}", driver.getName(), driver.getId(), orderId);
 
@@ -786,12 +892,53 @@ public class OrderService {
         // Convert to DTO for response
         ResOrderDTO orderDTO = convertToResOrderDTO(order);
 
-        // Notify driver about order assignment via WebSocket
+        // Start the response deadline, then notify driver via WebSocket
+        redisOfferDeadlineService.scheduleOffer(orderId, order.getDriver().getId());
         webSocketService.notifyDriverOrderAssigned(order.getDriver().getId(), orderDTO);
 
         return orderDTO;
     }
 
+    /**
+     * Assign a driver chosen by batch dispatch
+     * The order is re-checked inside the transaction: if it was cancelled or
+     * got a driver since the batch was built, nothing is changed.
+     *
+     * @return Updated order, or null if the order is no longer waiting for a
+     *         driver
+     */
+    @Transactional
+    public ResOrderDTO assignDriverToOrder(Long orderId, Long driverUserId, BigDecimal pickupDistanceKm)
+            throws IdInvalidException {
+        Order order = getOrderById(orderId);
+        if (order == null) {
+            throw new IdInvalidException("Order not found with id: " + orderId);
+        }
+        if (order.getDriver() != null
+                || (!"PREPARING".equals(order.getOrderStatus()) && !"READY".equals(order.getOrderStatus()))) {
+            log.info("Order {} no longer waiting for a driver (status: {}), skipping batch assignment",
+                    orderId, order.getOrderStatus());
+            return null;
+        }
+
+        User driver = this.userService.getUserById(driverUserId);
+        if (driver == null) {
+            throw new IdInvalidException("Driver user not found");
+        }
+
+        order.setDriver(driver);
+        order = orderRepository.save(order);
+        dispatchMetrics.recordAssignment(DispatchMetrics.MODE_BATCH, pickupDistanceKm, order.getPreparingAt());
+
+        log.info("🎯 Batch assigned driver {} (ID: {}) to order {}", driver.getName(), driver.getId(), orderId);
+
+        ResOrderDTO orderDTO = convertToResOrderDTO(order);
+        redisOfferDeadlineService.scheduleOffer(orderId, driver.getId());
+        webSocketService.notifyDriverOrderAssigned(driver.getId(), orderDTO);
+
+        return orderDTO;
+    }
+
     // CUSTOMER ACTIONS
     @Transactional
     public ResOrderDTO cancelOrder(Long orderId, String cancellationReason) throws IdInvalidException {
@@ -820,11 +967,9 @@ public class OrderService {
         ResOrderDTO orderDTO = convertToResOrderDTO(order);
 
         // Notify customer about order rejection
-        webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
+        webSocketService.notifyOrderChange(order.getCustomer().getId(),
                 orderDTO, "Your order has been rejected by the restaurant");
 
-        webSocketService.broadcastOrderStatusChange(orderDTO);
-
         return orderDTO;
     }
 
@@ -878,7 +1023,11 @@ public class OrderService {
         webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
                 convertToResOrderDTO(order), "Your order has been accepted and is being prepared");
 
-        assignDriver(orderId);
+        if (batchDispatchEnabled) {
+            log.info("📦 Order {} queued for batch dispatch", orderId);
+        } else {
+            assignDriver(orderId);
+        }
 
         return convertToResOrderDTO(order);
     }
@@ -905,6 +1054,13 @@ public class OrderService {
             throw new IdInvalidException("This order is not assigned to you");
         }
 
+        // Claim the offer against a concurrent expiry: the conditional update
+        // decides who wins; the deadline is dropped only if this commits
+        if (orderRepository.claimOffer(orderId, driver.getId(), OFFER_STATUSES, "DRIVER_ASSIGNED") == 0) {
+            throw new IdInvalidException("This offer is no longer available");
+        }
+        redisOfferDeadlineService.cancelOffer(orderId, driver.getId());
+
         if ("COD".equals(order.getPaymentMethod())) {
             Map<String, Object> paymentResult = paymentService.processCODPaymentOnDelivery(order);
             if (!(Boolean) paymentResult.get("success")) {
@@ -914,10 +1070,15 @@ public class OrderService {
             }
         }
 
+        redisCandidateQueueService.clearCandidates(orderId);
+
         // Update status to DRIVER_ASSIGNED
         order.setOrderStatus("DRIVER_ASSIGNED");
         order = orderRepository.save(order);
 
+        // Push the driver's location to the customer until delivered
+        liveTrackingService.startDelivery(driver.getId(), order);
+
         // Update driver profile status to UNAVAILABLE
         try {
             driverProfileService.updateDriverProfileStatusByUserId(driver.getId(), "UNAVAILABLE");
@@ -929,9 +1090,8 @@ public class OrderService {
         ResOrderDTO orderDTO = convertToResOrderDTO(order);
 
         // Notify customer and restaurant about driver acceptance
-        webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
+        webSocketService.notifyOrderChange(order.getCustomer().getId(),
                 orderDTO, "Driver has accepted your order");
-        webSocketService.broadcastOrderStatusChange(orderDTO);
 
         return orderDTO;
     }
@@ -958,15 +1118,112 @@ public class OrderService {
             throw new IdInvalidException("This order is not assigned to you");
         }
 
+        ResOrderDTO orderDTO = rejectAndReoffer(order, driver.getId(), rejectionReason);
+        if (orderDTO == null) {
+            throw new IdInvalidException("This offer is no longer available");
+        }
+        redisOfferDeadlineService.cancelOffer(orderId, driver.getId());
+        return orderDTO;
+    }
+
+    /**
+     * Expire an offer the driver did not answer in time
+     * Handled exactly like a rejection by that driver. Nothing happens if the
+     * offer was answered or the order moved on in the meantime.
+     *
+     * @return Updated order, or null if the offer is no longer pending
+     */
+    @Transactional
+    public ResOrderDTO expireDriverOffer(Long orderId, Long driverId) throws IdInvalidException {
+        Order order = getOrderById(orderId);
+        if (order == null || order.getDriver() == null || !order.getDriver().getId().equals(driverId)
+                || (!"PREPARING".equals(order.getOrderStatus()) && !"READY".equals(order.getOrderStatus()))) {
+            return null;
+        }
+
+        log.info("⏰ Offer of order {} to driver {} expired", orderId, driverId);
+        return rejectAndReoffer(order, driverId, "Offer expired");
+    }
+
+    /**
+     * Shared rejection path (explicit rejection or expired offer): remember the
+     * driver in Redis and offer the order to the next closest driver
+     *
+     * @return Updated order, or null if the offer was accepted or moved on
+     *         meanwhile
+     */
+    private ResOrderDTO rejectAndReoffer(Order order, Long rejectedDriverId, String rejectionReason)
+            throws IdInvalidException {
+        Long orderId = order.getId();
+
+        // Take the offer back only if it is still this driver's; an accept
+        // that committed meanwhile wins
+        if (orderRepository.releaseOffer(orderId, rejectedDriverId, OFFER_STATUSES) == 0) {
+            log.info("Offer of order {} to driver {} was already answered, not re-offering", orderId,
+                    rejectedDriverId);
+            return null;
+        }
+
         // Save rejection to Redis using RedisRejectionService
-        redisRejectionService.addRejectedDriver(orderId, driver.getId());
+        redisRejectionService.addRejectedDriver(orderId, rejectedDriverId);
 
         log.info("💾 Saved driver {} rejection for order {} to Redis (reason: {})",
-                driver.getId(), orderId, rejectionReason);
+                rejectedDriverId, orderId, rejectionReason);
 
-        // Get list of all rejected driver IDs for this order from Redis
-        List<Long> rejectedDriverIds = redisRejectionService.getRejectedDriverIds(orderId);
+        if (batchDispatchEnabled) {
+            // Release the order; the next batch skips drivers who rejected it
+            order.setDriver(null);
+            order = orderRepository.save(order);
+            ResOrderDTO orderDTO = convertToResOrderDTO(order);
+            webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
+                    orderDTO, "Looking for another driver for your order");
+            return orderDTO;
+        }
 
+        // Get all rejected driver IDs for this order from Redis
+        Set<Long> rejectedDriverIds = new HashSet<>(redisRejectionService.getRejectedDriverIds(orderId));
+
+        // Fast path: next still-eligible driver from the ranked candidate queue
+        User nextDriver = null;
+        Candidate nextCandidate = popNextEligibleCandidate(order, rejectedDriverIds);
+        if (nextCandidate != null) {
+            nextDriver = this.userService.getUserById(nextCandidate.getDriverId());
+            if (nextDriver != null) {
+                dispatchMetrics.recordAssignment(DispatchMetrics.MODE_GREEDY, nextCandidate.getDistanceKm(),
+                        order.getPreparingAt());
+                log.info("⚡ Reassigned order {} to queued candidate {}", orderId, nextDriver.getId());
+            }
+        }
+        if (nextDriver == null) {
+            // Queue exhausted or stale: full search, which also rebuilds the queue
+            nextDriver = findReplacementDriver(order, rejectedDriverIds);
+        }
+
+        // Assign to next driver (or none) and keep current status
+        order.setDriver(nextDriver);
+
+        order = orderRepository.save(order);
+
+        ResOrderDTO orderDTO = convertToResOrderDTO(order);
+
+        // Notify customer and restaurant about driver rejection and reassignment
+        if (order.getDriver() != null) {
+            redisOfferDeadlineService.scheduleOffer(orderId, order.getDriver().getId());
+            webSocketService.notifyDriverOrderAssigned(order.getDriver().getId(), orderDTO);
+        }
+        webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
+                orderDTO, "Looking for another driver for your order");
+
+        return orderDTO;
+    }
+
+    /**
+     * Full search for a replacement driver: Redis GEO -> SQL business rules ->
+     * driving distance ranking. The runners-up become the new candidate queue.
+     *
+     * @return Closest eligible driver, or null if there is none
+     */
+    private User findReplacementDriver(Order order, Set<Long> rejectedDriverIds) throws IdInvalidException {
         // Get restaurant location
         Restaurant restaurant = order.getRestaurant();
         if (restaurant == null || restaurant.getLatitude() == null || restaurant.getLongitude() == null) {
@@ -974,17 +1231,7 @@ public class OrderService {
         }
 
         // Get search radius
-        BigDecimal radiusKm = new BigDecimal("10.0");
-        try {
-            SystemConfiguration radiusConfig = systemConfigurationService
-                    .getSystemConfigurationByKey("DRIVER_SEARCH_RADIUS_KM");
-            if (radiusConfig != null && radiusConfig.getConfigValue() != null
-                    && !radiusConfig.getConfigValue().isEmpty()) {
-                radiusKm = new BigDecimal(radiusConfig.getConfigValue());
-            }
-        } catch (Exception e) {
-            log.warn("Failed to get DRIVER_SEARCH_RADIUS_KM config, using default 10 km", e);
-        }
+        BigDecimal radiusKm = getDriverSearchRadiusKm();
 
         log.info("🔍 Searching for alternative drivers using Redis GEO (excluding {} rejected drivers)",
                 rejectedDriverIds.size());
@@ -998,80 +1245,43 @@ public class OrderService {
         );
 
         if (geoResults == null || geoResults.getContent().isEmpty()) {
-            order.setDriver(null);
             log.warn("No alternative drivers found in Redis GEO");
-            order = orderRepository.save(order);
-            ResOrderDTO orderDTO = convertToResOrderDTO(order);
-            webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
-                    orderDTO, "Looking for another driver for your order");
-            return orderDTO;
+            return null;
         }
 
-        // Extract driver IDs and exclude rejected ones
-        List<Long> nearbyDriverIds = geoResults.getContent().stream()
-                .map(result -> {
-                    try {
-                        return Long.parseLong(result.getContent().getName().toString());
-                    } catch (Exception e) {
-                        return null;
-                    }
-                })
-                .filter(id -> id != null && !rejectedDriverIds.contains(id))
-                .collect(Collectors.toList());
+        // Extract driver IDs and positions, excluding rejected drivers
+        Map<Long, Point> driverPositions = toDriverPositions(geoResults, rejectedDriverIds);
+        List<Long> nearbyDriverIds = new ArrayList<>(driverPositions.keySet());
 
         log.info("📍 Found {} available drivers (after excluding rejected)", nearbyDriverIds.size());
 
         if (nearbyDriverIds.isEmpty()) {
-            order.setDriver(null);
-            order = orderRepository.save(order);
-            ResOrderDTO orderDTO = convertToResOrderDTO(order);
-            webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
-                    orderDTO, "Looking for another driver for your order");
-            return orderDTO;
+            return null;
         }
 
-        // STEP 2: Query SQL to validate business rules
-        List<DriverProfile> candidateDrivers;
-        if ("COD".equals(order.getPaymentMethod())) {
-            candidateDrivers = driverProfileRepository.findByUserIdsWithCodLimit(
-                    nearbyDriverIds,
-                    order.getTotalAmount());
-        } else {
-            candidateDrivers = driverProfileRepository.findByUserIds(nearbyDriverIds);
-        }
-
-        // If we found candidates, assign the closest one using Mapbox
-        if (!candidateDrivers.isEmpty()) {
-            log.info("✅ {} drivers passed validation", candidateDrivers.size());
-            DriverProfile closestDriver = findClosestDriverWithMapbox(candidateDrivers, restaurant);
-            if (closestDriver != null) {
-                // Assign to next driver and keep current status
-                order.setDriver(closestDriver.getUser());
-                log.info("🎯 Reassigned to driver {}", closestDriver.getUser().getId());
-            } else {
-                // Failed to calculate distance for all candidates
-                order.setDriver(null);
-                log.warn("Failed to find closest driver for order {} - Mapbox distance calculation failed",
-                        orderId);
-            }
-        } else {
-            // No more available drivers, set driver to null and reset status
-            order.setDriver(null);
+        // STEP 2: Validate business rules against the eligibility registry
+        List<Long> candidateDrivers = driverEligibilityService.filterEligible(nearbyDriverIds, codAmountOf(order));
+
+        if (candidateDrivers.isEmpty()) {
             log.warn("No qualified drivers found after validation");
+            return null;
         }
+        log.info("✅ {} drivers passed validation", candidateDrivers.size());
 
-        order = orderRepository.save(order);
-
-        ResOrderDTO orderDTO = convertToResOrderDTO(order);
-
-        // Notify customer and restaurant about driver rejection and reassignment
-        if (order.getDriver() != null) {
-            webSocketService.notifyDriverOrderAssigned(order.getDriver().getId(), orderDTO);
+        // STEP 3: Assign the closest one by driving distance, queue the rest
+        List<Candidate> rankedDrivers = rankDriversByDistance(candidateDrivers, driverPositions, restaurant);
+        if (rankedDrivers.isEmpty()) {
+            log.warn("Failed to find closest driver for order {} - distance calculation failed",
+                    order.getId());
+            return null;
         }
-        webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
-                orderDTO, "Looking for another driver for your order");
+        Candidate closestDriver = rankedDrivers.get(0);
+        redisCandidateQueueService.storeCandidates(order.getId(), rankedDrivers.subList(1, rankedDrivers.size()));
+        dispatchMetrics.recordAssignment(DispatchMetrics.MODE_GREEDY, closestDriver.getDistanceKm(),
+                order.getPreparingAt());
 
-        return orderDTO;
+        log.info("🎯 Reassigned to driver {}", closestDriver.getDriverId());
+        return this.userService.getUserById(closestDriver.getDriverId());
     }
 
     @Transactional
@@ -1104,12 +1314,14 @@ public class OrderService {
         order.setOrderStatus("PICKED_UP");
         order = orderRepository.save(order);
 
+        // Switch live tracking to the delivery geofences
+        liveTrackingService.updateStatus(driver.getId(), "PICKED_UP");
+
         ResOrderDTO orderDTO = convertToResOrderDTO(order);
 
         // Notify customer about order pickup
-        webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
+        webSocketService.notifyOrderChange(order.getCustomer().getId(),
                 orderDTO, "Your order has been picked up and is on the way");
-        webSocketService.broadcastOrderStatusChange(orderDTO);
 
         return orderDTO;
     }
@@ -1141,15 +1353,35 @@ public class OrderService {
                             + order.getOrderStatus());
         }
 
+        return completeArrival(order, driver.getId());
+    }
+
+    /**
+     * Mark an order ARRIVED when its driver enters the delivery geofence
+     *
+     * @return Updated order, or null if the order is no longer PICKED_UP by
+     *         this driver
+     */
+    @Transactional
+    public ResOrderDTO markOrderAsArrivedByGeofence(Long orderId, Long driverId) {
+        Order order = getOrderById(orderId);
+        if (order == null || order.getDriver() == null || !order.getDriver().getId().equals(driverId)
+                || !"PICKED_UP".equals(order.getOrderStatus())) {
+            return null;
+        }
+        return completeArrival(order, driverId);
+    }
+
+    private ResOrderDTO completeArrival(Order order, Long driverId) {
         order.setOrderStatus("ARRIVED");
         order = orderRepository.save(order);
+        liveTrackingService.updateStatus(driverId, "ARRIVED");
 
         ResOrderDTO orderDTO = convertToResOrderDTO(order);
 
         // Notify customer about arrival
-        webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
+        webSocketService.notifyOrderChange(order.getCustomer().getId(),
                 orderDTO, "Your order has arrived!");
-        webSocketService.broadcastOrderStatusChange(orderDTO);
 
         return orderDTO;
     }
@@ -1195,12 +1427,13 @@ public class OrderService {
 
         order = orderRepository.save(order);
 
+        liveTrackingService.endDelivery(driver.getId());
+
         ResOrderDTO orderDTO = convertToResOrderDTO(order);
 
         // Notify all parties about successful delivery
-        webSocketService.notifyCustomerOrderUpdate(order.getCustomer().getId(),
+        webSocketService.notifyOrderChange(order.getCustomer().getId(),
                 orderDTO, "Your order has been delivered successfully!");
-        webSocketService.broadcastOrderStatusChange(orderDTO);
 
         return orderDTO;
     }
@@ -0,0 +1,108 @@
+package com.example.FoodDelivery.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.FoodDelivery.domain.Order;
+import com.example.FoodDelivery.domain.OrderTrail;
+import com.example.FoodDelivery.domain.User;
+import com.example.FoodDelivery.domain.res.order.ResOrderTrailDTO;
+import com.example.FoodDelivery.repository.OrderRepository;
+import com.example.FoodDelivery.repository.OrderTrailRepository;
+import com.example.FoodDelivery.service.trail.TrailCodec;
+import com.example.FoodDelivery.service.trail.TrailPoints;
+import com.example.FoodDelivery.util.error.IdInvalidException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persists recorded driver trails (simplified + compressed) and serves them
+ * back for route replay, ETA learning and disputes
+ */
+@Service
+@Slf4j
+public class OrderTrailService {
+    private final OrderTrailRepository orderTrailRepository;
+    private final OrderRepository orderRepository;
+
+    @Value("${trail.simplify-meters:5}")
+    private double simplifyMeters;
+
+    public OrderTrailService(OrderTrailRepository orderTrailRepository, OrderRepository orderRepository) {
+        this.orderTrailRepository = orderTrailRepository;
+        this.orderRepository = orderRepository;
+    }
+
+    /**
+     * Simplify, encode and store a recorded trail segment
+     * Runs in its own transaction: it is called after the delivering
+     * transaction has committed
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void saveTrail(Long orderId, Long driverId, TrailPoints recorded) {
+        if (recorded.size() == 0) {
+            return;
+        }
+        Order order = orderRepository.findById(orderId).orElse(null);
+        if (order == null) {
+            log.warn("Dropping trail of unknown order {}", orderId);
+            return;
+        }
+
+        TrailPoints simplified = TrailCodec.simplify(recorded, simplifyMeters);
+        byte[] data = TrailCodec.encode(simplified);
+
+        User driver = new User();
+        driver.setId(driverId);
+        OrderTrail trail = OrderTrail.builder()
+                .order(order)
+                .driver(driver)
+                .startedAt(Instant.ofEpochSecond(recorded.epochSecond(0)))
+                .endedAt(Instant.ofEpochSecond(recorded.epochSecond(recorded.size() - 1)))
+                .rawPointCount(recorded.size())
+                .pointCount(simplified.size())
+                .distanceMeters((int) Math.round(TrailCodec.lengthMeters(simplified)))
+                .encodingVersion(TrailCodec.VERSION)
+                .data(data)
+                .build();
+        orderTrailRepository.save(trail);
+        log.info("🛣️ Saved trail of order {}: {} -> {} points, {} bytes", orderId, recorded.size(),
+                simplified.size(), data.length);
+    }
+
+    /**
+     * Recorded path of an order, all segments merged in time order
+     */
+    public ResOrderTrailDTO getTrail(Long orderId) throws IdInvalidException {
+        List<OrderTrail> segments = orderTrailRepository.findByOrderIdOrderByStartedAtAsc(orderId);
+        if (segments.isEmpty()) {
+            throw new IdInvalidException("No trail recorded for order id: " + orderId);
+        }
+
+        List<ResOrderTrailDTO.TrailPoint> points = new ArrayList<>();
+        int distanceMeters = 0;
+        for (OrderTrail segment : segments) {
+            TrailPoints decoded = TrailCodec.decode(segment.getData());
+            for (int i = 0; i < decoded.size(); i++) {
+                points.add(new ResOrderTrailDTO.TrailPoint(
+                        BigDecimal.valueOf(decoded.latitude(i)),
+                        BigDecimal.valueOf(decoded.longitude(i)),
+                        Instant.ofEpochSecond(decoded.epochSecond(i))));
+            }
+            if (segment.getDistanceMeters() != null) {
+                distanceMeters += segment.getDistanceMeters();
+            }
+        }
+
+        OrderTrail last = segments.get(segments.size() - 1);
+        return new ResOrderTrailDTO(orderId, last.getDriver() != null ? last.getDriver().getId() : null,
+                distanceMeters, points);
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.FoodDelivery.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registry of drivers currently delivering an order (DRIVER_ASSIGNED through
+ * ARRIVED) using a Redis HASH
+ * Key: "tracking:active"
+ * Field: driverId, value: ActiveDelivery.format() (order, customer, restaurant,
+ * start time, order status and the restaurant / delivery coordinates)
+ * Only drivers in this registry have their location pushed to a customer and
+ * checked against geofences, so that work follows active orders rather than
+ * location pings
+ */
+@Service
+@Slf4j
+public class RedisActiveDeliveryService {
+    private static final String ACTIVE_DELIVERIES_KEY = "tracking:active";
+
+    // Replace the status (5th part) of an existing entry in place; the value is
+    // a JSON string, so it may start with a quote. Returns 0 if there is no entry.
+    private static final RedisScript<Long> UPDATE_STATUS_SCRIPT = new DefaultRedisScript<>(
+            "local value = redis.call('HGET', KEYS[1], ARGV[1])\n"
+                    + "if not value then return 0 end\n"
+                    + "local head, tail = string.match(value, '^(\"?[^:]*:[^:]*:[^:]*:[^:]*:)[^:]*(:.*)$')\n"
+                    + "if not head then return 0 end\n"
+                    + "redis.call('HSET', KEYS[1], ARGV[1], head .. ARGV[2] .. tail)\n"
+                    + "return 1",
+            Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    public RedisActiveDeliveryService(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Register the delivery a driver has accepted
+     */
+    public void startDelivery(Long driverId, ActiveDelivery delivery) {
+        try {
+            redisTemplate.opsForHash().put(ACTIVE_DELIVERIES_KEY, driverId.toString(), delivery.format());
+            log.debug("Started live tracking of driver {} for order {}", driverId, delivery.getOrderId());
+        } catch (Exception e) {
+            log.error("Failed to register active delivery of order {}: {}", delivery.getOrderId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Record a status change of an active delivery (e.g. PICKED_UP)
+     * Done in one Lua script, so a delivery ended meanwhile is not recreated
+     * and a concurrent write is not overwritten with a stale copy
+     *
+     * @param status Order status (letters and underscores only)
+     */
+    public void updateStatus(Long driverId, String status) {
+        try {
+            Long updated = redisTemplate.execute(UPDATE_STATUS_SCRIPT, new StringRedisSerializer(),
+                    new GenericToStringSerializer<>(Long.class), List.of(ACTIVE_DELIVERIES_KEY),
+                    driverId.toString(), status);
+            if (updated == null || updated == 0) {
+                log.debug("No active delivery of driver {} to set to {}", driverId, status);
+            }
+        } catch (Exception e) {
+            log.error("Failed to update active delivery of driver {}: {}", driverId, e.getMessage());
+        }
+    }
+
+    /**
+     * Stop tracking a driver
+     */
+    public void endDelivery(Long driverId) {
+        try {
+            redisTemplate.opsForHash().delete(ACTIVE_DELIVERIES_KEY, driverId.toString());
+            log.debug("Stopped live tracking of driver {}", driverId);
+        } catch (Exception e) {
+            log.error("Failed to remove active delivery of driver {}: {}", driverId, e.getMessage());
+        }
+    }
+
+    /**
+     * All active deliveries by driver ID
+     *
+     * @return Active deliveries, or null if Redis is unavailable
+     */
+    public Map<Long, ActiveDelivery> getActiveDeliveries() {
+        try {
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(ACTIVE_DELIVERIES_KEY);
+            Map<Long, ActiveDelivery> deliveries = new HashMap<>();
+            entries.forEach((field, value) -> {
+                ActiveDelivery delivery = ActiveDelivery.parse(value.toString());
+                if (delivery != null) {
+                    deliveries.put(Long.parseLong(field.toString()), delivery);
+                } else {
+                    log.warn("Invalid active delivery entry {} = {}", field, value);
+                }
+            });
+            return deliveries;
+        } catch (Exception e) {
+            log.error("Failed to load active deliveries: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ActiveDelivery {
+        private Long orderId;
+        private Long customerId;
+        private Long restaurantId;
+        private long startedAt;
+        private String status;
+        // Fence centers, null when the order has no coordinates
+        private Double restaurantLatitude;
+        private Double restaurantLongitude;
+        private Double deliveryLatitude;
+        private Double deliveryLongitude;
+
+        public ActiveDelivery withStatus(String newStatus) {
+            return new ActiveDelivery(orderId, customerId, restaurantId, startedAt, newStatus,
+                    restaurantLatitude, restaurantLongitude, deliveryLatitude, deliveryLongitude);
+        }
+
+        String format() {
+            return orderId + ":" + customerId + ":" + restaurantId + ":" + startedAt + ":" + status + ":"
+                    + format(restaurantLatitude) + ":" + format(restaurantLongitude) + ":"
+                    + format(deliveryLatitude) + ":" + format(deliveryLongitude);
+        }
+
+        static ActiveDelivery parse(String value) {
+            try {
+                String[] parts = value.split(":", -1);
+                return new ActiveDelivery(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                        Long.parseLong(parts[2]), Long.parseLong(parts[3]), parts[4],
+                        parseCoordinate(parts[5]), parseCoordinate(parts[6]),
+                        parseCoordinate(parts[7]), parseCoordinate(parts[8]));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        private static String format(Double coordinate) {
+            return coordinate != null ? coordinate.toString() : "";
+        }
+
+        private static Double parseCoordinate(String value) {
+            return value.isEmpty() ? null : Double.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.FoodDelivery.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ranked driver candidates per order using a Redis LIST
+ * Key pattern: "order:{orderId}:candidates"
+ * Value: "{driverId}:{distanceKm}", closest first
+ * TTL: dispatch.candidates.ttl-seconds (default 120 s); driver positions move,
+ * so an expired queue is treated as stale and rebuilt by a full search
+ */
+@Service
+@Slf4j
+public class RedisCandidateQueueService {
+    private static final String KEY_PREFIX = "order:";
+    private static final String KEY_SUFFIX = ":candidates";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Duration ttl;
+
+    public RedisCandidateQueueService(RedisTemplate<String, Object> redisTemplate,
+            @Value("${dispatch.candidates.ttl-seconds:120}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+    }
+
+    /**
+     * Replace the candidate queue of an order
+     *
+     * @param candidates Remaining candidates, closest first
+     */
+    public void storeCandidates(Long orderId, List<Candidate> candidates) {
+        String key = buildKey(orderId);
+        try {
+            redisTemplate.delete(key);
+            if (candidates.isEmpty()) {
+                return;
+            }
+            List<Object> values = new ArrayList<>(candidates.size());
+            for (Candidate candidate : candidates) {
+                values.add(candidate.getDriverId() + ":" + candidate.getDistanceKm().toPlainString());
+            }
+            redisTemplate.opsForList().rightPushAll(key, values);
+            redisTemplate.expire(key, ttl);
+            log.debug("Stored {} ranked candidates for order {}", candidates.size(), orderId);
+        } catch (Exception e) {
+            log.error("Failed to store candidates for order {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    /**
+     * Pop the next candidate of an order
+     *
+     * @return Next candidate, or null if the queue is exhausted, expired or
+     *         Redis is unavailable
+     */
+    public Candidate popNextCandidate(Long orderId) {
+        try {
+            Object value = redisTemplate.opsForList().leftPop(buildKey(orderId));
+            if (value == null) {
+                return null;
+            }
+            String[] parts = value.toString().split(":");
+            return new Candidate(Long.parseLong(parts[0]), new BigDecimal(parts[1]));
+        } catch (Exception e) {
+            log.error("Failed to pop candidate for order {}: {}", orderId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Drop the queue once the order no longer needs a driver
+     */
+    public void clearCandidates(Long orderId) {
+        try {
+            redisTemplate.delete(buildKey(orderId));
+        } catch (Exception e) {
+            log.debug("Failed to clear candidates for order {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    private String buildKey(Long orderId) {
+        return KEY_PREFIX + orderId + KEY_SUFFIX;
+    }
+
+    /**
+     * Driver (user ID) with its pickup distance to the restaurant
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Candidate {
+        private final Long driverId;
+        private final BigDecimal distanceKm;
+    }
+}
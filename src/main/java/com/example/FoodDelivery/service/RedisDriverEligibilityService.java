@@ -0,0 +1,256 @@
+package com.example.FoodDelivery.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compact driver eligibility records using Redis HASH
+ * Key pattern: "driver:{userId}:eligibility"
+ * Fields: status, codLimit, walletOk (wallet balance >= 0), vehicleType
+ * Kept in sync by DriverProfileService and WalletService so dispatch can check
+ * business rules for all GEO candidates with one pipelined read instead of
+ * joining DriverProfile, User and Wallet in SQL.
+ *
+ * Updates made inside a transaction are written after it commits, so a rolled
+ * back change never reaches the registry. Records expire after
+ * dispatch.eligibility.ttl-seconds unless DriverEligibilityService's periodic
+ * reconcile from SQL refreshes them, so a lost write (Redis hiccup, node
+ * crash between commit and write) heals instead of lingering; an expired
+ * record is simply a registry miss answered from SQL.
+ */
+@Service
+@Slf4j
+public class RedisDriverEligibilityService {
+    private static final String KEY_PREFIX = "driver:";
+    private static final String KEY_SUFFIX = ":eligibility";
+    private static final String FIELD_STATUS = "status";
+    private static final String FIELD_COD_LIMIT = "codLimit";
+    private static final String FIELD_WALLET_OK = "walletOk";
+    private static final String FIELD_VEHICLE_TYPE = "vehicleType";
+    private static final List<Object> FIELDS = List.of(FIELD_STATUS, FIELD_COD_LIMIT, FIELD_WALLET_OK,
+            FIELD_VEHICLE_TYPE);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Duration ttl;
+
+    public RedisDriverEligibilityService(RedisTemplate<String, Object> redisTemplate,
+            @Value("${dispatch.eligibility.ttl-seconds:1800}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+    }
+
+    /**
+     * Update the profile part of a driver's record (status, COD limit,
+     * vehicle type); the wallet part is left untouched
+     */
+    public void updateProfile(Long userId, String status, BigDecimal codLimit, String vehicleType) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(FIELD_STATUS, status != null ? status : "");
+        fields.put(FIELD_COD_LIMIT, codLimit != null ? codLimit.toPlainString() : "");
+        fields.put(FIELD_VEHICLE_TYPE, vehicleType != null ? vehicleType : "");
+        afterCommit(() -> {
+            try {
+                String key = buildKey(userId);
+                redisTemplate.opsForHash().putAll(key, fields);
+                redisTemplate.expire(key, ttl);
+            } catch (Exception e) {
+                log.error("Failed to update eligibility of driver {}: {}", userId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Update the wallet part of a record; users without a driver record
+     * (customers, restaurants) are ignored
+     */
+    public void updateWalletBalance(Long userId, BigDecimal balance) {
+        String walletOk = isWalletOk(balance);
+        afterCommit(() -> {
+            try {
+                String key = buildKey(userId);
+                if (Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+                    redisTemplate.opsForHash().put(key, FIELD_WALLET_OK, walletOk);
+                }
+            } catch (Exception e) {
+                log.error("Failed to update wallet eligibility of driver {}: {}", userId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Write complete records (startup rebuild, periodic reconcile, SQL
+     * fallback warm-up); each written record gets a fresh TTL
+     */
+    public void putAll(Map<Long, DriverEligibility> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    records.forEach((userId, record) -> {
+                        Map<String, Object> fields = new HashMap<>();
+                        fields.put(FIELD_STATUS, record.getStatus() != null ? record.getStatus() : "");
+                        fields.put(FIELD_COD_LIMIT,
+                                record.getCodLimit() != null ? record.getCodLimit().toPlainString() : "");
+                        fields.put(FIELD_WALLET_OK, record.isWalletOk() ? "1" : "0");
+                        fields.put(FIELD_VEHICLE_TYPE, record.getVehicleType() != null ? record.getVehicleType() : "");
+                        String key = buildKey(userId);
+                        ops.opsForHash().putAll(key, fields);
+                        ops.expire(key, ttl);
+                    });
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to write {} driver eligibility records: {}", records.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Read the records of many drivers in one pipelined round trip
+     *
+     * @return Complete records by user ID; drivers without a (complete)
+     *         record are absent. Null if Redis is unavailable.
+     */
+    public Map<Long, DriverEligibility> getEligibility(List<Long> userIds) {
+        Map<Long, DriverEligibility> records = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return records;
+        }
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (Long userId : userIds) {
+                        ops.opsForHash().multiGet(buildKey(userId), FIELDS);
+                    }
+                    return null;
+                }
+            });
+
+            for (int i = 0; i < userIds.size() && i < results.size(); i++) {
+                DriverEligibility record = parse(results.get(i));
+                if (record != null) {
+                    records.put(userIds.get(i), record);
+                }
+            }
+            return records;
+        } catch (Exception e) {
+            log.error("Failed to read driver eligibility from Redis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Remove a driver's record (profile deleted)
+     */
+    public void removeDriver(Long userId) {
+        afterCommit(() -> {
+            try {
+                redisTemplate.delete(buildKey(userId));
+            } catch (Exception e) {
+                log.error("Failed to remove eligibility of driver {}: {}", userId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Run a registry write after the current transaction commits (dropped on
+     * rollback), or right away outside a transaction
+     */
+    private void afterCommit(Runnable write) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                write.run();
+            }
+        });
+    }
+
+    private DriverEligibility parse(Object result) {
+        if (!(result instanceof List) || ((List<?>) result).size() < FIELDS.size()) {
+            return null;
+        }
+        List<?> values = (List<?>) result;
+        Object status = values.get(0);
+        Object walletOk = values.get(2);
+        if (status == null || walletOk == null) {
+            // Incomplete record (e.g. wallet part never written)
+            return null;
+        }
+        Object codLimit = values.get(1);
+        Object vehicleType = values.get(3);
+        return new DriverEligibility(
+                status.toString(),
+                codLimit != null && !codLimit.toString().isEmpty() ? new BigDecimal(codLimit.toString()) : null,
+                "1".equals(walletOk.toString()),
+                vehicleType != null && !vehicleType.toString().isEmpty() ? vehicleType.toString() : null);
+    }
+
+    private static String isWalletOk(BigDecimal balance) {
+        return balance != null && balance.signum() >= 0 ? "1" : "0";
+    }
+
+    private String buildKey(Long userId) {
+        return KEY_PREFIX + userId + KEY_SUFFIX;
+    }
+
+    /**
+     * Business rules of one driver, as used by dispatch
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class DriverEligibility {
+        private final String status;
+        private final BigDecimal codLimit;
+        private final boolean walletOk;
+        private final String vehicleType;
+
+        /**
+         * Same rules as DriverProfileRepository.findByUserIds /
+         * findByUserIdsWithCodLimit
+         *
+         * @param codAmount Order total for COD orders, null otherwise
+         */
+        public boolean isEligibleFor(BigDecimal codAmount) {
+            if (!"ONLINE".equals(status) && !"AVAILABLE".equals(status)) {
+                return false;
+            }
+            if (!walletOk) {
+                return false;
+            }
+            return codAmount == null || (codLimit != null && codLimit.compareTo(codAmount) >= 0);
+        }
+
+        public static DriverEligibility of(String status, BigDecimal codLimit, BigDecimal walletBalance,
+                String vehicleType) {
+            return new DriverEligibility(status, codLimit, "1".equals(isWalletOk(walletBalance)), vehicleType);
+        }
+    }
+}
@@ -1,36 +1,64 @@
 package com.example.FoodDelivery.service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.geo.Circle;
 import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
 import org.springframework.data.geo.GeoResults;
 import org.springframework.data.geo.Point;
 import org.springframework.data.redis.connection.RedisGeoCommands.DistanceUnit;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
 import org.springframework.data.redis.connection.RedisGeoCommands.GeoRadiusCommandArgs;
+import org.springframework.data.redis.core.DefaultTypedTuple;
 import org.springframework.data.redis.core.GeoOperations;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
 import org.springframework.stereotype.Service;
 
+import com.example.FoodDelivery.service.geo.LocalDriverIndexService;
+import com.example.FoodDelivery.util.GeoUtils;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Service for handling geospatial data in Redis
- * Used for storing and querying driver locations
+ * Used for storing and querying driver and restaurant locations
+ * Driver writes are mirrored into the in-process LocalDriverIndexService,
+ * which answers nearby-driver queries while it is fresh
  */
 @Service
 @Slf4j
 public class RedisGeoService {
 
     private static final String DRIVER_LOCATION_KEY = "geo:drivers:active";
+    private static final String RESTAURANT_LOCATION_KEY = "geo:restaurants";
+    // Last location ping per driver (score = epoch millis), used to sweep ghosts
+    private static final String DRIVER_LAST_SEEN_KEY = "geo:drivers:lastseen";
     private final GeoOperations<String, Object> geoOps;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final LocalDriverIndexService localDriverIndex;
+    private final long staleAfterMs;
 
-    public RedisGeoService(RedisTemplate<String, Object> redisTemplate) {
+    public RedisGeoService(RedisTemplate<String, Object> redisTemplate, LocalDriverIndexService localDriverIndex,
+            @Value("${driver-location.stale-after-seconds:90}") long staleAfterSeconds) {
         this.redisTemplate = redisTemplate;
         this.geoOps = redisTemplate.opsForGeo();
+        this.localDriverIndex = localDriverIndex;
+        this.staleAfterMs = staleAfterSeconds * 1000;
     }
 
     /**
@@ -41,10 +69,16 @@ public class RedisGeoService {
      * @param longitude Longitude coordinate
      */
     public void updateDriverLocation(Long driverId, BigDecimal latitude, BigDecimal longitude) {
+        if (!GeoUtils.isValidPosition(latitude.doubleValue(), longitude.doubleValue())) {
+            log.warn("Ignoring invalid location of driver {}: lat={}, lng={}", driverId, latitude, longitude);
+            return;
+        }
+        localDriverIndex.update(driverId, latitude.doubleValue(), longitude.doubleValue());
         try {
             Point point = new Point(longitude.doubleValue(), latitude.doubleValue()); // Redis GEO uses (longitude,
                                                                                       // latitude)
             geoOps.add(DRIVER_LOCATION_KEY, point, driverId.toString());
+            redisTemplate.opsForZSet().add(DRIVER_LAST_SEEN_KEY, driverId.toString(), System.currentTimeMillis());
 
             // Set expiration for the entire key (24 hours)
             redisTemplate.expire(DRIVER_LOCATION_KEY, 24, TimeUnit.HOURS);
@@ -56,6 +90,59 @@ public class RedisGeoService {
         }
     }
 
+    /**
+     * Add or update many driver locations in one pipelined round trip
+     * (GEOADD and last-seen ZADD in chunks, then a single EXPIRE on the key)
+     * 
+     * @param locations Driver's user ID to (longitude, latitude) point
+     * @param chunkSize Maximum members per GEOADD command
+     * @return true if Redis accepted the batch
+     */
+    public boolean updateDriverLocations(Map<Long, Point> locations, int chunkSize) {
+        if (locations.isEmpty()) {
+            return true;
+        }
+        locations.forEach((driverId, point) -> localDriverIndex.update(driverId, point.getY(), point.getX()));
+        try {
+            long now = System.currentTimeMillis();
+            List<Map<Object, Point>> chunks = new ArrayList<>();
+            Map<Object, Point> chunk = new HashMap<>();
+            for (Map.Entry<Long, Point> entry : locations.entrySet()) {
+                chunk.put(entry.getKey().toString(), entry.getValue());
+                if (chunk.size() >= chunkSize) {
+                    chunks.add(chunk);
+                    chunk = new HashMap<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunks.add(chunk);
+            }
+
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (Map<Object, Point> members : chunks) {
+                        ops.opsForGeo().add(DRIVER_LOCATION_KEY, members);
+                        Set<TypedTuple<Object>> seen = new HashSet<>();
+                        members.keySet().forEach(member -> seen.add(new DefaultTypedTuple<>(member, (double) now)));
+                        ops.opsForZSet().add(DRIVER_LAST_SEEN_KEY, seen);
+                    }
+                    ops.expire(DRIVER_LOCATION_KEY, 24, TimeUnit.HOURS);
+                    return null;
+                }
+            });
+
+            log.debug("📍 Flushed {} driver locations to Redis GEO in {} commands", locations.size(),
+                    chunks.size());
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to flush driver locations to Redis", e);
+            return false;
+        }
+    }
+
     /**
      * Get driver's current location from Redis
      * 
@@ -76,6 +163,8 @@ public class RedisGeoService {
 
     /**
      * Find nearby drivers within radius
+     * Served from the local index while it is fresh; Redis otherwise, with the
+     * local index as a degraded fallback when Redis fails
      * 
      * @param latitude   Center latitude
      * @param longitude  Center longitude
@@ -85,6 +174,10 @@ public class RedisGeoService {
      */
     public GeoResults<org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation<Object>> findNearbyDrivers(
             BigDecimal latitude, BigDecimal longitude, Double radiusInKm, Integer limit) {
+        if (localDriverIndex.canServeQueries()) {
+            return localDriverIndex.findNearbyDrivers(latitude.doubleValue(), longitude.doubleValue(), radiusInKm,
+                    limit, false);
+        }
         try {
             Point center = new Point(longitude.doubleValue(), latitude.doubleValue());
             Distance radius = new Distance(radiusInKm, DistanceUnit.KILOMETERS);
@@ -101,6 +194,11 @@ public class RedisGeoService {
 
             return geoOps.radius(DRIVER_LOCATION_KEY, within, args);
         } catch (Exception e) {
+            if (localDriverIndex.canServeDegraded()) {
+                log.warn("⚠️ Redis GEO unavailable, serving nearby drivers from local index: {}", e.getMessage());
+                return localDriverIndex.findNearbyDrivers(latitude.doubleValue(), longitude.doubleValue(),
+                        radiusInKm, limit, true);
+            }
             log.error("Failed to find nearby drivers", e);
             return null;
         }
@@ -133,8 +231,10 @@ public class RedisGeoService {
      * @param driverId Driver's user ID
      */
     public void removeDriverLocation(Long driverId) {
+        localDriverIndex.remove(driverId);
         try {
             geoOps.remove(DRIVER_LOCATION_KEY, driverId.toString());
+            redisTemplate.opsForZSet().remove(DRIVER_LAST_SEEN_KEY, driverId.toString());
             log.debug("🗑️ Removed driver {} location from Redis GEO", driverId);
         } catch (Exception e) {
             log.error("Failed to remove driver location from Redis", e);
@@ -152,4 +252,198 @@ public class RedisGeoService {
             return 0L;
         }
     }
+
+    /**
+     * Count drivers in the GEO set by heartbeat freshness
+     * 
+     * @return active (pinged within the stale threshold) and stale counts
+     */
+    public Map<String, Long> getDriverPresenceCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try {
+            double cutoff = System.currentTimeMillis() - staleAfterMs;
+            Long active = redisTemplate.opsForZSet().count(DRIVER_LAST_SEEN_KEY, cutoff, Double.POSITIVE_INFINITY);
+            Long stale = redisTemplate.opsForZSet().count(DRIVER_LAST_SEEN_KEY, Double.NEGATIVE_INFINITY, cutoff);
+            counts.put("active", active != null ? active : 0L);
+            counts.put("stale", stale != null ? stale : 0L);
+        } catch (Exception e) {
+            log.error("Failed to count driver presence", e);
+            counts.put("active", 0L);
+            counts.put("stale", 0L);
+        }
+        return counts;
+    }
+
+    /**
+     * Remove drivers whose last location ping is older than the stale
+     * threshold from the GEO set, so dead apps stop being dispatched to
+     * 
+     * @param limit Maximum drivers removed per call
+     * @return IDs of the removed drivers
+     */
+    public List<Long> removeStaleDrivers(int limit) {
+        double cutoff = System.currentTimeMillis() - staleAfterMs;
+        Set<Object> stale = redisTemplate.opsForZSet().rangeByScore(DRIVER_LAST_SEEN_KEY,
+                Double.NEGATIVE_INFINITY, cutoff, 0, limit);
+        if (stale == null || stale.isEmpty()) {
+            return List.of();
+        }
+
+        Object[] members = stale.toArray();
+        // A ping landing between the range and the removal is restored by the
+        // driver's next flush
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.opsForZSet().remove(DRIVER_LOCATION_KEY, members);
+                ops.opsForZSet().remove(DRIVER_LAST_SEEN_KEY, members);
+                return null;
+            }
+        });
+
+        List<Long> removed = new ArrayList<>(members.length);
+        for (Object member : members) {
+            try {
+                Long driverId = Long.parseLong(member.toString());
+                localDriverIndex.remove(driverId);
+                removed.add(driverId);
+            } catch (NumberFormatException e) {
+                log.warn("Invalid driver member in last-seen index: {}", member);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Give drivers already in the GEO set without a last-seen entry (written
+     * before heartbeats were tracked) one stale window to ping again
+     */
+    public void adoptUntrackedDrivers() {
+        try {
+            Set<Object> members = redisTemplate.opsForZSet().range(DRIVER_LOCATION_KEY, 0, -1);
+            if (members == null || members.isEmpty()) {
+                return;
+            }
+            double now = System.currentTimeMillis();
+            Set<TypedTuple<Object>> seen = new HashSet<>();
+            members.forEach(member -> seen.add(new DefaultTypedTuple<>(member, now)));
+            redisTemplate.opsForZSet().addIfAbsent(DRIVER_LAST_SEEN_KEY, seen);
+        } catch (Exception e) {
+            log.warn("Failed to adopt untracked drivers into last-seen index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Add or update restaurant location in the restaurant GEO index
+     * 
+     * @param restaurantId Restaurant ID
+     * @param latitude     Latitude coordinate
+     * @param longitude    Longitude coordinate
+     */
+    public void updateRestaurantLocation(Long restaurantId, BigDecimal latitude, BigDecimal longitude) {
+        try {
+            Point point = new Point(longitude.doubleValue(), latitude.doubleValue());
+            geoOps.add(RESTAURANT_LOCATION_KEY, point, restaurantId.toString());
+            log.debug("📍 Updated restaurant {} location in Redis GEO: lat={}, lng={}",
+                    restaurantId, latitude, longitude);
+        } catch (Exception e) {
+            log.error("Failed to update restaurant location in Redis", e);
+        }
+    }
+
+    /**
+     * Replace the whole restaurant GEO index
+     * The new index is built under a temporary key and renamed over the live
+     * one, so searches never see a missing or half-filled index
+     * 
+     * @param locations Restaurant ID to (longitude, latitude) point
+     */
+    public void rebuildRestaurantLocations(Map<Long, Point> locations) {
+        if (locations.isEmpty()) {
+            try {
+                redisTemplate.delete(RESTAURANT_LOCATION_KEY);
+            } catch (Exception e) {
+                log.error("Failed to clear restaurant GEO index in Redis", e);
+            }
+            return;
+        }
+        String buildKey = RESTAURANT_LOCATION_KEY + ":rebuild:" + UUID.randomUUID();
+        try {
+            Map<Object, Point> members = new HashMap<>();
+            locations.forEach((id, point) -> members.put(id.toString(), point));
+            geoOps.add(buildKey, members);
+            redisTemplate.rename(buildKey, RESTAURANT_LOCATION_KEY);
+            log.info("📍 Rebuilt restaurant GEO index with {} restaurants", members.size());
+        } catch (Exception e) {
+            log.error("Failed to rebuild restaurant GEO index in Redis", e);
+            try {
+                redisTemplate.delete(buildKey);
+            } catch (Exception ignored) {
+                // Leftover temporary key; nothing reads it
+            }
+        }
+    }
+
+    /**
+     * Find restaurants within straight-line radius, closest first
+     * 
+     * @param latitude   Center latitude
+     * @param longitude  Center longitude
+     * @param radiusInKm Search radius in kilometers
+     * @param limit      Maximum number of restaurants (the closest ones)
+     * @return Restaurant ID to straight-line distance in km (ordered by
+     *         distance), or null if Redis or the index is unavailable (a
+     *         missing key means the index was never built, not that nothing
+     *         is nearby)
+     */
+    public LinkedHashMap<Long, Double> findNearbyRestaurants(BigDecimal latitude, BigDecimal longitude,
+            Double radiusInKm, int limit) {
+        try {
+            Circle within = new Circle(new Point(longitude.doubleValue(), latitude.doubleValue()),
+                    new Distance(radiusInKm, DistanceUnit.KILOMETERS));
+            GeoRadiusCommandArgs args = GeoRadiusCommandArgs.newGeoRadiusArgs()
+                    .includeDistance()
+                    .sortAscending()
+                    .limit(limit);
+
+            GeoResults<GeoLocation<Object>> results = geoOps.radius(RESTAURANT_LOCATION_KEY, within, args);
+            LinkedHashMap<Long, Double> nearby = new LinkedHashMap<>();
+            if (results == null || results.getContent().isEmpty()) {
+                // Only an existing index can say that nothing is nearby
+                if (!Boolean.TRUE.equals(redisTemplate.hasKey(RESTAURANT_LOCATION_KEY))) {
+                    log.warn("Restaurant GEO index {} is missing", RESTAURANT_LOCATION_KEY);
+                    return null;
+                }
+                return nearby;
+            }
+            for (GeoResult<GeoLocation<Object>> result : results.getContent()) {
+                try {
+                    nearby.put(Long.parseLong(result.getContent().getName().toString()),
+                            result.getDistance().getValue());
+                } catch (NumberFormatException e) {
+                    log.warn("Invalid restaurant member in GEO index: {}", result.getContent().getName());
+                }
+            }
+            return nearby;
+        } catch (Exception e) {
+            log.error("Failed to find nearby restaurants", e);
+            return null;
+        }
+    }
+
+    /**
+     * Remove restaurant from the restaurant GEO index
+     * 
+     * @param restaurantId Restaurant ID
+     */
+    public void removeRestaurantLocation(Long restaurantId) {
+        try {
+            geoOps.remove(RESTAURANT_LOCATION_KEY, restaurantId.toString());
+            log.debug("🗑️ Removed restaurant {} location from Redis GEO", restaurantId);
+        } catch (Exception e) {
+            log.error("Failed to remove restaurant location from Redis", e);
+        }
+    }
 }
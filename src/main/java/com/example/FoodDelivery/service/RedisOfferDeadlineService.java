@@ -0,0 +1,154 @@
+package com.example.FoodDelivery.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.FoodDelivery.domain.SystemConfiguration;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deadlines of pending driver offers using a Redis SORTED SET
+ * Key: "dispatch:offers:deadlines"
+ * Member: "{orderId}:{driverId}", score: deadline (epoch millis)
+ * Expired offers are claimed with ZREM, so with several nodes polling each
+ * offer expires exactly once. Redis only schedules the expiry; whether an
+ * offer was answered or expired is decided on the order row.
+ */
+@Service
+@Slf4j
+public class RedisOfferDeadlineService {
+    private static final String DEADLINES_KEY = "dispatch:offers:deadlines";
+    private static final long DEFAULT_TIMEOUT_SECONDS = 45;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final SystemConfigurationService systemConfigurationService;
+
+    public RedisOfferDeadlineService(RedisTemplate<String, Object> redisTemplate,
+            SystemConfigurationService systemConfigurationService) {
+        this.redisTemplate = redisTemplate;
+        this.systemConfigurationService = systemConfigurationService;
+    }
+
+    /**
+     * Start the response deadline of an offer
+     * Timeout from system configuration DRIVER_OFFER_TIMEOUT_SECONDS
+     * (default 45 s)
+     */
+    public void scheduleOffer(Long orderId, Long driverId) {
+        long deadline = Instant.now().plusSeconds(getOfferTimeoutSeconds()).toEpochMilli();
+        try {
+            redisTemplate.opsForZSet().add(DEADLINES_KEY, buildMember(orderId, driverId), deadline);
+            log.debug("Offer of order {} to driver {} expires at {}", orderId, driverId, deadline);
+        } catch (Exception e) {
+            log.error("Failed to schedule offer deadline for order {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    /**
+     * Remove the deadline of an answered offer once the answer commits
+     * The conditional update of the order row decides between an answer and
+     * the expiry, not this. On rollback the deadline stays and the offer
+     * expires as usual (expireDriverOffer re-checks the row); an offer
+     * without a deadline (never scheduled, or already claimed by expiry)
+     * needs nothing here.
+     */
+    public void cancelOffer(Long orderId, Long driverId) {
+        afterCommit(() -> {
+            try {
+                redisTemplate.opsForZSet().remove(DEADLINES_KEY, buildMember(orderId, driverId));
+            } catch (Exception e) {
+                // The expiry finds the order answered and does nothing
+                log.error("Failed to cancel offer deadline for order {}: {}", orderId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Claim offers whose deadline has passed
+     *
+     * @param limit Maximum number of offers to claim
+     * @return Expired offers as {orderId, driverId}, each returned to one
+     *         caller only
+     */
+    public List<Long[]> claimExpiredOffers(int limit) {
+        List<Long[]> claimed = new ArrayList<>();
+        Set<Object> expired = redisTemplate.opsForZSet()
+                .rangeByScore(DEADLINES_KEY, 0, System.currentTimeMillis(), 0, limit);
+        if (expired == null) {
+            return claimed;
+        }
+        for (Object member : expired) {
+            Long removed = redisTemplate.opsForZSet().remove(DEADLINES_KEY, member);
+            if (removed == null || removed == 0) {
+                // Claimed by another node, or answered in the meantime
+                continue;
+            }
+            Long[] offer = parseMember(member.toString());
+            if (offer != null) {
+                claimed.add(offer);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Number of offers waiting for an answer
+     */
+    public long getPendingOfferCount() {
+        Long count = redisTemplate.opsForZSet().zCard(DEADLINES_KEY);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Run a deadline change after the current transaction commits (dropped on
+     * rollback), or right away outside a transaction
+     */
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    private long getOfferTimeoutSeconds() {
+        try {
+            SystemConfiguration config = systemConfigurationService
+                    .getSystemConfigurationByKey("DRIVER_OFFER_TIMEOUT_SECONDS");
+            if (config != null && config.getConfigValue() != null && !config.getConfigValue().isEmpty()) {
+                return Long.parseLong(config.getConfigValue());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to get DRIVER_OFFER_TIMEOUT_SECONDS config, using default {} s",
+                    DEFAULT_TIMEOUT_SECONDS);
+        }
+        return DEFAULT_TIMEOUT_SECONDS;
+    }
+
+    private String buildMember(Long orderId, Long driverId) {
+        return orderId + ":" + driverId;
+    }
+
+    private Long[] parseMember(String member) {
+        try {
+            String[] parts = member.split(":");
+            return new Long[] { Long.parseLong(parts[0]), Long.parseLong(parts[1]) };
+        } catch (Exception e) {
+            log.error("Invalid offer deadline member: {}", member);
+            return null;
+        }
+    }
+}
@@ -3,8 +3,12 @@ package com.example.FoodDelivery.service;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.geo.Point;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
@@ -18,13 +22,20 @@ import com.example.FoodDelivery.domain.res.restaurant.ResRestaurantDTO;
 import com.example.FoodDelivery.domain.res.restaurant.ResRestaurantMagazineDTO;
 import com.example.FoodDelivery.repository.RestaurantRepository;
 import com.example.FoodDelivery.repository.RestaurantTypeRepository;
+import com.example.FoodDelivery.service.distance.DistanceProvider;
+import com.example.FoodDelivery.service.distance.DistanceProviderSelector;
+import com.example.FoodDelivery.service.distance.DistanceUseCase;
+import com.example.FoodDelivery.util.GeoUtils;
 import com.example.FoodDelivery.util.SlugUtils;
 import com.example.FoodDelivery.util.error.IdInvalidException;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -34,21 +45,58 @@ public class RestaurantService {
     private final RestaurantRepository restaurantRepository;
     private final UserService userService;
     private final RestaurantTypeRepository restaurantTypeRepository;
-    private final MapboxService mapboxService;
+    private final DistanceProviderSelector distanceProviderSelector;
     private final SystemConfigurationService systemConfigurationService;
     private final RedisCacheService redisCacheService;
+    private final RedisGeoService redisGeoService;
+    private final int maxNearbyCandidates;
 
     public RestaurantService(RestaurantRepository restaurantRepository, UserService userService,
             RestaurantTypeRepository restaurantTypeRepository,
-            MapboxService mapboxService,
+            DistanceProviderSelector distanceProviderSelector,
             SystemConfigurationService systemConfigurationService,
-            RedisCacheService redisCacheService) {
+            RedisCacheService redisCacheService,
+            RedisGeoService redisGeoService,
+            @Value("${search.nearby.max-candidates:500}") int maxNearbyCandidates) {
         this.restaurantRepository = restaurantRepository;
         this.userService = userService;
         this.restaurantTypeRepository = restaurantTypeRepository;
-        this.mapboxService = mapboxService;
+        this.distanceProviderSelector = distanceProviderSelector;
         this.systemConfigurationService = systemConfigurationService;
         this.redisCacheService = redisCacheService;
+        this.redisGeoService = redisGeoService;
+        this.maxNearbyCandidates = maxNearbyCandidates;
+    }
+
+    /**
+     * Rebuild the restaurant GEO index from the database on startup
+     * so nearby search never has to scan the restaurant table
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildRestaurantGeoIndex() {
+        try {
+            Map<Long, Point> locations = new HashMap<>();
+            for (Object[] row : restaurantRepository.findAllLocations()) {
+                BigDecimal lat = (BigDecimal) row[1];
+                BigDecimal lng = (BigDecimal) row[2];
+                locations.put((Long) row[0], new Point(lng.doubleValue(), lat.doubleValue()));
+            }
+            redisGeoService.rebuildRestaurantLocations(locations);
+        } catch (Exception e) {
+            log.error("Failed to rebuild restaurant GEO index", e);
+        }
+    }
+
+    /**
+     * Keep the restaurant GEO index in sync with a saved restaurant
+     */
+    private void syncRestaurantGeoIndex(Restaurant restaurant) {
+        if (restaurant.getLatitude() != null && restaurant.getLongitude() != null) {
+            redisGeoService.updateRestaurantLocation(restaurant.getId(), restaurant.getLatitude(),
+                    restaurant.getLongitude());
+        } else {
+            redisGeoService.removeRestaurantLocation(restaurant.getId());
+        }
     }
 
     public boolean existsByName(String name) {
@@ -194,7 +242,13 @@ public class RestaurantService {
             restaurant.setSlug(uniqueSlug);
         }
 
-        return restaurantRepository.save(restaurant);
+        Restaurant savedRestaurant = restaurantRepository.save(restaurant);
+        syncRestaurantGeoIndex(savedRestaurant);
+
+        // New restaurant must show up in nearby search
+        clearSearchCache();
+
+        return savedRestaurant;
     }
 
     public ResRestaurantDTO createRestaurantDTO(Restaurant restaurant) throws IdInvalidException {
@@ -269,6 +323,7 @@ public class RestaurantService {
         }
 
         Restaurant savedRestaurant = restaurantRepository.save(currentRestaurant);
+        syncRestaurantGeoIndex(savedRestaurant);
 
         // Clear search cache when restaurant data changes
         clearSearchCache();
@@ -299,6 +354,8 @@ public class RestaurantService {
 
     public void deleteRestaurant(Long id) {
         this.restaurantRepository.deleteById(id);
+        redisGeoService.removeRestaurantLocation(id);
+        clearSearchCache();
     }
 
     /**
@@ -331,7 +388,13 @@ public class RestaurantService {
 
     /**
      * Get restaurants within maximum distance from user location
-     * Uses Mapbox API to calculate real driving distance
+     * Candidates come from the restaurant Redis GEO index (straight-line radius,
+     * ranked by haversine distance, at most search.nearby.max-candidates of the
+     * closest, so the SQL id list stays bounded); driving distance (search
+     * distance provider) is only computed for the restaurants on the requested
+     * page
+     * Which restaurants land on which page follows the haversine ranking, so
+     * pages never overlap; only the order within a page is by driving distance
      * Supports filtering and pagination
      * WITH REDIS CACHE for search results
      * 
@@ -371,6 +434,15 @@ public class RestaurantService {
             log.warn("Failed to get MAX_RESTAURANT_DISTANCE_KM config, using default {} km", maxDistanceKm);
         }
 
+        // STEP 1: Spatial prefilter with Redis GEO (straight-line radius,
+        // closest maxNearbyCandidates)
+        LinkedHashMap<Long, Double> geoCandidates = redisGeoService.findNearbyRestaurants(
+                latitude, longitude, maxDistanceKm.doubleValue(), maxNearbyCandidates);
+        if (geoCandidates != null && geoCandidates.isEmpty()) {
+            log.info("No restaurants in GEO index within {} km", maxDistanceKm);
+            return buildNearbyResult(new ArrayList<>(), 0, pageable, cacheKey, true);
+        }
+
         // Build search specification if keyword is provided
         Specification<Restaurant> finalSpec = spec;
         if (searchKeyword != null && !searchKeyword.trim().isEmpty()) {
@@ -414,70 +486,94 @@ public class RestaurantService {
             finalSpec = finalSpec != null ? finalSpec.and(searchSpec) : searchSpec;
         }
 
-        // Get filtered restaurants using spec
-        List<Restaurant> filteredRestaurants;
-        if (finalSpec != null) {
-            filteredRestaurants = restaurantRepository.findAll(finalSpec);
+        // Restrict SQL to GEO candidates (falls back to full scan if Redis is down)
+        if (geoCandidates != null) {
+            List<Long> candidateIds = new ArrayList<>(geoCandidates.keySet());
+            Specification<Restaurant> idSpec = (root, query, criteriaBuilder) -> root.get("id").in(candidateIds);
+            finalSpec = finalSpec != null ? finalSpec.and(idSpec) : idSpec;
         } else {
-            filteredRestaurants = restaurantRepository.findAll();
+            log.warn("Restaurant GEO index unavailable, falling back to haversine over all restaurants");
         }
 
-        log.info("Checking {} restaurants within {} km from location ({}, {})",
-                filteredRestaurants.size(), maxDistanceKm, latitude, longitude);
+        // STEP 2: Apply business filters in SQL
+        List<Restaurant> filteredRestaurants = finalSpec != null
+                ? restaurantRepository.findAll(finalSpec)
+                : restaurantRepository.findAll();
 
-        // Calculate distances and filter by max distance
-        List<ResRestaurantMagazineDTO> nearbyRestaurants = new ArrayList<>();
+        // STEP 3: Rank by straight-line distance
+        Map<Long, Double> straightLineKm = new HashMap<>();
+        List<Restaurant> rankedRestaurants = new ArrayList<>();
         for (Restaurant restaurant : filteredRestaurants) {
             // Skip restaurants without location data
             if (restaurant.getLatitude() == null || restaurant.getLongitude() == null) {
                 continue;
             }
+            Double distanceKm = geoCandidates != null ? geoCandidates.get(restaurant.getId()) : null;
+            if (distanceKm == null) {
+                distanceKm = GeoUtils.haversineKm(latitude, longitude,
+                        restaurant.getLatitude(), restaurant.getLongitude());
+            }
+            if (distanceKm <= maxDistanceKm.doubleValue()) {
+                straightLineKm.put(restaurant.getId(), distanceKm);
+                rankedRestaurants.add(restaurant);
+            }
+        }
+        rankedRestaurants.sort(Comparator.comparing(restaurant -> straightLineKm.get(restaurant.getId())));
+
+        log.info("Found {} restaurants within {} km from location ({}, {})",
+                rankedRestaurants.size(), maxDistanceKm, latitude, longitude);
 
-            // Calculate driving distance using Mapbox API
-            BigDecimal distance = mapboxService.getDrivingDistance(
+        // STEP 4: Driving distance only for the requested page
+        int start = (int) pageable.getOffset();
+        int end = Math.min(start + pageable.getPageSize(), rankedRestaurants.size());
+        List<ResRestaurantMagazineDTO> paginatedRestaurants = new ArrayList<>();
+        DistanceProvider distanceProvider = distanceProviderSelector.forUseCase(DistanceUseCase.SEARCH);
+        for (int i = start; i < end; i++) {
+            Restaurant restaurant = rankedRestaurants.get(i);
+            BigDecimal distance = distanceProvider.getDrivingDistance(
                     latitude,
                     longitude,
                     restaurant.getLatitude(),
                     restaurant.getLongitude());
 
-            // Skip if Mapbox API fails
+            // Fall back to straight-line distance if no driving distance
             if (distance == null) {
-                log.warn("Failed to calculate distance for restaurant: {}", restaurant.getName());
-                continue;
+                log.warn("Failed to calculate driving distance for restaurant: {}", restaurant.getName());
+                distance = BigDecimal.valueOf(straightLineKm.get(restaurant.getId()));
             }
 
-            // Check if restaurant is within max distance
-            if (distance.compareTo(maxDistanceKm) <= 0) {
-                ResRestaurantMagazineDTO dto = convertToResRestaurantMagazineDTO(restaurant);
-                dto.setDistance(distance);
-                nearbyRestaurants.add(dto);
-                log.debug("Restaurant {} is {} km away (within {} km limit)",
-                        restaurant.getName(), distance, maxDistanceKm);
-            }
+            ResRestaurantMagazineDTO dto = convertToResRestaurantMagazineDTO(restaurant);
+            dto.setDistance(distance);
+            paginatedRestaurants.add(dto);
         }
 
-        // Sort by distance (closest first)
-        nearbyRestaurants.sort(Comparator.comparing(ResRestaurantMagazineDTO::getDistance));
+        // Order within the page by driving distance (closest first); the page
+        // itself was cut from the haversine ranking
+        paginatedRestaurants.sort(Comparator.comparing(ResRestaurantMagazineDTO::getDistance));
 
-        log.info("Found {} restaurants within {} km", nearbyRestaurants.size(), maxDistanceKm);
-
-        // Apply pagination
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), nearbyRestaurants.size());
-        List<ResRestaurantMagazineDTO> paginatedRestaurants = start < nearbyRestaurants.size()
-                ? nearbyRestaurants.subList(start, end)
-                : new ArrayList<>();
+        // A fallback result is not cached: the index may be back on the next request
+        return buildNearbyResult(paginatedRestaurants, rankedRestaurants.size(), pageable, cacheKey,
+                geoCandidates != null);
+    }
 
+    /**
+     * Build paginated nearby result and cache it (when cacheable)
+     */
+    private ResultPaginationDTO buildNearbyResult(List<ResRestaurantMagazineDTO> paginatedRestaurants,
+            int total, Pageable pageable, String cacheKey, boolean cacheable) {
         // Build result with pagination meta
         ResultPaginationDTO result = new ResultPaginationDTO();
         ResultPaginationDTO.Meta meta = new ResultPaginationDTO.Meta();
         meta.setPage(pageable.getPageNumber() + 1);
         meta.setPageSize(pageable.getPageSize());
-        meta.setTotal((long) nearbyRestaurants.size());
-        meta.setPages((int) Math.ceil((double) nearbyRestaurants.size() / pageable.getPageSize()));
+        meta.setTotal((long) total);
+        meta.setPages((int) Math.ceil((double) total / pageable.getPageSize()));
         result.setMeta(meta);
         result.setResult(paginatedRestaurants);
 
+        if (!cacheable) {
+            return result;
+        }
         // 4. Save to cache (TTL: 5 minutes)
         redisCacheService.set(cacheKey, result, 5, java.util.concurrent.TimeUnit.MINUTES);
         log.info("💾 Cached result with key: {}", cacheKey);
@@ -0,0 +1,130 @@
+package com.example.FoodDelivery.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.domain.res.route.RouteInfo;
+import com.example.FoodDelivery.util.GeoUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Two-tier cache for driving routes (distance + duration)
+ * Tier 1: in-process Caffeine near-cache
+ * Tier 2: Redis, shared by all nodes
+ * Key pattern: "route:{originGeohash}:{destinationGeohash}"
+ * Origin/destination are quantized to geohash cells so nearby requests
+ * share the same entry
+ * The Redis tier has its own template typed to RouteInfo: the shared template
+ * reads untyped JSON back as maps. Both write the same plain JSON.
+ */
+@Service
+@Slf4j
+public class RouteCacheService {
+    private static final String KEY_PREFIX = "route:";
+
+    private final RedisTemplate<String, RouteInfo> routeTemplate;
+    private final Cache<String, RouteInfo> nearCache;
+    private final int geohashPrecision;
+    private final Duration ttl;
+
+    private final Counter redisHits;
+    private final Counter redisMisses;
+
+    public RouteCacheService(RedisTemplate<String, Object> redisTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${route-cache.geohash-precision:7}") int geohashPrecision,
+            @Value("${route-cache.ttl-minutes:360}") long ttlMinutes,
+            @Value("${route-cache.near-cache.max-size:50000}") long nearCacheMaxSize,
+            @Value("${route-cache.near-cache.ttl-minutes:30}") long nearCacheTtlMinutes) {
+        this.routeTemplate = new RedisTemplate<>();
+        this.routeTemplate.setConnectionFactory(redisTemplate.getConnectionFactory());
+        this.routeTemplate.setKeySerializer(new StringRedisSerializer());
+        this.routeTemplate.setValueSerializer(routeSerializer());
+        this.routeTemplate.afterPropertiesSet();
+        this.geohashPrecision = geohashPrecision;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(Math.min(nearCacheTtlMinutes, ttlMinutes)))
+                .recordStats()
+                .build();
+
+        // Near-cache hit/miss/eviction metrics: cache.gets{cache=route.near,result=hit|miss}
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "route.near");
+        this.redisHits = Counter.builder("route.cache.redis")
+                .tag("result", "hit")
+                .description("Route lookups answered by the Redis tier")
+                .register(meterRegistry);
+        this.redisMisses = Counter.builder("route.cache.redis")
+                .tag("result", "miss")
+                .description("Route lookups that missed both tiers")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Build cache key from quantized origin and destination cells
+     */
+    public String buildKey(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat, BigDecimal toLng) {
+        return KEY_PREFIX
+                + GeoUtils.geohash(fromLat.doubleValue(), fromLng.doubleValue(), geohashPrecision) + ":"
+                + GeoUtils.geohash(toLat.doubleValue(), toLng.doubleValue(), geohashPrecision);
+    }
+
+    /**
+     * Look up a route: near-cache first, then Redis (promoting to near-cache)
+     * 
+     * @return Cached route, or null on miss
+     */
+    public RouteInfo get(String key) {
+        RouteInfo route = nearCache.getIfPresent(key);
+        if (route != null) {
+            return route;
+        }
+
+        try {
+            route = routeTemplate.opsForValue().get(key);
+            if (route != null) {
+                nearCache.put(key, route);
+                redisHits.increment();
+                return route;
+            }
+        } catch (Exception e) {
+            log.error("Error reading route from Redis for key: {}", key, e);
+        }
+
+        redisMisses.increment();
+        return null;
+    }
+
+    /**
+     * Store a route in both tiers
+     */
+    public void put(String key, RouteInfo route) {
+        nearCache.put(key, route);
+        try {
+            routeTemplate.opsForValue().set(key, route, ttl);
+        } catch (Exception e) {
+            log.error("Error writing route to Redis for key: {}", key, e);
+        }
+    }
+
+    /**
+     * Value serializer of the Redis tier
+     */
+    static RedisSerializer<RouteInfo> routeSerializer() {
+        return new Jackson2JsonRedisSerializer<>(RouteInfo.class);
+    }
+}
@@ -18,9 +18,25 @@ import com.example.FoodDelivery.util.error.IdInvalidException;
 @Service
 public class WalletService {
     private final WalletRepository walletRepository;
+    private final RedisDriverEligibilityService redisDriverEligibilityService;
 
-    public WalletService(WalletRepository walletRepository) {
+    public WalletService(WalletRepository walletRepository,
+            RedisDriverEligibilityService redisDriverEligibilityService) {
         this.walletRepository = walletRepository;
+        this.redisDriverEligibilityService = redisDriverEligibilityService;
+    }
+
+    /**
+     * Save a wallet and refresh the wallet part of the owner's dispatch
+     * eligibility record (no-op for non-drivers)
+     */
+    private Wallet saveAndSyncEligibility(Wallet wallet) {
+        Wallet savedWallet = walletRepository.save(wallet);
+        if (savedWallet.getUser() != null) {
+            redisDriverEligibilityService.updateWalletBalance(savedWallet.getUser().getId(),
+                    savedWallet.getBalance());
+        }
+        return savedWallet;
     }
 
     public boolean existsByUserId(Long userId) {
@@ -49,7 +65,7 @@ public class WalletService {
                 .balance(BigDecimal.ZERO)
                 .build();
 
-        return walletRepository.save(wallet);
+        return saveAndSyncEligibility(wallet);
     }
 
     @Transactional
@@ -65,7 +81,7 @@ public class WalletService {
             currentWallet.setBalance(wallet.getBalance());
         }
 
-        return walletRepository.save(currentWallet);
+        return saveAndSyncEligibility(currentWallet);
     }
 
     @Transactional
@@ -80,7 +96,7 @@ public class WalletService {
         }
 
         wallet.setBalance(wallet.getBalance().add(amount));
-        return walletRepository.save(wallet);
+        return saveAndSyncEligibility(wallet);
     }
 
     @Transactional
@@ -99,7 +115,7 @@ public class WalletService {
         }
 
         wallet.setBalance(wallet.getBalance().subtract(amount));
-        return walletRepository.save(wallet);
+        return saveAndSyncEligibility(wallet);
     }
 
     public ResultPaginationDTO getAllWallets(Specification<Wallet> spec, Pageable pageable) {
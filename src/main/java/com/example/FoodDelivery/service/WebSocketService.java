@@ -1,11 +1,19 @@
 package com.example.FoodDelivery.service;
 
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.stereotype.Service;
 
 import com.example.FoodDelivery.domain.res.order.ResOrderDTO;
+import com.example.FoodDelivery.domain.res.websocket.DriverLocationDelta;
 import com.example.FoodDelivery.domain.res.websocket.DriverLocationUpdate;
 import com.example.FoodDelivery.domain.res.websocket.OrderNotification;
+import com.example.FoodDelivery.domain.res.websocket.SharedPayload;
+import com.example.FoodDelivery.service.websocket.CompactFramePublisher;
+import com.example.FoodDelivery.service.websocket.NotificationCoalescer;
+import com.example.FoodDelivery.service.websocket.OrderDeltaService;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -13,10 +21,21 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class WebSocketService {
 
-    private final SimpMessagingTemplate messagingTemplate;
-
-    public WebSocketService(SimpMessagingTemplate messagingTemplate) {
-        this.messagingTemplate = messagingTemplate;
+    // Sends made inside a transaction go out after it commits
+    private final NotificationOutbox notificationOutbox;
+    // Versioned deltas on /topic/order/{id}/delta for every order state sent
+    private final OrderDeltaService orderDeltaService;
+    // Order notifications about the same order within a short window go out as one frame
+    private final NotificationCoalescer notificationCoalescer;
+    // Binary variants (/bin) of the live-tracking topics
+    private final CompactFramePublisher compactFramePublisher;
+
+    public WebSocketService(NotificationOutbox notificationOutbox, OrderDeltaService orderDeltaService,
+            NotificationCoalescer notificationCoalescer, CompactFramePublisher compactFramePublisher) {
+        this.notificationOutbox = notificationOutbox;
+        this.orderDeltaService = orderDeltaService;
+        this.notificationCoalescer = notificationCoalescer;
+        this.compactFramePublisher = compactFramePublisher;
     }
 
     /**
@@ -27,10 +46,11 @@ public class WebSocketService {
                 "NEW_ORDER",
                 order.getId(),
                 "New order received from customer",
-                order);
+                new SharedPayload(order));
 
         String destination = "/topic/restaurant/" + restaurantId + "/orders";
-        messagingTemplate.convertAndSend(destination, notification);
+        notificationCoalescer.send(List.of(destination), notification);
+        orderDeltaService.publish(order);
         log.info("Sent NEW_ORDER notification to restaurant {} at {}", restaurantId, destination);
     }
 
@@ -42,10 +62,11 @@ public class WebSocketService {
                 "ORDER_ASSIGNED",
                 order.getId(),
                 "New order assigned to you",
-                order);
+                new SharedPayload(order));
 
         String destination = "/topic/driver/" + driverId + "/orders";
-        messagingTemplate.convertAndSend(destination, notification);
+        notificationCoalescer.send(List.of(destination), notification);
+        orderDeltaService.publish(order);
         log.info("Sent ORDER_ASSIGNED notification to driver {} at {}", driverId, destination);
     }
 
@@ -57,10 +78,11 @@ public class WebSocketService {
                 "ORDER_UPDATE",
                 order.getId(),
                 message,
-                order);
+                new SharedPayload(order));
 
         String destination = "/topic/customer/" + customerId + "/orders";
-        messagingTemplate.convertAndSend(destination, notification);
+        notificationCoalescer.send(List.of(destination), notification);
+        orderDeltaService.publish(order);
         log.info("Sent ORDER_UPDATE notification to customer {} at {}", customerId, destination);
     }
 
@@ -68,45 +90,105 @@ public class WebSocketService {
      * Broadcast order status change to all relevant parties
      */
     public void broadcastOrderStatusChange(ResOrderDTO order) {
+        broadcastOrderStatusChange(order, new SharedPayload(order));
+    }
+
+    /**
+     * Update customer and broadcast the status change; the order is
+     * serialized once for both notifications
+     */
+    public void notifyOrderChange(Long customerId, ResOrderDTO order, String message) {
+        SharedPayload data = new SharedPayload(order);
+        notificationCoalescer.send(List.of("/topic/customer/" + customerId + "/orders"),
+                new OrderNotification("ORDER_UPDATE", order.getId(), message, data));
+        log.info("Sent ORDER_UPDATE notification to customer {}", customerId);
+        broadcastOrderStatusChange(order, data);
+    }
+
+    private void broadcastOrderStatusChange(ResOrderDTO order, SharedPayload data) {
         OrderNotification notification = new OrderNotification(
                 "ORDER_STATUS_CHANGED",
                 order.getId(),
                 "Order status updated to: " + order.getOrderStatus(),
-                order);
+                data);
 
+        List<String> destinations = new ArrayList<>(3);
         // Notify customer
         if (order.getCustomer() != null) {
-            messagingTemplate.convertAndSend(
-                    "/topic/customer/" + order.getCustomer().getId() + "/orders",
-                    notification);
+            destinations.add("/topic/customer/" + order.getCustomer().getId() + "/orders");
         }
 
         // Notify restaurant
         if (order.getRestaurant() != null) {
-            messagingTemplate.convertAndSend(
-                    "/topic/restaurant/" + order.getRestaurant().getId() + "/orders",
-                    notification);
+            destinations.add("/topic/restaurant/" + order.getRestaurant().getId() + "/orders");
         }
 
         // Notify driver if assigned
         if (order.getDriver() != null) {
-            messagingTemplate.convertAndSend(
-                    "/topic/driver/" + order.getDriver().getId() + "/orders",
-                    notification);
+            destinations.add("/topic/driver/" + order.getDriver().getId() + "/orders");
         }
 
+        // Encoded once, same bytes to every destination (merged per destination
+        // with other notifications of the order in the coalescing window)
+        notificationCoalescer.send(destinations, notification);
+        orderDeltaService.publish(order);
         log.info("Broadcasted ORDER_STATUS_CHANGED for order {}", order.getId());
     }
 
+    /**
+     * Tell restaurant that the driver of an order is about to arrive for pickup
+     */
+    public void notifyRestaurantDriverApproaching(Long restaurantId, Long orderId, long distanceMeters) {
+        OrderNotification notification = new OrderNotification(
+                "DRIVER_APPROACHING",
+                orderId,
+                "Driver is " + distanceMeters + " m away, please have the order ready",
+                Map.of("distanceMeters", distanceMeters));
+
+        String destination = "/topic/restaurant/" + restaurantId + "/orders";
+        // Behind any status notification of the order still in its window
+        notificationCoalescer.send(List.of(destination), notification);
+        log.info("Sent DRIVER_APPROACHING for order {} to restaurant {}", orderId, restaurantId);
+    }
+
+    /**
+     * Tell customer that the driver is about to arrive with the order
+     */
+    public void notifyCustomerDriverApproaching(Long customerId, Long orderId, long distanceMeters) {
+        OrderNotification notification = new OrderNotification(
+                "DRIVER_APPROACHING",
+                orderId,
+                "Your driver is " + distanceMeters + " m away",
+                Map.of("distanceMeters", distanceMeters));
+
+        String destination = "/topic/customer/" + customerId + "/orders";
+        // Behind any status notification of the order still in its window
+        notificationCoalescer.send(List.of(destination), notification);
+        log.info("Sent DRIVER_APPROACHING for order {} to customer {}", orderId, customerId);
+    }
+
     /**
      * Broadcast driver location to customer
      */
     public void broadcastDriverLocation(Long customerId, DriverLocationUpdate locationUpdate) {
         String destination = "/topic/customer/" + customerId + "/driver-location";
-        messagingTemplate.convertAndSend(destination, locationUpdate);
+        notificationOutbox.send(destination, locationUpdate);
         log.debug("Sent driver location to customer {} at {}: {}, {}",
                 customerId, destination,
                 locationUpdate.getLatitude(),
                 locationUpdate.getLongitude());
     }
+
+    /**
+     * Push a compact live-tracking update to customer
+     */
+    public void broadcastDriverLocation(Long customerId, DriverLocationDelta delta) {
+        String destination = "/topic/customer/" + customerId + "/driver-location";
+        // Same frame on the order's location topic for SSE order streams
+        List<String> destinations = List.of(destination, "/topic/order/" + delta.getOrderId() + "/location");
+        notificationOutbox.sendToAll(destinations, delta);
+        compactFramePublisher.sendLocation(destinations, delta);
+        log.debug("Sent driver location delta {} of order {} to customer {}",
+                delta.getSeq(), delta.getOrderId(), customerId);
+    }
 }
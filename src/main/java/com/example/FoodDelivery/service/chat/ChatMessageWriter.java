@@ -0,0 +1,155 @@
+package com.example.FoodDelivery.service.chat;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind persistence of chat messages (chat_messages)
+ *
+ * Messages are queued in memory and inserted every chat.write-behind.flush-ms
+ * as JDBC batches of up to chat.write-behind.batch-size rows; chat_messages
+ * uses IDENTITY ids, which rules out Hibernate insert batching. When the
+ * queue (chat.write-behind.queue-capacity) is full the sending thread inserts
+ * its message itself. A failed batch is retried row by row so one bad row
+ * (e.g. an order deleted meanwhile) does not take the others with it. The
+ * queue is flushed on shutdown; messages queued on a node that dies are lost.
+ */
+@Service
+@Slf4j
+public class ChatMessageWriter {
+    private static final String INSERT_SQL = "INSERT INTO chat_messages"
+            + " (order_id, sender_id, recipient_id, message_content, sent_at, is_read)"
+            + " VALUES (?, ?, ?, ?, ?, ?)";
+    // Instants are stored as UTC, the way Hibernate writes them
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingChatMessage> queue;
+    private final int batchSize;
+
+    private final Counter persisted;
+    private final Counter failed;
+    private final Counter overflow;
+
+    public ChatMessageWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${chat.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.write-behind.batch-size:200}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+
+        this.persisted = Counter.builder("chat.messages.persisted")
+                .tag("result", "ok")
+                .register(meterRegistry);
+        this.failed = Counter.builder("chat.messages.persisted")
+                .tag("result", "failed")
+                .register(meterRegistry);
+        this.overflow = Counter.builder("chat.write-behind.overflow")
+                .description("Messages inserted by the sender because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("chat.write-behind.queue", queue, BlockingQueue::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue a message for the next batch
+     */
+    public void enqueue(PendingChatMessage message) {
+        if (!queue.offer(message)) {
+            overflow.increment();
+            insert(List.of(message));
+        }
+    }
+
+    /**
+     * Insert everything queued so far
+     */
+    @Scheduled(fixedDelayString = "${chat.write-behind.flush-ms:500}")
+    public synchronized void flush() {
+        List<PendingChatMessage> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            insert(batch);
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void insert(List<PendingChatMessage> batch) {
+        try {
+            // One transaction per batch, so a failed batch leaves no rows behind to duplicate
+            transactionTemplate.executeWithoutResult(
+                    status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), ChatMessageWriter::bind));
+            persisted.increment(batch.size());
+            log.debug("Persisted {} chat messages", batch.size());
+            return;
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                failed.increment();
+                log.error("Failed to persist chat message of order {}: {}", batch.get(0).getOrderId(),
+                        e.getMessage());
+                return;
+            }
+            log.warn("Chat batch of {} failed, retrying row by row: {}", batch.size(), e.getMessage());
+        }
+        for (PendingChatMessage message : batch) {
+            insert(List.of(message));
+        }
+    }
+
+    private static void bind(PreparedStatement ps, PendingChatMessage message) throws SQLException {
+        ps.setLong(1, message.getOrderId());
+        ps.setLong(2, message.getSenderId());
+        if (message.getRecipientId() != null) {
+            ps.setLong(3, message.getRecipientId());
+        } else {
+            ps.setNull(3, Types.BIGINT);
+        }
+        ps.setString(4, message.getContent());
+        ps.setTimestamp(5, Timestamp.from(message.getSentAt()), Calendar.getInstance(UTC));
+        ps.setBoolean(6, false);
+    }
+
+    /**
+     * Chat message waiting to be inserted
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PendingChatMessage {
+        private final Long orderId;
+        private final Long senderId;
+        private final Long recipientId;
+        private final String content;
+        private final Instant sentAt;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.FoodDelivery.service.chat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.domain.res.chat.ResChatHistoryDTO;
+import com.example.FoodDelivery.domain.res.websocket.ChatMessage;
+import com.example.FoodDelivery.repository.ChatMessageRepository;
+import com.example.FoodDelivery.repository.OrderRepository;
+import com.example.FoodDelivery.service.chat.ChatMessageWriter.PendingChatMessage;
+import com.example.FoodDelivery.util.error.IdInvalidException;
+import com.example.FoodDelivery.util.error.PermissionException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Order chat: who may write, typing throttle, persistence and history
+ *
+ * The participants of an order (customer, driver, restaurant owner) are
+ * cached for chat.participants.ttl-seconds instead of loading the order for
+ * every message. A sender missing from the cached set reloads it once, which
+ * picks up a driver assigned after the entry was cached.
+ *
+ * Typing indicators are forwarded at most once per
+ * chat.typing.min-interval-ms per sender and order. Messages are persisted
+ * write-behind (ChatMessageWriter) and show up in the history within
+ * chat.write-behind.flush-ms.
+ */
+@Service
+@Slf4j
+public class ChatService {
+    public static final String SENDER_CUSTOMER = "CUSTOMER";
+    public static final String SENDER_DRIVER = "DRIVER";
+    public static final String SENDER_RESTAURANT = "RESTAURANT";
+
+    private final OrderRepository orderRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageWriter chatMessageWriter;
+    private final Cache<Long, Participants> participantsCache;
+    // "{orderId}:{senderId}" -> last forwarded typing indicator (epoch ms)
+    private final Cache<String, Long> typingSentAt;
+    private final long typingIntervalMs;
+    private final int maxPageSize;
+
+    private final Counter rejected;
+    private final Counter typingThrottled;
+
+    public ChatService(OrderRepository orderRepository, ChatMessageRepository chatMessageRepository,
+            ChatMessageWriter chatMessageWriter, MeterRegistry meterRegistry,
+            @Value("${chat.participants.ttl-seconds:60}") long participantsTtlSeconds,
+            @Value("${chat.participants.max-size:50000}") long participantsMaxSize,
+            @Value("${chat.typing.min-interval-ms:1000}") long typingIntervalMs,
+            @Value("${chat.history.max-page-size:100}") int maxPageSize) {
+        this.orderRepository = orderRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatMessageWriter = chatMessageWriter;
+        this.typingIntervalMs = typingIntervalMs;
+        this.maxPageSize = maxPageSize;
+        this.participantsCache = Caffeine.newBuilder()
+                .maximumSize(participantsMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(participantsTtlSeconds))
+                .recordStats()
+                .build();
+        this.typingSentAt = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(Math.max(1, typingIntervalMs)))
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, participantsCache, "chat.participants");
+        this.rejected = Counter.builder("chat.messages.rejected")
+                .description("Chat messages from senders who are not participants of the order")
+                .register(meterRegistry);
+        this.typingThrottled = Counter.builder("chat.typing.throttled")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Participants of an order if the sender is one of them, null otherwise
+     * (also when the order does not exist)
+     */
+    public Participants authorize(Long orderId, Long senderId) {
+        Participants participants = orderId != null && senderId != null ? participants(orderId, senderId) : null;
+        if (participants == null || !participants.contains(senderId)) {
+            rejected.increment();
+            return null;
+        }
+        return participants;
+    }
+
+    /**
+     * Whether a user is the customer, driver or restaurant owner of an order
+     * (also guards order snapshots and streams)
+     */
+    public boolean isParticipant(Long orderId, Long userId) {
+        if (orderId == null || userId == null) {
+            return false;
+        }
+        Participants participants = participants(orderId, userId);
+        return participants != null && participants.contains(userId);
+    }
+
+    /**
+     * Whether a typing indicator of this sender should be forwarded now
+     */
+    public boolean allowTyping(Long orderId, Long senderId) {
+        long now = System.currentTimeMillis();
+        boolean[] allowed = { false };
+        typingSentAt.asMap().compute(orderId + ":" + senderId, (key, last) -> {
+            if (last == null || now - last >= typingIntervalMs) {
+                allowed[0] = true;
+                return now;
+            }
+            return last;
+        });
+        if (!allowed[0]) {
+            typingThrottled.increment();
+        }
+        return allowed[0];
+    }
+
+    /**
+     * Queue a message for persistence; the other party (customer for drivers
+     * and the restaurant, driver for the customer) is stored as recipient
+     */
+    public void save(Participants participants, ChatMessage message) {
+        Long senderId = message.getSenderId();
+        Long recipientId = Objects.equals(senderId, participants.getCustomerId())
+                ? participants.getDriverId()
+                : participants.getCustomerId();
+        chatMessageWriter.enqueue(new PendingChatMessage(message.getOrderId(), senderId, recipientId,
+                message.getMessage(), message.getTimestamp() != null ? message.getTimestamp() : Instant.now()));
+    }
+
+    /**
+     * One page of an order's chat, newest first; only for participants of the
+     * order
+     *
+     * @param userId Id of the requesting user
+     * @param before Id of the oldest message already loaded (null for the
+     *               latest page)
+     */
+    public ResChatHistoryDTO getHistory(Long orderId, Long userId, Long before, int limit)
+            throws IdInvalidException, PermissionException {
+        Participants participants = participants(orderId, userId);
+        if (participants == null) {
+            throw new IdInvalidException("Order not found with id: " + orderId);
+        }
+        if (!participants.contains(userId)) {
+            throw new PermissionException("You are not a participant of this order's chat");
+        }
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        List<com.example.FoodDelivery.domain.ChatMessage> page = chatMessageRepository
+                .findByOrderIdAndIdLessThanOrderByIdDesc(orderId, before != null ? before : Long.MAX_VALUE,
+                        PageRequest.of(0, pageSize));
+
+        List<ChatMessage> messages = new ArrayList<>(page.size());
+        for (com.example.FoodDelivery.domain.ChatMessage stored : page) {
+            Long senderId = stored.getSender() != null ? stored.getSender().getId() : null;
+            ChatMessage message = new ChatMessage();
+            message.setId(stored.getId());
+            message.setOrderId(orderId);
+            message.setSenderId(senderId);
+            message.setSenderName(stored.getSender() != null ? stored.getSender().getName() : null);
+            message.setSenderType(participants.typeOf(senderId));
+            message.setMessage(stored.getMessageContent());
+            message.setTimestamp(stored.getSentAt());
+            message.setMessageType("TEXT");
+            messages.add(message);
+        }
+        Long nextCursor = page.size() == pageSize ? page.get(page.size() - 1).getId() : null;
+        return new ResChatHistoryDTO(orderId, messages, nextCursor);
+    }
+
+    /**
+     * Participants of an order, reloaded once if userId is not among the
+     * cached ones (possibly a driver assigned since the entry was cached)
+     */
+    private Participants participants(Long orderId, Long userId) {
+        Participants participants = participants(orderId);
+        if (participants != null && !participants.contains(userId)) {
+            participantsCache.invalidate(orderId);
+            participants = participants(orderId);
+        }
+        return participants;
+    }
+
+    private Participants participants(Long orderId) {
+        return participantsCache.get(orderId, id -> {
+            List<Object[]> rows = orderRepository.findParticipantIds(id);
+            if (rows.isEmpty()) {
+                return null;
+            }
+            Object[] row = rows.get(0);
+            return new Participants((Long) row[0], (Long) row[1], (Long) row[2]);
+        });
+    }
+
+    /**
+     * User ids allowed to chat on an order
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Participants {
+        private final Long customerId;
+        private final Long driverId;
+        private final Long restaurantOwnerId;
+
+        public boolean contains(Long userId) {
+            return userId != null && (userId.equals(customerId) || userId.equals(driverId)
+                    || userId.equals(restaurantOwnerId));
+        }
+
+        /**
+         * CUSTOMER, DRIVER or RESTAURANT; null for a user no longer on the order
+         */
+        public String typeOf(Long userId) {
+            if (userId == null) {
+                return null;
+            }
+            if (userId.equals(customerId)) {
+                return SENDER_CUSTOMER;
+            }
+            if (userId.equals(driverId)) {
+                return SENDER_DRIVER;
+            }
+            return userId.equals(restaurantOwnerId) ? SENDER_RESTAURANT : null;
+        }
+    }
+}
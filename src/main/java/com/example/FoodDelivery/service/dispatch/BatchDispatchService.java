@@ -0,0 +1,385 @@
+package com.example.FoodDelivery.service.dispatch;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.domain.Order;
+import com.example.FoodDelivery.domain.Restaurant;
+import com.example.FoodDelivery.repository.OrderRepository;
+import com.example.FoodDelivery.service.OrderService;
+import com.example.FoodDelivery.service.RedisDriverEligibilityService.DriverEligibility;
+import com.example.FoodDelivery.service.RedisGeoService;
+import com.example.FoodDelivery.service.RedisRejectionService;
+import com.example.FoodDelivery.service.distance.DistanceProvider;
+import com.example.FoodDelivery.service.distance.DistanceProviderSelector;
+import com.example.FoodDelivery.service.distance.DistanceUseCase;
+import com.example.FoodDelivery.service.websocket.PresenceService;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Batch dispatch (dispatch.batch.enabled=true)
+ *
+ * Instead of giving each order the nearest driver at the moment the restaurant
+ * accepts it, orders waiting for a driver are collected for a short window and
+ * matched against all nearby eligible drivers at once:
+ * 1. Waiting orders (PREPARING / READY without driver), oldest first
+ * 2. Redis GEO candidates per restaurant, minus drivers holding an offer and
+ * drivers who rejected that order
+ * 3. Business rules of all candidates from the eligibility registry
+ * 4. Pickup distance matrix from the dispatch distance provider
+ * 5. Minimum total pickup distance assignment (Hungarian algorithm); drivers
+ * without a live WebSocket connection cost dispatch.batch.disconnected-penalty-km
+ * extra, so connected drivers win close calls
+ *
+ * Only one node runs a batch at a time (Redis lock "dispatch:batch:lock").
+ * Batches run on their own "dispatch-batch" thread, never on the shared
+ * scheduler thread, and the per-order distance matrix calls run in parallel on
+ * the dispatch executor (dispatch.batch.matrix-parallelism threads, bounded by
+ * dispatch.batch.matrix-timeout-ms); a tick is skipped while the previous batch
+ * is still running.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "dispatch.batch.enabled", havingValue = "true")
+public class BatchDispatchService {
+    private static final String LOCK_KEY = "dispatch:batch:lock";
+    private static final List<String> WAITING_STATUSES = List.of("PREPARING", "READY");
+
+    private final OrderRepository orderRepository;
+    private final DriverEligibilityService driverEligibilityService;
+    private final OrderService orderService;
+    private final RedisGeoService redisGeoService;
+    private final RedisRejectionService redisRejectionService;
+    private final DistanceProviderSelector distanceProviderSelector;
+    private final DispatchMetrics dispatchMetrics;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final PresenceService presenceService;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Value("${dispatch.batch.window-ms:3000}")
+    private long windowMs;
+
+    @Value("${dispatch.batch.max-orders:200}")
+    private int maxOrders;
+
+    @Value("${dispatch.batch.drivers-per-order:50}")
+    private int driversPerOrder;
+
+    @Value("${dispatch.batch.disconnected-penalty-km:5}")
+    private double disconnectedPenaltyKm;
+
+    @Value("${dispatch.batch.matrix-timeout-ms:10000}")
+    private long matrixTimeoutMs;
+
+    private final ThreadPoolExecutor batchRunner;
+    private final ExecutorService dispatchExecutor;
+
+    public BatchDispatchService(OrderRepository orderRepository,
+            DriverEligibilityService driverEligibilityService,
+            OrderService orderService,
+            RedisGeoService redisGeoService,
+            RedisRejectionService redisRejectionService,
+            DistanceProviderSelector distanceProviderSelector,
+            DispatchMetrics dispatchMetrics,
+            RedisTemplate<String, Object> redisTemplate,
+            PresenceService presenceService,
+            @Value("${dispatch.batch.matrix-parallelism:4}") int matrixParallelism) {
+        this.orderRepository = orderRepository;
+        this.driverEligibilityService = driverEligibilityService;
+        this.orderService = orderService;
+        this.redisGeoService = redisGeoService;
+        this.redisRejectionService = redisRejectionService;
+        this.distanceProviderSelector = distanceProviderSelector;
+        this.dispatchMetrics = dispatchMetrics;
+        this.redisTemplate = redisTemplate;
+        this.presenceService = presenceService;
+
+        // One batch at a time, no queue: a tick arriving while a batch runs is dropped
+        this.batchRunner = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dispatch-batch");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.dispatchExecutor = Executors.newFixedThreadPool(Math.max(1, matrixParallelism), runnable -> {
+            Thread thread = new Thread(runnable, "dispatch-matrix-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdownExecutors() {
+        batchRunner.shutdownNow();
+        dispatchExecutor.shutdownNow();
+    }
+
+    /**
+     * Start one batch per window (off the scheduler thread)
+     */
+    @Scheduled(fixedDelayString = "${dispatch.batch.window-ms:3000}")
+    public void dispatchWaitingOrders() {
+        if (batchRunner.getActiveCount() > 0) {
+            log.debug("Previous dispatch batch still running, skipping this window");
+            return;
+        }
+        batchRunner.execute(this::runLocked);
+    }
+
+    private void runLocked() {
+        if (!acquireLock()) {
+            return;
+        }
+        try {
+            runBatch();
+        } catch (Exception e) {
+            log.error("❌ Batch dispatch failed: {}", e.getMessage(), e);
+        } finally {
+            releaseLock();
+        }
+    }
+
+    private void runBatch() throws InterruptedException {
+        List<Order> orders = orderRepository.findByOrderStatusInAndDriverIsNullOrderByPreparingAtAsc(WAITING_STATUSES);
+        if (orders.isEmpty()) {
+            return;
+        }
+        if (orders.size() > maxOrders) {
+            orders = orders.subList(0, maxOrders);
+        }
+        long start = System.nanoTime();
+
+        // STEP 1: Redis GEO candidates per order, with live positions
+        Set<Long> busyDriverIds = new HashSet<>(orderRepository.findDriverIdsByOrderStatusIn(WAITING_STATUSES));
+        double radiusKm = orderService.getDriverSearchRadiusKm().doubleValue();
+        Map<Long, Point> driverPositions = new LinkedHashMap<>();
+        List<Set<Long>> nearbyByOrder = new ArrayList<>(orders.size());
+
+        for (Order order : orders) {
+            Set<Long> nearby = new LinkedHashSet<>();
+            nearbyByOrder.add(nearby);
+            Restaurant restaurant = order.getRestaurant();
+            if (restaurant == null || restaurant.getLatitude() == null || restaurant.getLongitude() == null) {
+                continue;
+            }
+
+            GeoResults<GeoLocation<Object>> geoResults = redisGeoService.findNearbyDrivers(
+                    restaurant.getLatitude(), restaurant.getLongitude(), radiusKm, driversPerOrder);
+            if (geoResults == null) {
+                continue;
+            }
+            List<Long> rejectedDriverIds = redisRejectionService.getRejectedDriverIds(order.getId());
+            for (GeoResult<GeoLocation<Object>> result : geoResults.getContent()) {
+                Long driverId = parseDriverId(result.getContent().getName());
+                if (driverId == null || busyDriverIds.contains(driverId) || rejectedDriverIds.contains(driverId)) {
+                    continue;
+                }
+                nearby.add(driverId);
+                driverPositions.putIfAbsent(driverId, result.getContent().getPoint());
+            }
+        }
+        if (driverPositions.isEmpty()) {
+            log.debug("No candidate drivers for {} waiting orders", orders.size());
+            return;
+        }
+
+        // STEP 2: business rules for all candidates in one registry read (COD
+        // limit is checked per order below)
+        Map<Long, DriverEligibility> eligible = new HashMap<>();
+        driverEligibilityService.loadEligibility(new ArrayList<>(driverPositions.keySet()))
+                .forEach((driverId, record) -> {
+                    if (record.isEligibleFor(null)) {
+                        eligible.put(driverId, record);
+                    }
+                });
+        List<Long> driverIds = new ArrayList<>(eligible.keySet());
+        if (driverIds.isEmpty()) {
+            log.debug("No eligible drivers for {} waiting orders", orders.size());
+            return;
+        }
+        Map<Long, Integer> columnOf = new HashMap<>();
+        for (int c = 0; c < driverIds.size(); c++) {
+            columnOf.put(driverIds.get(c), c);
+        }
+
+        // STEP 3: pickup distance matrix (orders x drivers)
+        double[][] cost = buildCostMatrix(orders, nearbyByOrder, eligible, driverPositions, driverIds.size(),
+                columnOf);
+
+        // STEP 4: global assignment, and greedy on the same matrix for comparison
+        // (both solved with the presence penalty, reported in raw km per
+        // assigned order since greedy may leave orders unassigned)
+        double[][] weighted = penalizeDisconnected(cost, driverIds);
+        int[] assignment = HungarianAssignment.solve(weighted);
+        int[] greedy = HungarianAssignment.greedy(weighted);
+        int assignedCount = (int) Arrays.stream(assignment).filter(c -> c >= 0).count();
+        int greedyAssignedCount = (int) Arrays.stream(greedy).filter(c -> c >= 0).count();
+        double kmPerOrder = HungarianAssignment.averageCost(cost, assignment);
+        double greedyKmPerOrder = HungarianAssignment.averageCost(cost, greedy);
+        dispatchMetrics.recordBatch(orders.size(), driverIds.size(), assignedCount, kmPerOrder, greedyKmPerOrder,
+                Duration.ofNanos(System.nanoTime() - start));
+
+        log.info("📦 Batch dispatch: {} orders, {} drivers, {} assigned ({} km per order), "
+                + "greedy {} assigned ({} km per order)",
+                orders.size(), driverIds.size(), assignedCount, String.format("%.2f", kmPerOrder),
+                greedyAssignedCount, String.format("%.2f", greedyKmPerOrder));
+
+        // STEP 5: apply (each assignment in its own transaction)
+        for (int r = 0; r < orders.size(); r++) {
+            if (assignment[r] < 0) {
+                continue;
+            }
+            Long orderId = orders.get(r).getId();
+            Long driverId = driverIds.get(assignment[r]);
+            try {
+                orderService.assignDriverToOrder(orderId, driverId,
+                        BigDecimal.valueOf(cost[r][assignment[r]]).setScale(3, RoundingMode.HALF_UP));
+            } catch (Exception e) {
+                log.warn("Failed to assign driver {} to order {}: {}", driverId, orderId, e.getMessage());
+            }
+        }
+    }
+
+    private double[][] penalizeDisconnected(double[][] cost, List<Long> driverIds) {
+        if (disconnectedPenaltyKm <= 0) {
+            return cost;
+        }
+        Set<Long> connected = presenceService.connectedDrivers(driverIds);
+        double[][] weighted = new double[cost.length][];
+        for (int r = 0; r < cost.length; r++) {
+            weighted[r] = cost[r].clone();
+            for (int c = 0; c < driverIds.size(); c++) {
+                if (weighted[r][c] < HungarianAssignment.INFEASIBLE && !connected.contains(driverIds.get(c))) {
+                    weighted[r][c] += disconnectedPenaltyKm;
+                }
+            }
+        }
+        return weighted;
+    }
+
+    private double[][] buildCostMatrix(List<Order> orders, List<Set<Long>> nearbyByOrder,
+            Map<Long, DriverEligibility> eligible, Map<Long, Point> driverPositions, int driverCount,
+            Map<Long, Integer> columnOf) throws InterruptedException {
+        DistanceProvider distanceProvider = distanceProviderSelector.forUseCase(DistanceUseCase.DISPATCH);
+        double[][] cost = new double[orders.size()][driverCount];
+
+        // One distance call per order with candidates, all in parallel on the dispatch executor
+        List<Integer> rows = new ArrayList<>();
+        List<List<Long>> rowCandidates = new ArrayList<>();
+        List<Callable<List<BigDecimal>>> tasks = new ArrayList<>();
+        for (int r = 0; r < orders.size(); r++) {
+            Arrays.fill(cost[r], HungarianAssignment.INFEASIBLE);
+            Order order = orders.get(r);
+            BigDecimal codAmount = "COD".equals(order.getPaymentMethod()) ? order.getTotalAmount() : null;
+
+            List<Long> candidates = new ArrayList<>();
+            List<Point> origins = new ArrayList<>();
+            for (Long driverId : nearbyByOrder.get(r)) {
+                DriverEligibility record = eligible.get(driverId);
+                if (record == null || !record.isEligibleFor(codAmount)) {
+                    continue;
+                }
+                candidates.add(driverId);
+                origins.add(driverPositions.get(driverId));
+            }
+            if (candidates.isEmpty()) {
+                continue;
+            }
+
+            Restaurant restaurant = order.getRestaurant();
+            BigDecimal latitude = restaurant.getLatitude();
+            BigDecimal longitude = restaurant.getLongitude();
+            rows.add(r);
+            rowCandidates.add(candidates);
+            tasks.add(() -> distanceProvider.getDrivingDistancesTo(origins, latitude, longitude));
+        }
+        if (tasks.isEmpty()) {
+            return cost;
+        }
+
+        // Rows that fail or time out stay INFEASIBLE and wait for the next batch
+        List<Future<List<BigDecimal>>> futures = dispatchExecutor.invokeAll(tasks, matrixTimeoutMs,
+                TimeUnit.MILLISECONDS);
+        for (int i = 0; i < futures.size(); i++) {
+            int r = rows.get(i);
+            List<Long> candidates = rowCandidates.get(i);
+            List<BigDecimal> distances;
+            try {
+                distances = futures.get(i).get();
+            } catch (Exception e) {
+                log.warn("Distance matrix for order {} failed: {}", orders.get(r).getId(), e.getMessage());
+                continue;
+            }
+            for (int c = 0; c < candidates.size(); c++) {
+                BigDecimal distance = distances.get(c);
+                if (distance != null) {
+                    cost[r][columnOf.get(candidates.get(c))] = distance.doubleValue();
+                }
+            }
+        }
+        return cost;
+    }
+
+    private Long parseDriverId(Object member) {
+        try {
+            return Long.parseLong(member.toString());
+        } catch (Exception e) {
+            log.error("Failed to parse driver ID: {}", member);
+            return null;
+        }
+    }
+
+    private boolean acquireLock() {
+        try {
+            Duration ttl = Duration.ofMillis(Math.max(windowMs * 10, 30_000));
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, instanceId, ttl));
+        } catch (Exception e) {
+            log.warn("Failed to acquire batch dispatch lock: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void releaseLock() {
+        try {
+            if (instanceId.equals(redisTemplate.opsForValue().get(LOCK_KEY))) {
+                redisTemplate.delete(LOCK_KEY);
+            }
+        } catch (Exception e) {
+            log.debug("Failed to release batch dispatch lock: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.FoodDelivery.service.dispatch;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Dispatch quality metrics, tagged by mode (greedy | batch):
+ * dispatch.pickup.distance - driver to restaurant distance per assignment (km)
+ * dispatch.time.to.assign - time from PREPARING to driver assignment
+ * dispatch.batch.cost - pickup distance per assigned order of one batch,
+ * solved by the batch solver (solver=hungarian) and by greedy on the same
+ * matrix (solver=greedy); per order because greedy may assign fewer orders,
+ * which would make its total look cheaper
+ */
+@Service
+public class DispatchMetrics {
+    public static final String MODE_GREEDY = "greedy";
+    public static final String MODE_BATCH = "batch";
+
+    private final MeterRegistry meterRegistry;
+
+    public DispatchMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void recordAssignment(String mode, BigDecimal pickupDistanceKm, Instant preparingAt) {
+        if (pickupDistanceKm != null) {
+            DistributionSummary.builder("dispatch.pickup.distance")
+                    .tag("mode", mode)
+                    .baseUnit("km")
+                    .description("Driver to restaurant distance per assignment")
+                    .register(meterRegistry)
+                    .record(pickupDistanceKm.doubleValue());
+        }
+        if (preparingAt != null) {
+            Timer.builder("dispatch.time.to.assign")
+                    .tag("mode", mode)
+                    .description("Time from PREPARING to driver assignment")
+                    .register(meterRegistry)
+                    .record(Duration.between(preparingAt, Instant.now()));
+        }
+    }
+
+    /**
+     * @param hungarianKmPerOrder Average pickup km of the batch assignment,
+     *                            NaN when nothing was assigned (not recorded)
+     * @param greedyKmPerOrder    Same for greedy on the same matrix
+     */
+    public void recordBatch(int orders, int drivers, int assigned, double hungarianKmPerOrder,
+            double greedyKmPerOrder, Duration solveTime) {
+        DistributionSummary.builder("dispatch.batch.size")
+                .description("Orders considered per batch")
+                .register(meterRegistry)
+                .record(orders);
+        DistributionSummary.builder("dispatch.batch.drivers")
+                .description("Candidate drivers per batch")
+                .register(meterRegistry)
+                .record(drivers);
+        DistributionSummary.builder("dispatch.batch.assigned")
+                .description("Orders assigned per batch")
+                .register(meterRegistry)
+                .record(assigned);
+        recordBatchCost("hungarian", hungarianKmPerOrder);
+        recordBatchCost(MODE_GREEDY, greedyKmPerOrder);
+        Timer.builder("dispatch.batch.solve")
+                .description("Cost matrix + assignment time per batch")
+                .register(meterRegistry)
+                .record(solveTime);
+    }
+
+    private void recordBatchCost(String solver, double kmPerOrder) {
+        if (Double.isNaN(kmPerOrder)) {
+            return;
+        }
+        DistributionSummary.builder("dispatch.batch.cost")
+                .tag("solver", solver)
+                .baseUnit("km")
+                .description("Pickup distance per assigned order of one batch")
+                .register(meterRegistry)
+                .record(kmPerOrder);
+    }
+}
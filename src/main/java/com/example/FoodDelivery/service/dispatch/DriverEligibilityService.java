@@ -0,0 +1,138 @@
+package com.example.FoodDelivery.service.dispatch;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.repository.DriverProfileRepository;
+import com.example.FoodDelivery.service.RedisDriverEligibilityService;
+import com.example.FoodDelivery.service.RedisDriverEligibilityService.DriverEligibility;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Business rule check for dispatch candidates (status, wallet, COD limit)
+ * Reads the Redis eligibility registry in one pipelined round trip; drivers
+ * missing from it (or all of them when Redis is down) are checked with a
+ * compact SQL projection, and the registry is warmed with the result.
+ * The whole registry is reloaded from SQL on startup and every
+ * dispatch.eligibility.reconcile-ms, which also refreshes the record TTLs.
+ */
+@Service
+@Slf4j
+public class DriverEligibilityService {
+    private final RedisDriverEligibilityService redisDriverEligibilityService;
+    private final DriverProfileRepository driverProfileRepository;
+    private final Counter registryLookups;
+    private final Counter sqlLookups;
+
+    public DriverEligibilityService(RedisDriverEligibilityService redisDriverEligibilityService,
+            DriverProfileRepository driverProfileRepository,
+            MeterRegistry meterRegistry) {
+        this.redisDriverEligibilityService = redisDriverEligibilityService;
+        this.driverProfileRepository = driverProfileRepository;
+        this.registryLookups = Counter.builder("dispatch.eligibility.lookups")
+                .tag("source", "redis")
+                .description("Driver eligibility records answered by the Redis registry")
+                .register(meterRegistry);
+        this.sqlLookups = Counter.builder("dispatch.eligibility.lookups")
+                .tag("source", "sql")
+                .description("Driver eligibility records loaded from SQL")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Load every driver into the registry on startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildRegistry() {
+        int loaded = reloadFromSql();
+        if (loaded >= 0) {
+            log.info("✅ Loaded {} drivers into the eligibility registry", loaded);
+        }
+    }
+
+    /**
+     * Periodically overwrite the registry with SQL, repairing records whose
+     * after-commit write was lost
+     */
+    @Scheduled(fixedDelayString = "${dispatch.eligibility.reconcile-ms:300000}",
+            initialDelayString = "${dispatch.eligibility.reconcile-ms:300000}")
+    public void reconcileRegistry() {
+        int loaded = reloadFromSql();
+        if (loaded >= 0) {
+            log.debug("Reconciled {} drivers in the eligibility registry", loaded);
+        }
+    }
+
+    private int reloadFromSql() {
+        try {
+            Map<Long, DriverEligibility> records = toRecords(driverProfileRepository.findAllEligibilityRows());
+            redisDriverEligibilityService.putAll(records);
+            return records.size();
+        } catch (Exception e) {
+            log.error("❌ Failed to rebuild driver eligibility registry: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Drivers that pass the business rules, in input order
+     *
+     * @param codAmount Order total for COD orders, null for online payment
+     */
+    public List<Long> filterEligible(List<Long> driverIds, BigDecimal codAmount) {
+        Map<Long, DriverEligibility> records = loadEligibility(driverIds);
+        return driverIds.stream()
+                .filter(id -> records.get(id) != null && records.get(id).isEligibleFor(codAmount))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Eligibility records of many drivers (registry first, SQL for misses)
+     */
+    public Map<Long, DriverEligibility> loadEligibility(List<Long> driverIds) {
+        Map<Long, DriverEligibility> records = redisDriverEligibilityService.getEligibility(driverIds);
+        boolean registryAvailable = records != null;
+        if (!registryAvailable) {
+            records = new HashMap<>();
+        }
+        registryLookups.increment(records.size());
+
+        List<Long> missing = new ArrayList<>();
+        for (Long driverId : driverIds) {
+            if (!records.containsKey(driverId)) {
+                missing.add(driverId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Long, DriverEligibility> fromSql = toRecords(
+                    driverProfileRepository.findEligibilityRowsByUserIds(missing));
+            sqlLookups.increment(missing.size());
+            records.putAll(fromSql);
+            if (registryAvailable) {
+                redisDriverEligibilityService.putAll(fromSql);
+            }
+        }
+        return records;
+    }
+
+    private Map<Long, DriverEligibility> toRecords(List<Object[]> rows) {
+        Map<Long, DriverEligibility> records = new HashMap<>();
+        for (Object[] row : rows) {
+            records.put((Long) row[0], DriverEligibility.of(
+                    (String) row[1], (BigDecimal) row[2], (BigDecimal) row[4], (String) row[3]));
+        }
+        return records;
+    }
+}
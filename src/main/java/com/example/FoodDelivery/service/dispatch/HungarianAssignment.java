@@ -0,0 +1,176 @@
+package com.example.FoodDelivery.service.dispatch;
+
+import java.util.Arrays;
+
+/**
+ * Minimum-cost assignment (Hungarian algorithm with potentials, O(n^2 m))
+ *
+ * Rows are orders, columns are drivers. Cells at or above INFEASIBLE mean the
+ * pair is not allowed (driver out of range, not eligible, already rejected)
+ * and are never returned as a match.
+ */
+public final class HungarianAssignment {
+    public static final double INFEASIBLE = 1e9;
+
+    private HungarianAssignment() {
+    }
+
+    /**
+     * Solve the assignment for a rows x cols cost matrix
+     *
+     * @return For each row the assigned column, or -1 when the row stays
+     *         unassigned
+     */
+    public static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        int cols = rows == 0 ? 0 : cost[0].length;
+        int[] result = new int[rows];
+        Arrays.fill(result, -1);
+        if (rows == 0 || cols == 0) {
+            return result;
+        }
+
+        // The algorithm needs rows <= cols; solve the transposed matrix otherwise
+        if (rows > cols) {
+            int[] transposed = solveRowsNotAboveCols(transpose(cost), cols, rows);
+            for (int c = 0; c < cols; c++) {
+                if (transposed[c] >= 0) {
+                    result[transposed[c]] = c;
+                }
+            }
+        } else {
+            result = solveRowsNotAboveCols(cost, rows, cols);
+        }
+
+        for (int r = 0; r < rows; r++) {
+            if (result[r] >= 0 && cost[r][result[r]] >= INFEASIBLE) {
+                result[r] = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Total cost of an assignment (feasible matches only)
+     */
+    public static double totalCost(double[][] cost, int[] assignment) {
+        double total = 0;
+        for (int r = 0; r < assignment.length; r++) {
+            if (assignment[r] >= 0) {
+                total += cost[r][assignment[r]];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Cost per matched row, NaN when nothing is matched
+     * Comparable between two assignments of the same matrix even when they
+     * match a different number of rows (greedy can leave rows unmatched that
+     * the optimal assignment serves)
+     */
+    public static double averageCost(double[][] cost, int[] assignment) {
+        int matched = 0;
+        for (int column : assignment) {
+            if (column >= 0) {
+                matched++;
+            }
+        }
+        return matched == 0 ? Double.NaN : totalCost(cost, assignment) / matched;
+    }
+
+    private static int[] solveRowsNotAboveCols(double[][] cost, int n, int m) {
+        // 1-indexed arrays; index 0 is the virtual start column
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] rowOfCol = new int[m + 1];
+        int[] way = new int[m + 1];
+
+        for (int i = 1; i <= n; i++) {
+            rowOfCol[0] = i;
+            int col0 = 0;
+            double[] minv = new double[m + 1];
+            boolean[] used = new boolean[m + 1];
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+
+            do {
+                used[col0] = true;
+                int row0 = rowOfCol[col0];
+                double delta = Double.POSITIVE_INFINITY;
+                int col1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (used[j]) {
+                        continue;
+                    }
+                    double reduced = cost[row0 - 1][j - 1] - u[row0] - v[j];
+                    if (reduced < minv[j]) {
+                        minv[j] = reduced;
+                        way[j] = col0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        col1 = j;
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[rowOfCol[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                col0 = col1;
+            } while (rowOfCol[col0] != 0);
+
+            do {
+                int col1 = way[col0];
+                rowOfCol[col0] = rowOfCol[col1];
+                col0 = col1;
+            } while (col0 != 0);
+        }
+
+        int[] assignment = new int[n];
+        Arrays.fill(assignment, -1);
+        for (int j = 1; j <= m; j++) {
+            if (rowOfCol[j] != 0) {
+                assignment[rowOfCol[j] - 1] = j - 1;
+            }
+        }
+        return assignment;
+    }
+
+    /**
+     * Greedy baseline on the same matrix: rows in order, each takes its
+     * cheapest free column (what per-order dispatch does)
+     */
+    public static int[] greedy(double[][] cost) {
+        int rows = cost.length;
+        int cols = rows == 0 ? 0 : cost[0].length;
+        int[] result = new int[rows];
+        boolean[] taken = new boolean[cols];
+        for (int r = 0; r < rows; r++) {
+            int best = -1;
+            for (int c = 0; c < cols; c++) {
+                if (!taken[c] && cost[r][c] < INFEASIBLE && (best < 0 || cost[r][c] < cost[r][best])) {
+                    best = c;
+                }
+            }
+            result[r] = best;
+            if (best >= 0) {
+                taken[best] = true;
+            }
+        }
+        return result;
+    }
+
+    private static double[][] transpose(double[][] cost) {
+        double[][] transposed = new double[cost[0].length][cost.length];
+        for (int r = 0; r < cost.length; r++) {
+            for (int c = 0; c < cost[0].length; c++) {
+                transposed[c][r] = cost[r][c];
+            }
+        }
+        return transposed;
+    }
+}
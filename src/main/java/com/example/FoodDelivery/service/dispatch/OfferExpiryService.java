@@ -0,0 +1,51 @@
+package com.example.FoodDelivery.service.dispatch;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.service.OrderService;
+import com.example.FoodDelivery.service.RedisOfferDeadlineService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls the offer deadline queue and auto-rejects offers the driver did not
+ * answer in time, so the order is re-offered right away instead of waiting for
+ * OrderCleanupService to cancel it
+ */
+@Service
+@Slf4j
+public class OfferExpiryService {
+    private final RedisOfferDeadlineService redisOfferDeadlineService;
+    private final OrderService orderService;
+
+    @Value("${dispatch.offer.poll-batch-size:100}")
+    private int pollBatchSize;
+
+    public OfferExpiryService(RedisOfferDeadlineService redisOfferDeadlineService, OrderService orderService) {
+        this.redisOfferDeadlineService = redisOfferDeadlineService;
+        this.orderService = orderService;
+    }
+
+    @Scheduled(fixedDelayString = "${dispatch.offer.poll-interval-ms:1000}")
+    public void expireOverdueOffers() {
+        List<Long[]> expired;
+        try {
+            expired = redisOfferDeadlineService.claimExpiredOffers(pollBatchSize);
+        } catch (Exception e) {
+            log.warn("Failed to poll offer deadlines: {}", e.getMessage());
+            return;
+        }
+
+        for (Long[] offer : expired) {
+            try {
+                orderService.expireDriverOffer(offer[0], offer[1]);
+            } catch (Exception e) {
+                log.error("Failed to expire offer of order {} to driver {}: {}", offer[0], offer[1], e.getMessage());
+            }
+        }
+    }
+}
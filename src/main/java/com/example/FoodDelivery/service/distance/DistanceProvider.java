@@ -0,0 +1,46 @@
+package com.example.FoodDelivery.service.distance;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.geo.Point;
+
+/**
+ * Source of driving distance / duration between two points
+ * Implementations: Mapbox (remote, exact), haversine estimator (in-process),
+ * embedded road graph engine (in-process, contraction hierarchies)
+ */
+public interface DistanceProvider {
+
+    /**
+     * Provider name used in distance.provider.* configuration
+     */
+    String getName();
+
+    /**
+     * @return Driving distance in kilometers, or null if it cannot be calculated
+     */
+    BigDecimal getDrivingDistance(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat, BigDecimal toLng);
+
+    /**
+     * @return Driving duration in minutes, or null if it cannot be calculated
+     */
+    BigDecimal getDrivingDuration(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat, BigDecimal toLng);
+
+    /**
+     * Driving distances from many origins to one destination
+     * 
+     * @param origins Origin points as (longitude, latitude)
+     * @return Distances in kilometers, same order as origins; null entries for
+     *         origins that could not be calculated
+     */
+    default List<BigDecimal> getDrivingDistancesTo(List<Point> origins, BigDecimal toLat, BigDecimal toLng) {
+        List<BigDecimal> distances = new ArrayList<>(origins.size());
+        for (Point origin : origins) {
+            distances.add(getDrivingDistance(BigDecimal.valueOf(origin.getY()), BigDecimal.valueOf(origin.getX()),
+                    toLat, toLng));
+        }
+        return distances;
+    }
+}
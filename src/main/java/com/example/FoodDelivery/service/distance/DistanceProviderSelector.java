@@ -0,0 +1,116 @@
+package com.example.FoodDelivery.service.distance;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Point;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Picks the DistanceProvider for each use case from configuration:
+ * distance.provider.search / dispatch / billing = mapbox | estimator | ...
+ * A remote provider is wrapped so that a failed answer (null) falls back to
+ * the in-process estimator instead of dropping the result.
+ */
+@Service
+@Slf4j
+public class DistanceProviderSelector {
+    private final Map<DistanceUseCase, DistanceProvider> providers = new EnumMap<>(DistanceUseCase.class);
+
+    public DistanceProviderSelector(List<DistanceProvider> availableProviders,
+            HaversineDistanceEstimator estimator,
+            @Value("${distance.provider.search:estimator}") String searchProvider,
+            @Value("${distance.provider.dispatch:mapbox}") String dispatchProvider,
+            @Value("${distance.provider.billing:mapbox}") String billingProvider) {
+        Map<String, DistanceProvider> byName = availableProviders.stream()
+                .collect(Collectors.toMap(DistanceProvider::getName, Function.identity()));
+
+        providers.put(DistanceUseCase.SEARCH, resolve(byName, searchProvider, estimator));
+        providers.put(DistanceUseCase.DISPATCH, resolve(byName, dispatchProvider, estimator));
+        providers.put(DistanceUseCase.BILLING, resolve(byName, billingProvider, estimator));
+
+        log.info("Distance providers: search={}, dispatch={}, billing={}",
+                searchProvider, dispatchProvider, billingProvider);
+    }
+
+    /**
+     * Provider configured for a use case
+     */
+    public DistanceProvider forUseCase(DistanceUseCase useCase) {
+        return providers.get(useCase);
+    }
+
+    private DistanceProvider resolve(Map<String, DistanceProvider> byName, String name,
+            HaversineDistanceEstimator estimator) {
+        DistanceProvider provider = byName.get(name);
+        if (provider == null) {
+            log.warn("Unknown distance provider '{}', using {}", name, estimator.getName());
+            return estimator;
+        }
+        if (provider == estimator) {
+            return estimator;
+        }
+        return new FallbackDistanceProvider(provider, estimator);
+    }
+
+    /**
+     * Primary provider with per-call fallback to the estimator
+     */
+    private static final class FallbackDistanceProvider implements DistanceProvider {
+        private final DistanceProvider primary;
+        private final DistanceProvider fallback;
+
+        FallbackDistanceProvider(DistanceProvider primary, DistanceProvider fallback) {
+            this.primary = primary;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public String getName() {
+            return primary.getName();
+        }
+
+        @Override
+        public BigDecimal getDrivingDistance(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat,
+                BigDecimal toLng) {
+            BigDecimal distance = primary.getDrivingDistance(fromLat, fromLng, toLat, toLng);
+            if (distance == null) {
+                log.warn("{} distance unavailable, using {}", primary.getName(), fallback.getName());
+                distance = fallback.getDrivingDistance(fromLat, fromLng, toLat, toLng);
+            }
+            return distance;
+        }
+
+        @Override
+        public BigDecimal getDrivingDuration(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat,
+                BigDecimal toLng) {
+            BigDecimal duration = primary.getDrivingDuration(fromLat, fromLng, toLat, toLng);
+            if (duration == null) {
+                log.warn("{} duration unavailable, using {}", primary.getName(), fallback.getName());
+                duration = fallback.getDrivingDuration(fromLat, fromLng, toLat, toLng);
+            }
+            return duration;
+        }
+
+        @Override
+        public List<BigDecimal> getDrivingDistancesTo(List<Point> origins, BigDecimal toLat, BigDecimal toLng) {
+            List<BigDecimal> distances = new ArrayList<>(primary.getDrivingDistancesTo(origins, toLat, toLng));
+            for (int i = 0; i < distances.size(); i++) {
+                if (distances.get(i) == null) {
+                    Point origin = origins.get(i);
+                    distances.set(i, fallback.getDrivingDistance(BigDecimal.valueOf(origin.getY()),
+                            BigDecimal.valueOf(origin.getX()), toLat, toLng));
+                }
+            }
+            return distances;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.FoodDelivery.service.distance;
+
+/**
+ * Where a distance is needed; each use case picks its own provider
+ * (see distance.provider.* in application.properties)
+ */
+public enum DistanceUseCase {
+    // Nearby restaurant search
+    SEARCH,
+    // Ranking drivers for an order
+    DISPATCH,
+    // Delivery fee calculation
+    BILLING
+}
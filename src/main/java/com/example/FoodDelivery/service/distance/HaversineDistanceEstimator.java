@@ -0,0 +1,254 @@
+package com.example.FoodDelivery.service.distance;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.domain.res.route.RouteInfo;
+import com.example.FoodDelivery.util.GeoUtils;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-process distance estimator: haversine distance x per-region circuity
+ * factor (road distance / straight-line distance), duration from a per-region
+ * average speed.
+ * Regions are geohash cells of the origin; each region is calibrated from real
+ * Mapbox routes (exponential moving average) and shared through the Redis hash
+ * "distance:calibration" so all nodes converge on the same factors.
+ *
+ * Calibration never touches Redis on the request path: updated regions are
+ * written in one pipelined batch every distance.estimator.flush-ms, and the
+ * hash is re-read every distance.estimator.reload-ms so a node picks up the
+ * factors written by the others instead of drifting on its own samples.
+ * Regions with an unwritten local update keep the local value until it is
+ * flushed.
+ */
+@Service
+@Slf4j
+public class HaversineDistanceEstimator implements DistanceProvider {
+    public static final String NAME = "estimator";
+
+    private static final String CALIBRATION_KEY = "distance:calibration";
+    // Very short routes are dominated by snapping to the road network
+    private static final double MIN_CALIBRATION_KM = 0.3;
+    private static final double MIN_CIRCUITY = 1.0;
+    private static final double MAX_CIRCUITY = 3.0;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final int regionPrecision;
+    private final double defaultCircuity;
+    private final double defaultSpeedKmh;
+    private final double smoothing;
+
+    private final Map<String, RegionCalibration> regions = new ConcurrentHashMap<>();
+    // Regions updated since the last flush
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    public HaversineDistanceEstimator(RedisTemplate<String, Object> redisTemplate,
+            @Value("${distance.estimator.region-precision:4}") int regionPrecision,
+            @Value("${distance.estimator.default-circuity:1.35}") double defaultCircuity,
+            @Value("${distance.estimator.default-speed-kmh:22}") double defaultSpeedKmh,
+            @Value("${distance.estimator.smoothing:0.05}") double smoothing) {
+        this.redisTemplate = redisTemplate;
+        this.regionPrecision = regionPrecision;
+        this.defaultCircuity = defaultCircuity;
+        this.defaultSpeedKmh = defaultSpeedKmh;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Load calibration shared by other nodes
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCalibration() {
+        int loaded = reload();
+        if (loaded >= 0) {
+            log.info("Loaded distance calibration for {} regions", loaded);
+        }
+    }
+
+    /**
+     * Periodically adopt the calibration written by other nodes
+     */
+    @Scheduled(fixedDelayString = "${distance.estimator.reload-ms:60000}",
+            initialDelayString = "${distance.estimator.reload-ms:60000}")
+    public void reloadCalibration() {
+        int loaded = reload();
+        if (loaded >= 0) {
+            log.debug("Reloaded distance calibration for {} regions", loaded);
+        }
+    }
+
+    /**
+     * Write the regions calibrated since the last flush
+     */
+    @Scheduled(fixedDelayString = "${distance.estimator.flush-ms:5000}")
+    public synchronized void flushCalibration() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        Map<String, String> batch = new HashMap<>();
+        for (Iterator<String> it = dirty.iterator(); it.hasNext();) {
+            String region = it.next();
+            it.remove();
+            RegionCalibration calibration = regions.get(region);
+            if (calibration != null) {
+                batch.put(region, calibration.format());
+            }
+        }
+        try {
+            redisTemplate.opsForHash().putAll(CALIBRATION_KEY, batch);
+            log.debug("Persisted distance calibration for {} regions", batch.size());
+        } catch (Exception e) {
+            // Keep them for the next flush
+            dirty.addAll(batch.keySet());
+            log.debug("Failed to persist distance calibration for {} regions: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushCalibration();
+    }
+
+    /**
+     * Replace local values with the shared ones, except for regions with an
+     * update still to be flushed
+     *
+     * @return number of regions loaded, -1 when Redis is unavailable
+     */
+    private synchronized int reload() {
+        try {
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(CALIBRATION_KEY);
+            int[] loaded = { 0 };
+            entries.forEach((region, value) -> {
+                RegionCalibration calibration = RegionCalibration.parse(value.toString());
+                if (calibration != null && !dirty.contains(region.toString())) {
+                    regions.put(region.toString(), calibration);
+                    loaded[0]++;
+                }
+            });
+            return loaded[0];
+        } catch (Exception e) {
+            log.warn("Failed to load distance calibration from Redis, keeping current values: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public BigDecimal getDrivingDistance(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat,
+            BigDecimal toLng) {
+        double straightKm = GeoUtils.haversineKm(fromLat, fromLng, toLat, toLng);
+        double circuity = calibrationFor(fromLat, fromLng).circuity;
+        return BigDecimal.valueOf(straightKm * circuity).setScale(3, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public BigDecimal getDrivingDuration(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat,
+            BigDecimal toLng) {
+        RegionCalibration calibration = calibrationFor(fromLat, fromLng);
+        double roadKm = GeoUtils.haversineKm(fromLat, fromLng, toLat, toLng) * calibration.circuity;
+        return BigDecimal.valueOf(roadKm / calibration.speedKmh * 60.0).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Feed a real route (e.g. a fresh Mapbox answer) into the region's circuity
+     * and speed averages
+     */
+    public void calibrate(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat, BigDecimal toLng,
+            RouteInfo route) {
+        if (route == null || route.getDistanceKm() == null) {
+            return;
+        }
+        double straightKm = GeoUtils.haversineKm(fromLat, fromLng, toLat, toLng);
+        double roadKm = route.getDistanceKm().doubleValue();
+        if (straightKm < MIN_CALIBRATION_KM || roadKm <= 0) {
+            return;
+        }
+
+        double circuity = Math.max(MIN_CIRCUITY, Math.min(MAX_CIRCUITY, roadKm / straightKm));
+        Double speedKmh = null;
+        if (route.getDurationMinutes() != null && route.getDurationMinutes().signum() > 0) {
+            speedKmh = roadKm / (route.getDurationMinutes().doubleValue() / 60.0);
+        }
+
+        String region = regionOf(fromLat, fromLng);
+        regions.computeIfAbsent(region, r -> new RegionCalibration(defaultCircuity, defaultSpeedKmh, 0))
+                .update(circuity, speedKmh, smoothing);
+        dirty.add(region);
+    }
+
+    /**
+     * Current circuity factor for the region containing a point
+     */
+    public double getCircuity(BigDecimal latitude, BigDecimal longitude) {
+        return calibrationFor(latitude, longitude).circuity;
+    }
+
+    private RegionCalibration calibrationFor(BigDecimal latitude, BigDecimal longitude) {
+        RegionCalibration calibration = regions.get(regionOf(latitude, longitude));
+        return calibration != null ? calibration : new RegionCalibration(defaultCircuity, defaultSpeedKmh, 0);
+    }
+
+    private String regionOf(BigDecimal latitude, BigDecimal longitude) {
+        return GeoUtils.geohash(latitude.doubleValue(), longitude.doubleValue(), regionPrecision);
+    }
+
+    /**
+     * Calibration values for one region
+     */
+    private static final class RegionCalibration {
+        private volatile double circuity;
+        private volatile double speedKmh;
+        private volatile long samples;
+
+        RegionCalibration(double circuity, double speedKmh, long samples) {
+            this.circuity = circuity;
+            this.speedKmh = speedKmh;
+            this.samples = samples;
+        }
+
+        synchronized RegionCalibration update(double sampleCircuity, Double sampleSpeedKmh, double smoothing) {
+            // Plain average while the region has few samples, then EMA
+            double alpha = Math.max(smoothing, 1.0 / (samples + 1));
+            circuity += alpha * (sampleCircuity - circuity);
+            if (sampleSpeedKmh != null && sampleSpeedKmh > 1) {
+                speedKmh += alpha * (sampleSpeedKmh - speedKmh);
+            }
+            samples++;
+            return this;
+        }
+
+        String format() {
+            return circuity + ":" + speedKmh + ":" + samples;
+        }
+
+        static RegionCalibration parse(String value) {
+            try {
+                String[] parts = value.split(":");
+                return new RegionCalibration(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                        Long.parseLong(parts[2]));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+}
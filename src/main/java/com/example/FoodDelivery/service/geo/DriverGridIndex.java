@@ -0,0 +1,305 @@
+package com.example.FoodDelivery.service.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.example.FoodDelivery.util.GeoUtils;
+
+/**
+ * In-process spatial index of active drivers
+ *
+ * Live state is kept in primitive atomic arrays indexed by slot: one packed
+ * long per driver position (lat/lng as fixed-point degrees x 1e6), so a
+ * location update is a single AtomicLongArray.set with no lock.
+ *
+ * Spatial lookups go through an immutable grid snapshot (slots sorted by
+ * cell, CSR form) that is rebuilt periodically by one thread and published
+ * through a volatile field. Queries scan the snapshot cells covering the
+ * search circle plus one ring, then check each driver's live position, so a
+ * driver that moved since the last snapshot is still answered correctly as
+ * long as it stayed within one cell; drivers added since the last snapshot
+ * become visible at the next rebuild.
+ */
+public class DriverGridIndex {
+    private static final double COORD_SCALE = 1_000_000.0;
+    private static final long EMPTY = Long.MIN_VALUE;
+    // About 550 m of latitude per cell
+    private static final double CELL_DEGREES = 0.005;
+    // Sort keys hold the slot in the low bits and the cell id above them
+    private static final int SLOT_BITS = 27;
+    private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+
+    private final int capacity;
+    private final AtomicLongArray positions;
+    private final AtomicLongArray slotDriverIds;
+    private final Map<Long, Integer> slotByDriver = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Integer> freeSlots = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY_SNAPSHOT;
+
+    public DriverGridIndex(int capacity) {
+        if (capacity > SLOT_MASK + 1) {
+            throw new IllegalArgumentException("Capacity above " + (SLOT_MASK + 1) + " drivers");
+        }
+        this.capacity = capacity;
+        this.positions = new AtomicLongArray(capacity);
+        this.slotDriverIds = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            positions.set(i, EMPTY);
+        }
+    }
+
+    /**
+     * Insert or move a driver
+     *
+     * @return false if the index is full
+     */
+    public boolean update(long driverId, double latitude, double longitude) {
+        Integer slot = slotByDriver.get(driverId);
+        if (slot == null) {
+            slot = allocateSlot(driverId);
+            if (slot == null) {
+                return false;
+            }
+        }
+        long packed = pack(latitude, longitude);
+        positions.set(slot, packed);
+        if (!slot.equals(slotByDriver.get(driverId))) {
+            // Removed concurrently: don't leave a position in a recycled slot
+            positions.compareAndSet(slot, packed, EMPTY);
+        }
+        return true;
+    }
+
+    /**
+     * Remove a driver; its slot is recycled
+     */
+    public void remove(long driverId) {
+        Integer slot = slotByDriver.remove(driverId);
+        if (slot != null) {
+            positions.set(slot, EMPTY);
+            freeSlots.add(slot);
+        }
+    }
+
+    public boolean contains(long driverId) {
+        return slotByDriver.containsKey(driverId);
+    }
+
+    public int size() {
+        return slotByDriver.size();
+    }
+
+    /**
+     * IDs of all indexed drivers
+     */
+    public List<Long> driverIds() {
+        return new ArrayList<>(slotByDriver.keySet());
+    }
+
+    /**
+     * Rebuild the grid snapshot from the live positions
+     */
+    public synchronized void rebuildSnapshot() {
+        int highWater = Math.min(nextSlot.get(), capacity);
+        long[] slotCells = new long[highWater];
+        int live = 0;
+        for (int slot = 0; slot < highWater; slot++) {
+            long position = positions.get(slot);
+            if (position != EMPTY) {
+                // cell id in the high bits, slot in the low SLOT_BITS bits for sorting
+                slotCells[live++] = (cellOf(unpackLat(position), unpackLng(position)) << SLOT_BITS) | slot;
+            }
+        }
+        long[] sorted = Arrays.copyOf(slotCells, live);
+        Arrays.sort(sorted);
+
+        long[] cellIds = new long[live];
+        int[] cellStart = new int[live + 1];
+        int[] slots = new int[live];
+        int cells = 0;
+        for (int i = 0; i < live; i++) {
+            long cell = sorted[i] >> SLOT_BITS;
+            slots[i] = (int) (sorted[i] & SLOT_MASK);
+            if (cells == 0 || cellIds[cells - 1] != cell) {
+                cellIds[cells] = cell;
+                cellStart[cells] = i;
+                cells++;
+            }
+        }
+        cellStart[cells] = live;
+        snapshot = new Snapshot(Arrays.copyOf(cellIds, cells), Arrays.copyOf(cellStart, cells + 1), slots);
+    }
+
+    /**
+     * Drivers within radiusKm, closest first
+     *
+     * @param limit Maximum number of results (0 = unlimited)
+     */
+    public List<Neighbor> withinRadius(double latitude, double longitude, double radiusKm, int limit) {
+        Snapshot current = snapshot;
+        List<Neighbor> result = new ArrayList<>();
+
+        double latSpan = radiusKm / 111.32;
+        double lngSpan = radiusKm / (111.32 * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+        long minRow = row(latitude - latSpan) - 1;
+        long maxRow = row(latitude + latSpan) + 1;
+        long minCol = col(longitude - lngSpan) - 1;
+        long maxCol = col(longitude + lngSpan) + 1;
+
+        for (long r = minRow; r <= maxRow; r++) {
+            for (long c = minCol; c <= maxCol; c++) {
+                int cellIndex = Arrays.binarySearch(current.cellIds, cellId(r, c));
+                if (cellIndex < 0) {
+                    continue;
+                }
+                for (int i = current.cellStart[cellIndex]; i < current.cellStart[cellIndex + 1]; i++) {
+                    int slot = current.slots[i];
+                    long position = positions.get(slot);
+                    if (position == EMPTY) {
+                        continue;
+                    }
+                    double lat = unpackLat(position);
+                    double lng = unpackLng(position);
+                    double distanceKm = GeoUtils.haversineKm(latitude, longitude, lat, lng);
+                    if (distanceKm <= radiusKm) {
+                        result.add(new Neighbor(slotDriverIds.get(slot), lat, lng, distanceKm));
+                    }
+                }
+            }
+        }
+
+        result.sort((a, b) -> Double.compare(a.distanceKm, b.distanceKm));
+        if (limit > 0 && result.size() > limit) {
+            return new ArrayList<>(result.subList(0, limit));
+        }
+        return result;
+    }
+
+    /**
+     * k nearest drivers within maxRadiusKm, closest first
+     * Widens the search circle until k drivers are found
+     */
+    public List<Neighbor> nearest(double latitude, double longitude, int k, double maxRadiusKm) {
+        double radiusKm = Math.min(1.0, maxRadiusKm);
+        while (true) {
+            List<Neighbor> found = withinRadius(latitude, longitude, radiusKm, k);
+            if (found.size() >= k || radiusKm >= maxRadiusKm) {
+                return found;
+            }
+            radiusKm = Math.min(radiusKm * 2, maxRadiusKm);
+        }
+    }
+
+    private Integer allocateSlot(long driverId) {
+        Integer slot = freeSlots.poll();
+        if (slot == null) {
+            int next = nextSlot.getAndIncrement();
+            if (next >= capacity) {
+                nextSlot.set(capacity);
+                return null;
+            }
+            slot = next;
+        }
+        slotDriverIds.set(slot, driverId);
+        Integer existing = slotByDriver.putIfAbsent(driverId, slot);
+        if (existing != null) {
+            // Another thread inserted the same driver first
+            freeSlots.add(slot);
+            return existing;
+        }
+        return slot;
+    }
+
+    static long pack(double latitude, double longitude) {
+        int lat = (int) Math.round(latitude * COORD_SCALE);
+        int lng = (int) Math.round(longitude * COORD_SCALE);
+        return ((long) lat << 32) | (lng & 0xFFFFFFFFL);
+    }
+
+    static double unpackLat(long position) {
+        return (int) (position >> 32) / COORD_SCALE;
+    }
+
+    static double unpackLng(long position) {
+        return (int) position / COORD_SCALE;
+    }
+
+    private static long row(double latitude) {
+        return (long) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    private static long col(double longitude) {
+        return (long) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    private static long cellOf(double latitude, double longitude) {
+        return cellId(row(latitude), col(longitude));
+    }
+
+    /**
+     * Rows span [-18000, 18000] and cols [-36000, 36000], so ids go up to about
+     * 2.6e9 (32 bits); shifted above the SLOT_BITS slot number the sort key
+     * stays below 2^59 and positive at every latitude
+     */
+    private static long cellId(long row, long col) {
+        return (row + 18_000) * 72_001 + (col + 36_000);
+    }
+
+    /**
+     * Immutable grid: sorted cell ids, CSR offsets, slots per cell
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY_SNAPSHOT = new Snapshot(new long[0], new int[] { 0 }, new int[0]);
+
+        private final long[] cellIds;
+        private final int[] cellStart;
+        private final int[] slots;
+
+        Snapshot(long[] cellIds, int[] cellStart, int[] slots) {
+            this.cellIds = cellIds;
+            this.cellStart = cellStart;
+            this.slots = slots;
+        }
+    }
+
+    /**
+     * Query result
+     */
+    public static final class Neighbor {
+        private final long driverId;
+        private final double latitude;
+        private final double longitude;
+        private final double distanceKm;
+
+        Neighbor(long driverId, double latitude, double longitude, double distanceKm) {
+            this.driverId = driverId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.distanceKm = distanceKm;
+        }
+
+        public long getDriverId() {
+            return driverId;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+    }
+}
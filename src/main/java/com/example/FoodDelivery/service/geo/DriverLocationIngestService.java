@@ -0,0 +1,182 @@
+package com.example.FoodDelivery.service.geo;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Point;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.service.RedisGeoService;
+import com.example.FoodDelivery.util.GeoUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ingestion stage for driver location pings
+ *
+ * Pings are coalesced per driver (only the latest position is kept) and
+ * flushed every driver-location.flush-ms as one pipelined batch of GEOADDs
+ * plus a single EXPIRE, instead of a GEOADD + EXPIRE round trip per ping.
+ * Each WebSocket session gets a token bucket so one misbehaving client can't
+ * flood the pipeline. Each flushed batch is also handed to LiveTrackingService
+ * for customer pushes.
+ */
+@Service
+@Slf4j
+public class DriverLocationIngestService {
+    private final RedisGeoService redisGeoService;
+    private final LiveTrackingService liveTrackingService;
+    private final int chunkSize;
+    private final double ratePerSecond;
+    private final int burst;
+
+    private final Map<Long, Point> pending = new ConcurrentHashMap<>();
+
+    private final Counter accepted;
+    private final Counter coalesced;
+    private final Counter throttled;
+    private final Counter invalid;
+    private final DistributionSummary flushSize;
+    private final Timer flushTimer;
+
+    public DriverLocationIngestService(RedisGeoService redisGeoService, LiveTrackingService liveTrackingService,
+            MeterRegistry meterRegistry,
+            @Value("${driver-location.flush-chunk-size:500}") int chunkSize,
+            @Value("${driver-location.rate-limit.per-second:2}") double ratePerSecond,
+            @Value("${driver-location.rate-limit.burst:5}") int burst) {
+        this.redisGeoService = redisGeoService;
+        this.liveTrackingService = liveTrackingService;
+        this.chunkSize = chunkSize;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+
+        this.accepted = pingCounter(meterRegistry, "accepted");
+        this.throttled = pingCounter(meterRegistry, "throttled");
+        this.invalid = pingCounter(meterRegistry, "invalid");
+        this.coalesced = Counter.builder("driver.location.coalesced")
+                .description("Pings replaced by a newer ping before flush")
+                .register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("driver.location.flush.size")
+                .description("Drivers written per flush")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("driver.location.flush")
+                .description("Time to write one flush to Redis")
+                .register(meterRegistry);
+        Gauge.builder("driver.location.pending", pending, Map::size)
+                .register(meterRegistry);
+    }
+
+    private static Counter pingCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("driver.location.pings")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * New per-session rate limiter, to be kept in the WebSocket session
+     * attributes
+     */
+    public SessionRateLimiter newRateLimiter() {
+        return new SessionRateLimiter(ratePerSecond, burst);
+    }
+
+    /**
+     * Queue a driver position for the next flush
+     *
+     * @param limiter Rate limiter of the sending session
+     * @return false if the ping was dropped (rate limited, or outside the
+     *         Redis GEO range / at (0,0), see GeoUtils.isValidPosition)
+     */
+    public boolean submit(SessionRateLimiter limiter, Long driverId, BigDecimal latitude, BigDecimal longitude) {
+        if (latitude == null || longitude == null
+                || !GeoUtils.isValidPosition(latitude.doubleValue(), longitude.doubleValue())) {
+            invalid.increment();
+            return false;
+        }
+        if (!limiter.tryAcquire()) {
+            throttled.increment();
+            return false;
+        }
+        if (pending.put(driverId, new Point(longitude.doubleValue(), latitude.doubleValue())) != null) {
+            coalesced.increment();
+        }
+        accepted.increment();
+        return true;
+    }
+
+    /**
+     * Write all pending positions in one pipelined batch
+     * Entries replaced while the batch was in flight stay pending for the next
+     * flush; a failed batch is put back unless a newer position arrived
+     */
+    @Scheduled(fixedDelayString = "${driver-location.flush-ms:200}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, Point> batch = new LinkedHashMap<>(pending);
+        List<Long> flushed = new ArrayList<>(batch.size());
+        batch.forEach((driverId, point) -> {
+            if (pending.remove(driverId, point)) {
+                flushed.add(driverId);
+            }
+        });
+        batch.keySet().retainAll(flushed);
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            liveTrackingService.publish(batch);
+        } catch (Exception e) {
+            log.error("Failed to push live tracking updates: {}", e.getMessage());
+        }
+
+        boolean written = flushTimer.record(() -> redisGeoService.updateDriverLocations(batch, chunkSize));
+        if (written) {
+            flushSize.record(batch.size());
+        } else {
+            batch.forEach(pending::putIfAbsent);
+            log.warn("Driver location flush failed, {} positions kept for retry", batch.size());
+        }
+    }
+
+    /**
+     * Token bucket for one WebSocket session
+     */
+    public static final class SessionRateLimiter {
+        private final double ratePerMs;
+        private final double capacity;
+        private double tokens;
+        private long lastRefillAt;
+
+        SessionRateLimiter(double ratePerSecond, int burst) {
+            this.ratePerMs = ratePerSecond / 1000.0;
+            this.capacity = Math.max(1, burst);
+            this.tokens = capacity;
+            this.lastRefillAt = System.currentTimeMillis();
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(capacity, tokens + (now - lastRefillAt) * ratePerMs);
+            lastRefillAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
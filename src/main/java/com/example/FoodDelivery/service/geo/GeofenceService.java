@@ -0,0 +1,154 @@
+package com.example.FoodDelivery.service.geo;
+
+import java.time.Duration;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.service.OrderService;
+import com.example.FoodDelivery.service.RedisActiveDeliveryService.ActiveDelivery;
+import com.example.FoodDelivery.service.WebSocketService;
+import com.example.FoodDelivery.util.GeoUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Geofences of active deliveries, checked on every flushed driver position
+ *
+ * Each delivery has circles around the restaurant and the delivery point:
+ * - APPROACHING_RESTAURANT (geofence.restaurant-approach-meters) while heading
+ * to pickup: restaurant is told to get the order ready
+ * - APPROACHING_CUSTOMER (geofence.customer-approach-meters) after pickup:
+ * customer is told the driver is close
+ * - ARRIVED_AT_CUSTOMER (geofence.customer-arrival-meters) after pickup: the
+ * order is marked ARRIVED without the driver pressing the button
+ *
+ * A fence only applies to the driver of its order, so the check is a lookup
+ * by driver ID plus at most two distance computations. Each event fires once
+ * per order, across nodes (Redis SETNX "geofence:{orderId}:{event}").
+ */
+@Service
+@Slf4j
+public class GeofenceService {
+    private static final String FIRED_KEY_PREFIX = "geofence:";
+    private static final Duration FIRED_TTL = Duration.ofHours(12);
+
+    public enum FenceEvent {
+        APPROACHING_RESTAURANT, APPROACHING_CUSTOMER, ARRIVED_AT_CUSTOMER
+    }
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final WebSocketService webSocketService;
+    private final OrderService orderService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${geofence.restaurant-approach-meters:300}")
+    private double restaurantApproachMeters;
+
+    @Value("${geofence.customer-approach-meters:500}")
+    private double customerApproachMeters;
+
+    @Value("${geofence.customer-arrival-meters:50}")
+    private double customerArrivalMeters;
+
+    @Value("${geofence.auto-arrive:true}")
+    private boolean autoArrive;
+
+    public GeofenceService(RedisTemplate<String, Object> redisTemplate, WebSocketService webSocketService,
+            @Lazy OrderService orderService, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.webSocketService = webSocketService;
+        this.orderService = orderService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Check a driver position against the fences of its delivery
+     *
+     * @param fired Events already fired for this delivery on this node;
+     *              updated in place
+     */
+    public void check(Long driverId, ActiveDelivery delivery, double latitude, double longitude,
+            Set<FenceEvent> fired) {
+        if ("DRIVER_ASSIGNED".equals(delivery.getStatus())) {
+            if (!fired.contains(FenceEvent.APPROACHING_RESTAURANT) && delivery.getRestaurantLatitude() != null) {
+                double meters = distanceMeters(latitude, longitude, delivery.getRestaurantLatitude(),
+                        delivery.getRestaurantLongitude());
+                if (meters <= restaurantApproachMeters
+                        && claim(delivery, FenceEvent.APPROACHING_RESTAURANT, fired)) {
+                    webSocketService.notifyRestaurantDriverApproaching(delivery.getRestaurantId(),
+                            delivery.getOrderId(), Math.round(meters));
+                }
+            }
+        } else if ("PICKED_UP".equals(delivery.getStatus()) && delivery.getDeliveryLatitude() != null) {
+            if (fired.contains(FenceEvent.ARRIVED_AT_CUSTOMER)) {
+                return;
+            }
+            double meters = distanceMeters(latitude, longitude, delivery.getDeliveryLatitude(),
+                    delivery.getDeliveryLongitude());
+            if (meters <= customerApproachMeters && !fired.contains(FenceEvent.APPROACHING_CUSTOMER)
+                    && claim(delivery, FenceEvent.APPROACHING_CUSTOMER, fired)) {
+                webSocketService.notifyCustomerDriverApproaching(delivery.getCustomerId(),
+                        delivery.getOrderId(), Math.round(meters));
+            }
+            if (autoArrive && meters <= customerArrivalMeters
+                    && claim(delivery, FenceEvent.ARRIVED_AT_CUSTOMER, fired)) {
+                arrive(driverId, delivery, fired);
+            }
+        }
+    }
+
+    private void arrive(Long driverId, ActiveDelivery delivery, Set<FenceEvent> fired) {
+        try {
+            if (orderService.markOrderAsArrivedByGeofence(delivery.getOrderId(), driverId) != null) {
+                log.info("📍 Order {} marked ARRIVED by geofence", delivery.getOrderId());
+            }
+        } catch (Exception e) {
+            log.error("Failed to mark order {} as arrived by geofence: {}", delivery.getOrderId(), e.getMessage());
+            // Let the next ping inside the fence try again instead of waiting out the marker
+            release(delivery, FenceEvent.ARRIVED_AT_CUSTOMER, fired);
+        }
+    }
+
+    /**
+     * Mark an event fired; false if it already fired here or on another node
+     */
+    private boolean claim(ActiveDelivery delivery, FenceEvent event, Set<FenceEvent> fired) {
+        fired.add(event);
+        boolean first = true;
+        try {
+            Boolean set = redisTemplate.opsForValue().setIfAbsent(
+                    FIRED_KEY_PREFIX + delivery.getOrderId() + ":" + event.name(), "1", FIRED_TTL);
+            first = !Boolean.FALSE.equals(set);
+        } catch (Exception e) {
+            // Fire anyway: a duplicate notification beats a missing one
+            log.warn("Failed to record geofence event {} of order {}: {}", event, delivery.getOrderId(),
+                    e.getMessage());
+        }
+        if (first) {
+            meterRegistry.counter("geofence.events", "event", event.name()).increment();
+        }
+        return first;
+    }
+
+    /**
+     * Undo a claim whose action failed
+     */
+    private void release(ActiveDelivery delivery, FenceEvent event, Set<FenceEvent> fired) {
+        fired.remove(event);
+        try {
+            redisTemplate.delete(FIRED_KEY_PREFIX + delivery.getOrderId() + ":" + event.name());
+        } catch (Exception e) {
+            log.warn("Failed to release geofence event {} of order {}: {}", event, delivery.getOrderId(),
+                    e.getMessage());
+        }
+    }
+
+    private static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        return GeoUtils.haversineKm(lat1, lng1, lat2, lng2) * 1000.0;
+    }
+}
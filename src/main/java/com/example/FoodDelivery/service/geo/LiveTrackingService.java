@@ -0,0 +1,283 @@
+package com.example.FoodDelivery.service.geo;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Point;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.FoodDelivery.domain.Order;
+import com.example.FoodDelivery.domain.res.websocket.DriverLocationDelta;
+import com.example.FoodDelivery.service.RedisActiveDeliveryService;
+import com.example.FoodDelivery.service.RedisActiveDeliveryService.ActiveDelivery;
+import com.example.FoodDelivery.service.WebSocketService;
+import com.example.FoodDelivery.service.geo.GeofenceService.FenceEvent;
+import com.example.FoodDelivery.service.trail.TrailRecorder;
+import com.example.FoodDelivery.util.GeoUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pushes driver positions to the customer of the order being delivered
+ *
+ * Fed with each coalesced batch from DriverLocationIngestService; drivers
+ * without an active delivery are skipped with one map lookup, so the work
+ * scales with active orders. Per delivery, pushes are throttled to one per
+ * tracking.min-interval-ms and skipped while the driver moved less than
+ * tracking.min-move-meters; payloads are DriverLocationDelta (a keyframe every
+ * tracking.keyframe-interval messages, deltas in between). Every position of
+ * an active delivery is also checked against its geofences and recorded in its
+ * trail.
+ *
+ * The set of active deliveries is mirrored from RedisActiveDeliveryService
+ * every tracking.refresh-ms, and applied immediately for changes made on
+ * this node. Start, status change and end called inside a transaction take
+ * effect once it commits.
+ */
+@Service
+@Slf4j
+public class LiveTrackingService {
+    private static final double COORD_SCALE = 1_000_000.0;
+
+    private final RedisActiveDeliveryService redisActiveDeliveryService;
+    private final WebSocketService webSocketService;
+    private final GeofenceService geofenceService;
+    private final TrailRecorder trailRecorder;
+    private final long minIntervalMs;
+    private final double minMoveKm;
+    private final int keyframeInterval;
+    private final long maxAgeMs;
+
+    private final Map<Long, TrackedDelivery> deliveries = new ConcurrentHashMap<>();
+
+    private final Counter sent;
+    private final Counter throttled;
+    private final Counter stationary;
+
+    public LiveTrackingService(RedisActiveDeliveryService redisActiveDeliveryService,
+            WebSocketService webSocketService, GeofenceService geofenceService, TrailRecorder trailRecorder,
+            MeterRegistry meterRegistry,
+            @Value("${tracking.min-interval-ms:1000}") long minIntervalMs,
+            @Value("${tracking.min-move-meters:10}") double minMoveMeters,
+            @Value("${tracking.keyframe-interval:10}") int keyframeInterval,
+            @Value("${tracking.max-age-hours:6}") long maxAgeHours) {
+        this.redisActiveDeliveryService = redisActiveDeliveryService;
+        this.webSocketService = webSocketService;
+        this.geofenceService = geofenceService;
+        this.trailRecorder = trailRecorder;
+        this.minIntervalMs = minIntervalMs;
+        this.minMoveKm = minMoveMeters / 1000.0;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.maxAgeMs = maxAgeHours * 3_600_000L;
+
+        this.sent = pushCounter(meterRegistry, "sent");
+        this.throttled = pushCounter(meterRegistry, "throttled");
+        this.stationary = pushCounter(meterRegistry, "stationary");
+        Gauge.builder("tracking.active.deliveries", deliveries, Map::size)
+                .register(meterRegistry);
+    }
+
+    private static Counter pushCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("tracking.pushes")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start tracking once a driver has accepted an order (after the current
+     * transaction commits, if there is one)
+     */
+    public void startDelivery(Long driverId, Order order) {
+        ActiveDelivery delivery = new ActiveDelivery(order.getId(), order.getCustomer().getId(),
+                order.getRestaurant().getId(), System.currentTimeMillis(), order.getOrderStatus(),
+                toDouble(order.getRestaurant().getLatitude()), toDouble(order.getRestaurant().getLongitude()),
+                toDouble(order.getDeliveryLatitude()), toDouble(order.getDeliveryLongitude()));
+        afterCommit(() -> {
+            redisActiveDeliveryService.startDelivery(driverId, delivery);
+            deliveries.put(driverId, new TrackedDelivery(delivery));
+        });
+    }
+
+    /**
+     * Record a status change of an active delivery (selects the geofences),
+     * after the current transaction commits
+     */
+    public void updateStatus(Long driverId, String status) {
+        afterCommit(() -> {
+            redisActiveDeliveryService.updateStatus(driverId, status);
+            TrackedDelivery delivery = deliveries.get(driverId);
+            if (delivery != null) {
+                delivery.active = delivery.active.withStatus(status);
+            }
+        });
+    }
+
+    /**
+     * Stop tracking when the delivery is finished, after the current
+     * transaction commits; the trail is closed at the same point
+     */
+    public void endDelivery(Long driverId) {
+        TrackedDelivery delivery = deliveries.get(driverId);
+        if (delivery != null) {
+            trailRecorder.close(delivery.active.getOrderId());
+        }
+        afterCommit(() -> {
+            redisActiveDeliveryService.endDelivery(driverId);
+            deliveries.remove(driverId);
+        });
+    }
+
+    /**
+     * Run a tracking change after the current transaction commits (dropped
+     * on rollback, so an order that did not change state keeps its
+     * tracking), or right away outside a transaction
+     */
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    /**
+     * Push positions of drivers with an active delivery
+     *
+     * @param positions Driver ID to (longitude, latitude), latest per driver
+     */
+    public void publish(Map<Long, Point> positions) {
+        if (deliveries.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        positions.forEach((driverId, point) -> {
+            TrackedDelivery delivery = deliveries.get(driverId);
+            if (delivery != null) {
+                try {
+                    geofenceService.check(driverId, delivery.active, point.getY(), point.getX(), delivery.fired);
+                } catch (Exception e) {
+                    log.error("Geofence check failed for driver {}: {}", driverId, e.getMessage());
+                }
+                trailRecorder.append(delivery.active.getOrderId(), driverId, point.getY(), point.getX(), now);
+                DriverLocationDelta delta = delivery.next(point.getY(), point.getX(), now);
+                if (delta != null) {
+                    webSocketService.broadcastDriverLocation(delivery.active.getCustomerId(), delta);
+                }
+            }
+        });
+    }
+
+    /**
+     * Mirror active deliveries registered on any node
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${tracking.refresh-ms:2000}")
+    public void refreshDeliveries() {
+        long now = System.currentTimeMillis();
+        Map<Long, ActiveDelivery> active = redisActiveDeliveryService.getActiveDeliveries();
+        if (active == null) {
+            return;
+        }
+        active.forEach((driverId, delivery) -> {
+            if (now - delivery.getStartedAt() > maxAgeMs) {
+                // Order never reached DELIVERED (e.g. cancelled out of band)
+                log.warn("Dropping live tracking of order {} after {} h", delivery.getOrderId(),
+                        maxAgeMs / 3_600_000L);
+                endDelivery(driverId);
+                return;
+            }
+            TrackedDelivery current = deliveries.get(driverId);
+            if (current == null || !current.active.getOrderId().equals(delivery.getOrderId())) {
+                TrackedDelivery previous = deliveries.put(driverId, new TrackedDelivery(delivery));
+                if (previous != null) {
+                    trailRecorder.close(previous.active.getOrderId());
+                }
+            } else if (!delivery.getStatus().equals(current.active.getStatus())) {
+                current.active = delivery;
+            }
+        });
+        // Ended on another node; keep deliveries started on this node after
+        // the registry was read
+        deliveries.entrySet().removeIf(entry -> {
+            if (active.containsKey(entry.getKey()) || entry.getValue().active.getStartedAt() >= now) {
+                return false;
+            }
+            trailRecorder.close(entry.getValue().active.getOrderId());
+            return true;
+        });
+    }
+
+    private static Double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : null;
+    }
+
+    /**
+     * Send state of one delivery: last pushed position, sequence number and
+     * geofence events already fired
+     */
+    private final class TrackedDelivery {
+        private volatile ActiveDelivery active;
+        private final Set<FenceEvent> fired = EnumSet.noneOf(FenceEvent.class);
+        private long seq;
+        private long lastSentAt;
+        private int lastLatE6;
+        private int lastLngE6;
+
+        TrackedDelivery(ActiveDelivery active) {
+            this.active = active;
+        }
+
+        /**
+         * @return Message to push, or null if throttled or not moved enough
+         */
+        synchronized DriverLocationDelta next(double latitude, double longitude, long now) {
+            if (seq > 0) {
+                if (now - lastSentAt < minIntervalMs) {
+                    throttled.increment();
+                    return null;
+                }
+                if (GeoUtils.haversineKm(lastLatE6 / COORD_SCALE, lastLngE6 / COORD_SCALE, latitude,
+                        longitude) < minMoveKm) {
+                    stationary.increment();
+                    return null;
+                }
+            }
+
+            int latE6 = (int) Math.round(latitude * COORD_SCALE);
+            int lngE6 = (int) Math.round(longitude * COORD_SCALE);
+            DriverLocationDelta delta = new DriverLocationDelta();
+            delta.setOrderId(active.getOrderId());
+            delta.setSeq(++seq);
+            delta.setTs(now);
+            if ((seq - 1) % keyframeInterval == 0) {
+                delta.setLat(latE6);
+                delta.setLng(lngE6);
+            } else {
+                delta.setDeltaLat(latE6 - lastLatE6);
+                delta.setDeltaLng(lngE6 - lastLngE6);
+            }
+            lastLatE6 = latE6;
+            lastLngE6 = lngE6;
+            lastSentAt = now;
+            sent.increment();
+            return delta;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.FoodDelivery.service.geo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands.DistanceUnit;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps an in-process DriverGridIndex in step with the Redis GEO set
+ * "geo:drivers:active", which stays the source of truth.
+ *
+ * Location writes on this node are applied to the local index immediately;
+ * writes made on other nodes arrive with the periodic resync, which reads the
+ * whole GEO set (a sorted set of 52-bit geohash scores) and decodes the
+ * positions locally. Nearby-driver queries are served from the local index
+ * while it is fresh, and from it as a degraded answer when Redis is down.
+ */
+@Service
+@Slf4j
+public class LocalDriverIndexService {
+    private static final String DRIVER_LOCATION_KEY = "geo:drivers:active";
+
+    // Redis GEO limits (web mercator latitude range)
+    private static final double GEO_LAT_MIN = -85.05112878;
+    private static final double GEO_LAT_MAX = 85.05112878;
+    private static final double GEO_LNG_MIN = -180.0;
+    private static final double GEO_LNG_MAX = 180.0;
+    private static final int GEO_STEP_BITS = 26;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final DriverGridIndex index;
+    private final boolean enabled;
+    private final boolean serveQueries;
+    private final long maxStalenessMs;
+    private final long degradedMaxStalenessMs;
+
+    private final Counter localQueries;
+    private final Counter degradedQueries;
+
+    private volatile long lastResyncAt;
+
+    public LocalDriverIndexService(RedisTemplate<String, Object> redisTemplate, MeterRegistry meterRegistry,
+            @Value("${geo.local-index.enabled:true}") boolean enabled,
+            @Value("${geo.local-index.capacity:100000}") int capacity,
+            @Value("${geo.local-index.serve-queries:true}") boolean serveQueries,
+            @Value("${geo.local-index.max-staleness-ms:15000}") long maxStalenessMs,
+            @Value("${geo.local-index.degraded-max-staleness-ms:120000}") long degradedMaxStalenessMs) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.serveQueries = serveQueries;
+        this.maxStalenessMs = maxStalenessMs;
+        this.degradedMaxStalenessMs = degradedMaxStalenessMs;
+        this.index = new DriverGridIndex(enabled ? capacity : 0);
+
+        this.localQueries = Counter.builder("geo.local_index.queries")
+                .tag("mode", "primary")
+                .register(meterRegistry);
+        this.degradedQueries = Counter.builder("geo.local_index.queries")
+                .tag("mode", "degraded")
+                .register(meterRegistry);
+        Gauge.builder("geo.local_index.size", index, DriverGridIndex::size)
+                .register(meterRegistry);
+        Gauge.builder("geo.local_index.staleness.ms", this,
+                service -> service.lastResyncAt == 0 ? -1 : System.currentTimeMillis() - service.lastResyncAt)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            resync();
+        }
+    }
+
+    /**
+     * Apply a location write made on this node
+     */
+    public void update(Long driverId, double latitude, double longitude) {
+        if (enabled && !index.update(driverId, latitude, longitude)) {
+            log.warn("Local driver index is full ({} drivers), driver {} not indexed", index.size(), driverId);
+        }
+    }
+
+    /**
+     * Apply a removal made on this node
+     */
+    public void remove(Long driverId) {
+        if (enabled) {
+            index.remove(driverId);
+        }
+    }
+
+    /**
+     * True when nearby-driver queries should be answered locally instead of
+     * going to Redis
+     */
+    public boolean canServeQueries() {
+        return enabled && serveQueries && resyncedWithin(maxStalenessMs);
+    }
+
+    /**
+     * True when the index is recent enough to stand in for Redis while Redis
+     * is failing (drivers keep moving, so the bound is looser but finite)
+     */
+    public boolean canServeDegraded() {
+        return enabled && resyncedWithin(degradedMaxStalenessMs);
+    }
+
+    private boolean resyncedWithin(long maxAgeMs) {
+        return lastResyncAt > 0 && System.currentTimeMillis() - lastResyncAt <= maxAgeMs;
+    }
+
+    /**
+     * Nearby drivers from the local index, in the same shape as a Redis
+     * GEORADIUS answer (member = driver ID string, distance in km)
+     *
+     * @param degraded True when answering because Redis failed
+     */
+    public GeoResults<GeoLocation<Object>> findNearbyDrivers(double latitude, double longitude, double radiusInKm,
+            Integer limit, boolean degraded) {
+        (degraded ? degradedQueries : localQueries).increment();
+
+        List<DriverGridIndex.Neighbor> neighbors = index.withinRadius(latitude, longitude, radiusInKm,
+                limit != null ? limit : 0);
+        List<GeoResult<GeoLocation<Object>>> results = new ArrayList<>(neighbors.size());
+        for (DriverGridIndex.Neighbor neighbor : neighbors) {
+            GeoLocation<Object> location = new GeoLocation<>(Long.toString(neighbor.getDriverId()),
+                    new Point(neighbor.getLongitude(), neighbor.getLatitude()));
+            results.add(new GeoResult<>(location, new Distance(neighbor.getDistanceKm(), DistanceUnit.KILOMETERS)));
+        }
+        return new GeoResults<>(results, DistanceUnit.KILOMETERS);
+    }
+
+    /**
+     * Publish a new grid snapshot so that recently added drivers become
+     * visible to queries
+     */
+    @Scheduled(fixedDelayString = "${geo.local-index.snapshot-ms:500}")
+    public void rebuildSnapshot() {
+        if (enabled) {
+            index.rebuildSnapshot();
+        }
+    }
+
+    /**
+     * Reload all positions from the Redis GEO set, picking up writes made on
+     * other nodes and dropping drivers removed elsewhere
+     */
+    @Scheduled(fixedDelayString = "${geo.local-index.resync-ms:5000}")
+    public void resync() {
+        if (!enabled) {
+            return;
+        }
+        Set<TypedTuple<Object>> members;
+        try {
+            members = redisTemplate.opsForZSet().rangeWithScores(DRIVER_LOCATION_KEY, 0, -1);
+        } catch (Exception e) {
+            log.warn("Failed to resync local driver index from Redis: {}", e.getMessage());
+            return;
+        }
+        if (members == null) {
+            return;
+        }
+
+        Set<Long> seen = new HashSet<>(members.size() * 2);
+        for (TypedTuple<Object> member : members) {
+            if (member.getValue() == null || member.getScore() == null) {
+                continue;
+            }
+            try {
+                long driverId = Long.parseLong(member.getValue().toString());
+                double[] latLng = decodeGeoScore(member.getScore().longValue());
+                index.update(driverId, latLng[0], latLng[1]);
+                seen.add(driverId);
+            } catch (NumberFormatException e) {
+                log.warn("Invalid driver member in GEO index: {}", member.getValue());
+            }
+        }
+        for (Long driverId : index.driverIds()) {
+            if (!seen.contains(driverId)) {
+                index.remove(driverId);
+            }
+        }
+        index.rebuildSnapshot();
+        lastResyncAt = System.currentTimeMillis();
+        log.debug("Resynced local driver index: {} drivers", seen.size());
+    }
+
+    /**
+     * Decode the 52-bit interleaved geohash Redis stores as a GEO member's
+     * score (latitude on even bits, longitude on odd bits) to the center of
+     * its cell
+     *
+     * @return { latitude, longitude }
+     */
+    static double[] decodeGeoScore(long score) {
+        long latBits = 0;
+        long lngBits = 0;
+        for (int i = 0; i < GEO_STEP_BITS; i++) {
+            latBits |= ((score >>> (2 * i)) & 1L) << i;
+            lngBits |= ((score >>> (2 * i + 1)) & 1L) << i;
+        }
+        double cells = 1L << GEO_STEP_BITS;
+        double latitude = GEO_LAT_MIN + (latBits + 0.5) * (GEO_LAT_MAX - GEO_LAT_MIN) / cells;
+        double longitude = GEO_LNG_MIN + (lngBits + 0.5) * (GEO_LNG_MAX - GEO_LNG_MIN) / cells;
+        return new double[] { latitude, longitude };
+    }
+}
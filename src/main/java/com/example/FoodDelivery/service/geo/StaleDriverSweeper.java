@@ -0,0 +1,59 @@
+package com.example.FoodDelivery.service.geo;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.service.RedisGeoService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Periodically drops drivers with no location heartbeat within
+ * driver-location.stale-after-seconds from the GEO set, so drivers whose app
+ * died are no longer found by dispatch
+ * Safe to run on every node: removal is idempotent
+ */
+@Service
+@Slf4j
+public class StaleDriverSweeper {
+    private final RedisGeoService redisGeoService;
+    private final Counter swept;
+
+    @Value("${driver-location.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    public StaleDriverSweeper(RedisGeoService redisGeoService, MeterRegistry meterRegistry) {
+        this.redisGeoService = redisGeoService;
+        this.swept = Counter.builder("driver.location.swept")
+                .description("Drivers removed from the GEO set for missing heartbeats")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void adoptUntrackedDrivers() {
+        redisGeoService.adoptUntrackedDrivers();
+    }
+
+    @Scheduled(fixedDelayString = "${driver-location.sweep-ms:15000}")
+    public void sweepStaleDrivers() {
+        try {
+            List<Long> removed;
+            do {
+                removed = redisGeoService.removeStaleDrivers(sweepBatchSize);
+                swept.increment(removed.size());
+                if (!removed.isEmpty()) {
+                    log.info("🧹 Removed {} drivers without location heartbeat", removed.size());
+                }
+            } while (removed.size() >= sweepBatchSize);
+        } catch (Exception e) {
+            log.warn("Failed to sweep stale drivers: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.FoodDelivery.service.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * On-disk format of a contraction hierarchy
+ *
+ * <pre>
+ * int  magic ("FDCH")
+ * int  version
+ * long source fingerprint (detects a changed road graph)
+ * int  node count
+ * int  section count
+ * int  section length (in ints), per section
+ * int[] sections, in ContractionHierarchy#sections() order
+ * </pre>
+ *
+ * The file is memory-mapped read-only and the sections are used in place, so
+ * startup costs one mmap instead of a rebuild and the pages are shared with
+ * the OS page cache. A single mapping is limited to 2 GB, which is far above a
+ * city-sized extract.
+ */
+public final class ChGraphFile {
+    private static final int MAGIC = 0x46444348;
+    private static final int VERSION = 1;
+    private static final int SECTION_COUNT = 8;
+    private static final int WRITE_CHUNK_INTS = 1 << 18;
+
+    private ChGraphFile() {
+    }
+
+    /**
+     * Write a hierarchy atomically (temp file + move)
+     */
+    public static void write(ContractionHierarchy hierarchy, long fingerprint, Path path) throws IOException {
+        IntBuffer[] sections = hierarchy.sections();
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(headerBytes());
+            header.putInt(MAGIC).putInt(VERSION).putLong(fingerprint)
+                    .putInt(hierarchy.getNodeCount()).putInt(SECTION_COUNT);
+            for (IntBuffer section : sections) {
+                header.putInt(section.limit());
+            }
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK_INTS * Integer.BYTES);
+            for (IntBuffer section : sections) {
+                int length = section.limit();
+                for (int offset = 0; offset < length; offset += WRITE_CHUNK_INTS) {
+                    chunk.clear();
+                    int end = Math.min(length, offset + WRITE_CHUNK_INTS);
+                    for (int i = offset; i < end; i++) {
+                        chunk.putInt(section.get(i));
+                    }
+                    chunk.flip();
+                    writeFully(channel, chunk);
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Fingerprint stored in a file, or null if the file is missing or not a
+     * hierarchy of the current version
+     */
+    public static Long readFingerprint(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the fixed header is complete
+            }
+            header.flip();
+            if (header.remaining() < 16 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            return header.getLong();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Memory-map a hierarchy file
+     */
+    public static ContractionHierarchy map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a contraction hierarchy file (or wrong version): " + path);
+            }
+            int nodeCount = buffer.getInt(16);
+            if (buffer.getInt(20) != SECTION_COUNT) {
+                throw new IOException("Unexpected section count in " + path);
+            }
+
+            IntBuffer[] sections = new IntBuffer[SECTION_COUNT];
+            long offset = headerBytes();
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                int length = buffer.getInt(24 + i * Integer.BYTES);
+                long bytes = (long) length * Integer.BYTES;
+                if (offset + bytes > buffer.capacity()) {
+                    throw new IOException("Truncated contraction hierarchy file: " + path);
+                }
+                sections[i] = buffer.slice((int) offset, (int) bytes).asIntBuffer();
+                offset += bytes;
+            }
+            return ContractionHierarchy.fromSections(nodeCount, sections);
+        }
+    }
+
+    private static int headerBytes() {
+        return 24 + SECTION_COUNT * Integer.BYTES;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
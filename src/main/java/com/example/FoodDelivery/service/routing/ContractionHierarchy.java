@@ -0,0 +1,298 @@
+package com.example.FoodDelivery.service.routing;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Query side of a contraction hierarchy
+ *
+ * Holds the upward forward graph and the upward backward graph in CSR form.
+ * The arrays are IntBuffers so they can be either heap arrays (fresh build) or
+ * slices of a memory-mapped ChGraphFile. Instances are immutable and safe to
+ * share between threads. Search state (two int[nodeCount] plus heaps) is
+ * borrowed per query from a pool that keeps at most queryParallelism states;
+ * queries beyond that allocate a state and drop it afterwards, so a burst of
+ * threads does not pin one state per thread for the life of the hierarchy.
+ *
+ * Distances are meters; UNREACHABLE is returned when no path exists.
+ */
+public class ContractionHierarchy {
+    public static final int UNREACHABLE = -1;
+
+    public static final int DEFAULT_QUERY_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final int nodeCount;
+    private final IntBuffer latE6;
+    private final IntBuffer lngE6;
+    private final IntBuffer fwdFirst;
+    private final IntBuffer fwdTarget;
+    private final IntBuffer fwdWeight;
+    private final IntBuffer bwdFirst;
+    private final IntBuffer bwdTarget;
+    private final IntBuffer bwdWeight;
+
+    private final BlockingQueue<QueryState> queryStates;
+
+    ContractionHierarchy(int nodeCount, IntBuffer latE6, IntBuffer lngE6,
+            IntBuffer fwdFirst, IntBuffer fwdTarget, IntBuffer fwdWeight,
+            IntBuffer bwdFirst, IntBuffer bwdTarget, IntBuffer bwdWeight) {
+        this(nodeCount, latE6, lngE6, fwdFirst, fwdTarget, fwdWeight, bwdFirst, bwdTarget, bwdWeight,
+                DEFAULT_QUERY_PARALLELISM);
+    }
+
+    private ContractionHierarchy(int nodeCount, IntBuffer latE6, IntBuffer lngE6,
+            IntBuffer fwdFirst, IntBuffer fwdTarget, IntBuffer fwdWeight,
+            IntBuffer bwdFirst, IntBuffer bwdTarget, IntBuffer bwdWeight, int queryParallelism) {
+        this.nodeCount = nodeCount;
+        this.latE6 = latE6;
+        this.lngE6 = lngE6;
+        this.fwdFirst = fwdFirst;
+        this.fwdTarget = fwdTarget;
+        this.fwdWeight = fwdWeight;
+        this.bwdFirst = bwdFirst;
+        this.bwdTarget = bwdTarget;
+        this.bwdWeight = bwdWeight;
+        this.queryStates = new ArrayBlockingQueue<>(Math.max(1, queryParallelism));
+    }
+
+    /**
+     * Same graph (arrays shared), keeping up to queryParallelism search states
+     * for reuse
+     */
+    public ContractionHierarchy withQueryParallelism(int queryParallelism) {
+        return new ContractionHierarchy(nodeCount, latE6, lngE6, fwdFirst, fwdTarget, fwdWeight,
+                bwdFirst, bwdTarget, bwdWeight, queryParallelism);
+    }
+
+    /**
+     * Arrays in ChGraphFile section order:
+     * lat, lng, fwdFirst, fwdTarget, fwdWeight, bwdFirst, bwdTarget, bwdWeight
+     */
+    IntBuffer[] sections() {
+        return new IntBuffer[] { latE6, lngE6, fwdFirst, fwdTarget, fwdWeight, bwdFirst, bwdTarget, bwdWeight };
+    }
+
+    static ContractionHierarchy fromSections(int nodeCount, IntBuffer[] sections) {
+        return new ContractionHierarchy(nodeCount, sections[0], sections[1], sections[2], sections[3],
+                sections[4], sections[5], sections[6], sections[7]);
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getForwardEdgeCount() {
+        return fwdTarget.limit();
+    }
+
+    public int getBackwardEdgeCount() {
+        return bwdTarget.limit();
+    }
+
+    double latitude(int node) {
+        return latE6.get(node) / RoadGraph.COORD_SCALE;
+    }
+
+    double longitude(int node) {
+        return lngE6.get(node) / RoadGraph.COORD_SCALE;
+    }
+
+    /**
+     * Shortest path length between two nodes (bidirectional upward Dijkstra)
+     *
+     * @return Meters, or UNREACHABLE
+     */
+    public int distance(int source, int target) {
+        if (source == target) {
+            return 0;
+        }
+        QueryState state = borrowState();
+        UpwardSearch forward = state.forward;
+        UpwardSearch backward = state.backward;
+        try {
+            forward.start(source);
+            backward.start(target);
+            int best = INFINITY;
+            while (true) {
+                boolean forwardActive = forward.hasNodeBelow(best);
+                boolean backwardActive = backward.hasNodeBelow(best);
+                if (!forwardActive && !backwardActive) {
+                    break;
+                }
+                if (forwardActive) {
+                    best = meet(forward.settleNext(fwdFirst, fwdTarget, fwdWeight), forward, backward, best);
+                }
+                if (backwardActive) {
+                    best = meet(backward.settleNext(bwdFirst, bwdTarget, bwdWeight), backward, forward, best);
+                }
+            }
+            return best == INFINITY ? UNREACHABLE : best;
+        } finally {
+            forward.reset();
+            backward.reset();
+            returnState(state);
+        }
+    }
+
+    /**
+     * Shortest path lengths from many sources to one target
+     * The backward search space of the target is computed once and every
+     * source only runs its own forward upward search against it.
+     *
+     * @return Meters per source (same order), UNREACHABLE where no path exists
+     */
+    public int[] manyToOne(int[] sources, int target) {
+        QueryState state = borrowState();
+        try {
+            return bucketQuery(sources, target, state.backward, bwdFirst, bwdTarget, bwdWeight,
+                    state.forward, fwdFirst, fwdTarget, fwdWeight);
+        } finally {
+            returnState(state);
+        }
+    }
+
+    /**
+     * Shortest path lengths from one source to many targets
+     *
+     * @return Meters per target (same order), UNREACHABLE where no path exists
+     */
+    public int[] oneToMany(int source, int[] targets) {
+        QueryState state = borrowState();
+        try {
+            return bucketQuery(targets, source, state.forward, fwdFirst, fwdTarget, fwdWeight,
+                    state.backward, bwdFirst, bwdTarget, bwdWeight);
+        } finally {
+            returnState(state);
+        }
+    }
+
+    /**
+     * A pooled search state, or a new one when all are in use
+     */
+    private QueryState borrowState() {
+        QueryState state = queryStates.poll();
+        return state != null ? state : new QueryState(nodeCount);
+    }
+
+    /**
+     * Give a (reset) state back; dropped when the pool is already full
+     */
+    private void returnState(QueryState state) {
+        queryStates.offer(state);
+    }
+
+    private int[] bucketQuery(int[] many, int one,
+            UpwardSearch oneSide, IntBuffer oneFirst, IntBuffer oneTarget, IntBuffer oneWeight,
+            UpwardSearch manySide, IntBuffer manyFirst, IntBuffer manyTarget, IntBuffer manyWeight) {
+        int[] result = new int[many.length];
+        try {
+            oneSide.start(one);
+            while (oneSide.hasNodeBelow(INFINITY)) {
+                oneSide.settleNext(oneFirst, oneTarget, oneWeight);
+            }
+
+            for (int i = 0; i < many.length; i++) {
+                if (many[i] == one) {
+                    result[i] = 0;
+                    continue;
+                }
+                int best = INFINITY;
+                try {
+                    manySide.start(many[i]);
+                    while (manySide.hasNodeBelow(best)) {
+                        best = meet(manySide.settleNext(manyFirst, manyTarget, manyWeight), manySide, oneSide, best);
+                    }
+                } finally {
+                    manySide.reset();
+                }
+                result[i] = best == INFINITY ? UNREACHABLE : best;
+            }
+            return result;
+        } finally {
+            oneSide.reset();
+        }
+    }
+
+    private static int meet(int node, UpwardSearch settledSide, UpwardSearch otherSide, int best) {
+        if (node < 0 || otherSide.dist[node] == INFINITY) {
+            return best;
+        }
+        long total = (long) settledSide.dist[node] + otherSide.dist[node];
+        return total < best ? (int) total : best;
+    }
+
+    /**
+     * Search state of one query (two directions)
+     */
+    private static final class QueryState {
+        private final UpwardSearch forward;
+        private final UpwardSearch backward;
+
+        QueryState(int nodeCount) {
+            this.forward = new UpwardSearch(nodeCount);
+            this.backward = new UpwardSearch(nodeCount);
+        }
+    }
+
+    /**
+     * Dijkstra over one upward graph with reset proportional to the search space
+     */
+    private static final class UpwardSearch {
+        private final int[] dist;
+        private final RoadGraph.IntArray touched = new RoadGraph.IntArray();
+        private final LongHeap heap = new LongHeap();
+
+        UpwardSearch(int nodeCount) {
+            this.dist = new int[nodeCount];
+            Arrays.fill(dist, INFINITY);
+        }
+
+        void start(int node) {
+            dist[node] = 0;
+            touched.add(node);
+            heap.push(ContractionHierarchyBuilder.encode(0, node));
+        }
+
+        boolean hasNodeBelow(int bound) {
+            return !heap.isEmpty() && (int) (heap.peek() >>> 32) < bound;
+        }
+
+        /**
+         * Pop and settle the closest node
+         *
+         * @return Settled node, or -1 for a stale heap entry
+         */
+        int settleNext(IntBuffer first, IntBuffer target, IntBuffer weight) {
+            long top = heap.pop();
+            int u = (int) top;
+            int d = (int) (top >>> 32);
+            if (d > dist[u]) {
+                return -1;
+            }
+            for (int e = first.get(u), end = first.get(u + 1); e < end; e++) {
+                int w = target.get(e);
+                long nd = (long) d + weight.get(e);
+                if (nd < dist[w]) {
+                    if (dist[w] == INFINITY) {
+                        touched.add(w);
+                    }
+                    dist[w] = (int) nd;
+                    heap.push(ContractionHierarchyBuilder.encode((int) nd, w));
+                }
+            }
+            return u;
+        }
+
+        void reset() {
+            for (int i = 0; i < touched.size(); i++) {
+                dist[touched.get(i)] = INFINITY;
+            }
+            touched.clear();
+            heap.clear();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.FoodDelivery.service.routing;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Preprocesses a RoadGraph into a ContractionHierarchy
+ *
+ * Nodes are contracted in order of priority (edge difference + number of
+ * already contracted neighbours, updated lazily). Contracting v adds a
+ * shortcut u->w for every in-neighbour u and out-neighbour w unless a
+ * bounded witness search finds a path u->w avoiding v that is at most as
+ * long. The final hierarchy keeps, for every edge and shortcut, only the
+ * direction that goes up in rank.
+ */
+public final class ContractionHierarchyBuilder {
+    // Bound on witness searches; a missed witness only adds a redundant shortcut
+    private static final int MAX_WITNESS_SETTLED = 500;
+
+    private final int nodeCount;
+    private final DynamicEdges[] out;
+    private final DynamicEdges[] in;
+    private final boolean[] contracted;
+    private final int[] contractedNeighbours;
+    private final int[] level;
+    private final int[] rank;
+
+    // Witness search state, reused between searches
+    private final int[] witnessDist;
+    private final RoadGraph.IntArray witnessTouched = new RoadGraph.IntArray();
+    private final LongHeap witnessHeap = new LongHeap();
+
+    private ContractionHierarchyBuilder(RoadGraph graph) {
+        this.nodeCount = graph.getNodeCount();
+        this.out = new DynamicEdges[nodeCount];
+        this.in = new DynamicEdges[nodeCount];
+        this.contracted = new boolean[nodeCount];
+        this.contractedNeighbours = new int[nodeCount];
+        this.level = new int[nodeCount];
+        this.rank = new int[nodeCount];
+        this.witnessDist = new int[nodeCount];
+        Arrays.fill(witnessDist, Integer.MAX_VALUE);
+
+        for (int u = 0; u < nodeCount; u++) {
+            out[u] = new DynamicEdges();
+            in[u] = new DynamicEdges();
+        }
+        for (int u = 0; u < nodeCount; u++) {
+            for (int e = graph.firstEdge(u); e < graph.firstEdge(u + 1); e++) {
+                int v = graph.edgeTarget(e);
+                if (v == u) {
+                    continue;
+                }
+                out[u].addOrDecrease(v, graph.edgeWeight(e));
+                in[v].addOrDecrease(u, graph.edgeWeight(e));
+            }
+        }
+    }
+
+    /**
+     * Contract the whole graph
+     */
+    public static ContractionHierarchy build(RoadGraph graph) {
+        return new ContractionHierarchyBuilder(graph).contractAll(graph);
+    }
+
+    private ContractionHierarchy contractAll(RoadGraph graph) {
+        LongHeap queue = new LongHeap();
+        for (int v = 0; v < nodeCount; v++) {
+            queue.push(encode(priority(v), v));
+        }
+
+        int nextRank = 0;
+        while (!queue.isEmpty()) {
+            int v = (int) queue.pop();
+            if (contracted[v]) {
+                continue;
+            }
+            // Lazy update: re-evaluate and requeue if no longer the minimum
+            long current = encode(priority(v), v);
+            if (!queue.isEmpty() && current > queue.peek()) {
+                queue.push(current);
+                continue;
+            }
+
+            contract(v, false);
+            contracted[v] = true;
+            rank[v] = nextRank++;
+            for (int i = 0; i < out[v].size; i++) {
+                int w = out[v].targets[i];
+                contractedNeighbours[w]++;
+                level[w] = Math.max(level[w], level[v] + 1);
+            }
+            for (int i = 0; i < in[v].size; i++) {
+                int u = in[v].targets[i];
+                contractedNeighbours[u]++;
+                level[u] = Math.max(level[u], level[v] + 1);
+            }
+        }
+
+        return buildUpwardGraphs(graph);
+    }
+
+    /**
+     * Priority of a node: weighted edge difference + contracted neighbours +
+     * hierarchy level (the level term keeps grid-like city graphs shallow)
+     * Offset keeps the value positive for the (priority << 32 | node) encoding
+     */
+    private int priority(int v) {
+        int shortcuts = contract(v, true);
+        int removed = 0;
+        for (int i = 0; i < in[v].size; i++) {
+            if (!contracted[in[v].targets[i]]) {
+                removed++;
+            }
+        }
+        for (int i = 0; i < out[v].size; i++) {
+            if (!contracted[out[v].targets[i]]) {
+                removed++;
+            }
+        }
+        return (1 << 20) + 2 * (shortcuts - removed) + contractedNeighbours[v] + level[v];
+    }
+
+    /**
+     * Contract v (or only count the shortcuts it would need)
+     *
+     * @return Number of shortcuts added (or needed when simulating)
+     */
+    private int contract(int v, boolean simulate) {
+        int shortcuts = 0;
+        DynamicEdges incoming = in[v];
+        DynamicEdges outgoing = out[v];
+
+        for (int i = 0; i < incoming.size; i++) {
+            int u = incoming.targets[i];
+            if (contracted[u]) {
+                continue;
+            }
+            int weightUv = incoming.weights[i];
+
+            int maxOut = -1;
+            for (int j = 0; j < outgoing.size; j++) {
+                int w = outgoing.targets[j];
+                if (!contracted[w] && w != u) {
+                    maxOut = Math.max(maxOut, outgoing.weights[j]);
+                }
+            }
+            if (maxOut < 0) {
+                continue;
+            }
+
+            witnessSearch(u, v, weightUv + maxOut);
+            for (int j = 0; j < outgoing.size; j++) {
+                int w = outgoing.targets[j];
+                if (contracted[w] || w == u) {
+                    continue;
+                }
+                int candidate = weightUv + outgoing.weights[j];
+                if (witnessDist[w] > candidate) {
+                    shortcuts++;
+                    if (!simulate) {
+                        out[u].addOrDecrease(w, candidate);
+                        in[w].addOrDecrease(u, candidate);
+                    }
+                }
+            }
+            resetWitnessSearch();
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Bounded Dijkstra from source over uncontracted nodes, skipping excluded
+     */
+    private void witnessSearch(int source, int excluded, int maxDist) {
+        witnessDist[source] = 0;
+        witnessTouched.add(source);
+        witnessHeap.push(encode(0, source));
+        int settled = 0;
+
+        while (!witnessHeap.isEmpty() && settled < MAX_WITNESS_SETTLED) {
+            long top = witnessHeap.pop();
+            int u = (int) top;
+            int d = (int) (top >>> 32);
+            if (d > witnessDist[u]) {
+                continue;
+            }
+            if (d > maxDist) {
+                break;
+            }
+            settled++;
+
+            DynamicEdges edges = out[u];
+            for (int i = 0; i < edges.size; i++) {
+                int w = edges.targets[i];
+                if (w == excluded || contracted[w]) {
+                    continue;
+                }
+                int nd = d + edges.weights[i];
+                if (nd < witnessDist[w]) {
+                    if (witnessDist[w] == Integer.MAX_VALUE) {
+                        witnessTouched.add(w);
+                    }
+                    witnessDist[w] = nd;
+                    witnessHeap.push(encode(nd, w));
+                }
+            }
+        }
+    }
+
+    private void resetWitnessSearch() {
+        for (int i = 0; i < witnessTouched.size(); i++) {
+            witnessDist[witnessTouched.get(i)] = Integer.MAX_VALUE;
+        }
+        witnessTouched.clear();
+        witnessHeap.clear();
+    }
+
+    /**
+     * Split every edge and shortcut into the upward forward graph (u->w with
+     * rank[w] > rank[u]) or the upward backward graph (stored at w as w->u
+     * when rank[u] > rank[w])
+     */
+    private ContractionHierarchy buildUpwardGraphs(RoadGraph graph) {
+        int[] fwdFirst = new int[nodeCount + 1];
+        int[] bwdFirst = new int[nodeCount + 1];
+        for (int u = 0; u < nodeCount; u++) {
+            for (int i = 0; i < out[u].size; i++) {
+                int w = out[u].targets[i];
+                if (rank[w] > rank[u]) {
+                    fwdFirst[u + 1]++;
+                } else {
+                    bwdFirst[w + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            fwdFirst[i + 1] += fwdFirst[i];
+            bwdFirst[i + 1] += bwdFirst[i];
+        }
+
+        int[] fwdTarget = new int[fwdFirst[nodeCount]];
+        int[] fwdWeight = new int[fwdFirst[nodeCount]];
+        int[] bwdTarget = new int[bwdFirst[nodeCount]];
+        int[] bwdWeight = new int[bwdFirst[nodeCount]];
+        int[] fwdCursor = Arrays.copyOf(fwdFirst, nodeCount);
+        int[] bwdCursor = Arrays.copyOf(bwdFirst, nodeCount);
+
+        for (int u = 0; u < nodeCount; u++) {
+            for (int i = 0; i < out[u].size; i++) {
+                int w = out[u].targets[i];
+                int weight = out[u].weights[i];
+                if (rank[w] > rank[u]) {
+                    int slot = fwdCursor[u]++;
+                    fwdTarget[slot] = w;
+                    fwdWeight[slot] = weight;
+                } else {
+                    int slot = bwdCursor[w]++;
+                    bwdTarget[slot] = u;
+                    bwdWeight[slot] = weight;
+                }
+            }
+        }
+
+        return new ContractionHierarchy(nodeCount,
+                IntBuffer.wrap(graph.latE6()), IntBuffer.wrap(graph.lngE6()),
+                IntBuffer.wrap(fwdFirst), IntBuffer.wrap(fwdTarget), IntBuffer.wrap(fwdWeight),
+                IntBuffer.wrap(bwdFirst), IntBuffer.wrap(bwdTarget), IntBuffer.wrap(bwdWeight));
+    }
+
+    static long encode(int key, int node) {
+        return ((long) key << 32) | (node & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Adjacency list of one node during contraction (parallel edges merged to
+     * the shortest)
+     */
+    private static final class DynamicEdges {
+        private int[] targets = new int[4];
+        private int[] weights = new int[4];
+        private int size;
+
+        void addOrDecrease(int target, int weight) {
+            for (int i = 0; i < size; i++) {
+                if (targets[i] == target) {
+                    if (weight < weights[i]) {
+                        weights[i] = weight;
+                    }
+                    return;
+                }
+            }
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            targets[size] = target;
+            weights[size] = weight;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.FoodDelivery.service.routing;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of primitive longs
+ * Search entries are packed as (distance << 32 | node), so the heap order is
+ * the distance order; stale entries are skipped by the caller (lazy deletion).
+ */
+final class LongHeap {
+    private long[] values = new long[64];
+    private int size;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    long peek() {
+        return values[0];
+    }
+
+    void push(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (values[parent] <= value) {
+                break;
+            }
+            values[i] = values[parent];
+            i = parent;
+        }
+        values[i] = value;
+    }
+
+    long pop() {
+        long top = values[0];
+        long last = values[--size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && values[child + 1] < values[child]) {
+                child++;
+            }
+            if (last <= values[child]) {
+                break;
+            }
+            values[i] = values[child];
+            i = child;
+        }
+        values[i] = last;
+        return top;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.FoodDelivery.service.routing;
+
+import java.util.Arrays;
+
+import com.example.FoodDelivery.util.GeoUtils;
+
+/**
+ * Snaps coordinates to the nearest graph node using a uniform lat/lng grid
+ * (bucketed in CSR form, so it costs two int arrays)
+ */
+public class NodeLocator {
+    // About 220 m of latitude per cell
+    private static final double CELL_DEGREES = 0.002;
+
+    private final ContractionHierarchy hierarchy;
+    private final double minLat;
+    private final double minLng;
+    private final int rows;
+    private final int cols;
+    private final int[] cellFirst;
+    private final int[] cellNodes;
+
+    public NodeLocator(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        int n = hierarchy.getNodeCount();
+
+        double loLat = Double.MAX_VALUE, hiLat = -Double.MAX_VALUE;
+        double loLng = Double.MAX_VALUE, hiLng = -Double.MAX_VALUE;
+        for (int node = 0; node < n; node++) {
+            loLat = Math.min(loLat, hierarchy.latitude(node));
+            hiLat = Math.max(hiLat, hierarchy.latitude(node));
+            loLng = Math.min(loLng, hierarchy.longitude(node));
+            hiLng = Math.max(hiLng, hierarchy.longitude(node));
+        }
+        this.minLat = n == 0 ? 0 : loLat;
+        this.minLng = n == 0 ? 0 : loLng;
+        this.rows = n == 0 ? 1 : (int) ((hiLat - loLat) / CELL_DEGREES) + 1;
+        this.cols = n == 0 ? 1 : (int) ((hiLng - loLng) / CELL_DEGREES) + 1;
+
+        int[] cellOf = new int[n];
+        this.cellFirst = new int[rows * cols + 1];
+        for (int node = 0; node < n; node++) {
+            cellOf[node] = cell(row(hierarchy.latitude(node)), col(hierarchy.longitude(node)));
+            cellFirst[cellOf[node] + 1]++;
+        }
+        for (int i = 0; i < rows * cols; i++) {
+            cellFirst[i + 1] += cellFirst[i];
+        }
+        int[] cursor = Arrays.copyOf(cellFirst, rows * cols);
+        this.cellNodes = new int[n];
+        for (int node = 0; node < n; node++) {
+            cellNodes[cursor[cellOf[node]]++] = node;
+        }
+    }
+
+    /**
+     * Nearest node within maxMeters
+     *
+     * @return Node index, or -1 if no node is close enough
+     */
+    public int nearest(double latitude, double longitude, double maxMeters) {
+        int centerRow = row(latitude);
+        int centerCol = col(longitude);
+        double cellMetersLat = CELL_DEGREES * 111_320.0;
+        double cellMetersLng = cellMetersLat * Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+        int rowRadius = (int) Math.ceil(maxMeters / cellMetersLat);
+        int colRadius = (int) Math.ceil(maxMeters / cellMetersLng);
+
+        int best = -1;
+        double bestMeters = maxMeters;
+        for (int r = Math.max(0, centerRow - rowRadius); r <= Math.min(rows - 1, centerRow + rowRadius); r++) {
+            for (int c = Math.max(0, centerCol - colRadius); c <= Math.min(cols - 1, centerCol + colRadius); c++) {
+                int cell = cell(r, c);
+                for (int i = cellFirst[cell]; i < cellFirst[cell + 1]; i++) {
+                    int node = cellNodes[i];
+                    double meters = GeoUtils.haversineKm(latitude, longitude,
+                            hierarchy.latitude(node), hierarchy.longitude(node)) * 1000.0;
+                    if (meters <= bestMeters) {
+                        bestMeters = meters;
+                        best = node;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor((latitude - minLat) / CELL_DEGREES);
+    }
+
+    private int col(double longitude) {
+        return (int) Math.floor((longitude - minLng) / CELL_DEGREES);
+    }
+
+    private int cell(int row, int col) {
+        return row * cols + col;
+    }
+}
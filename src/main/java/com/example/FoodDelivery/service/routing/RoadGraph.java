@@ -0,0 +1,242 @@
+package com.example.FoodDelivery.service.routing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.example.FoodDelivery.util.GeoUtils;
+
+/**
+ * Directed road graph in compressed sparse row form
+ * Coordinates are fixed-point (degrees x 1e6), edge weights are meters
+ *
+ * Text format (one record per line, '#' starts a comment):
+ *
+ * <pre>
+ * N &lt;nodeId&gt; &lt;lat&gt; &lt;lng&gt;
+ * E &lt;fromNodeId&gt; &lt;toNodeId&gt; [meters] [oneway]
+ * </pre>
+ *
+ * Node ids are arbitrary longs (e.g. OSM node ids from an extract); edges are
+ * two-way unless flagged "oneway"; a missing length is computed with haversine.
+ */
+public class RoadGraph {
+    static final double COORD_SCALE = 1_000_000.0;
+
+    private final int nodeCount;
+    private final int[] latE6;
+    private final int[] lngE6;
+    private final int[] firstEdge;
+    private final int[] edgeTarget;
+    private final int[] edgeWeight;
+
+    RoadGraph(int[] latE6, int[] lngE6, int[] firstEdge, int[] edgeTarget, int[] edgeWeight) {
+        this.nodeCount = latE6.length;
+        this.latE6 = latE6;
+        this.lngE6 = lngE6;
+        this.firstEdge = firstEdge;
+        this.edgeTarget = edgeTarget;
+        this.edgeWeight = edgeWeight;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeTarget.length;
+    }
+
+    int[] latE6() {
+        return latE6;
+    }
+
+    int[] lngE6() {
+        return lngE6;
+    }
+
+    int firstEdge(int node) {
+        return firstEdge[node];
+    }
+
+    int edgeTarget(int edge) {
+        return edgeTarget[edge];
+    }
+
+    int edgeWeight(int edge) {
+        return edgeWeight[edge];
+    }
+
+    /**
+     * Load a graph from the text format described on the class
+     */
+    public static RoadGraph load(Path path) throws IOException {
+        Map<Long, Integer> nodeIndex = new HashMap<>();
+        IntArray lat = new IntArray();
+        IntArray lng = new IntArray();
+        IntArray from = new IntArray();
+        IntArray to = new IntArray();
+        IntArray weight = new IntArray();
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if ("N".equals(parts[0]) && parts.length >= 4) {
+                    nodeIndex.put(Long.parseLong(parts[1]), lat.size());
+                    lat.add((int) Math.round(Double.parseDouble(parts[2]) * COORD_SCALE));
+                    lng.add((int) Math.round(Double.parseDouble(parts[3]) * COORD_SCALE));
+                } else if ("E".equals(parts[0]) && parts.length >= 3) {
+                    Integer u = nodeIndex.get(Long.parseLong(parts[1]));
+                    Integer v = nodeIndex.get(Long.parseLong(parts[2]));
+                    if (u == null || v == null) {
+                        throw new IOException("Edge references unknown node at line " + lineNumber);
+                    }
+                    boolean oneway = parts.length >= 5 && "oneway".equals(parts[4])
+                            || parts.length == 4 && "oneway".equals(parts[3]);
+                    int meters = parts.length >= 4 && !"oneway".equals(parts[3])
+                            ? (int) Math.round(Double.parseDouble(parts[3]))
+                            : haversineMeters(lat.get(u), lng.get(u), lat.get(v), lng.get(v));
+                    from.add(u);
+                    to.add(v);
+                    weight.add(meters);
+                    if (!oneway) {
+                        from.add(v);
+                        to.add(u);
+                        weight.add(meters);
+                    }
+                } else {
+                    throw new IOException("Malformed road graph record at line " + lineNumber + ": " + line);
+                }
+            }
+        }
+
+        return build(lat.toArray(), lng.toArray(), from.toArray(), to.toArray(), weight.toArray());
+    }
+
+    /**
+     * Synthetic rows x cols two-way grid, used for tests and local development
+     * Spec format: "rows x cols @ lat,lng , spacingMeters", e.g.
+     * "100x100@10.77,106.70,150"
+     */
+    public static RoadGraph syntheticGrid(String spec) {
+        String[] sizeAndOrigin = spec.replace(" ", "").split("@");
+        String[] size = sizeAndOrigin[0].split("x");
+        String[] origin = sizeAndOrigin[1].split(",");
+        return syntheticGrid(Integer.parseInt(size[0]), Integer.parseInt(size[1]),
+                Double.parseDouble(origin[0]), Double.parseDouble(origin[1]), Double.parseDouble(origin[2]));
+    }
+
+    /**
+     * Synthetic rows x cols two-way grid starting at (originLat, originLng)
+     */
+    public static RoadGraph syntheticGrid(int rows, int cols, double originLat, double originLng,
+            double spacingMeters) {
+        double latStep = spacingMeters / 111_320.0;
+        double lngStep = spacingMeters / (111_320.0 * Math.cos(Math.toRadians(originLat)));
+
+        int n = rows * cols;
+        int[] lat = new int[n];
+        int[] lng = new int[n];
+        IntArray from = new IntArray();
+        IntArray to = new IntArray();
+        IntArray weight = new IntArray();
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int node = r * cols + c;
+                lat[node] = (int) Math.round((originLat + r * latStep) * COORD_SCALE);
+                lng[node] = (int) Math.round((originLng + c * lngStep) * COORD_SCALE);
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int node = r * cols + c;
+                if (c + 1 < cols) {
+                    addTwoWay(from, to, weight, node, node + 1, lat, lng);
+                }
+                if (r + 1 < rows) {
+                    addTwoWay(from, to, weight, node, node + cols, lat, lng);
+                }
+            }
+        }
+        return build(lat, lng, from.toArray(), to.toArray(), weight.toArray());
+    }
+
+    private static void addTwoWay(IntArray from, IntArray to, IntArray weight, int u, int v, int[] lat, int[] lng) {
+        int meters = haversineMeters(lat[u], lng[u], lat[v], lng[v]);
+        from.add(u);
+        to.add(v);
+        weight.add(meters);
+        from.add(v);
+        to.add(u);
+        weight.add(meters);
+    }
+
+    static RoadGraph build(int[] lat, int[] lng, int[] from, int[] to, int[] weight) {
+        int n = lat.length;
+        int[] firstEdge = new int[n + 1];
+        for (int u : from) {
+            firstEdge[u + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            firstEdge[i + 1] += firstEdge[i];
+        }
+        int[] cursor = Arrays.copyOf(firstEdge, n);
+        int[] edgeTarget = new int[from.length];
+        int[] edgeWeight = new int[from.length];
+        for (int e = 0; e < from.length; e++) {
+            int slot = cursor[from[e]]++;
+            edgeTarget[slot] = to[e];
+            edgeWeight[slot] = Math.max(1, weight[e]);
+        }
+        return new RoadGraph(lat, lng, firstEdge, edgeTarget, edgeWeight);
+    }
+
+    static int haversineMeters(int latA, int lngA, int latB, int lngB) {
+        return (int) Math.round(GeoUtils.haversineKm(latA / COORD_SCALE, lngA / COORD_SCALE,
+                latB / COORD_SCALE, lngB / COORD_SCALE) * 1000.0);
+    }
+
+    /**
+     * Growable primitive int list
+     */
+    static final class IntArray {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
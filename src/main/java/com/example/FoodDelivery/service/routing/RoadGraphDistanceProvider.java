@@ -0,0 +1,214 @@
+package com.example.FoodDelivery.service.routing;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.geo.Point;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.service.distance.DistanceProvider;
+import com.example.FoodDelivery.util.GeoUtils;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Embedded routing engine (distance.provider.* = roadgraph)
+ *
+ * Loads a road graph (text extract or synthetic grid), preprocesses it into a
+ * contraction hierarchy and answers queries in-process. The hierarchy is
+ * written to routing.engine.ch-file and memory-mapped on the next start as long
+ * as the source fingerprint still matches, so startup does not rebuild it.
+ *
+ * Points are snapped to the nearest node within routing.engine.max-snap-meters;
+ * the snap offsets are added to the path length. Points that cannot be snapped
+ * or routed return null so DistanceProviderSelector falls back to the estimator.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "routing.engine.enabled", havingValue = "true")
+public class RoadGraphDistanceProvider implements DistanceProvider {
+    public static final String NAME = "roadgraph";
+
+    @Value("${routing.engine.graph-file:}")
+    private String graphFile;
+
+    @Value("${routing.engine.synthetic-grid:}")
+    private String syntheticGrid;
+
+    @Value("${routing.engine.ch-file:data/road-graph.ch}")
+    private String chFile;
+
+    @Value("${routing.engine.max-snap-meters:500}")
+    private double maxSnapMeters;
+
+    @Value("${routing.engine.average-speed-kmh:22}")
+    private double averageSpeedKmh;
+
+    // Search states kept for reuse (each is two int[nodeCount]); more
+    // concurrent queries still run, with a short-lived state
+    @Value("${routing.engine.query-parallelism:8}")
+    private int queryParallelism;
+
+    private volatile ContractionHierarchy hierarchy;
+    private volatile NodeLocator locator;
+
+    @PostConstruct
+    void loadHierarchy() {
+        try {
+            long fingerprint = sourceFingerprint();
+            Path chPath = Paths.get(chFile);
+            ContractionHierarchy loaded;
+
+            Long stored = ChGraphFile.readFingerprint(chPath);
+            if (stored != null && stored == fingerprint) {
+                loaded = ChGraphFile.map(chPath);
+                log.info("🗺️ Mapped contraction hierarchy from {} ({} nodes)", chPath, loaded.getNodeCount());
+            } else {
+                long start = System.currentTimeMillis();
+                RoadGraph graph = loadGraph();
+                loaded = ContractionHierarchyBuilder.build(graph);
+                log.info("🗺️ Built contraction hierarchy: {} nodes, {} edges, {} up/{} down arcs in {} ms",
+                        graph.getNodeCount(), graph.getEdgeCount(), loaded.getForwardEdgeCount(),
+                        loaded.getBackwardEdgeCount(), System.currentTimeMillis() - start);
+                try {
+                    ChGraphFile.write(loaded, fingerprint, chPath);
+                    loaded = ChGraphFile.map(chPath);
+                } catch (IOException e) {
+                    log.warn("Failed to write contraction hierarchy to {}, keeping it on heap: {}",
+                            chPath, e.getMessage());
+                }
+            }
+
+            this.locator = new NodeLocator(loaded);
+            this.hierarchy = loaded.withQueryParallelism(queryParallelism);
+        } catch (Exception e) {
+            log.error("❌ Road graph routing disabled, failed to load graph: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public BigDecimal getDrivingDistance(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat,
+            BigDecimal toLng) {
+        Double meters = routeMeters(fromLat.doubleValue(), fromLng.doubleValue(), toLat.doubleValue(),
+                toLng.doubleValue());
+        return meters != null ? toKm(meters) : null;
+    }
+
+    @Override
+    public BigDecimal getDrivingDuration(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat,
+            BigDecimal toLng) {
+        Double meters = routeMeters(fromLat.doubleValue(), fromLng.doubleValue(), toLat.doubleValue(),
+                toLng.doubleValue());
+        if (meters == null) {
+            return null;
+        }
+        return BigDecimal.valueOf(meters / 1000.0 / averageSpeedKmh * 60.0).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Many-to-one query: one backward search for the destination, one upward
+     * forward search per origin
+     */
+    @Override
+    public List<BigDecimal> getDrivingDistancesTo(List<Point> origins, BigDecimal toLat, BigDecimal toLng) {
+        ContractionHierarchy ch = this.hierarchy;
+        List<BigDecimal> distances = new ArrayList<>(Collections.nCopies(origins.size(), (BigDecimal) null));
+        if (ch == null || origins.isEmpty()) {
+            return distances;
+        }
+
+        double lat = toLat.doubleValue();
+        double lng = toLng.doubleValue();
+        int target = locator.nearest(lat, lng, maxSnapMeters);
+        if (target < 0) {
+            return distances;
+        }
+        double targetSnap = snapMeters(ch, target, lat, lng);
+
+        int[] sources = new int[origins.size()];
+        List<Integer> snappedIndexes = new ArrayList<>();
+        for (int i = 0; i < origins.size(); i++) {
+            Point origin = origins.get(i);
+            int node = locator.nearest(origin.getY(), origin.getX(), maxSnapMeters);
+            if (node >= 0) {
+                sources[snappedIndexes.size()] = node;
+                snappedIndexes.add(i);
+            }
+        }
+
+        int[] meters = ch.manyToOne(Arrays.copyOf(sources, snappedIndexes.size()), target);
+        for (int k = 0; k < meters.length; k++) {
+            if (meters[k] == ContractionHierarchy.UNREACHABLE) {
+                continue;
+            }
+            int i = snappedIndexes.get(k);
+            Point origin = origins.get(i);
+            double total = meters[k] + targetSnap + snapMeters(ch, sources[k], origin.getY(), origin.getX());
+            distances.set(i, toKm(total));
+        }
+        return distances;
+    }
+
+    private Double routeMeters(double fromLat, double fromLng, double toLat, double toLng) {
+        ContractionHierarchy ch = this.hierarchy;
+        if (ch == null) {
+            return null;
+        }
+        int source = locator.nearest(fromLat, fromLng, maxSnapMeters);
+        int target = locator.nearest(toLat, toLng, maxSnapMeters);
+        if (source < 0 || target < 0) {
+            log.debug("Point outside road graph: ({}, {}) -> ({}, {})", fromLat, fromLng, toLat, toLng);
+            return null;
+        }
+        int meters = ch.distance(source, target);
+        if (meters == ContractionHierarchy.UNREACHABLE) {
+            return null;
+        }
+        return meters + snapMeters(ch, source, fromLat, fromLng) + snapMeters(ch, target, toLat, toLng);
+    }
+
+    private static double snapMeters(ContractionHierarchy ch, int node, double latitude, double longitude) {
+        return GeoUtils.haversineKm(latitude, longitude, ch.latitude(node), ch.longitude(node)) * 1000.0;
+    }
+
+    private static BigDecimal toKm(double meters) {
+        return BigDecimal.valueOf(meters / 1000.0).setScale(3, RoundingMode.HALF_UP);
+    }
+
+    private RoadGraph loadGraph() throws IOException {
+        if (graphFile != null && !graphFile.isBlank()) {
+            return RoadGraph.load(Paths.get(graphFile));
+        }
+        if (syntheticGrid != null && !syntheticGrid.isBlank()) {
+            return RoadGraph.syntheticGrid(syntheticGrid);
+        }
+        throw new IOException("Neither routing.engine.graph-file nor routing.engine.synthetic-grid is set");
+    }
+
+    /**
+     * Identifies the graph source so a stale hierarchy file is rebuilt
+     */
+    private long sourceFingerprint() throws IOException {
+        if (graphFile != null && !graphFile.isBlank()) {
+            Path path = Paths.get(graphFile);
+            return Files.size(path) * 31 + Files.getLastModifiedTime(path).toMillis();
+        }
+        return syntheticGrid == null ? 0 : syntheticGrid.replace(" ", "").hashCode();
+    }
+}
@@ -0,0 +1,397 @@
+package com.example.FoodDelivery.service.stream;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.FoodDelivery.domain.res.order.ResOrderDTO;
+import com.example.FoodDelivery.domain.res.websocket.OrderDelta;
+import com.example.FoodDelivery.service.websocket.OrderDeltaService;
+import com.example.FoodDelivery.service.websocket.PresenceService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Server-Sent Events streams of single orders (GET /api/v1/orders/{id}/stream)
+ *
+ * Fed from the broker channel, i.e. the same messages the STOMP clients get:
+ * /topic/order/{id}/delta as "order" events (OrderDelta) and
+ * /topic/order/{id}/location as "location" events (DriverLocationDelta). The
+ * stream registers its destinations with PresenceService, so they count as
+ * subscribed and, in cluster mode, the Redis relay brings in events published
+ * on other nodes.
+ *
+ * All connections to one order share one stream with a replay buffer of the
+ * last order-stream.replay-size events. Event ids are "{stream}-{seq}"; a
+ * client reconnecting with a Last-Event-ID still in the buffer gets the
+ * missed events, otherwise (unknown stream, e.g. another node, or too old) an
+ * "order" SNAPSHOT first. Heartbeats for all connections are sent by one
+ * scheduled task, and events are written by a small sender pool so a slow
+ * client never blocks the publisher.
+ */
+@Service
+@Slf4j
+public class OrderStreamService implements MessageHandler {
+    private static final Pattern ORDER_DESTINATION = Pattern.compile("^/topic/order/(\\d+)/(delta|location)$");
+    private static final String ORDER_EVENT = "order";
+
+    private final SubscribableChannel brokerChannel;
+    private final PresenceService presenceService;
+    private final OrderDeltaService orderDeltaService;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor sender;
+    private final int replaySize;
+    private final long timeoutMs;
+    private final long retainMs;
+
+    private final Map<Long, OrderStream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final Counter events;
+    private final Counter snapshots;
+    private final Counter replayed;
+
+    public OrderStreamService(@Lazy @Qualifier("brokerChannel") SubscribableChannel brokerChannel,
+            PresenceService presenceService, OrderDeltaService orderDeltaService,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${order-stream.sender-threads:2}") int senderThreads,
+            @Value("${order-stream.replay-size:64}") int replaySize,
+            @Value("${order-stream.timeout-ms:1800000}") long timeoutMs,
+            @Value("${order-stream.retain-ms:120000}") long retainMs) {
+        this.brokerChannel = brokerChannel;
+        this.presenceService = presenceService;
+        this.orderDeltaService = orderDeltaService;
+        this.objectMapper = objectMapper;
+        this.replaySize = replaySize;
+        this.timeoutMs = timeoutMs;
+        this.retainMs = retainMs;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        // At most one pending task per stream, so the queue stays small
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(10000),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "order-stream-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.events = Counter.builder("order.stream.events").register(meterRegistry);
+        this.snapshots = Counter.builder("order.stream.snapshots").register(meterRegistry);
+        this.replayed = Counter.builder("order.stream.replayed").register(meterRegistry);
+        Gauge.builder("order.stream.connections", connections, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("order.stream.orders", streams, Map::size).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        brokerChannel.subscribe(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * Open a stream of an order for one client
+     *
+     * @param lastEventId Last-Event-ID header of a reconnecting client, or null
+     * @param loader      Loads the order when no published state is available
+     */
+    public SseEmitter open(Long orderId, String lastEventId, Supplier<ResOrderDTO> loader) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber[] created = new Subscriber[1];
+        boolean[] newStream = new boolean[1];
+        // Atomic with the removal of idle streams in heartbeat()
+        OrderStream stream = streams.compute(orderId, (id, existing) -> {
+            OrderStream current = existing;
+            if (current == null) {
+                current = new OrderStream(id, loader);
+                newStream[0] = true;
+            }
+            created[0] = new Subscriber(emitter, current.resumeFrom(lastEventId));
+            current.subscribers.add(created[0]);
+            return current;
+        });
+        Subscriber subscriber = created[0];
+        if (newStream[0]) {
+            stream.destinations().forEach(presenceService::acquire);
+        }
+        if (subscriber.lastSentId >= 0) {
+            replayed.increment();
+        }
+        connections.incrementAndGet();
+
+        Runnable remove = () -> {
+            if (stream.subscribers.remove(subscriber)) {
+                connections.decrementAndGet();
+                stream.touch();
+            }
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+
+        schedule(stream);
+        return emitter;
+    }
+
+    /**
+     * Broker channel: buffer order events of open streams and wake their
+     * senders
+     */
+    @Override
+    public void handleMessage(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !(message.getPayload() instanceof byte[])) {
+            return;
+        }
+        Matcher matcher = ORDER_DESTINATION.matcher(destination);
+        if (!matcher.matches()) {
+            return;
+        }
+        OrderStream stream = streams.get(Long.valueOf(matcher.group(1)));
+        if (stream == null) {
+            return;
+        }
+        String name = "delta".equals(matcher.group(2)) ? ORDER_EVENT : "location";
+        stream.append(name, new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+        events.increment();
+        schedule(stream);
+    }
+
+    /**
+     * One heartbeat pass over every connection; also drops streams that had no
+     * connection for order-stream.retain-ms
+     */
+    @Scheduled(fixedDelayString = "${order-stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        for (OrderStream stream : streams.values()) {
+            if (stream.subscribers.isEmpty()) {
+                boolean[] removed = new boolean[1];
+                streams.computeIfPresent(stream.orderId, (id, current) -> {
+                    if (current == stream && current.subscribers.isEmpty()
+                            && now - current.lastActivity > retainMs) {
+                        removed[0] = true;
+                        return null;
+                    }
+                    return current;
+                });
+                if (removed[0]) {
+                    stream.destinations().forEach(presenceService::release);
+                }
+                continue;
+            }
+            stream.heartbeatDue = true;
+            schedule(stream);
+        }
+    }
+
+    private void schedule(OrderStream stream) {
+        if (!stream.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sender.execute(() -> {
+                stream.scheduled.set(false);
+                deliver(stream);
+            });
+        } catch (RejectedExecutionException e) {
+            // Picked up again by the next event or heartbeat
+            stream.scheduled.set(false);
+        }
+    }
+
+    /**
+     * Bring every connection of a stream up to date
+     */
+    private void deliver(OrderStream stream) {
+        boolean heartbeat = stream.heartbeatDue;
+        stream.heartbeatDue = false;
+        for (Subscriber subscriber : stream.subscribers) {
+            try {
+                deliver(stream, subscriber, heartbeat);
+            } catch (Exception e) {
+                log.debug("Closing order {} stream connection: {}", stream.orderId, e.getMessage());
+                if (stream.subscribers.remove(subscriber)) {
+                    connections.decrementAndGet();
+                    stream.touch();
+                }
+                subscriber.emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private void deliver(OrderStream stream, Subscriber subscriber, boolean heartbeat) throws IOException {
+        synchronized (subscriber) {
+            List<StreamEvent> pending = stream.eventsAfter(subscriber.lastSentId);
+            if (pending == null) {
+                // New connection or fell behind the replay buffer
+                long at = stream.lastId();
+                OrderDelta snapshot = orderDeltaService.snapshot(stream.orderId, stream.loader);
+                if (snapshot == null) {
+                    subscriber.emitter.complete();
+                    return;
+                }
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(stream.eventId(at))
+                        .name(ORDER_EVENT)
+                        .data(objectMapper.writeValueAsString(snapshot), MediaType.APPLICATION_JSON));
+                snapshots.increment();
+                subscriber.lastSentId = at;
+                pending = stream.eventsAfter(at);
+                if (pending == null) {
+                    return;
+                }
+            }
+            for (StreamEvent event : pending) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(stream.eventId(event.id))
+                        .name(event.name)
+                        .data(event.data, MediaType.APPLICATION_JSON));
+                subscriber.lastSentId = event.id;
+            }
+            if (heartbeat && pending.isEmpty()) {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        // -1: nothing sent yet, a snapshot comes first
+        private long lastSentId;
+
+        Subscriber(SseEmitter emitter, long lastSentId) {
+            this.emitter = emitter;
+            this.lastSentId = lastSentId;
+        }
+    }
+
+    private static final class StreamEvent {
+        private final long id;
+        private final String name;
+        private final String data;
+
+        StreamEvent(long id, String name, String data) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Connections and replay buffer of one order
+     */
+    private final class OrderStream {
+        private final Long orderId;
+        private final Supplier<ResOrderDTO> loader;
+        // Distinguishes event ids of this stream from an earlier one or another node
+        private final String token = UUID.randomUUID().toString().substring(0, 8);
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final ArrayDeque<StreamEvent> buffer = new ArrayDeque<>();
+        private long lastId;
+        private volatile long lastActivity = System.currentTimeMillis();
+        private volatile boolean heartbeatDue;
+
+        OrderStream(Long orderId, Supplier<ResOrderDTO> loader) {
+            this.orderId = orderId;
+            this.loader = loader;
+        }
+
+        List<String> destinations() {
+            return List.of("/topic/order/" + orderId + "/delta", "/topic/order/" + orderId + "/location");
+        }
+
+        String eventId(long id) {
+            return token + "-" + id;
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        synchronized void append(String name, String data) {
+            buffer.addLast(new StreamEvent(++lastId, name, data));
+            if (buffer.size() > replaySize) {
+                buffer.removeFirst();
+            }
+            touch();
+        }
+
+        synchronized long lastId() {
+            return lastId;
+        }
+
+        /**
+         * Events after the given id, or null when some of them are no longer
+         * buffered (or nothing was sent yet)
+         */
+        synchronized List<StreamEvent> eventsAfter(long id) {
+            long oldest = buffer.isEmpty() ? lastId + 1 : buffer.peekFirst().id;
+            if (id < 0 || id < oldest - 1 || id > lastId) {
+                return null;
+            }
+            List<StreamEvent> events = new ArrayList<>((int) (lastId - id));
+            for (StreamEvent event : buffer) {
+                if (event.id > id) {
+                    events.add(event);
+                }
+            }
+            return events;
+        }
+
+        /**
+         * Id to resume from for a Last-Event-ID, -1 when it is not from this
+         * stream or no longer buffered
+         */
+        long resumeFrom(String lastEventId) {
+            if (lastEventId == null || !lastEventId.startsWith(token + "-")) {
+                return -1;
+            }
+            try {
+                long id = Long.parseLong(lastEventId.substring(token.length() + 1));
+                return eventsAfter(id) != null ? id : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.FoodDelivery.service.trail;
+
+/**
+ * Fixed-size ring buffer of one trail, delta-encoded in primitive arrays
+ *
+ * Only the oldest retained sample is stored absolutely; every other sample is
+ * a (dLat, dLng, dt) step from its predecessor in 16-bit fields (degrees x
+ * 1e6 and seconds), i.e. 6 bytes per sample. A jump of up to MAX_SPLIT_STEPS
+ * x ~3.6 km is split into several steps; anything further (a bogus fix, a GPS
+ * reset) is stored as an absolute keyframe in two slots instead, so one bad
+ * sample costs at most two slots rather than wiping the ring. Gaps of more
+ * than 9 h are split into time-only steps; gaps beyond MAX_SPLIT_STEPS x 9 h
+ * are shortened to that.
+ * When full, the oldest record is folded into the base sample, so the buffer
+ * keeps the most recent samples that fit in capacity slots.
+ * Not thread-safe.
+ */
+final class TrailBuffer {
+    static final int MAX_SPLIT_STEPS = 8;
+    // deltaSeconds of the first slot of a keyframe; never a real step (dt >= 0)
+    private static final short KEYFRAME = Short.MIN_VALUE;
+
+    private final short[] deltaLat;
+    private final short[] deltaLng;
+    private final short[] deltaSeconds;
+    private final int capacity;
+
+    private int head;
+    private int count;
+    // Samples after the base (a keyframe is one sample in two slots)
+    private int records;
+    private boolean empty = true;
+
+    // Oldest retained sample
+    private int baseLat;
+    private int baseLng;
+    private long baseTime;
+
+    // Newest sample
+    private int lastLat;
+    private int lastLng;
+    private long lastTime;
+
+    TrailBuffer(int capacity) {
+        // A keyframe needs two slots
+        this.capacity = Math.max(2, capacity);
+        this.deltaLat = new short[this.capacity];
+        this.deltaLng = new short[this.capacity];
+        this.deltaSeconds = new short[this.capacity];
+    }
+
+    void append(int latE6, int lngE6, long epochSeconds) {
+        if (empty) {
+            baseLat = lastLat = latE6;
+            baseLng = lastLng = lngE6;
+            baseTime = lastTime = epochSeconds;
+            empty = false;
+            return;
+        }
+
+        long dLat = (long) latE6 - lastLat;
+        long dLng = (long) lngE6 - lastLng;
+        long dt = Math.min(Math.max(0, epochSeconds - lastTime), (long) MAX_SPLIT_STEPS * Short.MAX_VALUE);
+        long moveSteps = Math.max(ceilDiv(Math.abs(dLat), Short.MAX_VALUE),
+                ceilDiv(Math.abs(dLng), Short.MAX_VALUE));
+
+        if (moveSteps > MAX_SPLIT_STEPS) {
+            appendKeyframe(latE6, lngE6, dt);
+        } else {
+            appendSteps(dLat, dLng, dt, Math.max(1, Math.max(moveSteps, ceilDiv(dt, Short.MAX_VALUE))));
+        }
+        lastLat = latE6;
+        lastLng = lngE6;
+        lastTime = lastTime + dt;
+    }
+
+    private void appendSteps(long dLat, long dLng, long dt, long steps) {
+        int prevLat = lastLat;
+        int prevLng = lastLng;
+        long prevTime = lastTime;
+        for (long i = 1; i <= steps; i++) {
+            int stepLat = (int) (lastLat + dLat * i / steps);
+            int stepLng = (int) (lastLng + dLng * i / steps);
+            long stepTime = lastTime + dt * i / steps;
+            push((short) (stepLat - prevLat), (short) (stepLng - prevLng), (short) (stepTime - prevTime));
+            records++;
+            prevLat = stepLat;
+            prevLng = stepLng;
+            prevTime = stepTime;
+        }
+    }
+
+    private void appendKeyframe(int latE6, int lngE6, long dt) {
+        // Time that does not fit the keyframe goes into time-only steps first
+        while (dt > Short.MAX_VALUE) {
+            push((short) 0, (short) 0, Short.MAX_VALUE);
+            records++;
+            dt -= Short.MAX_VALUE;
+        }
+        // High halves with the marker, then low halves with the time step
+        push((short) (latE6 >> 16), (short) (lngE6 >> 16), KEYFRAME);
+        push((short) latE6, (short) lngE6, (short) dt);
+        records++;
+    }
+
+    private void push(short dLat, short dLng, short dt) {
+        if (count == capacity) {
+            foldOldest();
+        }
+        int slot = (head + count) % capacity;
+        deltaLat[slot] = dLat;
+        deltaLng[slot] = dLng;
+        deltaSeconds[slot] = dt;
+        count++;
+    }
+
+    /**
+     * Fold the oldest record (one step or a whole keyframe) into the base
+     * sample
+     */
+    private void foldOldest() {
+        if (deltaSeconds[head] == KEYFRAME) {
+            int low = (head + 1) % capacity;
+            baseLat = absolute(deltaLat[head], deltaLat[low]);
+            baseLng = absolute(deltaLng[head], deltaLng[low]);
+            baseTime += deltaSeconds[low];
+            head = (head + 2) % capacity;
+            count -= 2;
+        } else {
+            baseLat += deltaLat[head];
+            baseLng += deltaLng[head];
+            baseTime += deltaSeconds[head];
+            head = (head + 1) % capacity;
+            count--;
+        }
+        records--;
+    }
+
+    int size() {
+        return empty ? 0 : records + 1;
+    }
+
+    int lastLatE6() {
+        return lastLat;
+    }
+
+    int lastLngE6() {
+        return lastLng;
+    }
+
+    long lastEpochSecond() {
+        return lastTime;
+    }
+
+    /**
+     * Absolute samples, oldest first
+     */
+    TrailPoints toPoints() {
+        int n = size();
+        int[] lat = new int[n];
+        int[] lng = new int[n];
+        long[] time = new long[n];
+        if (n == 0) {
+            return new TrailPoints(lat, lng, time);
+        }
+        lat[0] = baseLat;
+        lng[0] = baseLng;
+        time[0] = baseTime;
+        int i = 1;
+        for (int k = 0; k < count; k++, i++) {
+            int slot = (head + k) % capacity;
+            if (deltaSeconds[slot] == KEYFRAME) {
+                int low = (slot + 1) % capacity;
+                lat[i] = absolute(deltaLat[slot], deltaLat[low]);
+                lng[i] = absolute(deltaLng[slot], deltaLng[low]);
+                time[i] = time[i - 1] + deltaSeconds[low];
+                k++;
+            } else {
+                lat[i] = lat[i - 1] + deltaLat[slot];
+                lng[i] = lng[i - 1] + deltaLng[slot];
+                time[i] = time[i - 1] + deltaSeconds[slot];
+            }
+        }
+        return new TrailPoints(lat, lng, time);
+    }
+
+    private static int absolute(short high, short low) {
+        return (high << 16) | (low & 0xFFFF);
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
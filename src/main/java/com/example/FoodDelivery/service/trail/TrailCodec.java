@@ -0,0 +1,228 @@
+package com.example.FoodDelivery.service.trail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Simplification and compact binary encoding of trails
+ *
+ * Encoding (version 1), deflated:
+ *
+ * <pre>
+ * varint version, varint count,
+ * then per point: zigzag varint dLat, dLng (degrees x 1e6), dSeconds
+ * </pre>
+ *
+ * Deltas are taken from the previous point (from 0 for the first point).
+ */
+public final class TrailCodec {
+    public static final int VERSION = 1;
+
+    // Meters per 1e-6 degree of latitude
+    private static final double METERS_PER_E6 = 0.11132;
+
+    private TrailCodec() {
+    }
+
+    /**
+     * Douglas-Peucker simplification: drop points closer than epsilonMeters to
+     * the segment between the points kept around them
+     */
+    public static TrailPoints simplify(TrailPoints points, double epsilonMeters) {
+        int n = points.size();
+        if (n <= 2 || epsilonMeters <= 0) {
+            return points;
+        }
+
+        double lngScale = METERS_PER_E6 * Math.cos(Math.toRadians(points.latitude(0)));
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double maxDistance = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistance(points, i, first, last, lngScale);
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0 && maxDistance > epsilonMeters) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) {
+                kept++;
+            }
+        }
+        int[] lat = new int[kept];
+        int[] lng = new int[kept];
+        long[] time = new long[kept];
+        for (int i = 0, j = 0; i < n; i++) {
+            if (keep[i]) {
+                lat[j] = points.latE6(i);
+                lng[j] = points.lngE6(i);
+                time[j] = points.epochSecond(i);
+                j++;
+            }
+        }
+        return new TrailPoints(lat, lng, time);
+    }
+
+    /**
+     * Distance in meters from point i to segment first-last (local planar
+     * approximation, fine at city scale)
+     */
+    private static double segmentDistance(TrailPoints points, int i, int first, int last, double lngScale) {
+        double ax = points.lngE6(first) * lngScale;
+        double ay = points.latE6(first) * METERS_PER_E6;
+        double bx = points.lngE6(last) * lngScale - ax;
+        double by = points.latE6(last) * METERS_PER_E6 - ay;
+        double px = points.lngE6(i) * lngScale - ax;
+        double py = points.latE6(i) * METERS_PER_E6 - ay;
+
+        double lengthSq = bx * bx + by * by;
+        double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, (px * bx + py * by) / lengthSq));
+        double dx = px - t * bx;
+        double dy = py - t * by;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    public static byte[] encode(TrailPoints points) {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(points.size() * 6 + 8);
+        writeVarint(raw, VERSION);
+        writeVarint(raw, points.size());
+        long prevLat = 0;
+        long prevLng = 0;
+        long prevTime = 0;
+        for (int i = 0; i < points.size(); i++) {
+            writeVarint(raw, zigzag(points.latE6(i) - prevLat));
+            writeVarint(raw, zigzag(points.lngE6(i) - prevLng));
+            writeVarint(raw, zigzag(points.epochSecond(i) - prevTime));
+            prevLat = points.latE6(i);
+            prevLng = points.lngE6(i);
+            prevTime = points.epochSecond(i);
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw.toByteArray());
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.size() / 2 + 16);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static TrailPoints decode(byte[] data) {
+        Inflater inflater = new Inflater();
+        byte[] raw;
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated trail data");
+                }
+                out.write(chunk, 0, n);
+            }
+            raw = out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt trail data", e);
+        } finally {
+            inflater.end();
+        }
+
+        int[] pos = { 0 };
+        long version = readVarint(raw, pos);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported trail encoding version " + version);
+        }
+        int n = (int) readVarint(raw, pos);
+        int[] lat = new int[n];
+        int[] lng = new int[n];
+        long[] time = new long[n];
+        long prevLat = 0;
+        long prevLng = 0;
+        long prevTime = 0;
+        for (int i = 0; i < n; i++) {
+            prevLat += unzigzag(readVarint(raw, pos));
+            prevLng += unzigzag(readVarint(raw, pos));
+            prevTime += unzigzag(readVarint(raw, pos));
+            lat[i] = (int) prevLat;
+            lng[i] = (int) prevLng;
+            time[i] = prevTime;
+        }
+        return new TrailPoints(lat, lng, time);
+    }
+
+    /**
+     * Path length in meters
+     */
+    public static double lengthMeters(TrailPoints points) {
+        double meters = 0;
+        for (int i = 1; i < points.size(); i++) {
+            double lngScale = METERS_PER_E6 * Math.cos(Math.toRadians(points.latitude(i)));
+            double dx = (points.lngE6(i) - points.lngE6(i - 1)) * lngScale;
+            double dy = (points.latE6(i) - points.latE6(i - 1)) * METERS_PER_E6;
+            meters += Math.sqrt(dx * dx + dy * dy);
+        }
+        return meters;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (pos[0] >= data.length || shift > 63) {
+                throw new IllegalArgumentException("Corrupt trail data");
+            }
+            byte b = data[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
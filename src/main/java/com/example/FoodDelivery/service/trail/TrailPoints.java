@@ -0,0 +1,43 @@
+package com.example.FoodDelivery.service.trail;
+
+/**
+ * Decoded trail: parallel arrays of fixed-point positions (degrees x 1e6) and
+ * epoch-second timestamps, oldest first
+ */
+public final class TrailPoints {
+    static final double COORD_SCALE = 1_000_000.0;
+
+    private final int[] latE6;
+    private final int[] lngE6;
+    private final long[] epochSeconds;
+
+    public TrailPoints(int[] latE6, int[] lngE6, long[] epochSeconds) {
+        this.latE6 = latE6;
+        this.lngE6 = lngE6;
+        this.epochSeconds = epochSeconds;
+    }
+
+    public int size() {
+        return latE6.length;
+    }
+
+    public double latitude(int i) {
+        return latE6[i] / COORD_SCALE;
+    }
+
+    public double longitude(int i) {
+        return lngE6[i] / COORD_SCALE;
+    }
+
+    public long epochSecond(int i) {
+        return epochSeconds[i];
+    }
+
+    int latE6(int i) {
+        return latE6[i];
+    }
+
+    int lngE6(int i) {
+        return lngE6[i];
+    }
+}
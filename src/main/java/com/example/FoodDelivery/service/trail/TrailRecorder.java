@@ -0,0 +1,168 @@
+package com.example.FoodDelivery.service.trail;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.FoodDelivery.service.OrderTrailService;
+import com.example.FoodDelivery.util.GeoUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Records the driver path of each active delivery into a TrailBuffer and
+ * hands it to OrderTrailService when the delivery ends
+ *
+ * Memory is bounded: one buffer per active delivery (not per online driver),
+ * at most trail.max-active buffers, each a fixed trail.capacity samples of
+ * 6 bytes. Samples are taken at most every trail.min-interval-seconds and
+ * only after the driver moved trail.min-move-meters, with one sample per
+ * trail.idle-sample-seconds while standing still so waiting time stays
+ * visible.
+ *
+ * Fixes outside the Redis GEO range or at (0,0), and fixes implying more than
+ * trail.max-speed-kmh from the last sample, are dropped. After
+ * trail.max-rejected-in-a-row dropped fixes in a row the next one is taken
+ * anyway, in case it was the last sample that was wrong.
+ */
+@Service
+@Slf4j
+public class TrailRecorder {
+    private static final double COORD_SCALE = TrailPoints.COORD_SCALE;
+
+    private final OrderTrailService orderTrailService;
+    private final int capacity;
+    private final int maxActive;
+    private final long minIntervalSeconds;
+    private final double minMoveKm;
+    private final long idleSampleSeconds;
+    private final double maxSpeedKmh;
+    private final int maxRejectedInARow;
+
+    private final Map<Long, Trail> trails = new ConcurrentHashMap<>();
+    private final Counter rejected;
+    private final Counter implausible;
+
+    public TrailRecorder(OrderTrailService orderTrailService, MeterRegistry meterRegistry,
+            @Value("${trail.capacity:1024}") int capacity,
+            @Value("${trail.max-active:20000}") int maxActive,
+            @Value("${trail.min-interval-seconds:3}") long minIntervalSeconds,
+            @Value("${trail.min-move-meters:5}") double minMoveMeters,
+            @Value("${trail.idle-sample-seconds:60}") long idleSampleSeconds,
+            @Value("${trail.max-speed-kmh:200}") double maxSpeedKmh,
+            @Value("${trail.max-rejected-in-a-row:5}") int maxRejectedInARow) {
+        this.orderTrailService = orderTrailService;
+        this.capacity = capacity;
+        this.maxActive = maxActive;
+        this.minIntervalSeconds = minIntervalSeconds;
+        this.minMoveKm = minMoveMeters / 1000.0;
+        this.idleSampleSeconds = idleSampleSeconds;
+        this.maxSpeedKmh = maxSpeedKmh;
+        this.maxRejectedInARow = maxRejectedInARow;
+
+        this.rejected = Counter.builder("trail.rejected")
+                .description("Trails not recorded because trail.max-active was reached")
+                .register(meterRegistry);
+        this.implausible = Counter.builder("trail.samples.implausible")
+                .description("Driver fixes dropped as invalid or too fast to be real")
+                .register(meterRegistry);
+        Gauge.builder("trail.active", trails, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record a driver position of an active delivery
+     */
+    public void append(Long orderId, Long driverId, double latitude, double longitude, long epochMillis) {
+        if (!GeoUtils.isValidPosition(latitude, longitude)) {
+            implausible.increment();
+            return;
+        }
+        Trail trail = trails.get(orderId);
+        if (trail == null) {
+            if (trails.size() >= maxActive) {
+                rejected.increment();
+                return;
+            }
+            trail = trails.computeIfAbsent(orderId, id -> new Trail(driverId, new TrailBuffer(capacity)));
+        }
+        trail.append((int) Math.round(latitude * COORD_SCALE), (int) Math.round(longitude * COORD_SCALE),
+                epochMillis / 1000);
+    }
+
+    /**
+     * End the trail of an order and persist it (after the current transaction
+     * commits, if there is one, so the insert doesn't wait on the order row
+     * that transaction has locked and a rolled back delivery keeps recording)
+     */
+    public void close(Long orderId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    closeNow(orderId);
+                }
+            });
+        } else {
+            closeNow(orderId);
+        }
+    }
+
+    private void closeNow(Long orderId) {
+        Trail trail = trails.remove(orderId);
+        if (trail != null) {
+            save(orderId, trail);
+        }
+    }
+
+    private void save(Long orderId, Trail trail) {
+        try {
+            orderTrailService.saveTrail(orderId, trail.driverId, trail.snapshot());
+        } catch (Exception e) {
+            log.error("Failed to save trail of order {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    private final class Trail {
+        private final Long driverId;
+        private final TrailBuffer buffer;
+        private int rejectedInARow;
+
+        Trail(Long driverId, TrailBuffer buffer) {
+            this.driverId = driverId;
+            this.buffer = buffer;
+        }
+
+        synchronized void append(int latE6, int lngE6, long epochSecond) {
+            if (buffer.size() > 0) {
+                long elapsed = epochSecond - buffer.lastEpochSecond();
+                if (elapsed < minIntervalSeconds) {
+                    return;
+                }
+                double movedKm = GeoUtils.haversineKm(buffer.lastLatE6() / COORD_SCALE,
+                        buffer.lastLngE6() / COORD_SCALE, latE6 / COORD_SCALE, lngE6 / COORD_SCALE);
+                if (movedKm < minMoveKm && elapsed < idleSampleSeconds) {
+                    return;
+                }
+                if (movedKm / (elapsed / 3600.0) > maxSpeedKmh && rejectedInARow < maxRejectedInARow) {
+                    rejectedInARow++;
+                    implausible.increment();
+                    return;
+                }
+            }
+            rejectedInARow = 0;
+            buffer.append(latE6, lngE6, epochSecond);
+        }
+
+        synchronized TrailPoints snapshot() {
+            return buffer.toPoints();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.FoodDelivery.service.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.domain.res.websocket.DriverLocationDelta;
+import com.example.FoodDelivery.domain.res.websocket.OrderDelta;
+import com.example.FoodDelivery.service.NotificationOutbox;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compact binary variants of the high-frequency topics
+ *
+ * A client opts in by subscribing to the destination with "/bin" appended
+ * instead of the JSON one:
+ * /topic/customer/{id}/driver-location/bin, /topic/order/{id}/location/bin -
+ * DriverLocationDelta in the LocationFrameCodec layout
+ * /topic/order/{id}/delta/bin - OrderDelta as CBOR (same fields as the JSON)
+ *
+ * Frames are sent as application/octet-stream, which STOMP delivers as
+ * binary WebSocket messages (native WebSocket only, not SockJS). A binary
+ * variant is only encoded when PresenceService reports a subscriber, so
+ * JSON-only traffic pays nothing (websocket.compact.enabled=false turns the
+ * variants off).
+ */
+@Service
+@Slf4j
+public class CompactFramePublisher {
+    public static final String BINARY_SUFFIX = "/bin";
+
+    private final NotificationOutbox notificationOutbox;
+    private final PresenceService presenceService;
+    private final ObjectMapper cborMapper;
+    private final boolean enabled;
+
+    private final Counter locationFrames;
+    private final Counter deltaFrames;
+
+    public CompactFramePublisher(NotificationOutbox notificationOutbox, PresenceService presenceService,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${websocket.compact.enabled:true}") boolean enabled) {
+        this.notificationOutbox = notificationOutbox;
+        this.presenceService = presenceService;
+        // Same modules and settings as the JSON mapper, CBOR output
+        this.cborMapper = objectMapper.copyWith(new CBORFactory());
+        this.enabled = enabled;
+
+        this.locationFrames = Counter.builder("websocket.compact.frames")
+                .tag("kind", "location")
+                .register(meterRegistry);
+        this.deltaFrames = Counter.builder("websocket.compact.frames")
+                .tag("kind", "delta")
+                .register(meterRegistry);
+    }
+
+    public static String binaryDestination(String destination) {
+        return destination + BINARY_SUFFIX;
+    }
+
+    /**
+     * Send a location update to the binary variants of the given JSON
+     * destinations that have subscribers
+     */
+    public void sendLocation(List<String> destinations, DriverLocationDelta delta) {
+        List<String> targets = subscribedBinary(destinations);
+        if (targets.isEmpty()) {
+            return;
+        }
+        notificationOutbox.sendToAll(targets, LocationFrameCodec.encode(delta));
+        locationFrames.increment(targets.size());
+    }
+
+    /**
+     * Send an order delta to the binary variant of its destination if it has
+     * subscribers
+     */
+    public void sendDelta(String destination, OrderDelta delta) {
+        List<String> targets = subscribedBinary(List.of(destination));
+        if (targets.isEmpty()) {
+            return;
+        }
+        try {
+            notificationOutbox.sendToAll(targets, cborMapper.writeValueAsBytes(delta));
+            deltaFrames.increment();
+        } catch (Exception e) {
+            log.error("Failed to encode CBOR delta of order {}: {}", delta.getOrderId(), e.getMessage());
+        }
+    }
+
+    private List<String> subscribedBinary(List<String> destinations) {
+        if (!enabled) {
+            return List.of();
+        }
+        List<String> binary = new ArrayList<>(destinations.size());
+        for (String destination : destinations) {
+            binary.add(binaryDestination(destination));
+        }
+        return presenceService.subscribed(binary);
+    }
+}
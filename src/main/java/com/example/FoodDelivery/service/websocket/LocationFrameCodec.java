@@ -0,0 +1,120 @@
+package com.example.FoodDelivery.service.websocket;
+
+import java.util.Arrays;
+
+import com.example.FoodDelivery.domain.res.websocket.DriverLocationDelta;
+
+/**
+ * Binary encoding of DriverLocationDelta for the /bin location topics
+ *
+ * Encoding (version 1):
+ *
+ * <pre>
+ * byte flags: version in the high 4 bits, bit 0 set on keyframes
+ * varint orderId, varint seq, varint ts (epoch ms)
+ * keyframe: zigzag varint lat, lng (degrees x 1e6)
+ * otherwise: zigzag varint dlat, dlng (degrees x 1e6)
+ * </pre>
+ *
+ * A typical delta frame is 16 bytes against 70 bytes of JSON, a keyframe 20
+ * against 78 (the frames in LocationFrameCodecTest). decode rejects frames of
+ * another version, truncated or with trailing bytes, and coordinates outside
+ * the int range.
+ */
+public final class LocationFrameCodec {
+    public static final int VERSION = 1;
+    private static final int KEYFRAME = 0x01;
+    // flags + 5 varints of at most 10 bytes
+    private static final int MAX_SIZE = 1 + 5 * 10;
+
+    private LocationFrameCodec() {
+    }
+
+    public static byte[] encode(DriverLocationDelta delta) {
+        boolean keyframe = delta.getLat() != null && delta.getLng() != null;
+        byte[] buffer = new byte[MAX_SIZE];
+        buffer[0] = (byte) (VERSION << 4 | (keyframe ? KEYFRAME : 0));
+        int pos = 1;
+        pos = writeVarint(buffer, pos, valueOf(delta.getOrderId()));
+        pos = writeVarint(buffer, pos, valueOf(delta.getSeq()));
+        pos = writeVarint(buffer, pos, valueOf(delta.getTs()));
+        if (keyframe) {
+            pos = writeVarint(buffer, pos, zigzag(delta.getLat()));
+            pos = writeVarint(buffer, pos, zigzag(delta.getLng()));
+        } else {
+            pos = writeVarint(buffer, pos, zigzag(delta.getDeltaLat() != null ? delta.getDeltaLat() : 0));
+            pos = writeVarint(buffer, pos, zigzag(delta.getDeltaLng() != null ? delta.getDeltaLng() : 0));
+        }
+        return Arrays.copyOf(buffer, pos);
+    }
+
+    public static DriverLocationDelta decode(byte[] data) {
+        if (data.length == 0 || (data[0] & 0xFF) >>> 4 != VERSION) {
+            throw new IllegalArgumentException("Unsupported location frame");
+        }
+        boolean keyframe = (data[0] & KEYFRAME) != 0;
+        int[] pos = { 1 };
+        DriverLocationDelta delta = new DriverLocationDelta();
+        delta.setOrderId(readVarint(data, pos));
+        delta.setSeq(readVarint(data, pos));
+        delta.setTs(readVarint(data, pos));
+        int first = readCoordinate(data, pos);
+        int second = readCoordinate(data, pos);
+        if (pos[0] != data.length) {
+            throw new IllegalArgumentException("Corrupt location frame");
+        }
+        if (keyframe) {
+            delta.setLat(first);
+            delta.setLng(second);
+        } else {
+            delta.setDeltaLat(first);
+            delta.setDeltaLng(second);
+        }
+        return delta;
+    }
+
+    private static long valueOf(Long value) {
+        return value != null ? value : 0;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int readCoordinate(byte[] data, int[] pos) {
+        long value = unzigzag(readVarint(data, pos));
+        if (value != (int) value) {
+            throw new IllegalArgumentException("Corrupt location frame");
+        }
+        return (int) value;
+    }
+
+    private static int writeVarint(byte[] buffer, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarint(byte[] data, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (pos[0] >= data.length || shift > 63) {
+                throw new IllegalArgumentException("Corrupt location frame");
+            }
+            byte b = data[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.FoodDelivery.service.websocket;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.domain.res.websocket.OrderNotification;
+import com.example.FoodDelivery.service.NotificationOutbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Coalesces order notifications per recipient (notification.coalesce.window-ms)
+ *
+ * The first notification about an order opens a window; everything sent
+ * about that order until it closes is held back. Each destination then gets
+ * one frame per notification type: the last notification of that type
+ * (message, latest data) with all messages of that type in "messages", so
+ * a NEW_ORDER or ORDER_ASSIGNED is never hidden behind a later status
+ * change. Frames go out in the order of each type's last notification, so
+ * the last frame still carries the newest state. A single notification of a
+ * type goes out unchanged. Destinations that ended up with the same
+ * notifications share the encoded frames.
+ *
+ * Notifications enter the window after the transaction commits (through the
+ * outbox), so a rolled back update never replaces a committed one. With a
+ * window of 0 everything is sent right away.
+ */
+@Service
+@Slf4j
+public class NotificationCoalescer {
+    private final NotificationOutbox notificationOutbox;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final long windowMs;
+
+    // orderId -> notifications held back in the open window
+    private final Map<Long, Window> windows = new ConcurrentHashMap<>();
+
+    private final Counter received;
+    private final Counter frames;
+
+    public NotificationCoalescer(NotificationOutbox notificationOutbox, MeterRegistry meterRegistry,
+            @Value("${notification.coalesce.window-ms:100}") long windowMs) {
+        this.notificationOutbox = notificationOutbox;
+        this.windowMs = windowMs;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "notification-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+
+        this.received = Counter.builder("notification.coalesce.notifications")
+                .description("Order notifications entering a coalescing window")
+                .register(meterRegistry);
+        this.frames = Counter.builder("notification.coalesce.frames")
+                .description("Frames sent when coalescing windows close")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Send an order notification to destinations, merged with other
+     * notifications about the same order within the window
+     */
+    public void send(List<String> destinations, OrderNotification notification) {
+        if (destinations.isEmpty()) {
+            return;
+        }
+        if (windowMs <= 0 || notification.getOrderId() == null) {
+            notificationOutbox.sendToAll(destinations, notification);
+            return;
+        }
+        List<String> targets = List.copyOf(destinations);
+        notificationOutbox.afterCommit(() -> hold(targets, notification));
+    }
+
+    private void hold(List<String> destinations, OrderNotification notification) {
+        Long orderId = notification.getOrderId();
+        boolean[] opened = { false };
+        windows.compute(orderId, (id, window) -> {
+            if (window == null) {
+                window = new Window();
+                opened[0] = true;
+            }
+            for (String destination : destinations) {
+                window.notifications.computeIfAbsent(destination, key -> new ArrayList<>()).add(notification);
+            }
+            return window;
+        });
+        received.increment();
+        if (opened[0]) {
+            scheduler.schedule(() -> close(orderId), windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void close(Long orderId) {
+        Window window = windows.remove(orderId);
+        if (window == null) {
+            return;
+        }
+        try {
+            // Destinations holding the very same notifications get one shared frame
+            List<List<OrderNotification>> groups = new ArrayList<>();
+            List<List<String>> groupDestinations = new ArrayList<>();
+            window.notifications.forEach((destination, notifications) -> {
+                for (int i = 0; i < groups.size(); i++) {
+                    if (sameNotifications(groups.get(i), notifications)) {
+                        groupDestinations.get(i).add(destination);
+                        return;
+                    }
+                }
+                groups.add(notifications);
+                groupDestinations.add(new ArrayList<>(List.of(destination)));
+            });
+            for (int i = 0; i < groups.size(); i++) {
+                for (OrderNotification frame : mergeByType(groups.get(i))) {
+                    notificationOutbox.sendToAll(groupDestinations.get(i), frame);
+                    frames.increment();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to send coalesced notifications of order {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    private static boolean sameNotifications(List<OrderNotification> a, List<OrderNotification> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One merged notification per type, ordered by the last notification of
+     * each type
+     */
+    static List<OrderNotification> mergeByType(List<OrderNotification> notifications) {
+        Map<String, List<OrderNotification>> byType = new LinkedHashMap<>();
+        for (OrderNotification notification : notifications) {
+            // Re-inserted so that iteration follows each type's last notification
+            List<OrderNotification> sameType = byType.remove(notification.getType());
+            if (sameType == null) {
+                sameType = new ArrayList<>();
+            }
+            sameType.add(notification);
+            byType.put(notification.getType(), sameType);
+        }
+        List<OrderNotification> merged = new ArrayList<>(byType.size());
+        for (List<OrderNotification> sameType : byType.values()) {
+            merged.add(merge(sameType));
+        }
+        return merged;
+    }
+
+    /**
+     * Last notification with the messages of all of them (all of one type)
+     */
+    static OrderNotification merge(List<OrderNotification> notifications) {
+        OrderNotification last = notifications.get(notifications.size() - 1);
+        if (notifications.size() == 1) {
+            return last;
+        }
+        List<String> messages = new ArrayList<>(notifications.size());
+        for (OrderNotification notification : notifications) {
+            messages.add(notification.getMessage());
+        }
+        return new OrderNotification(last.getType(), last.getOrderId(), last.getMessage(), last.getData(), messages);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        // Send what is still held back instead of dropping it
+        new ArrayList<>(windows.keySet()).forEach(this::close);
+    }
+
+    private static final class Window {
+        // Guarded by the windows map (only touched inside compute)
+        private final Map<String, List<OrderNotification>> notifications = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.FoodDelivery.service.websocket;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.FoodDelivery.domain.res.order.ResOrderDTO;
+import com.example.FoodDelivery.domain.res.websocket.OrderDelta;
+import com.example.FoodDelivery.service.NotificationOutbox;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Versioned order state for the delta protocol (see OrderDelta)
+ *
+ * The last published state of each order and its version live in a Redis
+ * HASH "order:delta:{orderId}" (fields v, state). Every order notification
+ * publishes, after commit and in order with the other notifications, the
+ * top-level fields that differ from the stored state under the next version;
+ * a status change usually costs a few bytes instead of the whole order.
+ * Two nodes publishing the same order at once may produce a delta whose
+ * baseVersion is not version - 1; clients treat that as a gap and resync.
+ */
+@Service
+@Slf4j
+public class OrderDeltaService {
+    private static final String KEY_PREFIX = "order:delta:";
+    private static final String VERSION_FIELD = "v";
+    private static final String STATE_FIELD = "state";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final NotificationOutbox notificationOutbox;
+    private final CompactFramePublisher compactFramePublisher;
+    private final ObjectMapper objectMapper;
+    private final Duration stateTtl;
+
+    private final Counter deltas;
+    private final Counter unchanged;
+
+    public OrderDeltaService(RedisTemplate<String, Object> redisTemplate, NotificationOutbox notificationOutbox,
+            CompactFramePublisher compactFramePublisher, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${order.delta.state-ttl-hours:24}") long stateTtlHours) {
+        this.redisTemplate = redisTemplate;
+        this.notificationOutbox = notificationOutbox;
+        this.compactFramePublisher = compactFramePublisher;
+        this.objectMapper = objectMapper;
+        this.stateTtl = Duration.ofHours(stateTtlHours);
+        this.deltas = Counter.builder("order.delta.published").register(meterRegistry);
+        this.unchanged = Counter.builder("order.delta.unchanged").register(meterRegistry);
+    }
+
+    public static String deltaDestination(Long orderId) {
+        return "/topic/order/" + orderId + "/delta";
+    }
+
+    /**
+     * Publish the changes of an order, after commit when called inside a
+     * transaction
+     */
+    public void publish(ResOrderDTO order) {
+        if (order == null || order.getId() == null) {
+            return;
+        }
+        notificationOutbox.afterCommit(() -> publishNow(order));
+    }
+
+    private void publishNow(ResOrderDTO order) {
+        String key = KEY_PREFIX + order.getId();
+        try {
+            // Both sides parsed from text so numbers compare alike
+            String json = objectMapper.writeValueAsString(order);
+            JsonNode current = objectMapper.readTree(json);
+
+            List<Object> stored = redisTemplate.opsForHash().multiGet(key, List.of(VERSION_FIELD, STATE_FIELD));
+            long baseVersion = stored.get(0) != null ? Long.parseLong(stored.get(0).toString()) : 0;
+            JsonNode previous = stored.get(1) != null ? objectMapper.readTree(stored.get(1).toString()) : null;
+
+            ObjectNode changes = diff(previous, current);
+            if (changes.isEmpty()) {
+                unchanged.increment();
+                return;
+            }
+
+            Long version = redisTemplate.opsForHash().increment(key, VERSION_FIELD, 1);
+            redisTemplate.opsForHash().put(key, STATE_FIELD, json);
+            redisTemplate.expire(key, stateTtl);
+
+            OrderDelta delta = new OrderDelta(OrderDelta.DELTA, order.getId(), version, baseVersion, null, changes,
+                    System.currentTimeMillis());
+            notificationOutbox.send(deltaDestination(order.getId()), delta);
+            compactFramePublisher.sendDelta(deltaDestination(order.getId()), delta);
+            deltas.increment();
+            log.debug("Published order {} delta v{} ({} fields)", order.getId(), version, changes.size());
+        } catch (Exception e) {
+            log.error("Failed to publish delta of order {}: {}", order.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Full state of an order and its version, from the last published state
+     * or, when nothing was published yet (or it expired), from the loader at
+     * version 0
+     */
+    public OrderDelta snapshot(Long orderId, Supplier<ResOrderDTO> loader) {
+        try {
+            List<Object> stored = redisTemplate.opsForHash().multiGet(KEY_PREFIX + orderId,
+                    List.of(VERSION_FIELD, STATE_FIELD));
+            if (stored.get(0) != null && stored.get(1) != null) {
+                return new OrderDelta(OrderDelta.SNAPSHOT, orderId, Long.parseLong(stored.get(0).toString()),
+                        null, objectMapper.readTree(stored.get(1).toString()), null, System.currentTimeMillis());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read delta state of order {}, using database: {}", orderId, e.getMessage());
+        }
+
+        ResOrderDTO order = loader.get();
+        if (order == null) {
+            return null;
+        }
+        return new OrderDelta(OrderDelta.SNAPSHOT, orderId, 0L, null, objectMapper.valueToTree(order), null,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Top-level fields of current that differ from previous (all fields when
+     * there is no previous state); fields gone from current are sent as null
+     */
+    static ObjectNode diff(JsonNode previous, JsonNode current) {
+        ObjectNode changes = JsonNodeFactory.instance.objectNode();
+        Iterator<String> names = current.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            JsonNode value = current.get(name);
+            if (previous == null || !Objects.equals(previous.get(name), value)) {
+                changes.set(name, value);
+            }
+        }
+        if (previous != null) {
+            Iterator<String> previousNames = previous.fieldNames();
+            while (previousNames.hasNext()) {
+                String name = previousNames.next();
+                if (!current.has(name)) {
+                    changes.putNull(name);
+                }
+            }
+        }
+        return changes;
+    }
+}
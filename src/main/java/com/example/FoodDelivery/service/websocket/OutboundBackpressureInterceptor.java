@@ -0,0 +1,211 @@
+package com.example.FoodDelivery.service.websocket;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Backpressure and metrics for the client outbound channel (broker -> sessions)
+ *
+ * Latest-wins destinations (websocket.outbound.latest-wins, by suffix, e.g.
+ * driver location and typing): each frame gets a per session + destination
+ * generation when it is queued; a frame still waiting in the queue when a
+ * newer one for the same session and destination has been queued is dropped,
+ * so a backed-up client skips stale positions instead of replaying them.
+ * Other frames are never dropped here; per-session send time and buffer
+ * limits (websocket.transport.*) close a client that cannot keep up.
+ *
+ * Metrics:
+ * websocket.outbound.queue / websocket.outbound.active - executor queue depth
+ * and busy threads
+ * websocket.outbound.wait - time a frame waited in the executor queue
+ * websocket.outbound.send{destination} - time to hand a frame to the session
+ * (includes the socket write when nothing else is being written), per
+ * destination pattern with ids replaced by *
+ * websocket.outbound.dropped{reason=superseded} - latest-wins frames skipped
+ * websocket.sessions.closed{reason=slow_consumer} - sessions closed for
+ * exceeding the send limits
+ */
+@Service
+@Slf4j
+public class OutboundBackpressureInterceptor implements ExecutorChannelInterceptor {
+    private static final String ENQUEUED_AT_HEADER = "outboundEnqueuedAt";
+    private static final String GENERATION_HEADER = "outboundGeneration";
+    private static final Pattern ID_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+    private static final Pattern USER_SUFFIX = Pattern.compile("-user[^/]*$");
+    private static final int MAX_DESTINATION_TAGS = 200;
+
+    private final MeterRegistry meterRegistry;
+    private final List<String> latestWinsSuffixes;
+
+    // sessionId -> destination -> newest queued generation
+    private final Map<String, Map<String, AtomicLong>> generations = new ConcurrentHashMap<>();
+    private final Map<String, Timer> sendTimers = new ConcurrentHashMap<>();
+    private final ThreadLocal<Long> handleStartedAt = new ThreadLocal<>();
+
+    private final Timer queueWait;
+    private final Counter superseded;
+    private final Counter slowConsumerClosed;
+
+    public OutboundBackpressureInterceptor(MeterRegistry meterRegistry,
+            @Lazy @Qualifier("clientOutboundChannelExecutor") ThreadPoolTaskExecutor outboundExecutor,
+            @Value("${websocket.outbound.latest-wins:/driver-location,/driver-location/bin,/location,/location/bin,/typing}") List<String> latestWinsSuffixes) {
+        this.meterRegistry = meterRegistry;
+        this.latestWinsSuffixes = latestWinsSuffixes;
+
+        this.queueWait = Timer.builder("websocket.outbound.wait")
+                .description("Time a frame waited for an outbound channel thread")
+                .register(meterRegistry);
+        this.superseded = Counter.builder("websocket.outbound.dropped")
+                .tag("reason", "superseded")
+                .register(meterRegistry);
+        this.slowConsumerClosed = Counter.builder("websocket.sessions.closed")
+                .tag("reason", "slow_consumer")
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.queue", outboundExecutor,
+                executor -> executor.getThreadPoolExecutor().getQueue().size())
+                .description("Frames waiting in the outbound channel executor")
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.active", outboundExecutor, ThreadPoolTaskExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Caller thread: stamp the enqueue time and, for latest-wins
+     * destinations, the generation of the frame
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.getAccessor(message,
+                SimpMessageHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+        MessageHeaderAccessor mutable = accessor.isMutable()
+                ? accessor
+                : MessageHeaderAccessor.getMutableAccessor(message);
+        mutable.setHeader(ENQUEUED_AT_HEADER, System.nanoTime());
+
+        String sessionId = accessor.getSessionId();
+        String destination = accessor.getDestination();
+        if (sessionId != null && destination != null && isLatestWins(destination)) {
+            long generation = generations.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(destination, key -> new AtomicLong())
+                    .incrementAndGet();
+            mutable.setHeader(GENERATION_HEADER, generation);
+        }
+        return mutable == accessor
+                ? message
+                : MessageBuilder.createMessage(message.getPayload(), mutable.getMessageHeaders());
+    }
+
+    /**
+     * Outbound thread: skip frames superseded while they were queued
+     */
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        long now = System.nanoTime();
+        Long enqueuedAt = message.getHeaders().get(ENQUEUED_AT_HEADER, Long.class);
+        if (enqueuedAt != null) {
+            queueWait.record(now - enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+
+        Long generation = message.getHeaders().get(GENERATION_HEADER, Long.class);
+        if (generation != null) {
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            Map<String, AtomicLong> sessionGenerations = sessionId != null ? generations.get(sessionId) : null;
+            AtomicLong newest = sessionGenerations != null && destination != null
+                    ? sessionGenerations.get(destination)
+                    : null;
+            if (newest != null && generation < newest.get()) {
+                superseded.increment();
+                return null;
+            }
+        }
+        handleStartedAt.set(now);
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+            Exception ex) {
+        Long startedAt = handleStartedAt.get();
+        if (startedAt == null) {
+            return;
+        }
+        handleStartedAt.remove();
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        sendTimer(destination).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        generations.remove(event.getSessionId());
+        if (CloseStatus.SESSION_NOT_RELIABLE.equals(event.getCloseStatus())) {
+            slowConsumerClosed.increment();
+            log.warn("⚠️ WebSocket session {} closed: client too slow for send limits", event.getSessionId());
+        }
+    }
+
+    private boolean isLatestWins(String destination) {
+        for (String suffix : latestWinsSuffixes) {
+            if (destination.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Timer sendTimer(String destination) {
+        String pattern = destinationPattern(destination);
+        Timer timer = sendTimers.get(pattern);
+        if (timer != null) {
+            return timer;
+        }
+        if (sendTimers.size() >= MAX_DESTINATION_TAGS) {
+            pattern = "other";
+        }
+        return sendTimers.computeIfAbsent(pattern, tag -> Timer.builder("websocket.outbound.send")
+                .tag("destination", tag)
+                .description("Time to hand a frame to the WebSocket session")
+                .register(meterRegistry));
+    }
+
+    /**
+     * Metric tag of a destination: numeric segments become "*", resolved
+     * user queue suffixes "-user*"
+     */
+    static String destinationPattern(String destination) {
+        if (destination == null) {
+            return "none";
+        }
+        String pattern = ID_SEGMENT.matcher(destination).replaceAll("/*");
+        return USER_SUFFIX.matcher(pattern).replaceAll("-user*");
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.FoodDelivery.service.websocket;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Who is connected and which destinations have subscribers
+ *
+ * Locally, from the STOMP session events: sessions per user (principal name)
+ * and subscriptions per /topic or /queue destination. Other local consumers
+ * of the broker channel (SSE order streams) register their destinations with
+ * acquire / release.
+ *
+ * In cluster mode (websocket.cluster.enabled) the same is shared through
+ * Redis sorted sets, scored by expiry time:
+ * "presence:destinations" - destinations with a subscriber on some node
+ * "presence:users" - users with a session on some node
+ * A node adds an entry as soon as it gets its first local subscriber / session
+ * and refreshes its entries every presence.refresh-ms; entries no node
+ * refreshes expire after presence.ttl-ms. A destination may therefore look
+ * subscribed for up to the TTL after its last subscriber left, never the
+ * other way round.
+ */
+@Service
+@Slf4j
+public class PresenceService {
+    private static final String DESTINATIONS_KEY = "presence:destinations";
+    private static final String USERS_KEY = "presence:users";
+    private static final int REFRESH_CHUNK_SIZE = 500;
+
+    /**
+     * Notified when a destination gets its first local subscriber and when
+     * its last one leaves (called in order, under the registry lock, so an
+     * implementation must not block: hand slow work to another thread)
+     */
+    public interface LocalDestinationListener {
+        void destinationActive(String destination);
+
+        void destinationInactive(String destination);
+    }
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final boolean clusterEnabled;
+    private final long ttlMs;
+
+    // sessionId -> subscriptionId -> destination
+    private final Map<String, Map<String, String>> sessionSubscriptions = new ConcurrentHashMap<>();
+    // sessionId -> user
+    private final Map<String, String> sessionUsers = new ConcurrentHashMap<>();
+    // destination -> local subscriptions, user -> local sessions (guarded by this)
+    private final Map<String, Integer> localDestinations = new HashMap<>();
+    private final Map<String, Integer> localUsers = new HashMap<>();
+    private final List<LocalDestinationListener> listeners = new CopyOnWriteArrayList<>();
+
+    public PresenceService(RedisTemplate<String, Object> redisTemplate, MeterRegistry meterRegistry,
+            @Value("${websocket.cluster.enabled:false}") boolean clusterEnabled,
+            @Value("${presence.ttl-ms:60000}") long ttlMs) {
+        this.redisTemplate = redisTemplate;
+        this.clusterEnabled = clusterEnabled;
+        this.ttlMs = ttlMs;
+
+        Gauge.builder("websocket.presence.sessions", sessionSubscriptions, Map::size)
+                .description("STOMP sessions on this node")
+                .register(meterRegistry);
+        Gauge.builder("websocket.presence.destinations", this, presence -> presence.localDestinationCount())
+                .description("Destinations with a subscriber on this node")
+                .register(meterRegistry);
+        Gauge.builder("websocket.presence.users", this, presence -> presence.localUserCount())
+                .description("Users with a session on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register a listener; it is told about the destinations already active
+     */
+    public synchronized void addListener(LocalDestinationListener listener) {
+        listeners.add(listener);
+        localDestinations.keySet().forEach(listener::destinationActive);
+    }
+
+    // ==================== STOMP session events ====================
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (sessionId == null) {
+            return;
+        }
+        sessionSubscriptions.putIfAbsent(sessionId, new ConcurrentHashMap<>());
+        Principal user = event.getUser();
+        if (user != null && user.getName() != null && sessionUsers.putIfAbsent(sessionId, user.getName()) == null) {
+            userConnected(user.getName());
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        if (destination == null || sessionId == null || subscriptionId == null
+                || !isTracked(destination)) {
+            return;
+        }
+        String previous = sessionSubscriptions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            release(previous);
+        }
+        acquire(destination);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = accessor.getSessionId() != null
+                ? sessionSubscriptions.get(accessor.getSessionId())
+                : null;
+        if (subscriptions == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String destination = subscriptions.remove(accessor.getSubscriptionId());
+        if (destination != null) {
+            release(destination);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+        String user = sessionUsers.remove(event.getSessionId());
+        if (user != null) {
+            userDisconnected(user);
+        }
+    }
+
+    // ==================== Local registry ====================
+
+    /**
+     * Count a local consumer of a destination until released
+     */
+    public void acquire(String destination) {
+        boolean first;
+        synchronized (this) {
+            first = localDestinations.merge(destination, 1, Integer::sum) == 1;
+            if (first) {
+                listeners.forEach(listener -> listener.destinationActive(destination));
+            }
+        }
+        if (first) {
+            publish(DESTINATIONS_KEY, destination);
+        }
+    }
+
+    public synchronized void release(String destination) {
+        Integer count = localDestinations.get(destination);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            localDestinations.put(destination, count - 1);
+            return;
+        }
+        localDestinations.remove(destination);
+        listeners.forEach(listener -> listener.destinationInactive(destination));
+    }
+
+    private void userConnected(String user) {
+        boolean first;
+        synchronized (this) {
+            first = localUsers.merge(user, 1, Integer::sum) == 1;
+        }
+        if (first) {
+            publish(USERS_KEY, user);
+        }
+    }
+
+    private synchronized void userDisconnected(String user) {
+        localUsers.computeIfPresent(user, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    public synchronized int localDestinationCount() {
+        return localDestinations.size();
+    }
+
+    public synchronized int localUserCount() {
+        return localUsers.size();
+    }
+
+    // ==================== Queries ====================
+
+    public boolean hasSubscribers(String destination) {
+        return !subscribed(List.of(destination)).isEmpty();
+    }
+
+    /**
+     * Destinations of the list that have a subscriber on any node (all of them
+     * when presence cannot be checked); destinations outside /topic and /queue
+     * (e.g. /user/...) are not tracked and always kept
+     */
+    public List<String> subscribed(List<String> destinations) {
+        List<String> result = new ArrayList<>(destinations.size());
+        List<String> unknown = new ArrayList<>();
+        synchronized (this) {
+            for (String destination : destinations) {
+                if (localDestinations.containsKey(destination) || !isTracked(destination)) {
+                    result.add(destination);
+                } else {
+                    unknown.add(destination);
+                }
+            }
+        }
+        if (unknown.isEmpty() || !clusterEnabled) {
+            return result;
+        }
+        result.addAll(presentInRedis(DESTINATIONS_KEY, unknown));
+        return result;
+    }
+
+    private static boolean isTracked(String destination) {
+        return destination.startsWith("/topic/") || destination.startsWith("/queue/");
+    }
+
+    /**
+     * Whether a user (principal name) has a STOMP session on any node
+     */
+    public boolean isUserConnected(String user) {
+        synchronized (this) {
+            if (localUsers.containsKey(user)) {
+                return true;
+            }
+        }
+        return clusterEnabled && !presentInRedis(USERS_KEY, List.of(user)).isEmpty();
+    }
+
+    /**
+     * Drivers of the list subscribed to their order topic
+     * (/topic/driver/{id}/orders), i.e. able to receive an offer right now
+     */
+    public Set<Long> connectedDrivers(Collection<Long> driverIds) {
+        Map<String, Long> byDestination = new LinkedHashMap<>();
+        for (Long driverId : driverIds) {
+            byDestination.put("/topic/driver/" + driverId + "/orders", driverId);
+        }
+        Set<Long> connected = new HashSet<>();
+        for (String destination : subscribed(new ArrayList<>(byDestination.keySet()))) {
+            connected.add(byDestination.get(destination));
+        }
+        return connected;
+    }
+
+    private List<String> presentInRedis(String key, List<String> members) {
+        try {
+            List<Double> scores = redisTemplate.opsForZSet().score(key, members.toArray());
+            long now = System.currentTimeMillis();
+            List<String> present = new ArrayList<>();
+            for (int i = 0; i < members.size(); i++) {
+                Double expiresAt = scores != null ? scores.get(i) : null;
+                if (expiresAt != null && expiresAt > now) {
+                    present.add(members.get(i));
+                }
+            }
+            return present;
+        } catch (Exception e) {
+            // Unknown: assume present rather than lose messages
+            log.warn("Failed to read presence from Redis: {}", e.getMessage());
+            return members;
+        }
+    }
+
+    // ==================== Redis ====================
+
+    private void publish(String key, String member) {
+        if (!clusterEnabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForZSet().add(key, member, System.currentTimeMillis() + ttlMs);
+        } catch (Exception e) {
+            log.warn("Failed to publish presence of {}: {}", member, e.getMessage());
+        }
+    }
+
+    /**
+     * Refresh the expiry of this node's destinations and users, and drop
+     * entries no node refreshed
+     */
+    @Scheduled(fixedDelayString = "${presence.refresh-ms:20000}")
+    public void refresh() {
+        if (!clusterEnabled) {
+            return;
+        }
+        List<String> destinations;
+        List<String> users;
+        synchronized (this) {
+            destinations = new ArrayList<>(localDestinations.keySet());
+            users = new ArrayList<>(localUsers.keySet());
+        }
+        long now = System.currentTimeMillis();
+        double expiresAt = now + ttlMs;
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    addAll(ops, DESTINATIONS_KEY, destinations, expiresAt);
+                    addAll(ops, USERS_KEY, users, expiresAt);
+                    ops.opsForZSet().removeRangeByScore(DESTINATIONS_KEY, Double.NEGATIVE_INFINITY, now);
+                    ops.opsForZSet().removeRangeByScore(USERS_KEY, Double.NEGATIVE_INFINITY, now);
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to refresh presence: {}", e.getMessage());
+        }
+    }
+
+    private static void addAll(RedisOperations<String, Object> ops, String key, List<String> members,
+            double score) {
+        for (int from = 0; from < members.size(); from += REFRESH_CHUNK_SIZE) {
+            List<String> chunk = members.subList(from, Math.min(members.size(), from + REFRESH_CHUNK_SIZE));
+            Set<TypedTuple<Object>> tuples = new HashSet<>();
+            for (String member : chunk) {
+                tuples.add(new DefaultTypedTuple<>(member, score));
+            }
+            ops.opsForZSet().add(key, tuples);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.FoodDelivery.service.websocket;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+
+import com.example.FoodDelivery.service.websocket.PresenceService.LocalDestinationListener;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Relays broker messages between nodes through Redis pub/sub
+ * (websocket.cluster.enabled=true)
+ *
+ * Every /topic and /queue message that reaches this node's broker channel is
+ * delivered to local subscribers as before and published to the Redis
+ * channel "{prefix}{destination}". A node only subscribes to the channels of
+ * destinations it has local subscribers on (tracked by PresenceService), so
+ * it only receives messages it can deliver. Messages coming from Redis are
+ * marked as relayed and never published again.
+ *
+ * User destinations (/user/...) resolve to per-session queues on the node that
+ * holds the session; they cross nodes through Spring's user registry and
+ * unresolved user destination broadcasts, which every node subscribes to.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "websocket.cluster.enabled", havingValue = "true")
+public class RedisBrokerRelay implements ChannelInterceptor, MessageListener, LocalDestinationListener {
+    public static final String USER_REGISTRY_DESTINATION = "/topic/simp-user-registry";
+    public static final String UNRESOLVED_USER_DESTINATION = "/topic/unresolved-user-destination";
+    static final String RELAYED_HEADER = "relayed";
+
+    private static final int ENVELOPE_VERSION = 1;
+    private static final String RELAY_SESSION_ID = "redis-relay";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final PresenceService presenceService;
+    private final MessageChannel brokerChannel;
+    private final MessageHandler userRegistryMessageHandler;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ExecutorService listenerExecutor;
+    private final ExecutorService subscriptionExecutor;
+    private final String channelPrefix;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Counter published;
+    private final Counter publishFailed;
+    private final Counter received;
+
+    public RedisBrokerRelay(RedisTemplate<String, Object> redisTemplate, RedisConnectionFactory connectionFactory,
+            PresenceService presenceService,
+            @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+            @Lazy @Qualifier("userRegistryMessageHandler") MessageHandler userRegistryMessageHandler,
+            MeterRegistry meterRegistry,
+            @Value("${websocket.cluster.channel-prefix:ws:relay:}") String channelPrefix) {
+        this.redisTemplate = redisTemplate;
+        this.presenceService = presenceService;
+        this.brokerChannel = brokerChannel;
+        this.userRegistryMessageHandler = userRegistryMessageHandler;
+        this.channelPrefix = channelPrefix;
+
+        // One listener thread keeps the order of messages per destination
+        this.listenerExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-relay-listener");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Channel (un)subscriptions leave the presence lock on one thread, in
+        // the order PresenceService reported them
+        this.subscriptionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-relay-subscriptions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.setTaskExecutor(listenerExecutor);
+
+        this.published = Counter.builder("websocket.relay.messages").tag("direction", "out")
+                .register(meterRegistry);
+        this.publishFailed = Counter.builder("websocket.relay.messages").tag("direction", "out_failed")
+                .register(meterRegistry);
+        this.received = Counter.builder("websocket.relay.messages").tag("direction", "in")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        // System destinations are always relayed
+        listenerContainer.addMessageListener(this, List.of(
+                new ChannelTopic(channelPrefix + USER_REGISTRY_DESTINATION),
+                new ChannelTopic(channelPrefix + UNRESOLVED_USER_DESTINATION)));
+        // Destinations with local subscribers (STOMP or SSE)
+        presenceService.addListener(this);
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        log.info("🔗 WebSocket cluster relay started, node {}", nodeId);
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        subscriptionExecutor.shutdownNow();
+        listenerContainer.destroy();
+        listenerExecutor.shutdown();
+    }
+
+    // ==================== Outbound: broker channel -> Redis ====================
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (shouldPublish(message)) {
+            publish(message);
+        }
+        return message;
+    }
+
+    private boolean shouldPublish(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || message.getHeaders().containsKey(RELAYED_HEADER)
+                || !(message.getPayload() instanceof byte[])) {
+            return false;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) {
+            return false;
+        }
+        if (destination.equals(UNRESOLVED_USER_DESTINATION) || destination.equals(USER_REGISTRY_DESTINATION)) {
+            return true;
+        }
+        // Resolved user destinations (/queue/x-user{sessionId}) only exist on this node
+        if (SimpMessageHeaderAccessor.getFirstNativeHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION,
+                message.getHeaders()) != null) {
+            return false;
+        }
+        return destination.startsWith("/topic/") || destination.startsWith("/queue/");
+    }
+
+    private void publish(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        try {
+            byte[] channel = (channelPrefix + destination).getBytes(StandardCharsets.UTF_8);
+            byte[] body = encodeEnvelope(nodeId, message);
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, body));
+            published.increment();
+        } catch (Exception e) {
+            // Local subscribers still get the message
+            publishFailed.increment();
+            log.warn("Failed to relay message for {}: {}", destination, e.getMessage());
+        }
+    }
+
+    // ==================== Inbound: Redis -> broker channel ====================
+
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message redisMessage, byte[] pattern) {
+        String channel = new String(redisMessage.getChannel(), StandardCharsets.UTF_8);
+        if (!channel.startsWith(channelPrefix)) {
+            return;
+        }
+        String destination = channel.substring(channelPrefix.length());
+        try {
+            Envelope envelope = decodeEnvelope(redisMessage.getBody());
+            if (nodeId.equals(envelope.origin)) {
+                return;
+            }
+            received.increment();
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(destination);
+            // A session id marks broadcasts as coming from another server
+            accessor.setSessionId(RELAY_SESSION_ID);
+            accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+            if (envelope.contentType != null) {
+                accessor.setContentType(MimeType.valueOf(envelope.contentType));
+            }
+            envelope.nativeHeaders.forEach(accessor::setNativeHeader);
+            Message<byte[]> message = MessageBuilder.createMessage(envelope.payload, accessor.getMessageHeaders());
+
+            if (USER_REGISTRY_DESTINATION.equals(destination)) {
+                userRegistryMessageHandler.handleMessage(message);
+            } else {
+                brokerChannel.send(message);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to handle relayed message for {}: {}", destination, e.getMessage());
+        }
+    }
+
+    // ==================== Local destinations (PresenceService) ====================
+
+    /**
+     * Subscribe to the channel of a destination (asynchronously: this is
+     * called under the presence lock and SUBSCRIBE is a Redis round trip)
+     */
+    @Override
+    public void destinationActive(String destination) {
+        ChannelTopic topic = new ChannelTopic(channelPrefix + destination);
+        subscriptionExecutor.execute(() -> {
+            try {
+                listenerContainer.addMessageListener(this, topic);
+            } catch (Exception e) {
+                log.warn("Failed to subscribe to relay channel of {}: {}", destination, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void destinationInactive(String destination) {
+        ChannelTopic topic = new ChannelTopic(channelPrefix + destination);
+        subscriptionExecutor.execute(() -> {
+            try {
+                listenerContainer.removeMessageListener(this, topic);
+            } catch (Exception e) {
+                log.warn("Failed to unsubscribe from relay channel of {}: {}", destination, e.getMessage());
+            }
+        });
+    }
+
+    // ==================== Envelope ====================
+
+    /**
+     * version, origin node, content type, native headers (first values),
+     * then the payload bytes
+     */
+    static byte[] encodeEnvelope(String origin, Message<?> message) throws IOException {
+        byte[] payload = (byte[]) message.getPayload();
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        MimeType contentType = accessor.getContentType();
+        Map<String, List<String>> nativeHeaders = accessor.toNativeHeaderMap();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ENVELOPE_VERSION);
+        out.writeUTF(origin);
+        out.writeUTF(contentType != null ? contentType.toString() : "");
+        out.writeShort(nativeHeaders.size());
+        for (Map.Entry<String, List<String>> header : nativeHeaders.entrySet()) {
+            List<String> values = header.getValue();
+            out.writeUTF(header.getKey());
+            out.writeUTF(values == null || values.isEmpty() || values.get(0) == null ? "" : values.get(0));
+        }
+        out.write(payload);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Envelope decodeEnvelope(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        int version = in.readUnsignedByte();
+        if (version != ENVELOPE_VERSION) {
+            throw new IOException("Unsupported relay envelope version " + version);
+        }
+        String origin = in.readUTF();
+        String contentType = in.readUTF();
+        int headerCount = in.readUnsignedShort();
+        Map<String, String> nativeHeaders = new HashMap<>(headerCount * 2);
+        for (int i = 0; i < headerCount; i++) {
+            nativeHeaders.put(in.readUTF(), in.readUTF());
+        }
+        byte[] payload = in.readAllBytes();
+        return new Envelope(origin, contentType.isEmpty() ? null : contentType, nativeHeaders, payload);
+    }
+
+    static final class Envelope {
+        final String origin;
+        final String contentType;
+        final Map<String, String> nativeHeaders;
+        final byte[] payload;
+
+        Envelope(String origin, String contentType, Map<String, String> nativeHeaders, byte[] payload) {
+            this.origin = origin;
+            this.contentType = contentType;
+            this.nativeHeaders = nativeHeaders;
+            this.payload = payload;
+        }
+    }
+}
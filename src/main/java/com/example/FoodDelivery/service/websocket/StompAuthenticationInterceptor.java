@@ -0,0 +1,63 @@
+package com.example.FoodDelivery.service.websocket;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Authenticates STOMP sessions with the access token of the REST API
+ *
+ * Browser and SockJS clients cannot set headers on the WebSocket handshake
+ * (/ws is open), so they send "Authorization: Bearer {token}" as a header of
+ * the CONNECT frame instead. The session user is then the token subject
+ * (email), the same Principal as over HTTP. A CONNECT with an invalid token
+ * is refused; one without a token stays anonymous and can subscribe, but
+ * frames that act as a user (chat, typing, driver location) are rejected.
+ */
+@Service
+@Slf4j
+public class StompAuthenticationInterceptor implements ChannelInterceptor {
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtDecoder jwtDecoder;
+    private final JwtAuthenticationConverter jwtAuthenticationConverter;
+
+    public StompAuthenticationInterceptor(JwtDecoder jwtDecoder,
+            JwtAuthenticationConverter jwtAuthenticationConverter) {
+        this.jwtDecoder = jwtDecoder;
+        this.jwtAuthenticationConverter = jwtAuthenticationConverter;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+        String authorization = accessor.getFirstNativeHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null
+                || !authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return message;
+        }
+        try {
+            Jwt jwt = jwtDecoder.decode(authorization.substring(BEARER_PREFIX.length()).trim());
+            accessor.setUser(jwtAuthenticationConverter.convert(jwt));
+        } catch (JwtException e) {
+            log.warn("Rejected STOMP CONNECT of session {}: {}", accessor.getSessionId(), e.getMessage());
+            throw new MessageDeliveryException(message, "Invalid access token");
+        }
+        return message;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.FoodDelivery.util;
+
+import java.math.BigDecimal;
+
+public class GeoUtils {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    // Redis GEO limits (web mercator latitude range)
+    private static final double GEO_MAX_LATITUDE = 85.05112878;
+    // Closer than this to (0,0) in both axes is a device without a fix
+    private static final double NULL_ISLAND_DEGREES = 0.0001;
+    private static final char[] GEOHASH_BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    /**
+     * Great-circle (straight-line) distance between two points
+     *
+     * @param fromLat Starting point latitude
+     * @param fromLng Starting point longitude
+     * @param toLat   Destination latitude
+     * @param toLng   Destination longitude
+     * @return Distance in kilometers
+     */
+    public static double haversineKm(double fromLat, double fromLng, double toLat, double toLng) {
+        double dLat = Math.toRadians(toLat - fromLat);
+        double dLng = Math.toRadians(toLng - fromLng);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(fromLat)) * Math.cos(Math.toRadians(toLat))
+                        * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * BigDecimal overload of {@link #haversineKm(double, double, double, double)}
+     */
+    public static double haversineKm(BigDecimal fromLat, BigDecimal fromLng, BigDecimal toLat, BigDecimal toLng) {
+        return haversineKm(fromLat.doubleValue(), fromLng.doubleValue(), toLat.doubleValue(), toLng.doubleValue());
+    }
+
+    /**
+     * Whether a reported device position can be stored and searched: inside
+     * the Redis GEO range and not (0,0), which GPS stacks report without a
+     * fix
+     */
+    public static boolean isValidPosition(double latitude, double longitude) {
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)
+                || Math.abs(latitude) > GEO_MAX_LATITUDE || Math.abs(longitude) > 180) {
+            return false;
+        }
+        return Math.abs(latitude) >= NULL_ISLAND_DEGREES || Math.abs(longitude) >= NULL_ISLAND_DEGREES;
+    }
+
+    /**
+     * Encode a point as a geohash cell
+     * Precision 6 is about 1.2 km x 0.6 km, 7 is about 153 m x 153 m
+     *
+     * @param latitude  Latitude
+     * @param longitude Longitude
+     * @param precision Number of base32 characters (1-12)
+     * @return Geohash string
+     */
+    public static String geohash(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLng = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash.append(GEOHASH_BASE32[ch]);
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.FoodDelivery.domain.res.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class SharedPayloadTest {
+
+    @Test
+    void serializesTheValueOnceForEveryEnvelope() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        CountingOrder order = new CountingOrder(42L, "PICKED_UP");
+        SharedPayload data = new SharedPayload(order);
+
+        String first = mapper.writeValueAsString(envelope("ORDER_UPDATE", data));
+        String second = mapper.writeValueAsString(envelope("ORDER_STATUS_CHANGED", data));
+
+        assertEquals(1, order.reads);
+        String expected = mapper.writeValueAsString(new CountingOrder(42L, "PICKED_UP"));
+        assertEquals("{\"type\":\"ORDER_UPDATE\",\"data\":" + expected + "}", first);
+        assertEquals("{\"type\":\"ORDER_STATUS_CHANGED\",\"data\":" + expected + "}", second);
+    }
+
+    @Test
+    void sameOutputAsTheUnwrappedValue() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        CountingOrder order = new CountingOrder(7L, "READY");
+
+        assertEquals(mapper.writeValueAsString(List.of(order)),
+                mapper.writeValueAsString(List.of(new SharedPayload(order))));
+    }
+
+    @Test
+    void reEncodesForAnotherMapper() throws Exception {
+        CountingOrder order = new CountingOrder(7L, "READY");
+        SharedPayload data = new SharedPayload(order);
+
+        new ObjectMapper().writeValueAsString(data);
+        new ObjectMapper().writeValueAsString(data);
+
+        assertEquals(2, order.reads);
+    }
+
+    private static Map<String, Object> envelope(String type, Object data) {
+        Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("type", type);
+        envelope.put("data", data);
+        return envelope;
+    }
+
+    static final class CountingOrder {
+        private final Long id;
+        private final String orderStatus;
+        int reads;
+
+        CountingOrder(Long id, String orderStatus) {
+            this.id = id;
+            this.orderStatus = orderStatus;
+        }
+
+        public Long getId() {
+            reads++;
+            return id;
+        }
+
+        public String getOrderStatus() {
+            return orderStatus;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.FoodDelivery.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.FoodDelivery.domain.Order;
+import com.example.FoodDelivery.domain.User;
+import com.example.FoodDelivery.repository.MenuOptionRepository;
+import com.example.FoodDelivery.repository.OrderRepository;
+import com.example.FoodDelivery.service.dispatch.DispatchMetrics;
+import com.example.FoodDelivery.service.dispatch.DriverEligibilityService;
+import com.example.FoodDelivery.service.distance.DistanceProviderSelector;
+import com.example.FoodDelivery.service.geo.LiveTrackingService;
+import com.example.FoodDelivery.service.websocket.PresenceService;
+import com.example.FoodDelivery.util.error.IdInvalidException;
+
+/**
+ * Driver accepting an offer against its expiry: the conditional update of
+ * the order row decides, the Redis deadline only goes away after commit
+ */
+class OrderServiceOfferTest {
+    private static final String DEADLINES_KEY = "dispatch:offers:deadlines";
+    private static final Long ORDER_ID = 42L;
+    private static final Long DRIVER_ID = 7L;
+
+    private OrderRepository orderRepository;
+    private PaymentService paymentService;
+    private ZSetOperations<String, Object> deadlines;
+    private OrderService orderService;
+    private Order order;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        orderRepository = mock(OrderRepository.class);
+        paymentService = mock(PaymentService.class);
+        UserService userService = mock(UserService.class);
+
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        deadlines = mock(ZSetOperations.class);
+        when(redisTemplate.opsForZSet()).thenReturn(deadlines);
+        RedisOfferDeadlineService offerDeadlineService = new RedisOfferDeadlineService(redisTemplate,
+                mock(SystemConfigurationService.class));
+
+        orderService = new OrderService(orderRepository, userService, mock(RestaurantService.class),
+                mock(VoucherService.class), mock(DishService.class), mock(MenuOptionRepository.class),
+                mock(OrderEarningsSummaryService.class), paymentService, mock(VNPayService.class),
+                mock(WebSocketService.class), mock(SystemConfigurationService.class),
+                mock(DistanceProviderSelector.class), mock(DriverProfileService.class), mock(RedisGeoService.class),
+                mock(RedisRejectionService.class), mock(DispatchMetrics.class), offerDeadlineService,
+                mock(RedisCandidateQueueService.class), mock(DriverEligibilityService.class),
+                mock(LiveTrackingService.class), mock(PresenceService.class));
+
+        User driver = new User();
+        driver.setId(DRIVER_ID);
+        driver.setEmail("driver@example.com");
+        User customer = new User();
+        customer.setId(3L);
+
+        order = new Order();
+        order.setId(ORDER_ID);
+        order.setCustomer(customer);
+        order.setDriver(driver);
+        order.setOrderStatus("PREPARING");
+        order.setPaymentMethod("VNPAY");
+
+        when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.of(order));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userService.handleGetUserByUsername("driver@example.com")).thenReturn(driver);
+        SecurityContextHolder.getContext()
+                .setAuthentication(new UsernamePasswordAuthenticationToken("driver@example.com", null));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void acceptDropsTheDeadlineOnlyAfterCommit() throws Exception {
+        claimSucceeds(true);
+
+        assertEquals("DRIVER_ASSIGNED", orderService.acceptOrderByDriver(ORDER_ID).getOrderStatus());
+        verify(deadlines, never()).remove(anyString(), any());
+
+        commit();
+        verify(deadlines).remove(DEADLINES_KEY, ORDER_ID + ":" + DRIVER_ID);
+    }
+
+    @Test
+    void acceptWithoutDeadlineIsDecidedByTheRow() throws Exception {
+        // No deadline was ever scheduled (e.g. driver set on create)
+        claimSucceeds(true);
+        when(deadlines.remove(anyString(), any())).thenReturn(0L);
+
+        assertEquals("DRIVER_ASSIGNED", orderService.acceptOrderByDriver(ORDER_ID).getOrderStatus());
+        commit();
+    }
+
+    @Test
+    void acceptLosingToTheExpiryLeavesTheDeadlineAlone() {
+        // The expiry released the offer first: the conditional update matches nothing
+        claimSucceeds(false);
+
+        IdInvalidException error = assertThrows(IdInvalidException.class,
+                () -> orderService.acceptOrderByDriver(ORDER_ID));
+
+        assertEquals("This offer is no longer available", error.getMessage());
+        rollback();
+        verify(deadlines, never()).remove(anyString(), any());
+    }
+
+    @Test
+    void expiryAfterAnAcceptedOfferDoesNothing() throws Exception {
+        // The accept committed first; its deadline was claimed by the poller meanwhile
+        order.setOrderStatus("DRIVER_ASSIGNED");
+
+        assertNull(orderService.expireDriverOffer(ORDER_ID, DRIVER_ID));
+        verify(orderRepository, never()).releaseOffer(anyLong(), anyLong(), anyList());
+    }
+
+    @Test
+    void paymentFailureKeepsTheDeadline() throws Exception {
+        claimSucceeds(true);
+        order.setPaymentMethod("COD");
+        when(paymentService.processCODPaymentOnDelivery(order)).thenThrow(new IllegalStateException("Wallet locked"));
+
+        assertThrows(IllegalStateException.class, () -> orderService.acceptOrderByDriver(ORDER_ID));
+        rollback();
+
+        // Still pending in Redis, so the offer expires instead of hanging
+        verify(deadlines, never()).remove(anyString(), any());
+    }
+
+    @Test
+    void declinedCodPaymentDropsNothingBeforeCompletion() throws Exception {
+        claimSucceeds(true);
+        order.setPaymentMethod("COD");
+        when(paymentService.processCODPaymentOnDelivery(order))
+                .thenReturn(Map.of("success", false, "message", "Insufficient balance"));
+
+        assertThrows(IdInvalidException.class, () -> orderService.acceptOrderByDriver(ORDER_ID));
+        verify(deadlines, never()).remove(anyString(), any());
+
+        rollback();
+        verify(deadlines, never()).remove(anyString(), any());
+    }
+
+    private void claimSucceeds(boolean claimed) {
+        when(orderRepository.claimOffer(eq(ORDER_ID), eq(DRIVER_ID), anyList(), eq("DRIVER_ASSIGNED")))
+                .thenReturn(claimed ? 1 : 0);
+    }
+
+    private static void commit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    private static void rollback() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+}
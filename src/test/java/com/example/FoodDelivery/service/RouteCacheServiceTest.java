@@ -0,0 +1,47 @@
+package com.example.FoodDelivery.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import com.example.FoodDelivery.domain.res.route.RouteInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class RouteCacheServiceTest {
+
+    @Test
+    void routeRoundTripsThroughRedisSerializer() {
+        RedisSerializer<RouteInfo> serializer = RouteCacheService.routeSerializer();
+        RouteInfo route = new RouteInfo(new BigDecimal("3.250"), new BigDecimal("12.00"));
+
+        RouteInfo read = serializer.deserialize(serializer.serialize(route));
+
+        assertEquals(route, read);
+    }
+
+    @Test
+    void readsEntriesWrittenByTheSharedTemplate() {
+        // Untyped JSON as written by the shared RedisTemplate before the Redis tier got its own template
+        byte[] legacy = new GenericJackson2JsonRedisSerializer(new ObjectMapper())
+                .serialize(new RouteInfo(new BigDecimal("7.5"), new BigDecimal("18")));
+
+        RouteInfo read = RouteCacheService.routeSerializer().deserialize(legacy);
+
+        assertEquals(0, new BigDecimal("7.5").compareTo(read.getDistanceKm()));
+        assertEquals(0, new BigDecimal("18").compareTo(read.getDurationMinutes()));
+    }
+
+    @Test
+    void sharedTemplateSerializerReadsRoutesBackAsMaps() {
+        // Why the Redis tier cannot use the shared template: no type information is stored
+        GenericJackson2JsonRedisSerializer shared = new GenericJackson2JsonRedisSerializer(new ObjectMapper());
+        Object read = shared.deserialize(shared.serialize(new RouteInfo(BigDecimal.ONE, BigDecimal.TEN)));
+
+        assertFalse(read instanceof RouteInfo);
+    }
+}
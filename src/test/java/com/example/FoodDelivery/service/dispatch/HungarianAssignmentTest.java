@@ -0,0 +1,161 @@
+package com.example.FoodDelivery.service.dispatch;
+
+import static com.example.FoodDelivery.service.dispatch.HungarianAssignment.INFEASIBLE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HungarianAssignmentTest {
+
+    @Test
+    void solveMatchesBruteForceOnRandomRectangularMatrices() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            double[][] cost = randomMatrix(random, 1 + random.nextInt(6), 1 + random.nextInt(6), 0.3);
+
+            int[] assignment = HungarianAssignment.solve(cost);
+            assertValid(cost, assignment);
+
+            double[] best = bruteForce(cost, 0, new boolean[cost[0].length]);
+            assertEquals((int) best[0], matched(assignment), "matched pairs, round " + round);
+            assertEquals(best[1], HungarianAssignment.totalCost(cost, assignment), 1e-6, "total cost, round " + round);
+        }
+    }
+
+    @Test
+    void greedyIsValidAndNeverBeatsSolve() {
+        Random random = new Random(11);
+        for (int round = 0; round < 500; round++) {
+            double[][] cost = randomMatrix(random, 1 + random.nextInt(6), 1 + random.nextInt(6), 0.3);
+
+            int[] greedy = HungarianAssignment.greedy(cost);
+            int[] optimal = HungarianAssignment.solve(cost);
+            assertValid(cost, greedy);
+
+            assertTrue(matched(greedy) <= matched(optimal), "greedy matched more, round " + round);
+            if (matched(greedy) == matched(optimal)) {
+                assertTrue(HungarianAssignment.totalCost(cost, optimal)
+                        <= HungarianAssignment.totalCost(cost, greedy) + 1e-9, "greedy cheaper, round " + round);
+            }
+        }
+    }
+
+    @Test
+    void globalAssignmentBeatsGreedyOnContestedDriver() {
+        // Order 0 takes driver 0 greedily and leaves order 1 with a far driver
+        double[][] cost = {
+                { 1, 2 },
+                { 1.5, 10 },
+        };
+
+        assertArrayEquals(new int[] { 0, 1 }, HungarianAssignment.greedy(cost));
+        assertArrayEquals(new int[] { 1, 0 }, HungarianAssignment.solve(cost));
+        assertEquals(3.5, HungarianAssignment.totalCost(cost, HungarianAssignment.solve(cost)), 1e-9);
+    }
+
+    @Test
+    void averageCostComparesAssignmentsWithDifferentMatchCounts() {
+        // Greedy gives driver 0 to order 0 and leaves order 1 without a driver:
+        // its total (1) looks cheaper than the optimal total (2 + 3)
+        double[][] cost = {
+                { 1, 2 },
+                { 3, INFEASIBLE },
+        };
+        int[] greedy = HungarianAssignment.greedy(cost);
+        int[] optimal = HungarianAssignment.solve(cost);
+
+        assertArrayEquals(new int[] { 0, -1 }, greedy);
+        assertArrayEquals(new int[] { 1, 0 }, optimal);
+        assertEquals(1.0, HungarianAssignment.averageCost(cost, greedy), 1e-9);
+        assertEquals(2.5, HungarianAssignment.averageCost(cost, optimal), 1e-9);
+        assertTrue(Double.isNaN(HungarianAssignment.averageCost(cost, new int[] { -1, -1 })));
+    }
+
+    @Test
+    void infeasiblePairsAreNeverReturned() {
+        double[][] moreOrders = {
+                { INFEASIBLE, 3 },
+                { INFEASIBLE, 1 },
+                { INFEASIBLE, INFEASIBLE },
+        };
+        assertArrayEquals(new int[] { -1, 1, -1 }, HungarianAssignment.solve(moreOrders));
+        assertArrayEquals(new int[] { 1, -1, -1 }, HungarianAssignment.greedy(moreOrders));
+
+        double[][] moreDrivers = {
+                { INFEASIBLE, INFEASIBLE, INFEASIBLE },
+                { 4, INFEASIBLE, 2 },
+        };
+        assertArrayEquals(new int[] { -1, 2 }, HungarianAssignment.solve(moreDrivers));
+        assertArrayEquals(new int[] { -1, 2 }, HungarianAssignment.greedy(moreDrivers));
+    }
+
+    @Test
+    void emptyMatricesAssignNothing() {
+        assertArrayEquals(new int[0], HungarianAssignment.solve(new double[0][0]));
+        assertArrayEquals(new int[] { -1, -1 }, HungarianAssignment.solve(new double[2][0]));
+    }
+
+    private static double[][] randomMatrix(Random random, int rows, int cols, double infeasibleRatio) {
+        double[][] cost = new double[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                cost[r][c] = random.nextDouble() < infeasibleRatio ? INFEASIBLE : random.nextInt(2000) / 100.0;
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Most feasible matches, then lowest total cost, over every assignment
+     *
+     * @return { matched pairs, total cost }
+     */
+    private static double[] bruteForce(double[][] cost, int row, boolean[] taken) {
+        if (row == cost.length) {
+            return new double[] { 0, 0 };
+        }
+        double[] best = bruteForce(cost, row + 1, taken);
+        for (int c = 0; c < taken.length; c++) {
+            if (taken[c] || cost[row][c] >= INFEASIBLE) {
+                continue;
+            }
+            taken[c] = true;
+            double[] rest = bruteForce(cost, row + 1, taken);
+            taken[c] = false;
+            double matched = rest[0] + 1;
+            double total = rest[1] + cost[row][c];
+            if (matched > best[0] || (matched == best[0] && total < best[1])) {
+                best = new double[] { matched, total };
+            }
+        }
+        return best;
+    }
+
+    private static void assertValid(double[][] cost, int[] assignment) {
+        assertEquals(cost.length, assignment.length);
+        boolean[] taken = new boolean[cost[0].length];
+        for (int r = 0; r < assignment.length; r++) {
+            int c = assignment[r];
+            if (c < 0) {
+                continue;
+            }
+            assertTrue(cost[r][c] < INFEASIBLE, "infeasible pair " + r + " -> " + c);
+            assertTrue(!taken[c], "column " + c + " assigned twice");
+            taken[c] = true;
+        }
+    }
+
+    private static int matched(int[] assignment) {
+        int matched = 0;
+        for (int c : assignment) {
+            if (c >= 0) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+}
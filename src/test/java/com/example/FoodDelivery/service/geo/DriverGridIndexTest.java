@@ -0,0 +1,67 @@
+package com.example.FoodDelivery.service.geo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class DriverGridIndexTest {
+
+    @Test
+    void findsDriversAtHighLatitudes() {
+        DriverGridIndex index = new DriverGridIndex(100);
+        // Cells above ~59.1N used to overflow the sort key and were never found
+        double[][] points = {
+                { 10.7769, 106.7009 },
+                { 59.3293, 18.0686 },
+                { 64.1466, -21.9426 },
+                { 69.6492, 18.9553 },
+                { 78.2232, 15.6267 },
+                { 85.0, 179.99 },
+                { -54.8019, -68.3030 },
+                { -85.0, -179.99 },
+        };
+        for (int i = 0; i < points.length; i++) {
+            assertTrue(index.update(i + 1, points[i][0], points[i][1]));
+        }
+        index.rebuildSnapshot();
+
+        for (int i = 0; i < points.length; i++) {
+            List<DriverGridIndex.Neighbor> found = index.withinRadius(points[i][0], points[i][1], 1.0, 0);
+            assertEquals(1, found.size(), "drivers near " + points[i][0] + "," + points[i][1]);
+            assertEquals(i + 1, found.get(0).getDriverId());
+        }
+    }
+
+    @Test
+    void highLatitudeQueryReturnsClosestFirst() {
+        DriverGridIndex index = new DriverGridIndex(100);
+        index.update(1, 69.6500, 18.9600);
+        index.update(2, 69.6492, 18.9553);
+        index.update(3, 69.7000, 19.1000);
+        index.update(4, 10.7769, 106.7009);
+        index.rebuildSnapshot();
+
+        List<DriverGridIndex.Neighbor> found = index.withinRadius(69.6492, 18.9553, 10.0, 0);
+
+        assertEquals(3, found.size());
+        assertEquals(2, found.get(0).getDriverId());
+        assertEquals(1, found.get(1).getDriverId());
+        assertEquals(3, found.get(2).getDriverId());
+    }
+
+    @Test
+    void seesMovesWithinTheSnapshotCell() {
+        DriverGridIndex index = new DriverGridIndex(10);
+        index.update(7, 60.1699, 24.9384);
+        index.rebuildSnapshot();
+        index.update(7, 60.1701, 24.9386);
+
+        List<DriverGridIndex.Neighbor> found = index.withinRadius(60.1701, 24.9386, 0.1, 0);
+
+        assertEquals(1, found.size());
+        assertEquals(60.1701, found.get(0).getLatitude(), 1e-6);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.FoodDelivery.service.routing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class ContractionHierarchyTest {
+
+    @Test
+    void matchesDijkstraOnRandomGraphs() {
+        for (long seed = 1; seed <= 20; seed++) {
+            RoadGraph graph = randomGraph(new Random(seed), 60, 150);
+            ContractionHierarchy ch = ContractionHierarchyBuilder.build(graph);
+
+            for (int source = 0; source < graph.getNodeCount(); source++) {
+                int[] expected = dijkstra(graph, source);
+                for (int target = 0; target < graph.getNodeCount(); target++) {
+                    assertEquals(expected[target], ch.distance(source, target),
+                            "seed " + seed + ": " + source + " -> " + target);
+                }
+            }
+        }
+    }
+
+    @Test
+    void manyToOneAndOneToManyMatchDijkstra() {
+        Random random = new Random(42);
+        RoadGraph graph = randomGraph(random, 80, 200);
+        ContractionHierarchy ch = ContractionHierarchyBuilder.build(graph);
+
+        int[] nodes = new int[15];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = random.nextInt(graph.getNodeCount());
+        }
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            int[] from = dijkstra(graph, node);
+            int[] expectedFrom = new int[nodes.length];
+            int[] expectedTo = new int[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                expectedFrom[i] = from[nodes[i]];
+                expectedTo[i] = dijkstra(graph, nodes[i])[node];
+            }
+            assertArrayEquals(expectedFrom, ch.oneToMany(node, nodes), "oneToMany from " + node);
+            assertArrayEquals(expectedTo, ch.manyToOne(nodes, node), "manyToOne to " + node);
+        }
+    }
+
+    @Test
+    void matchesDijkstraOnSyntheticGrid() {
+        RoadGraph graph = RoadGraph.syntheticGrid("12x12@10.77,106.70,150");
+        ContractionHierarchy ch = ContractionHierarchyBuilder.build(graph);
+
+        for (int source = 0; source < graph.getNodeCount(); source += 7) {
+            int[] expected = dijkstra(graph, source);
+            for (int target = 0; target < graph.getNodeCount(); target++) {
+                assertEquals(expected[target], ch.distance(source, target), source + " -> " + target);
+            }
+        }
+    }
+
+    @Test
+    void concurrentQueriesBeyondThePoolSizeMatchDijkstra() throws Exception {
+        RoadGraph graph = randomGraph(new Random(7), 80, 200);
+        ContractionHierarchy ch = ContractionHierarchyBuilder.build(graph).withQueryParallelism(2);
+        int[][] expected = new int[graph.getNodeCount()][];
+        for (int source = 0; source < graph.getNodeCount(); source++) {
+            expected[source] = dijkstra(graph, source);
+        }
+        int[] all = new int[graph.getNodeCount()];
+        Arrays.setAll(all, node -> node);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int source = 0; source < graph.getNodeCount(); source++) {
+                        assertArrayEquals(expected[source], ch.oneToMany(source, all), "oneToMany from " + source);
+                        for (int target = 0; target < graph.getNodeCount(); target += 5) {
+                            assertEquals(expected[source][target], ch.distance(source, target),
+                                    source + " -> " + target);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Sparse random graph with one-way and two-way edges, parallel edges and
+     * nodes that are not reachable from everywhere
+     */
+    private static RoadGraph randomGraph(Random random, int nodes, int edges) {
+        int[] lat = new int[nodes];
+        int[] lng = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            lat[i] = 10_770_000 + random.nextInt(20_000);
+            lng[i] = 106_700_000 + random.nextInt(20_000);
+        }
+        RoadGraph.IntArray from = new RoadGraph.IntArray();
+        RoadGraph.IntArray to = new RoadGraph.IntArray();
+        RoadGraph.IntArray weight = new RoadGraph.IntArray();
+        for (int e = 0; e < edges; e++) {
+            int u = random.nextInt(nodes);
+            int v = random.nextInt(nodes);
+            if (u == v) {
+                continue;
+            }
+            int meters = 1 + random.nextInt(500);
+            from.add(u);
+            to.add(v);
+            weight.add(meters);
+            if (random.nextBoolean()) {
+                from.add(v);
+                to.add(u);
+                weight.add(meters);
+            }
+        }
+        return RoadGraph.build(lat, lng, from.toArray(), to.toArray(), weight.toArray());
+    }
+
+    private static int[] dijkstra(RoadGraph graph, int source) {
+        int[] dist = new int[graph.getNodeCount()];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        dist[source] = 0;
+        PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> Integer.compare(a[1], b[1]));
+        queue.add(new int[] { source, 0 });
+        while (!queue.isEmpty()) {
+            int[] entry = queue.poll();
+            int u = entry[0];
+            if (entry[1] > dist[u]) {
+                continue;
+            }
+            for (int e = graph.firstEdge(u); e < graph.firstEdge(u + 1); e++) {
+                int v = graph.edgeTarget(e);
+                int candidate = dist[u] + graph.edgeWeight(e);
+                if (candidate < dist[v]) {
+                    dist[v] = candidate;
+                    queue.add(new int[] { v, candidate });
+                }
+            }
+        }
+        for (int i = 0; i < dist.length; i++) {
+            if (dist[i] == Integer.MAX_VALUE) {
+                dist[i] = ContractionHierarchy.UNREACHABLE;
+            }
+        }
+        return dist;
+    }
+}
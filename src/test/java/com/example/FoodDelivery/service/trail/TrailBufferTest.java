@@ -0,0 +1,185 @@
+package com.example.FoodDelivery.service.trail;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TrailBufferTest {
+    private static final int START_LAT = 10_776_900;
+    private static final int START_LNG = 106_700_900;
+    private static final long START_TIME = 1_760_000_000L;
+
+    @Test
+    void keepsEverySampleUntilFull() {
+        TrailBuffer buffer = new TrailBuffer(64);
+        int[][] path = randomWalk(new Random(1), 40);
+
+        for (int[] point : path) {
+            buffer.append(point[0], point[1], START_TIME + point[2]);
+        }
+
+        assertPoints(path, 0, buffer.toPoints());
+    }
+
+    @Test
+    void wrapsAroundKeepingTheLatestSamples() {
+        TrailBuffer buffer = new TrailBuffer(16);
+        int[][] path = randomWalk(new Random(2), 100);
+
+        for (int[] point : path) {
+            buffer.append(point[0], point[1], START_TIME + point[2]);
+        }
+
+        // capacity steps plus the base sample
+        assertEquals(17, buffer.size());
+        assertPoints(path, 100 - 17, buffer.toPoints());
+        assertEquals(path[99][0], buffer.lastLatE6());
+        assertEquals(START_TIME + path[99][2], buffer.lastEpochSecond());
+    }
+
+    @Test
+    void splitsJumpsThatDoNotFitOneStep() {
+        TrailBuffer buffer = new TrailBuffer(64);
+        buffer.append(START_LAT, START_LNG, START_TIME);
+        // ~10 km north: three 16-bit steps
+        buffer.append(START_LAT + 90_000, START_LNG, START_TIME + 600);
+
+        TrailPoints points = buffer.toPoints();
+        assertEquals(4, points.size());
+        assertEquals(START_LAT + 90_000, points.latE6(3));
+        assertEquals(START_TIME + 600, points.epochSecond(3));
+    }
+
+    @Test
+    void bogusFixCostsTwoSlotsInsteadOfWipingTheRing() {
+        TrailBuffer buffer = new TrailBuffer(1024);
+        int[][] path = randomWalk(new Random(3), 500);
+        for (int[] point : path) {
+            buffer.append(point[0], point[1], START_TIME + point[2]);
+        }
+        long bogusTime = START_TIME + path[499][2] + 5;
+
+        // A fix at (0,0) used to be split into ~3300 steps and flush the whole ring
+        buffer.append(0, 0, bogusTime);
+        buffer.append(path[499][0], path[499][1], bogusTime + 5);
+
+        TrailPoints points = buffer.toPoints();
+        assertEquals(502, points.size());
+        assertPoints(path, 0, truncated(points, 500));
+        assertEquals(0, points.latE6(500));
+        assertEquals(0, points.lngE6(500));
+        assertEquals(bogusTime, points.epochSecond(500));
+        assertEquals(path[499][0], points.latE6(501));
+        assertEquals(path[499][1], points.lngE6(501));
+        assertEquals(bogusTime + 5, points.epochSecond(501));
+    }
+
+    @Test
+    void keyframesFoldIntoTheBaseOnWrapAround() {
+        TrailBuffer buffer = new TrailBuffer(5);
+        int[][] path = {
+                { START_LAT, START_LNG, 0 },
+                { -33_868_800, 151_209_300, 10 },
+                { -33_868_700, 151_209_400, 20 },
+                { 51_507_400, -127_800, 30 },
+                { 51_507_500, -127_700, 40 },
+                { 51_507_600, -127_600, 50 },
+                { 51_507_700, -127_500, 60 },
+                { 51_507_800, -127_400, 70 },
+        };
+        for (int[] point : path) {
+            buffer.append(point[0], point[1], START_TIME + point[2]);
+        }
+
+        // Both keyframes and the step between them were folded; the base is
+        // the second keyframe, followed by four steps
+        assertPoints(path, 3, buffer.toPoints());
+    }
+
+    @Test
+    void longGapsKeepExactTimes() {
+        TrailBuffer buffer = new TrailBuffer(32);
+        buffer.append(START_LAT, START_LNG, START_TIME);
+        buffer.append(START_LAT + 100, START_LNG, START_TIME + 20 * 3600);
+        buffer.append(-START_LAT, -START_LNG, START_TIME + 40 * 3600);
+
+        TrailPoints points = buffer.toPoints();
+        assertEquals(START_TIME + 40 * 3600, points.epochSecond(points.size() - 1));
+        assertEquals(-START_LAT, points.latE6(points.size() - 1));
+        assertEquals(-START_LNG, points.lngE6(points.size() - 1));
+    }
+
+    @Test
+    void codecRoundTripsBufferContents() {
+        TrailBuffer buffer = new TrailBuffer(128);
+        int[][] path = randomWalk(new Random(4), 300);
+        for (int[] point : path) {
+            buffer.append(point[0], point[1], START_TIME + point[2]);
+        }
+        buffer.append(0, 0, START_TIME + path[299][2] + 3);
+        TrailPoints points = buffer.toPoints();
+
+        TrailPoints decoded = TrailCodec.decode(TrailCodec.encode(points));
+
+        assertEquals(points.size(), decoded.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(points.latE6(i), decoded.latE6(i));
+            assertEquals(points.lngE6(i), decoded.lngE6(i));
+            assertEquals(points.epochSecond(i), decoded.epochSecond(i));
+        }
+    }
+
+    @Test
+    void codecRejectsTruncatedData() {
+        byte[] data = TrailCodec.encode(new TrailPoints(new int[] { START_LAT, START_LAT + 10 },
+                new int[] { START_LNG, START_LNG + 10 }, new long[] { START_TIME, START_TIME + 3 }));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> TrailCodec.decode(Arrays.copyOf(data, data.length / 2)));
+    }
+
+    /**
+     * Driver moving up to ~50 m between samples every 3-10 s
+     *
+     * @return { latE6, lngE6, seconds since start }
+     */
+    private static int[][] randomWalk(Random random, int n) {
+        int[][] path = new int[n][];
+        int lat = START_LAT;
+        int lng = START_LNG;
+        int seconds = 0;
+        for (int i = 0; i < n; i++) {
+            path[i] = new int[] { lat, lng, seconds };
+            lat += random.nextInt(901) - 450;
+            lng += random.nextInt(901) - 450;
+            seconds += 3 + random.nextInt(8);
+        }
+        return path;
+    }
+
+    private static void assertPoints(int[][] path, int from, TrailPoints points) {
+        assertEquals(path.length - from, points.size());
+        for (int i = 0; i < points.size(); i++) {
+            int[] expected = path[from + i];
+            assertArrayEquals(new long[] { expected[0], expected[1], START_TIME + expected[2] },
+                    new long[] { points.latE6(i), points.lngE6(i), points.epochSecond(i) });
+        }
+    }
+
+    private static TrailPoints truncated(TrailPoints points, int n) {
+        int[] lat = new int[n];
+        int[] lng = new int[n];
+        long[] time = new long[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = points.latE6(i);
+            lng[i] = points.lngE6(i);
+            time[i] = points.epochSecond(i);
+        }
+        return new TrailPoints(lat, lng, time);
+    }
+}
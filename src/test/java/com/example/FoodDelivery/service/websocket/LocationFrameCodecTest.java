@@ -0,0 +1,118 @@
+package com.example.FoodDelivery.service.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.FoodDelivery.domain.res.websocket.DriverLocationDelta;
+
+class LocationFrameCodecTest {
+    private static final long TS = 1_760_000_000_000L;
+
+    @Test
+    void deltaFrameRoundTripWithNegativeDeltas() {
+        DriverLocationDelta delta = new DriverLocationDelta(100234L, 418L, null, null, -137, 412, TS);
+
+        byte[] frame = LocationFrameCodec.encode(delta);
+        DriverLocationDelta read = LocationFrameCodec.decode(frame);
+
+        assertEquals(16, frame.length);
+        assertEquals(delta, read);
+    }
+
+    @Test
+    void deltaFrameRoundTripAtTheIntLimits() {
+        for (int[] step : new int[][] { { -1, 0 }, { 0, -1 }, { Integer.MIN_VALUE, Integer.MAX_VALUE },
+                { Integer.MAX_VALUE, Integer.MIN_VALUE } }) {
+            DriverLocationDelta delta = new DriverLocationDelta(1L, 2L, null, null, step[0], step[1], TS);
+
+            assertEquals(delta, LocationFrameCodec.decode(LocationFrameCodec.encode(delta)));
+        }
+    }
+
+    @Test
+    void keyframeRoundTrip() {
+        DriverLocationDelta keyframe = new DriverLocationDelta(100234L, 418L, 10_776_900, 106_700_900, null, null, TS);
+
+        byte[] frame = LocationFrameCodec.encode(keyframe);
+        DriverLocationDelta read = LocationFrameCodec.decode(frame);
+
+        assertEquals(20, frame.length);
+        assertEquals(keyframe, read);
+    }
+
+    @Test
+    void keyframeRoundTripSouthWest() {
+        DriverLocationDelta keyframe = new DriverLocationDelta(Long.MAX_VALUE, Long.MAX_VALUE, -33_868_800,
+                -151_209_300, null, null, Long.MAX_VALUE);
+
+        assertEquals(keyframe, LocationFrameCodec.decode(LocationFrameCodec.encode(keyframe)));
+    }
+
+    @Test
+    void frameWithoutBothCoordinatesIsADelta() {
+        DriverLocationDelta partial = new DriverLocationDelta(7L, 3L, 10_776_900, null, null, null, null);
+
+        DriverLocationDelta read = LocationFrameCodec.decode(LocationFrameCodec.encode(partial));
+
+        assertNull(read.getLat());
+        assertNull(read.getLng());
+        assertEquals(Integer.valueOf(0), read.getDeltaLat());
+        assertEquals(Integer.valueOf(0), read.getDeltaLng());
+        assertEquals(Long.valueOf(0), read.getTs());
+    }
+
+    @Test
+    void rejectsEmptyAndUnknownVersions() {
+        byte[] frame = LocationFrameCodec.encode(new DriverLocationDelta(1L, 2L, null, null, -5, 5, TS));
+        byte[] otherVersion = frame.clone();
+        otherVersion[0] = (byte) ((LocationFrameCodec.VERSION + 1) << 4);
+
+        assertThrows(IllegalArgumentException.class, () -> LocationFrameCodec.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> LocationFrameCodec.decode(otherVersion));
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        byte[] delta = LocationFrameCodec.encode(new DriverLocationDelta(100234L, 418L, null, null, -137, 412, TS));
+        byte[] keyframe = LocationFrameCodec.encode(
+                new DriverLocationDelta(100234L, 418L, 10_776_900, 106_700_900, null, null, TS));
+
+        for (byte[] frame : new byte[][] { delta, keyframe }) {
+            for (int length = 1; length < frame.length; length++) {
+                byte[] truncated = Arrays.copyOf(frame, length);
+                assertThrows(IllegalArgumentException.class, () -> LocationFrameCodec.decode(truncated));
+            }
+        }
+    }
+
+    @Test
+    void rejectsTrailingBytes() {
+        byte[] frame = LocationFrameCodec.encode(new DriverLocationDelta(1L, 2L, null, null, -5, 5, TS));
+        byte[] longer = Arrays.copyOf(frame, frame.length + 1);
+
+        assertThrows(IllegalArgumentException.class, () -> LocationFrameCodec.decode(longer));
+    }
+
+    @Test
+    void rejectsOverlongVarints() {
+        byte[] frame = new byte[12];
+        frame[0] = (byte) (LocationFrameCodec.VERSION << 4);
+        Arrays.fill(frame, 1, frame.length, (byte) 0xFF);
+
+        assertThrows(IllegalArgumentException.class, () -> LocationFrameCodec.decode(frame));
+    }
+
+    @Test
+    void rejectsCoordinatesOutsideIntRange() {
+        // flags, orderId 1, seq 1, ts 1, dlat zigzag(2^31), dlng 0
+        byte[] frame = { (byte) (LocationFrameCodec.VERSION << 4), 1, 1, 1,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10, 0 };
+
+        assertThrows(IllegalArgumentException.class, () -> LocationFrameCodec.decode(frame));
+    }
+}
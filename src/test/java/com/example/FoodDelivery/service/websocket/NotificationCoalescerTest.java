@@ -0,0 +1,155 @@
+package com.example.FoodDelivery.service.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.FoodDelivery.domain.res.websocket.OrderNotification;
+import com.example.FoodDelivery.service.NotificationOutbox;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class NotificationCoalescerTest {
+    private static final String CUSTOMER = "/topic/customer/3/orders";
+    private static final String RESTAURANT = "/topic/restaurant/5/orders";
+
+    private NotificationOutbox notificationOutbox;
+    // destination -> frames in the order they were sent
+    private final Map<String, List<OrderNotification>> sent = new LinkedHashMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        notificationOutbox = mock(NotificationOutbox.class);
+        // No transaction in these tests: after-commit work runs right away
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(notificationOutbox).afterCommit(any());
+        doAnswer(invocation -> {
+            for (String destination : (List<String>) invocation.getArgument(0)) {
+                sent.computeIfAbsent(destination, key -> new ArrayList<>())
+                        .add((OrderNotification) invocation.getArgument(1));
+            }
+            return null;
+        }).when(notificationOutbox).sendToAll(anyList(), any());
+    }
+
+    // ==================== merge ====================
+
+    @Test
+    void singleNotificationIsSentUnchanged() {
+        OrderNotification update = notification("ORDER_UPDATE", "Order accepted", "v1");
+
+        assertSame(update, NotificationCoalescer.merge(List.of(update)));
+        assertEquals(List.of(update), NotificationCoalescer.mergeByType(List.of(update)));
+    }
+
+    @Test
+    void sameTypeKeepsTheLastDataAndEveryMessage() {
+        OrderNotification merged = NotificationCoalescer.merge(List.of(
+                notification("ORDER_STATUS_CHANGED", "Order status updated to: READY", "v1"),
+                notification("ORDER_STATUS_CHANGED", "Order status updated to: PICKED_UP", "v2")));
+
+        assertEquals("ORDER_STATUS_CHANGED", merged.getType());
+        assertEquals("Order status updated to: PICKED_UP", merged.getMessage());
+        assertEquals("v2", merged.getData());
+        assertEquals(List.of("Order status updated to: READY", "Order status updated to: PICKED_UP"),
+                merged.getMessages());
+    }
+
+    @Test
+    void differentTypesAreNotMerged() {
+        // An offer followed by a status change must still reach the driver as an offer
+        List<OrderNotification> frames = NotificationCoalescer.mergeByType(List.of(
+                notification("ORDER_ASSIGNED", "New order assigned to you", "v1"),
+                notification("ORDER_STATUS_CHANGED", "Order status updated to: READY", "v2")));
+
+        assertEquals(2, frames.size());
+        assertEquals("ORDER_ASSIGNED", frames.get(0).getType());
+        assertNull(frames.get(0).getMessages());
+        assertEquals("ORDER_STATUS_CHANGED", frames.get(1).getType());
+    }
+
+    @Test
+    void framesFollowTheLastNotificationOfEachType() {
+        List<OrderNotification> frames = NotificationCoalescer.mergeByType(List.of(
+                notification("ORDER_STATUS_CHANGED", "Order status updated to: PREPARING", "v1"),
+                notification("ORDER_UPDATE", "Your order is being prepared", "v1"),
+                notification("ORDER_STATUS_CHANGED", "Order status updated to: READY", "v2")));
+
+        assertEquals(2, frames.size());
+        assertEquals("ORDER_UPDATE", frames.get(0).getType());
+        // The newest state is in the last frame
+        assertEquals("ORDER_STATUS_CHANGED", frames.get(1).getType());
+        assertEquals("v2", frames.get(1).getData());
+        assertEquals(2, frames.get(1).getMessages().size());
+    }
+
+    // ==================== window ====================
+
+    @Test
+    void holdsNotificationsUntilTheWindowCloses() {
+        NotificationCoalescer coalescer = new NotificationCoalescer(notificationOutbox, new SimpleMeterRegistry(),
+                60_000);
+
+        coalescer.send(List.of(CUSTOMER), notification("ORDER_UPDATE", "Driver has accepted your order", "v1"));
+        coalescer.send(List.of(CUSTOMER, RESTAURANT),
+                notification("ORDER_STATUS_CHANGED", "Order status updated to: DRIVER_ASSIGNED", "v1"));
+        assertTrue(sent.isEmpty());
+
+        // Closes every open window
+        coalescer.shutdown();
+
+        assertEquals(List.of("ORDER_UPDATE", "ORDER_STATUS_CHANGED"), types(CUSTOMER));
+        assertEquals(List.of("ORDER_STATUS_CHANGED"), types(RESTAURANT));
+    }
+
+    @Test
+    void approachingNotificationStaysBehindHeldStatusChange() {
+        NotificationCoalescer coalescer = new NotificationCoalescer(notificationOutbox, new SimpleMeterRegistry(),
+                60_000);
+
+        coalescer.send(List.of(RESTAURANT),
+                notification("ORDER_STATUS_CHANGED", "Order status updated to: DRIVER_ASSIGNED", "v1"));
+        coalescer.send(List.of(RESTAURANT), notification("DRIVER_APPROACHING", "Driver is 250 m away", null));
+        coalescer.shutdown();
+
+        assertEquals(List.of("ORDER_STATUS_CHANGED", "DRIVER_APPROACHING"), types(RESTAURANT));
+    }
+
+    @Test
+    void zeroWindowSendsRightAway() {
+        NotificationCoalescer coalescer = new NotificationCoalescer(notificationOutbox, new SimpleMeterRegistry(), 0);
+
+        coalescer.send(List.of(CUSTOMER), notification("ORDER_UPDATE", "Order accepted", "v1"));
+
+        assertEquals(List.of("ORDER_UPDATE"), types(CUSTOMER));
+        coalescer.shutdown();
+    }
+
+    private List<String> types(String destination) {
+        List<String> types = new ArrayList<>();
+        for (OrderNotification frame : sent.getOrDefault(destination, List.of())) {
+            types.add(frame.getType());
+        }
+        return types;
+    }
+
+    private static OrderNotification notification(String type, String message, Object data) {
+        return new OrderNotification(type, 42L, message, data);
+    }
+}
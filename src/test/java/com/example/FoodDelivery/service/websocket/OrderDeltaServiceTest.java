@@ -0,0 +1,194 @@
+package com.example.FoodDelivery.service.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import com.example.FoodDelivery.domain.res.order.ResOrderDTO;
+import com.example.FoodDelivery.domain.res.websocket.OrderDelta;
+import com.example.FoodDelivery.service.NotificationOutbox;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OrderDeltaServiceTest {
+    private static final Long ORDER_ID = 42L;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    // Redis hash "order:delta:42", field -> value
+    private final Map<Object, Object> stored = new HashMap<>();
+    private final List<OrderDelta> sent = new ArrayList<>();
+
+    private NotificationOutbox notificationOutbox;
+    private OrderDeltaService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        HashOperations<String, Object, Object> hash = mock(HashOperations.class);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hash);
+        when(hash.multiGet(eq("order:delta:" + ORDER_ID), any())).thenAnswer(invocation -> {
+            List<Object> values = new ArrayList<>();
+            for (Object field : (Collection<Object>) invocation.getArgument(1)) {
+                values.add(stored.get(field));
+            }
+            return values;
+        });
+        when(hash.increment(eq("order:delta:" + ORDER_ID), eq("v"), anyLong())).thenAnswer(invocation -> {
+            long version = (stored.containsKey("v") ? Long.parseLong(stored.get("v").toString()) : 0)
+                    + (long) invocation.getArgument(2);
+            stored.put("v", version);
+            return version;
+        });
+        doAnswer(invocation -> stored.put(invocation.getArgument(1), invocation.getArgument(2)))
+                .when(hash).put(eq("order:delta:" + ORDER_ID), any(), any());
+
+        notificationOutbox = mock(NotificationOutbox.class);
+        // No transaction in these tests: after-commit work runs right away
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(notificationOutbox).afterCommit(any());
+        doAnswer(invocation -> sent.add(invocation.getArgument(1)))
+                .when(notificationOutbox).send(anyString(), any());
+
+        service = new OrderDeltaService(redisTemplate, notificationOutbox, mock(CompactFramePublisher.class),
+                objectMapper, new SimpleMeterRegistry(), 24);
+    }
+
+    // ==================== diff ====================
+
+    @Test
+    void diffWithoutPreviousStateSendsEveryField() throws Exception {
+        JsonNode current = objectMapper.readTree("{\"id\":42,\"orderStatus\":\"PENDING\"}");
+
+        assertEquals(current, OrderDeltaService.diff(null, current));
+    }
+
+    @Test
+    void diffSendsOnlyChangedTopLevelFields() throws Exception {
+        JsonNode previous = objectMapper.readTree(
+                "{\"id\":42,\"orderStatus\":\"PREPARING\",\"driver\":{\"id\":7,\"name\":\"An\"}}");
+        JsonNode current = objectMapper.readTree(
+                "{\"id\":42,\"orderStatus\":\"PICKED_UP\",\"driver\":{\"id\":7,\"name\":\"Binh\"}}");
+
+        assertEquals(objectMapper.readTree("{\"orderStatus\":\"PICKED_UP\",\"driver\":{\"id\":7,\"name\":\"Binh\"}}"),
+                OrderDeltaService.diff(previous, current));
+    }
+
+    @Test
+    void diffSendsRemovedFieldsAsNull() throws Exception {
+        JsonNode previous = objectMapper.readTree("{\"id\":42,\"driver\":{\"id\":7}}");
+        JsonNode current = objectMapper.readTree("{\"id\":42}");
+
+        assertEquals(objectMapper.readTree("{\"driver\":null}"), OrderDeltaService.diff(previous, current));
+    }
+
+    @Test
+    void diffOfEqualStatesIsEmpty() throws Exception {
+        JsonNode state = objectMapper.readTree("{\"id\":42,\"totalAmount\":125000.50}");
+
+        assertTrue(OrderDeltaService.diff(state, objectMapper.readTree("{\"id\":42,\"totalAmount\":125000.50}"))
+                .isEmpty());
+    }
+
+    // ==================== versions ====================
+
+    @Test
+    void versionsFollowEachPublishedChange() {
+        service.publish(order("PENDING"));
+        service.publish(order("PREPARING"));
+        service.publish(order("READY"));
+
+        assertEquals(3, sent.size());
+        assertDelta(sent.get(0), 1, 0);
+        assertTrue(sent.get(0).getChanges().has("id"));
+        assertDelta(sent.get(1), 2, 1);
+        assertEquals(1, sent.get(1).getChanges().size());
+        assertEquals("PREPARING", sent.get(1).getChanges().get("orderStatus").asText());
+        assertDelta(sent.get(2), 3, 2);
+        assertEquals("READY", sent.get(2).getChanges().get("orderStatus").asText());
+    }
+
+    @Test
+    void unchangedOrderPublishesNothing() {
+        service.publish(order("PREPARING"));
+        service.publish(order("PREPARING"));
+
+        assertEquals(1, sent.size());
+        assertEquals(1L, Long.parseLong(stored.get("v").toString()));
+    }
+
+    @Test
+    void publishesOnlyAfterCommit() {
+        NotificationOutbox deferred = mock(NotificationOutbox.class);
+        OrderDeltaService deferredService = new OrderDeltaService(mock(RedisTemplate.class), deferred,
+                mock(CompactFramePublisher.class), objectMapper, new SimpleMeterRegistry(), 24);
+
+        deferredService.publish(order("PREPARING"));
+
+        verify(deferred).afterCommit(any());
+        verify(deferred, never()).send(anyString(), any());
+    }
+
+    // ==================== snapshot ====================
+
+    @Test
+    void snapshotReturnsTheLastPublishedStateAndVersion() {
+        service.publish(order("PENDING"));
+        service.publish(order("PREPARING"));
+
+        OrderDelta snapshot = service.snapshot(ORDER_ID, () -> order("STALE"));
+
+        assertEquals(OrderDelta.SNAPSHOT, snapshot.getType());
+        assertEquals(Long.valueOf(2), snapshot.getVersion());
+        assertEquals("PREPARING", snapshot.getOrder().get("orderStatus").asText());
+    }
+
+    @Test
+    void snapshotFallsBackToTheLoaderAtVersionZero() {
+        OrderDelta snapshot = service.snapshot(ORDER_ID, () -> order("PENDING"));
+
+        assertEquals(Long.valueOf(0), snapshot.getVersion());
+        assertEquals("PENDING", snapshot.getOrder().get("orderStatus").asText());
+        assertNull(service.snapshot(ORDER_ID, () -> null));
+    }
+
+    private static void assertDelta(OrderDelta delta, long version, long baseVersion) {
+        assertEquals(OrderDelta.DELTA, delta.getType());
+        assertEquals(ORDER_ID, delta.getOrderId());
+        assertEquals(Long.valueOf(version), delta.getVersion());
+        assertEquals(Long.valueOf(baseVersion), delta.getBaseVersion());
+    }
+
+    private static ResOrderDTO order(String status) {
+        ResOrderDTO order = new ResOrderDTO();
+        order.setId(ORDER_ID);
+        order.setOrderStatus(status);
+        order.setPaymentMethod("COD");
+        return order;
+    }
+}
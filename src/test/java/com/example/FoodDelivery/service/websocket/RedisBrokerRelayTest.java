@@ -0,0 +1,259 @@
+package com.example.FoodDelivery.service.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RedisBrokerRelayTest {
+    private static final String PREFIX = "ws:relay:";
+    private static final byte[] PAYLOAD = "{\"orderId\":42,\"status\":\"PICKED_UP\"}".getBytes(StandardCharsets.UTF_8);
+
+    private RedisConnection connection;
+    private RedisConnectionFactory connectionFactory;
+    private List<Message<?>> brokerMessages;
+    private List<Message<?>> registryMessages;
+
+    @BeforeEach
+    void setUp() {
+        connection = mock(RedisConnection.class);
+        connectionFactory = mock(RedisConnectionFactory.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        brokerMessages = new ArrayList<>();
+        registryMessages = new ArrayList<>();
+    }
+
+    // ==================== Envelope ====================
+
+    @Test
+    void envelopeRoundTrip() throws IOException {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/topic/order/42/location");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setNativeHeader("x-seq", "418");
+        accessor.setNativeHeader("x-note", "đơn hàng");
+        Message<byte[]> message = MessageBuilder.createMessage(PAYLOAD, accessor.getMessageHeaders());
+
+        RedisBrokerRelay.Envelope envelope = RedisBrokerRelay.decodeEnvelope(
+                RedisBrokerRelay.encodeEnvelope("node-a", message));
+
+        assertEquals("node-a", envelope.origin);
+        assertEquals("application/json", envelope.contentType);
+        assertEquals(Map.of("x-seq", "418", "x-note", "đơn hàng"), envelope.nativeHeaders);
+        assertArrayEquals(PAYLOAD, envelope.payload);
+    }
+
+    @Test
+    void envelopeWithoutContentTypeOrHeaders() throws IOException {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/topic/restaurant/7/orders");
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+
+        RedisBrokerRelay.Envelope envelope = RedisBrokerRelay.decodeEnvelope(
+                RedisBrokerRelay.encodeEnvelope("node-a", message));
+
+        assertNull(envelope.contentType);
+        assertTrue(envelope.nativeHeaders.isEmpty());
+        assertArrayEquals(new byte[0], envelope.payload);
+    }
+
+    @Test
+    void rejectsUnknownVersionAndTruncatedEnvelopes() throws IOException {
+        byte[] body = RedisBrokerRelay.encodeEnvelope("node-a", message("/topic/order/42/location"));
+
+        byte[] otherVersion = body.clone();
+        otherVersion[0] = 2;
+        assertThrows(IOException.class, () -> RedisBrokerRelay.decodeEnvelope(otherVersion));
+        assertThrows(IOException.class, () -> RedisBrokerRelay.decodeEnvelope(Arrays.copyOf(body, 5)));
+        assertThrows(IOException.class, () -> RedisBrokerRelay.decodeEnvelope(new byte[0]));
+    }
+
+    // ==================== Outbound filtering ====================
+
+    @Test
+    void publishesTopicAndQueueMessagesToTheirChannel() {
+        RedisBrokerRelay relay = relay();
+
+        relay.preSend(message("/topic/order/42/location"), null);
+        relay.preSend(message("/queue/driver/33/offers"), null);
+
+        assertEquals(List.of(PREFIX + "/topic/order/42/location", PREFIX + "/queue/driver/33/offers"),
+                publishedChannels());
+    }
+
+    @Test
+    void publishesUserRegistryAndUnresolvedUserBroadcasts() {
+        RedisBrokerRelay relay = relay();
+
+        relay.preSend(message(RedisBrokerRelay.USER_REGISTRY_DESTINATION), null);
+        relay.preSend(message(RedisBrokerRelay.UNRESOLVED_USER_DESTINATION), null);
+
+        assertEquals(List.of(PREFIX + RedisBrokerRelay.USER_REGISTRY_DESTINATION,
+                PREFIX + RedisBrokerRelay.UNRESOLVED_USER_DESTINATION), publishedChannels());
+    }
+
+    @Test
+    void keepsLocalOnlyMessagesOnThisNode() {
+        RedisBrokerRelay relay = relay();
+
+        // Resolved user destination: the session queue only exists here
+        SimpMessageHeaderAccessor resolved = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        resolved.setDestination("/queue/orders-user1a2b3c");
+        resolved.setNativeHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION, "/user/queue/orders");
+        relay.preSend(MessageBuilder.createMessage(PAYLOAD, resolved.getMessageHeaders()), null);
+
+        // Already relayed from another node
+        SimpMessageHeaderAccessor relayed = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        relayed.setDestination("/topic/order/42/location");
+        relayed.setHeader(RedisBrokerRelay.RELAYED_HEADER, Boolean.TRUE);
+        relay.preSend(MessageBuilder.createMessage(PAYLOAD, relayed.getMessageHeaders()), null);
+
+        // Not a broker destination, not a MESSAGE, not yet encoded
+        relay.preSend(message("/app/chat/42"), null);
+        SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        subscribe.setDestination("/topic/order/42/location");
+        relay.preSend(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()), null);
+        SimpMessageHeaderAccessor unencoded = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        unencoded.setDestination("/topic/order/42/location");
+        relay.preSend(MessageBuilder.createMessage("not bytes", unencoded.getMessageHeaders()), null);
+
+        verify(connection, never()).publish(any(byte[].class), any(byte[].class));
+    }
+
+    @Test
+    void publishFailureStillDeliversLocally() {
+        when(connectionFactory.getConnection()).thenThrow(new IllegalStateException("Redis down"));
+        RedisBrokerRelay relay = relay();
+        Message<byte[]> message = message("/topic/order/42/location");
+
+        assertSame(message, relay.preSend(message, null));
+    }
+
+    // ==================== Inbound ====================
+
+    @Test
+    void deliversMessagesFromOtherNodesAsRelayed() {
+        RedisBrokerRelay sender = relay();
+        RedisBrokerRelay receiver = relay();
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/topic/order/42/location");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setNativeHeader("x-seq", "418");
+        sender.preSend(MessageBuilder.createMessage(PAYLOAD, accessor.getMessageHeaders()), null);
+
+        receiver.onMessage(lastPublished(), null);
+
+        assertEquals(1, brokerMessages.size());
+        Message<?> delivered = brokerMessages.get(0);
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(delivered);
+        assertEquals("/topic/order/42/location", headers.getDestination());
+        assertEquals(Boolean.TRUE, headers.getHeader(RedisBrokerRelay.RELAYED_HEADER));
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, headers.getContentType());
+        assertEquals("418", headers.getFirstNativeHeader("x-seq"));
+        assertArrayEquals(PAYLOAD, (byte[]) delivered.getPayload());
+
+        // Handed to the local broker channel, which must not publish it again
+        clearInvocations(connection);
+        receiver.preSend(delivered, null);
+        verify(connection, never()).publish(any(byte[].class), any(byte[].class));
+    }
+
+    @Test
+    void ignoresItsOwnMessages() {
+        RedisBrokerRelay relay = relay();
+        relay.preSend(message("/topic/order/42/location"), null);
+
+        relay.onMessage(lastPublished(), null);
+
+        assertTrue(brokerMessages.isEmpty());
+    }
+
+    @Test
+    void routesUserRegistryBroadcastsToTheRegistryHandler() {
+        RedisBrokerRelay sender = relay();
+        RedisBrokerRelay receiver = relay();
+        sender.preSend(message(RedisBrokerRelay.USER_REGISTRY_DESTINATION), null);
+
+        receiver.onMessage(lastPublished(), null);
+
+        assertEquals(1, registryMessages.size());
+        assertTrue(brokerMessages.isEmpty());
+    }
+
+    @Test
+    void ignoresForeignChannelsAndCorruptBodies() {
+        RedisBrokerRelay relay = relay();
+
+        relay.onMessage(new DefaultMessage("other:/topic/order/42/location".getBytes(StandardCharsets.UTF_8),
+                PAYLOAD), null);
+        relay.onMessage(new DefaultMessage((PREFIX + "/topic/order/42/location").getBytes(StandardCharsets.UTF_8),
+                new byte[] { 9, 9, 9 }), null);
+
+        assertTrue(brokerMessages.isEmpty());
+    }
+
+    private RedisBrokerRelay relay() {
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        MessageChannel brokerChannel = (message, timeout) -> brokerMessages.add(message);
+        return new RedisBrokerRelay(redisTemplate, connectionFactory, mock(PresenceService.class), brokerChannel,
+                registryMessages::add, new SimpleMeterRegistry(), PREFIX);
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(PAYLOAD, accessor.getMessageHeaders());
+    }
+
+    private List<String> publishedChannels() {
+        ArgumentCaptor<byte[]> channels = ArgumentCaptor.forClass(byte[].class);
+        verify(connection, atLeast(0)).publish(channels.capture(), any(byte[].class));
+        List<String> names = new ArrayList<>();
+        for (byte[] channel : channels.getAllValues()) {
+            names.add(new String(channel, StandardCharsets.UTF_8));
+        }
+        return names;
+    }
+
+    private DefaultMessage lastPublished() {
+        ArgumentCaptor<byte[]> channel = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+        verify(connection, atLeastOnce()).publish(channel.capture(), body.capture());
+        return new DefaultMessage(channel.getValue(), body.getValue());
+    }
+}